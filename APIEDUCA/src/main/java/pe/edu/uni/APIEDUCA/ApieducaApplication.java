@@ -2,8 +2,10 @@ package pe.edu.uni.APIEDUCA;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ApieducaApplication {
 
 	public static void main(String[] args) {
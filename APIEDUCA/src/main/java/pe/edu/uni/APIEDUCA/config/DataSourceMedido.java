@@ -0,0 +1,66 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import pe.edu.uni.APIEDUCA.service.ViajesBd;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSource que acumula en ViajesBd, por hilo, cuánto se esperó por cada
+ * conexión del pool y cuánto tiempo se retuvo hasta devolverla (close).
+ * Con transacciones, la retención es la duración de la transacción.
+ * Los totales del pool los publica Hikari (hikaricp.connections.acquire/usage).
+ */
+public class DataSourceMedido extends DelegatingDataSource {
+
+    public DataSourceMedido(DataSource destino) {
+        super(destino);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long inicio = System.nanoTime();
+        Connection conexion = super.getConnection();
+        return medir(conexion, inicio);
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String clave) throws SQLException {
+        long inicio = System.nanoTime();
+        Connection conexion = super.getConnection(usuario, clave);
+        return medir(conexion, inicio);
+    }
+
+    private static Connection medir(Connection conexion, long inicio) {
+        long obtenida = System.nanoTime();
+        ViajesBd.registrarEsperaConexion(obtenida - inicio);
+
+        boolean[] cerrada = {false};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, argumentos) -> {
+                    switch (metodo.getName()) {
+                        case "equals":
+                            return proxy == argumentos[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "close":
+                            if (!cerrada[0]) {
+                                cerrada[0] = true;
+                                ViajesBd.registrarRetencionConexion(System.nanoTime() - obtenida);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    try {
+                        return metodo.invoke(conexion, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
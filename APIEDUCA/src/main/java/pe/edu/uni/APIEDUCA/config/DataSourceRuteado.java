@@ -0,0 +1,58 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Elige el pool de cada conexión: las transacciones readOnly van a la réplica y
+ * todo lo demás (escrituras, transacciones normales y trabajo sin transacción)
+ * a la primaria. Debe usarse detrás de un LazyConnectionDataSourceProxy para que
+ * la decisión se tome en la primera sentencia, cuando la transacción ya está
+ * marcada como de solo lectura.
+ * Métrica: clinica.bd.ruteo{destino, motivo}.
+ */
+public class DataSourceRuteado extends AbstractRoutingDataSource {
+
+    static final String PRIMARIA = "primaria";
+    static final String REPLICA = "replica";
+
+    private final Counter escrituras;
+    private final Counter lecturas;
+    private final Counter lecturasPropias;
+
+    public DataSourceRuteado(DataSource primaria, DataSource replica, MeterRegistry registro) {
+        setTargetDataSources(Map.of(PRIMARIA, primaria, REPLICA, replica));
+        setDefaultTargetDataSource(primaria);
+        setLenientFallback(false);
+        afterPropertiesSet();
+        escrituras = contador(registro, PRIMARIA, "escritura");
+        lecturas = contador(registro, REPLICA, "lectura");
+        lecturasPropias = contador(registro, PRIMARIA, "lectura-propia");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            escrituras.increment();
+            return PRIMARIA;
+        }
+        if (RuteoLecturas.primariaForzada()) {
+            lecturasPropias.increment();
+            return PRIMARIA;
+        }
+        lecturas.increment();
+        return REPLICA;
+    }
+
+    private static Counter contador(MeterRegistry registro, String destino, String motivo) {
+        return Counter.builder("clinica.bd.ruteo")
+                .description("Conexiones entregadas por pool y motivo del ruteo")
+                .tag("destino", destino).tag("motivo", motivo)
+                .register(registro);
+    }
+}
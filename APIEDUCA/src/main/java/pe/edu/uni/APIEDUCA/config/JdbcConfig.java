@@ -0,0 +1,48 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class JdbcConfig {
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, MeterRegistry registro) {
+        return new JdbcTemplateInstrumentado(dataSource, registro);
+    }
+
+    // Lecturas que toleran el retraso de la réplica; sin réplica es el mismo jdbcTemplate
+    @Bean
+    public JdbcTemplate jdbcLectura(JdbcTemplate jdbcTemplate, @Qualifier("replica") ObjectProvider<DataSource> replica,
+                                    MeterRegistry registro) {
+        DataSource dataSource = replica.getIfAvailable();
+        return dataSource == null ? jdbcTemplate : new JdbcTemplateInstrumentado(dataSource, registro);
+    }
+
+    // El DataSource de cada pool se envuelve para medir espera y retención de conexiones;
+    // el JdbcTemplate y el gestor de transacciones usan el mismo envoltorio. El ruteo
+    // entre primaria y réplica no se envuelve: ya lo están los pools a los que delega
+    @Bean
+    public static BeanPostProcessor dataSourceMedidoPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceMedido)
+                        && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                    return new DataSourceMedido(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.KeyHolder;
+import pe.edu.uni.APIEDUCA.service.ViajesBd;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * JdbcTemplate que cuenta los viajes a la base y mide cada sentencia.
+ *
+ * La medición va desde que se prepara la sentencia hasta que termina su
+ * callback (ejecución y lectura de filas). El nombre de la consulta lo pone
+ * quien la escribe, como comentario de bloque al inicio del SQL (por ejemplo
+ * "CitasService.insertarCita"); las sentencias sin ese comentario se miden como
+ * "sin_nombre". Las mediciones se apilan por hilo, así una sentencia lanzada
+ * desde el callback de otra se mide aparte.
+ * Métrica: clinica.bd.consulta{consulta, resultado}.
+ */
+public class JdbcTemplateInstrumentado extends JdbcTemplate {
+
+    public static final String SIN_NOMBRE = "sin_nombre";
+
+    private static final class Medicion {
+        private final String consulta;
+        private long inicio = -1;
+
+        private Medicion(String consulta) {
+            this.consulta = consulta;
+        }
+    }
+
+    /**
+     * Creador de sentencias que expone su SQL (y con él su nombre) para los que
+     * arman el PreparedStatement a mano.
+     */
+    public record SentenciaConSql(String sql, PreparedStatementCreator creador)
+            implements PreparedStatementCreator, SqlProvider {
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+            return creador.createPreparedStatement(con);
+        }
+
+        @Override
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    private final MeterRegistry registro;
+    private final ThreadLocal<ArrayDeque<Medicion>> enCurso = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Map<String, Timer> temporizadores = new ConcurrentHashMap<>();
+
+    public JdbcTemplateInstrumentado(DataSource dataSource, MeterRegistry registro) {
+        super(dataSource);
+        this.registro = registro;
+    }
+
+    // Todas las variantes públicas terminan en alguno de estos métodos
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+        return medir(action instanceof SqlProvider sql ? sql.getSql() : null, () -> super.execute(action));
+    }
+
+    @Override
+    public void execute(String sql) throws DataAccessException {
+        medir(sql, () -> {
+            super.execute(sql);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+        return medir(sql, () -> super.query(sql, rse));
+    }
+
+    @Override
+    public int update(String sql) throws DataAccessException {
+        return medir(sql, () -> super.update(sql));
+    }
+
+    @Override
+    public int[] batchUpdate(String... sql) throws DataAccessException {
+        return medir(sql.length == 0 ? null : sql[0], () -> super.batchUpdate(sql));
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+        return medir(sqlDe(psc), () -> super.execute(psc, action));
+    }
+
+    @Override
+    public <T> T execute(String sql, PreparedStatementCallback<T> action) throws DataAccessException {
+        return medir(sql, () -> super.execute(sql, action));
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+            throws DataAccessException {
+        return medir(sqlDe(psc), () -> super.query(psc, pss, rse));
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+        return medir(sqlDe(psc), () -> super.update(psc, pss));
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) throws DataAccessException {
+        return medir(sqlDe(psc), () -> super.update(psc, generatedKeyHolder));
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        // Toda sentencia (consulta, update o batch) pasa por aquí una vez
+        ViajesBd.registrar();
+        Medicion medicion = enCurso.get().peek();
+        if (medicion != null && medicion.inicio < 0) {
+            medicion.inicio = System.nanoTime();
+        }
+        super.applyStatementSettings(stmt);
+    }
+
+    @Override
+    protected void handleWarnings(Statement stmt) throws SQLException {
+        terminar(enCurso.get().peek(), "ok");
+        super.handleWarnings(stmt);
+    }
+
+    @Override
+    protected void handleWarnings(Statement stmt, SQLException ex) {
+        terminar(enCurso.get().peek(), "error");
+        super.handleWarnings(stmt, ex);
+    }
+
+    private <T> T medir(String sql, Supplier<T> sentencia) {
+        ArrayDeque<Medicion> pila = enCurso.get();
+        Medicion medicion = new Medicion(nombreConsulta(sql));
+        pila.push(medicion);
+        try {
+            return sentencia.get();
+        } finally {
+            pila.pop();
+            // Si el callback lanzó una excepción no se pasó por handleWarnings
+            terminar(medicion, "error");
+        }
+    }
+
+    private void terminar(Medicion medicion, String resultado) {
+        if (medicion == null || medicion.inicio < 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - medicion.inicio;
+        medicion.inicio = -1;
+        temporizadores.computeIfAbsent(medicion.consulta + "|" + resultado, k -> Timer.builder("clinica.bd.consulta")
+                .description("Latencia de las sentencias JDBC por consulta")
+                .tag("consulta", medicion.consulta)
+                .tag("resultado", resultado)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(registro)
+        ).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String sqlDe(PreparedStatementCreator psc) {
+        return psc instanceof SqlProvider sql ? sql.getSql() : null;
+    }
+
+    // "/* CitasService.insertarCita */ SELECT ..." -> CitasService.insertarCita
+    static String nombreConsulta(String sql) {
+        if (sql != null && sql.startsWith("/*")) {
+            int fin = sql.indexOf("*/", 2);
+            if (fin > 2) {
+                return sql.substring(2, fin).trim();
+            }
+        }
+        return SIN_NOMBRE;
+    }
+}
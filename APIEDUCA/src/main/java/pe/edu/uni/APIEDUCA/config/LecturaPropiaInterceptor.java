@@ -0,0 +1,58 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Garantía de leer lo propio con réplica: toda solicitud que escribe deja una
+ * cookie de vida corta y, mientras el cliente la envíe, sus lecturas van a la
+ * primaria. Al estar en el cliente, funciona aunque la siguiente lectura la
+ * atienda otro nodo.
+ */
+public class LecturaPropiaInterceptor implements HandlerInterceptor {
+
+    public static final String COOKIE = "clinica_escritura";
+
+    private final int ventanaSegundos;
+
+    public LecturaPropiaInterceptor(int ventanaSegundos) {
+        this.ventanaSegundos = ventanaSegundos;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String metodo = request.getMethod();
+        if ("GET".equals(metodo) || "HEAD".equals(metodo)) {
+            if (tieneCookie(request)) {
+                RuteoLecturas.forzarPrimaria();
+            }
+            return true;
+        }
+        // Se escribe antes de atender la solicitud, cuando la respuesta aún no se envió
+        Cookie cookie = new Cookie(COOKIE, "1");
+        cookie.setPath("/");
+        cookie.setMaxAge(ventanaSegundos);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RuteoLecturas.limpiar();
+    }
+
+    private static boolean tieneCookie(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricasConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new MetricasSolicitudInterceptor(registro)).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,59 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import pe.edu.uni.APIEDUCA.service.ViajesBd;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Por cada solicitud a /api registra cuántas sentencias envió a la base,
+ * cuánto esperó por conexiones del pool y cuánto tiempo las retuvo,
+ * etiquetado por método HTTP y patrón de URI.
+ * La latencia de cada endpoint la publica Spring en http.server.requests.
+ */
+public class MetricasSolicitudInterceptor implements HandlerInterceptor {
+
+    private final MeterRegistry registro;
+
+    public MetricasSolicitudInterceptor(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ViajesBd.iniciarSolicitud();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = patron == null ? "DESCONOCIDA" : patron.toString();
+        String metodo = request.getMethod();
+
+        DistributionSummary.builder("clinica.solicitud.viajes.bd")
+                .description("Sentencias enviadas a la base por solicitud")
+                .tag("method", metodo).tag("uri", uri)
+                .publishPercentiles(0.5, 0.99)
+                .register(registro)
+                .record(ViajesBd.viajesSolicitud());
+        Timer.builder("clinica.solicitud.conexion.espera")
+                .description("Espera por conexiones del pool por solicitud")
+                .tag("method", metodo).tag("uri", uri)
+                .publishPercentiles(0.5, 0.99)
+                .register(registro)
+                .record(ViajesBd.esperaConexionNanos(), TimeUnit.NANOSECONDS);
+        Timer.builder("clinica.solicitud.conexion.retencion")
+                .description("Tiempo con conexiones del pool tomadas por solicitud")
+                .tag("method", metodo).tag("uri", uri)
+                .publishPercentiles(0.5, 0.99)
+                .register(registro)
+                .record(ViajesBd.retencionConexionNanos(), TimeUnit.NANOSECONDS);
+    }
+}
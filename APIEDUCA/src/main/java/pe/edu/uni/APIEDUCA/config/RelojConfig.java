@@ -0,0 +1,23 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.ZoneId;
+
+/**
+ * Reloj de la clínica. Los servicios toman "ahora" de este bean y no del sistema, así
+ * las validaciones que dependen de la hora se pueden probar con un reloj fijo.
+ * La zona (clinica.zona-horaria, p. ej. America/Lima) debe coincidir con la de
+ * GETDATE() en la base; por defecto es la del sistema.
+ */
+@Configuration
+public class RelojConfig {
+
+    @Bean
+    public Clock relojClinica(@Value("${clinica.zona-horaria:}") String zona) {
+        return zona.isBlank() ? Clock.systemDefaultZone() : Clock.system(ZoneId.of(zona));
+    }
+}
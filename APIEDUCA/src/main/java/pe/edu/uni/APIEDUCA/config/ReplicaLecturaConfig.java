@@ -0,0 +1,68 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * Réplica de lectura, activa solo si se define clinica.datasource.replica.url
+ * (con username, password y, opcionalmente, hikari.* como spring.datasource).
+ *
+ * Se crean dos pools, "primaria" (spring.datasource) y "replica", cada uno con sus
+ * métricas hikaricp.connections{pool}. El DataSource de la aplicación los rutea:
+ * las transacciones @Transactional(readOnly = true) leen de la réplica y todo lo
+ * demás usa la primaria. El JdbcTemplate "jdbcLectura" va directo a la réplica,
+ * fuera de la transacción en curso, para las cargas de datos de referencia.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "clinica.datasource.replica", name = "url")
+public class ReplicaLecturaConfig implements WebMvcConfigurer {
+
+    @Value("${clinica.datasource.replica.lectura-propia-segundos:5}")
+    private int lecturaPropiaSegundos;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaria(DataSourceProperties propiedades) {
+        HikariDataSource pool = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(DataSourceRuteado.PRIMARIA);
+        return pool;
+    }
+
+    @Bean
+    @ConfigurationProperties("clinica.datasource.replica.hikari")
+    public HikariDataSource replica(@Value("${clinica.datasource.replica.url}") String url,
+                                    @Value("${clinica.datasource.replica.username:}") String usuario,
+                                    @Value("${clinica.datasource.replica.password:}") String clave) {
+        HikariDataSource pool = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(usuario).password(clave).build();
+        pool.setPoolName(DataSourceRuteado.REPLICA);
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaria") DataSource primaria, @Qualifier("replica") DataSource replica,
+                                 MeterRegistry registro) {
+        return new LazyConnectionDataSourceProxy(new DataSourceRuteado(primaria, replica, registro));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new LecturaPropiaInterceptor(lecturaPropiaSegundos)).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,26 @@
+package pe.edu.uni.APIEDUCA.config;
+
+/**
+ * Marca por hilo para que las transacciones de solo lectura usen la primaria
+ * aunque haya réplica: la pone LecturaPropiaInterceptor cuando el cliente acaba
+ * de escribir y aún podría no ver su cambio en la réplica.
+ */
+public final class RuteoLecturas {
+
+    private static final ThreadLocal<Boolean> PRIMARIA_FORZADA = new ThreadLocal<>();
+
+    private RuteoLecturas() {
+    }
+
+    public static void forzarPrimaria() {
+        PRIMARIA_FORZADA.set(Boolean.TRUE);
+    }
+
+    public static void limpiar() {
+        PRIMARIA_FORZADA.remove();
+    }
+
+    public static boolean primariaForzada() {
+        return PRIMARIA_FORZADA.get() != null;
+    }
+}
@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class AgendaDto {
+
+    private long medicoId;
+    private String vista;          // DIA o SEMANA
+    private String desde;          // formato: "2024-06-15"
+    private String hasta;          // último día incluido
+    private long versionCambios;   // punto de partida para GET /api/citas/changes?since=
+    private List<CitaAgendaDto> citas;
+}
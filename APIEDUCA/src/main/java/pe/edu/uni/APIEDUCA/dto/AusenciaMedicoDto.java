@@ -0,0 +1,23 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class AusenciaMedicoDto {
+
+    private long medicoId; // Médico ausente
+    @JsonFormat(pattern = FormatosFecha.PATRON_FECHA_HORA)
+    private LocalDateTime desde; // formato: "2024-06-15 07:00" (incluido)
+    @JsonFormat(pattern = FormatosFecha.PATRON_FECHA_HORA)
+    private LocalDateTime hasta; // formato: "2024-06-15 19:00" (excluido)
+    private long usuarioId; // ID del usuario que realiza la acción
+    private String motivo;
+    private String accion; // "CANCELAR" o "REDISTRIBUIR"
+}
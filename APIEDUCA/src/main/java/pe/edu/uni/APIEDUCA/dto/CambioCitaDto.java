@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class CambioCitaDto {
+
+    private long version;
+    private long citaId;
+    private String tipo;                // PROGRAMADA, CANCELADA, REPROGRAMADA, CONFIRMADA, COMPLETADA o NO_ASISTIO
+    private long medicoId;
+    private String fechaHora;           // formato: "2024-06-15 14:30"
+    private String estado;
+    private Long medicoAnteriorId;      // solo en REPROGRAMADA
+    private String fechaHoraAnterior;   // solo en REPROGRAMADA
+}
@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class CambiosCitasDto {
+
+    private long desde;              // since recibido
+    private long hasta;              // próximo since
+    private boolean hayMas;          // quedan cambios hasta versionEstable
+    private boolean resincronizar;   // since ya no está en el registro: volver a pedir la agenda
+    private long versionEstable;
+    private List<CambioCitaDto> cambios;
+}
@@ -0,0 +1,19 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class CitaAgendaDto {
+
+    private long id;
+    private long pacienteId;
+    private String paciente;
+    private String fechaHora; // formato: "2024-06-15 14:30"
+    private int duracionMinutos;
+    private String estado;
+    private String motivoConsulta;
+}
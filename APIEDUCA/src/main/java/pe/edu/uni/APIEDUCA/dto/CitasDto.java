@@ -1,7 +1,10 @@
 package pe.edu.uni.APIEDUCA.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -9,12 +12,15 @@ import lombok.*;
 @Builder
 public class CitasDto {
 
+    private long id; // ID generado al programar
     private long pacienteId;
     private long medicoId;
-    private String fechaHora; // formato: "2024-06-15 14:30"
+    @JsonFormat(pattern = FormatosFecha.PATRON_FECHA_HORA)
+    private LocalDateTime fechaHora; // formato: "2024-06-15 14:30"
     private int duracionMinutos;
     private String motivoConsulta;
     private String observacionesCita;
     private long creadaPor; // ID del recepcionista
+    private int viajesBd; // Sentencias enviadas a la BD para programar la cita
 
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package pe.edu.uni.APIEDUCA.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -10,8 +13,9 @@ import lombok.*;
 public class CitasProcesosDto {
     private long citaId;
     private long medicoId;
-    private String fechaHora; // Para reprogramación
+    @JsonFormat(pattern = FormatosFecha.PATRON_FECHA_HORA)
+    private LocalDateTime fechaHora; // Para reprogramación, formato: "2024-06-15 14:30"
     private long usuarioId; // ID del usuario que realiza la acción
     private String motivo;
-    private String accion; // "CANCELAR" o "REPROGRAMAR"
+    private String accion; // Resultado: CANCELADA, REPROGRAMADA, CONFIRMADA, COMPLETADA o NO_ASISTIO
 }
@@ -0,0 +1,21 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class DespachoRecordatoriosDto {
+
+    private int pendientesAlInicio;
+    private int procesados;
+    private int enviados;
+    private int fallidos;
+    private int omitidos; // Sin intentos disponibles
+    private long duracionMs;
+    private double recordatoriosPorSegundo;
+    private int backlogRestante;
+    private double segundosEstimadosParaDrenar;
+}
@@ -0,0 +1,23 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class EstadisticaOcupacionDto {
+
+    private Long medicoId; // null en las filas por especialidad
+    private Long especialidadId;
+    private long citas;
+    private long canceladas;
+    private long reprogramadas;
+    private long completadas;
+    private long noAsistio;
+    private long minutosOcupados;
+    private long minutosDisponibles; // según el horario semanal del médico
+    private double porcentajeOcupacion;
+    private long recordatoriosEnviados;
+}
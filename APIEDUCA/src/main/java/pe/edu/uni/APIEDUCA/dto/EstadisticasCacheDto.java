@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class EstadisticasCacheDto {
+
+    private String nombre;
+    private int entradas;
+    private int maxEntradas;
+    private long aciertos;
+    private long fallos;
+    private long aciertosNegativos; // IDs desconocidos respondidos desde la caché
+    private long desalojos; // Por tamaño o por TTL vencido
+    private double tasaAciertos;
+}
@@ -0,0 +1,19 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class EstadisticasDto {
+
+    private String desde; // formato: "2024-06-15"
+    private String hasta;
+    private long versionCambios; // última versión de citas_cambios incluida
+    private List<EstadisticaOcupacionDto> medicos;
+    private List<EstadisticaOcupacionDto> especialidades;
+}
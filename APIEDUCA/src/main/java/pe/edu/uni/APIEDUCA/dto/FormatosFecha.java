@@ -0,0 +1,22 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formatos de fecha de la API, creados una sola vez. DateTimeFormatter es inmutable y
+ * se comparte entre hilos. Los DTO de entrada usan PATRON_FECHA_HORA en @JsonFormat, así
+ * la fecha se lee una sola vez al recibir la solicitud.
+ */
+public final class FormatosFecha {
+
+    public static final String PATRON_FECHA_HORA = "yyyy-MM-dd HH:mm";
+
+    // "2024-06-15 14:30": solicitudes, respuestas y eventos del outbox
+    public static final DateTimeFormatter FECHA_HORA = DateTimeFormatter.ofPattern(PATRON_FECHA_HORA);
+
+    // "15/06/2024 14:30": texto de los recordatorios
+    public static final DateTimeFormatter FECHA_HORA_MENSAJE = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private FormatosFecha() {
+    }
+}
@@ -0,0 +1,15 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class HuecoDisponibleDto {
+
+    private long medicoId;
+    private String fechaHora; // formato: "2024-06-15 14:30"
+    private int duracionMinutos;
+}
@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class PaginaRecordatoriosDto {
+
+    private List<RecordatorioDto> items;
+    private boolean hayMas;
+    // Cursor para pedir la siguiente página (despuesFecha, despuesId)
+    private LocalDateTime siguienteFecha;
+    private long siguienteId;
+}
@@ -0,0 +1,18 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class PlantillaRecordatorioDto {
+
+    private long id;
+    private String canal; // EMAIL o SMS
+    private String idioma; // Etiqueta de idioma, por ejemplo "es-PE"
+    private Long clinicaId; // null: aplica a todas las clínicas
+    private String cuerpo; // Texto con variables {paciente}, {fecha}, {medico}, {clinica}
+    private boolean activo;
+}
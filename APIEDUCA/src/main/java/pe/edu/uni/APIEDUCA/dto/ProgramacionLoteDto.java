@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class ProgramacionLoteDto {
+
+    private int total;
+    private int programadas;
+    private int rechazadas;
+    private long duracionMs;
+    private int viajesBd;
+    private List<ResultadoLoteCitaDto> resultados;
+}
@@ -2,6 +2,8 @@ package pe.edu.uni.APIEDUCA.dto;
 
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -12,6 +14,7 @@ public class RecordatorioDto {
     private long idRecordatorio;
     private long idCita;
     private long idPaciente;
+    private long idMedico;
     private String nombrePaciente;
     private String telefonoPaciente;
     private String emailPaciente;
@@ -21,4 +24,5 @@ public class RecordatorioDto {
     private String mensaje;
     private String estado; // PENDIENTE, ENVIADO, FALLIDO
     private int intentos;
+    private LocalDateTime fechaEnvioProgramada; // Cursor para la paginación de pendientes
 }
\ No newline at end of file
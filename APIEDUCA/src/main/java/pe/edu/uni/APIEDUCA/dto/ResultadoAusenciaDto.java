@@ -0,0 +1,22 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class ResultadoAusenciaDto {
+
+    private String accion;
+    private int afectadas; // Citas activas del médico en la ventana
+    private int canceladas;
+    private int reasignadas;
+    private List<Long> citasSinReubicar; // Quedan con el médico ausente para gestión manual
+    private long duracionMs;
+    private double citasPorSegundo;
+    private int viajesBd;
+}
@@ -0,0 +1,16 @@
+package pe.edu.uni.APIEDUCA.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class ResultadoLoteCitaDto {
+
+    private int indice; // Posición de la cita en el lote recibido
+    private boolean exito;
+    private long id; // ID de la cita creada
+    private String error;
+}
@@ -0,0 +1,17 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class CanalEmail extends CanalHttp {
+
+    @Override
+    public String tipo() {
+        return "EMAIL";
+    }
+
+    @Override
+    protected String ruta() {
+        return "/email";
+    }
+}
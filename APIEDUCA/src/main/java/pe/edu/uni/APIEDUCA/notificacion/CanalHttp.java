@@ -0,0 +1,114 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base de los canales que hablan con el proveedor por HTTP/JSON.
+ *
+ * Todos los canales comparten un HttpClient, que mantiene las conexiones
+ * abiertas (keep-alive) entre envíos. Un lote se manda como una sola
+ * solicitud POST a {url}/{canal}/lote.
+ */
+public abstract class CanalHttp implements CanalNotificacion {
+
+    private static final HttpClient CLIENTE = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private ProveedorSimulado proveedorSimulado;
+
+    @Value("${clinica.notificaciones.proveedor.url:}")
+    private String urlProveedor;
+
+    @Value("${clinica.notificaciones.timeout-ms:5000}")
+    private long timeoutMs;
+
+    protected abstract String ruta();
+
+    @Override
+    public ResultadoEnvio enviar(MensajeNotificacion mensaje) {
+        return enviarLote(List.of(mensaje)).get(0);
+    }
+
+    @Override
+    public List<ResultadoEnvio> enviarLote(List<MensajeNotificacion> mensajes) {
+        if (mensajes.isEmpty()) {
+            return List.of();
+        }
+
+        ObjectNode cuerpo = objectMapper.createObjectNode();
+        ArrayNode items = cuerpo.putArray("mensajes");
+        for (MensajeNotificacion mensaje : mensajes) {
+            items.addObject()
+                    .put("id", mensaje.idRecordatorio())
+                    .put("destino", mensaje.destino())
+                    .put("texto", mensaje.texto());
+        }
+
+        try {
+            String ruta = mensajes.size() == 1 ? ruta() : ruta() + "/lote";
+            HttpRequest solicitud = HttpRequest.newBuilder(URI.create(urlBase() + ruta))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(cuerpo)))
+                    .build();
+
+            HttpResponse<String> respuesta = CLIENTE.send(solicitud, HttpResponse.BodyHandlers.ofString());
+            if (respuesta.statusCode() / 100 != 2) {
+                return todosFallidos(mensajes.size(), "Proveedor respondió HTTP " + respuesta.statusCode());
+            }
+
+            JsonNode resultados = objectMapper.readTree(respuesta.body()).path("resultados");
+            List<ResultadoEnvio> lista = new ArrayList<>(mensajes.size());
+            for (int i = 0; i < mensajes.size(); i++) {
+                JsonNode r = resultados.path(i);
+                lista.add(r.path("ok").asBoolean(false)
+                        ? ResultadoEnvio.ok()
+                        : ResultadoEnvio.fallo(r.path("error").asText("Sin respuesta del proveedor")));
+            }
+            return lista;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return todosFallidos(mensajes.size(), "Envío interrumpido");
+        } catch (Exception e) {
+            return todosFallidos(mensajes.size(), "Error al enviar " + tipo() + ": " + e.getMessage());
+        }
+    }
+
+    private String urlBase() {
+        if (urlProveedor != null && !urlProveedor.isBlank()) {
+            return urlProveedor;
+        }
+        if (proveedorSimulado != null) {
+            return proveedorSimulado.url();
+        }
+        throw new IllegalStateException("No hay proveedor de notificaciones configurado");
+    }
+
+    private static List<ResultadoEnvio> todosFallidos(int cantidad, String error) {
+        List<ResultadoEnvio> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            lista.add(ResultadoEnvio.fallo(error));
+        }
+        return lista;
+    }
+}
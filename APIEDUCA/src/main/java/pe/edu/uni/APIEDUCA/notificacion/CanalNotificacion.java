@@ -0,0 +1,20 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import java.util.List;
+
+/**
+ * Canal de envío de notificaciones (EMAIL, SMS, ...).
+ * Las implementaciones se registran como beans y se eligen por tipo().
+ */
+public interface CanalNotificacion {
+
+    String tipo();
+
+    ResultadoEnvio enviar(MensajeNotificacion mensaje);
+
+    /**
+     * Envía varios mensajes en una sola solicitud al proveedor.
+     * Devuelve un resultado por mensaje, en el mismo orden.
+     */
+    List<ResultadoEnvio> enviarLote(List<MensajeNotificacion> mensajes);
+}
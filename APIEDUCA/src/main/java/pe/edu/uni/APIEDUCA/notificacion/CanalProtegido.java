@@ -0,0 +1,277 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Envuelve un canal con un límite de tasa adaptable y un circuit breaker, sin
+ * bloquear nunca al hilo que envía: lo que no puede salir ahora se devuelve como
+ * diferido y el llamador lo reprograma.
+ *
+ * Límite de tasa: token bucket de mensajes por segundo con ráfaga de
+ * rafagaSegundos. La tasa se ajusta por ventanas (AIMD): si en la ventana la tasa
+ * de error o la latencia media superan su umbral se reduce a la mitad; si no, sube
+ * un 5 % de la máxima.
+ *
+ * Circuito: mira los últimos ventanaMensajes resultados (un envío cuya latencia por
+ * mensaje, la del lote dividida entre sus mensajes, supera latenciaLentaMs cuenta
+ * como fallo). Con al menos minimoMensajes y una proporción de
+ * fallos de umbralFallos se abre durante esperaAbiertoMs; luego deja pasar un mensaje
+ * de prueba y, según cómo le vaya, se cierra o vuelve a abrirse.
+ */
+public class CanalProtegido implements CanalNotificacion {
+
+    public enum EstadoCircuito { CERRADO, SEMI_ABIERTO, ABIERTO }
+
+    public record Limites(double tasaMaxima, double tasaMinima, double rafagaSegundos,
+                          double umbralError, long latenciaObjetivoMs, long ventanaAjusteMs,
+                          int ventanaMensajes, int minimoMensajes, double umbralFallos,
+                          long latenciaLentaMs, long esperaAbiertoMs) {
+    }
+
+    private final CanalNotificacion canal;
+    private final Limites limites;
+    private final LongSupplier relojMs;
+
+    // Token bucket
+    private double tasa;
+    private double fichas;
+    private long ultimaRecarga;
+
+    // Ventana de ajuste de la tasa
+    private long inicioVentana;
+    private int mensajesVentana;
+    private int fallosVentana;
+    private int llamadasVentana;
+    private long latenciaVentanaMs;
+
+    // Circuito
+    private EstadoCircuito estado = EstadoCircuito.CERRADO;
+    private final boolean[] ultimos;
+    private int posicion;
+    private int registrados;
+    private int fallosRegistrados;
+    private long abiertoHasta;
+    private boolean pruebaEnCurso;
+
+    private final Timer latencia;
+    private final Counter diferidosTasa;
+    private final Counter diferidosCircuito;
+    private final Counter aperturas;
+
+    public CanalProtegido(CanalNotificacion canal, Limites limites, MeterRegistry registro, LongSupplier relojMs) {
+        this.canal = canal;
+        this.limites = limites;
+        this.relojMs = relojMs;
+        this.tasa = limites.tasaMaxima();
+        this.fichas = capacidad();
+        this.ultimaRecarga = relojMs.getAsLong();
+        this.inicioVentana = ultimaRecarga;
+        this.ultimos = new boolean[limites.ventanaMensajes()];
+
+        String tipo = canal.tipo();
+        latencia = Timer.builder("clinica.notificaciones.latencia")
+                .description("Latencia de las solicitudes al proveedor")
+                .tag("canal", tipo)
+                .register(registro);
+        diferidosTasa = registro.counter("clinica.notificaciones.diferidos", "canal", tipo, "motivo", "tasa");
+        diferidosCircuito = registro.counter("clinica.notificaciones.diferidos", "canal", tipo, "motivo", "circuito");
+        aperturas = registro.counter("clinica.notificaciones.circuito.aperturas", "canal", tipo);
+        Gauge.builder("clinica.notificaciones.tasa", this, CanalProtegido::tasa)
+                .description("Mensajes por segundo permitidos hacia el proveedor")
+                .tag("canal", tipo)
+                .register(registro);
+        Gauge.builder("clinica.notificaciones.circuito", this, c -> c.estadoCircuito().ordinal())
+                .description("0 cerrado, 1 semiabierto, 2 abierto")
+                .tag("canal", tipo)
+                .register(registro);
+    }
+
+    @Override
+    public String tipo() {
+        return canal.tipo();
+    }
+
+    @Override
+    public ResultadoEnvio enviar(MensajeNotificacion mensaje) {
+        return enviarLote(List.of(mensaje)).get(0);
+    }
+
+    @Override
+    public List<ResultadoEnvio> enviarLote(List<MensajeNotificacion> mensajes) {
+        if (mensajes.isEmpty()) {
+            return List.of();
+        }
+
+        // Cuántos pueden salir ahora
+        int permitidos;
+        boolean prueba = false;
+        ResultadoEnvio diferido;
+        synchronized (this) {
+            long ahora = relojMs.getAsLong();
+            if (estado == EstadoCircuito.ABIERTO && ahora >= abiertoHasta) {
+                estado = EstadoCircuito.SEMI_ABIERTO;
+            }
+            if (estado == EstadoCircuito.ABIERTO || (estado == EstadoCircuito.SEMI_ABIERTO && pruebaEnCurso)) {
+                diferidosCircuito.increment(mensajes.size());
+                return diferirTodos(mensajes.size(), "Circuito abierto para " + tipo(),
+                        Math.max(abiertoHasta - ahora, limites.esperaAbiertoMs() / 10));
+            }
+            recargar(ahora);
+            permitidos = (int) Math.min(mensajes.size(), Math.floor(fichas));
+            if (permitidos == 0) {
+                diferidosTasa.increment(mensajes.size());
+                return diferirTodos(mensajes.size(), "Límite de tasa de " + tipo(), esperaPorFicha(mensajes.size()));
+            }
+            if (estado == EstadoCircuito.SEMI_ABIERTO) {
+                permitidos = 1;
+                prueba = true;
+                pruebaEnCurso = true;
+            }
+            fichas -= permitidos;
+            diferido = ResultadoEnvio.diferido("Límite de tasa de " + tipo(), esperaPorFicha(mensajes.size() - permitidos));
+        }
+
+        // Envío, fuera del lock
+        List<MensajeNotificacion> salen = mensajes.subList(0, permitidos);
+        long inicio = System.nanoTime();
+        List<ResultadoEnvio> resultados;
+        try {
+            resultados = canal.enviarLote(salen);
+        } catch (RuntimeException e) {
+            resultados = new ArrayList<>(permitidos);
+            for (int i = 0; i < permitidos; i++) {
+                resultados.add(ResultadoEnvio.fallo("Error al enviar " + tipo() + ": " + e.getMessage()));
+            }
+        }
+        long latenciaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        latencia.record(latenciaMs, TimeUnit.MILLISECONDS);
+        registrar(resultados, latenciaMs, prueba);
+
+        if (permitidos == mensajes.size()) {
+            return resultados;
+        }
+        List<ResultadoEnvio> todos = new ArrayList<>(resultados);
+        for (int i = permitidos; i < mensajes.size(); i++) {
+            todos.add(diferido);
+        }
+        diferidosTasa.increment(mensajes.size() - permitidos);
+        return todos;
+    }
+
+    public synchronized double tasa() {
+        return tasa;
+    }
+
+    public synchronized EstadoCircuito estadoCircuito() {
+        return estado;
+    }
+
+    private synchronized void registrar(List<ResultadoEnvio> resultados, long latenciaMs, boolean prueba) {
+        long ahora = relojMs.getAsLong();
+        // Un lote paga la latencia base una vez: lo que cuenta es el tiempo por mensaje
+        boolean lento = (double) latenciaMs / Math.max(resultados.size(), 1) > limites.latenciaLentaMs();
+        int fallos = 0;
+        for (ResultadoEnvio resultado : resultados) {
+            // Los destinos inválidos no dicen nada del proveedor
+            if (!resultado.exito() && resultado.reintentable()) {
+                fallos++;
+            }
+        }
+
+        // Circuito
+        if (prueba) {
+            pruebaEnCurso = false;
+            if (lento || fallos > 0) {
+                abrir(ahora);
+            } else {
+                estado = EstadoCircuito.CERRADO;
+            }
+        } else if (estado == EstadoCircuito.CERRADO) {
+            for (ResultadoEnvio resultado : resultados) {
+                anotar(lento || (!resultado.exito() && resultado.reintentable()));
+            }
+            if (registrados >= limites.minimoMensajes()
+                    && fallosRegistrados >= limites.umbralFallos() * registrados) {
+                abrir(ahora);
+            }
+        }
+
+        // Ajuste de la tasa por ventana
+        mensajesVentana += resultados.size();
+        fallosVentana += fallos;
+        llamadasVentana++;
+        latenciaVentanaMs += latenciaMs;
+        if (ahora - inicioVentana >= limites.ventanaAjusteMs()) {
+            boolean degradado = fallosVentana > limites.umbralError() * mensajesVentana
+                    || latenciaVentanaMs > (long) llamadasVentana * limites.latenciaObjetivoMs();
+            if (degradado) {
+                tasa = Math.max(limites.tasaMinima(), tasa / 2);
+            } else {
+                tasa = Math.min(limites.tasaMaxima(), tasa + limites.tasaMaxima() * 0.05);
+            }
+            fichas = Math.min(fichas, capacidad());
+            inicioVentana = ahora;
+            mensajesVentana = 0;
+            fallosVentana = 0;
+            llamadasVentana = 0;
+            latenciaVentanaMs = 0;
+        }
+    }
+
+    private void abrir(long ahora) {
+        estado = EstadoCircuito.ABIERTO;
+        abiertoHasta = ahora + limites.esperaAbiertoMs();
+        tasa = Math.max(limites.tasaMinima(), tasa / 2);
+        posicion = 0;
+        registrados = 0;
+        fallosRegistrados = 0;
+        aperturas.increment();
+    }
+
+    private void anotar(boolean fallo) {
+        if (registrados == ultimos.length) {
+            if (ultimos[posicion]) {
+                fallosRegistrados--;
+            }
+        } else {
+            registrados++;
+        }
+        ultimos[posicion] = fallo;
+        if (fallo) {
+            fallosRegistrados++;
+        }
+        posicion = (posicion + 1) % ultimos.length;
+    }
+
+    private void recargar(long ahora) {
+        if (ahora > ultimaRecarga) {
+            fichas = Math.min(capacidad(), fichas + (ahora - ultimaRecarga) * tasa / 1000.0);
+            ultimaRecarga = ahora;
+        }
+    }
+
+    private double capacidad() {
+        return Math.max(1, tasa * limites.rafagaSegundos());
+    }
+
+    private long esperaPorFicha(int mensajes) {
+        return (long) Math.ceil(Math.max(mensajes, 1) * 1000.0 / tasa);
+    }
+
+    private static List<ResultadoEnvio> diferirTodos(int cantidad, String motivo, long esperaMs) {
+        List<ResultadoEnvio> lista = new ArrayList<>(cantidad);
+        ResultadoEnvio diferido = ResultadoEnvio.diferido(motivo, esperaMs);
+        for (int i = 0; i < cantidad; i++) {
+            lista.add(diferido);
+        }
+        return lista;
+    }
+}
@@ -0,0 +1,17 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class CanalSms extends CanalHttp {
+
+    @Override
+    public String tipo() {
+        return "SMS";
+    }
+
+    @Override
+    protected String ruta() {
+        return "/sms";
+    }
+}
@@ -0,0 +1,4 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+public record MensajeNotificacion(long idRecordatorio, String destino, String texto) {
+}
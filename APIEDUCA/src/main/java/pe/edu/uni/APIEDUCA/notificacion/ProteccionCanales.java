@@ -0,0 +1,51 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+
+/**
+ * Arma el CanalProtegido de cada canal con sus límites. Cada valor se toma de
+ * clinica.notificaciones.{canal}.{clave} (p. ej. clinica.notificaciones.sms.tasa-maxima)
+ * y, si no está, de clinica.notificaciones.limite.{clave}.
+ */
+@Component
+public class ProteccionCanales {
+
+    @Autowired
+    private Environment entorno;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Autowired
+    private Clock reloj;
+
+    public CanalProtegido proteger(CanalNotificacion canal) {
+        String tipo = canal.tipo().toLowerCase();
+        CanalProtegido.Limites limites = new CanalProtegido.Limites(
+                valor(tipo, "tasa-maxima", Double.class, 50.0),
+                valor(tipo, "tasa-minima", Double.class, 1.0),
+                valor(tipo, "rafaga-segundos", Double.class, 2.0),
+                valor(tipo, "umbral-error", Double.class, 0.2),
+                valor(tipo, "latencia-objetivo-ms", Long.class, 1000L),
+                valor(tipo, "ventana-ajuste-ms", Long.class, 1000L),
+                valor(tipo, "ventana-mensajes", Integer.class, 20),
+                valor(tipo, "minimo-mensajes", Integer.class, 10),
+                valor(tipo, "umbral-fallos", Double.class, 0.5),
+                valor(tipo, "latencia-lenta-ms", Long.class, 3000L),
+                valor(tipo, "espera-abierto-ms", Long.class, 30000L));
+        return new CanalProtegido(canal, limites, registro, reloj::millis);
+    }
+
+    private <T> T valor(String tipo, String clave, Class<T> clase, T porDefecto) {
+        T propio = entorno.getProperty("clinica.notificaciones." + tipo + "." + clave, clase);
+        if (propio != null) {
+            return propio;
+        }
+        return entorno.getProperty("clinica.notificaciones.limite." + clave, clase, porDefecto);
+    }
+}
@@ -0,0 +1,160 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor HTTP local que reemplaza al proveedor de EMAIL/SMS.
+ *
+ * Tiene latencia y tasa de fallo configurables. Si un mensaje falla depende solo
+ * de la semilla, el canal, su id y cuántas veces se lo intentó, no del orden en
+ * que llegan los envíos concurrentes: cada corrida falla en los mismos mensajes y
+ * el rendimiento se puede medir sin red. Un reintento puede salir bien.
+ * Un lote paga la latencia base una sola vez más un costo por mensaje.
+ *
+ * Solo se levanta con clinica.notificaciones.simulador.habilitado=true (perfil dev y
+ * pruebas): sin esa propiedad ni clinica.notificaciones.proveedor.url, los envíos fallan
+ * en lugar de darse por entregados sin salir del servidor.
+ */
+@Component
+@ConditionalOnProperty(name = "clinica.notificaciones.simulador.habilitado", havingValue = "true")
+public class ProveedorSimulado {
+
+    private static final Logger log = LoggerFactory.getLogger(ProveedorSimulado.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${clinica.notificaciones.simulador.puerto:0}")
+    private int puerto;
+
+    @Value("${clinica.notificaciones.simulador.latencia-email-ms:100}")
+    private long latenciaEmailMs;
+
+    @Value("${clinica.notificaciones.simulador.latencia-sms-ms:200}")
+    private long latenciaSmsMs;
+
+    @Value("${clinica.notificaciones.simulador.latencia-por-mensaje-ms:1}")
+    private long latenciaPorMensajeMs;
+
+    @Value("${clinica.notificaciones.simulador.tasa-fallo-email:0.10}")
+    private double tasaFalloEmail;
+
+    @Value("${clinica.notificaciones.simulador.tasa-fallo-sms:0.15}")
+    private double tasaFalloSms;
+
+    @Value("${clinica.notificaciones.simulador.semilla:42}")
+    private long semilla;
+
+    private HttpServer servidor;
+    private ExecutorService ejecutor;
+
+    // Intentos fallidos por canal e id; se borran cuando el mensaje sale bien
+    private final Map<String, Integer> intentosFallidos = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        ejecutor = Executors.newCachedThreadPool(r -> {
+            Thread hilo = new Thread(r, "proveedor-simulado");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.createContext("/email", intercambio -> atender(intercambio, "email", latenciaEmailMs, tasaFalloEmail));
+        servidor.createContext("/sms", intercambio -> atender(intercambio, "sms", latenciaSmsMs, tasaFalloSms));
+        servidor.setExecutor(ejecutor);
+        servidor.start();
+        log.info("Proveedor de notificaciones simulado escuchando en {}", url());
+    }
+
+    @PreDestroy
+    void detener() {
+        servidor.stop(0);
+        ejecutor.shutdownNow();
+    }
+
+    public String url() {
+        return "http://" + servidor.getAddress().getHostString() + ":" + servidor.getAddress().getPort();
+    }
+
+    private void atender(HttpExchange intercambio, String canal, long latenciaMs, double tasaFallo) throws IOException {
+        try (intercambio) {
+            JsonNode mensajes = objectMapper.readTree(intercambio.getRequestBody()).path("mensajes");
+
+            try {
+                Thread.sleep(latenciaMs + latenciaPorMensajeMs * Math.max(mensajes.size() - 1, 0));
+            } catch (InterruptedException e) {
+                // Se responde antes de que try-with-resources cierre el intercambio
+                Thread.currentThread().interrupt();
+                byte[] bytes = "interrumpido".getBytes(StandardCharsets.UTF_8);
+                intercambio.sendResponseHeaders(503, bytes.length);
+                try (OutputStream salida = intercambio.getResponseBody()) {
+                    salida.write(bytes);
+                }
+                return;
+            }
+
+            ObjectNode cuerpo = objectMapper.createObjectNode();
+            ArrayNode resultados = cuerpo.putArray("resultados");
+            for (JsonNode mensaje : mensajes) {
+                long id = mensaje.path("id").asLong();
+                ObjectNode r = resultados.addObject().put("id", id);
+                if (falla(canal, id, tasaFallo)) {
+                    r.put("ok", false).put("error", "Proveedor rechazó el envío");
+                } else {
+                    r.put("ok", true);
+                }
+            }
+
+            byte[] bytes = objectMapper.writeValueAsBytes(cuerpo);
+            intercambio.getResponseHeaders().add("Content-Type", "application/json");
+            intercambio.sendResponseHeaders(200, bytes.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(bytes);
+            }
+        }
+    }
+
+    private boolean falla(String canal, long id, double tasaFallo) {
+        String clave = canal + ":" + id;
+        boolean[] fallo = new boolean[1];
+        intentosFallidos.compute(clave, (k, previos) -> {
+            int intento = previos == null ? 0 : previos;
+            fallo[0] = sorteo(canal, id, intento) < tasaFallo;
+            return fallo[0] ? intento + 1 : null;
+        });
+        return fallo[0];
+    }
+
+    // Mismo resultado para la misma semilla, canal, id e intento
+    private double sorteo(String canal, long id, int intento) {
+        long mezcla = semilla;
+        mezcla = mezcla * 31 + canal.hashCode();
+        mezcla = mezcla * 31 + id;
+        mezcla = mezcla * 31 + intento;
+        return new SplittableRandom(mezcla).nextDouble();
+    }
+}
@@ -0,0 +1,31 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+/**
+ * Resultado del envío de un mensaje. Un fallo reintentable consume un intento y se
+ * reprograma con espera exponencial; uno permanente (destino inválido) no se
+ * reintenta. Un mensaje diferido (diferirMs > 0) no llegó al proveedor por el
+ * límite de tasa o el circuito abierto: no consume intentos y se vuelve a
+ * programar dentro de diferirMs.
+ */
+public record ResultadoEnvio(boolean exito, String error, boolean reintentable, long diferirMs) {
+
+    public static ResultadoEnvio ok() {
+        return new ResultadoEnvio(true, null, false, 0);
+    }
+
+    public static ResultadoEnvio fallo(String error) {
+        return new ResultadoEnvio(false, error, true, 0);
+    }
+
+    public static ResultadoEnvio falloPermanente(String error) {
+        return new ResultadoEnvio(false, error, false, 0);
+    }
+
+    public static ResultadoEnvio diferido(String motivo, long diferirMs) {
+        return new ResultadoEnvio(false, motivo, true, Math.max(diferirMs, 1));
+    }
+
+    public boolean diferido() {
+        return !exito && diferirMs > 0;
+    }
+}
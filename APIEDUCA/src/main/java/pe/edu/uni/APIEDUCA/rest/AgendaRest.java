@@ -0,0 +1,74 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pe.edu.uni.APIEDUCA.dto.CambiosCitasDto;
+import pe.edu.uni.APIEDUCA.service.AgendaService;
+import pe.edu.uni.APIEDUCA.service.DifusionCambiosCitas;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/citas")
+public class AgendaRest {
+
+    @Autowired
+    public AgendaService agendaService;
+
+    @Autowired
+    public DifusionCambiosCitas difusionCambios;
+
+    @GetMapping("/agenda")
+    public ResponseEntity<?> agenda(@RequestParam long medicoId,
+                                    @RequestParam String fecha,
+                                    @RequestParam(defaultValue = "DIA") String vista,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            AgendaService.Consulta result = agendaService.consultar(medicoId, fecha, vista, ifNoneMatch);
+            if (result.agenda() == null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(result.etag()).build();
+            }
+            return ResponseEntity.ok().eTag(result.etag()).body(result.agenda());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<?> cambios(@RequestParam(defaultValue = "0") long since,
+                                     @RequestParam(defaultValue = "500") int limite,
+                                     @RequestParam(required = false) Long medicoId) {
+        try {
+            CambiosCitasDto result = agendaService.cambios(since, limite, medicoId);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) Long medicoId,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) Long ultimaVersion) {
+        try {
+            return ResponseEntity.ok(difusionCambios.suscribir(medicoId, fecha, ultimaVersion));
+        } catch (Exception e) {
+            // El error viaja como evento para que EventSource lo pueda leer
+            SseEmitter error = new SseEmitter(0L);
+            try {
+                error.send(SseEmitter.event().name("error").data(e.getMessage()));
+            } catch (IOException ignorada) {
+                // El cliente ya se desconectó
+            }
+            error.complete();
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pe.edu.uni.APIEDUCA.service.DatosReferenciaService;
+import pe.edu.uni.APIEDUCA.service.EstadisticasCitas;
+import pe.edu.uni.APIEDUCA.service.HorarioMedicoCache;
+import pe.edu.uni.APIEDUCA.service.IdempotenciaService;
+import pe.edu.uni.APIEDUCA.service.PlantillasRecordatorioService;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+public class CacheAdminRest {
+
+    @Autowired
+    private HorarioMedicoCache horarioCache;
+
+    @Autowired
+    private DatosReferenciaService datosReferencia;
+
+    @Autowired
+    private IdempotenciaService idempotencia;
+
+    @Autowired
+    private PlantillasRecordatorioService plantillas;
+
+    @Autowired
+    private EstadisticasCitas estadisticasCitas;
+
+    @PostMapping("/horarios/invalidar")
+    public ResponseEntity<?> invalidarHorarios() {
+        try {
+            horarioCache.invalidarTodo();
+            return ResponseEntity.ok("Horarios invalidados.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/horarios/{medicoId}/invalidar")
+    public ResponseEntity<?> invalidarHorarioMedico(@PathVariable long medicoId) {
+        try {
+            horarioCache.invalidar(medicoId);
+            return ResponseEntity.ok("Horario del médico " + medicoId + " invalidado.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/referencias")
+    public ResponseEntity<?> estadisticasReferencias() {
+        try {
+            return ResponseEntity.ok(datosReferencia.estadisticas());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/idempotencia")
+    public ResponseEntity<?> estadisticasIdempotencia() {
+        try {
+            return ResponseEntity.ok(idempotencia.estadisticas());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/referencias/invalidar")
+    public ResponseEntity<?> invalidarReferencias() {
+        try {
+            datosReferencia.invalidarTodo();
+            return ResponseEntity.ok("Datos de referencia invalidados.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/referencias/pacientes/{pacienteId}/invalidar")
+    public ResponseEntity<?> invalidarPaciente(@PathVariable long pacienteId) {
+        try {
+            datosReferencia.invalidarPaciente(pacienteId);
+            return ResponseEntity.ok("Paciente " + pacienteId + " invalidado.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/referencias/usuarios/{usuarioId}/invalidar")
+    public ResponseEntity<?> invalidarUsuario(@PathVariable long usuarioId) {
+        try {
+            datosReferencia.invalidarUsuario(usuarioId);
+            return ResponseEntity.ok("Usuario " + usuarioId + " invalidado.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/plantillas")
+    public ResponseEntity<?> estadisticasPlantillas() {
+        try {
+            return ResponseEntity.ok(plantillas.estadisticas());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/plantillas/invalidar")
+    public ResponseEntity<?> invalidarPlantillas() {
+        try {
+            plantillas.invalidarTodo();
+            return ResponseEntity.ok("Plantillas de recordatorio invalidadas.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/estadisticas/recargar")
+    public ResponseEntity<?> recargarEstadisticas() {
+        try {
+            estadisticasCitas.recargar();
+            return ResponseEntity.ok("Estadísticas de citas recargadas.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+}
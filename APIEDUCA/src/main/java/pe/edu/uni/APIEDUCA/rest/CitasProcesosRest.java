@@ -4,8 +4,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import pe.edu.uni.APIEDUCA.dto.AusenciaMedicoDto;
 import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+import pe.edu.uni.APIEDUCA.dto.ResultadoAusenciaDto;
 import pe.edu.uni.APIEDUCA.service.CitasProcesosService;
+import pe.edu.uni.APIEDUCA.service.IdempotenciaService;
+import pe.edu.uni.APIEDUCA.service.ReintentoReserva;
 
 @RestController
 @RequestMapping("/api/citas")
@@ -14,23 +18,87 @@ public class CitasProcesosRest {
     @Autowired
     public CitasProcesosService citasProcesosService;
 
+    @Autowired
+    public ReintentoReserva reintentoReserva;
+
+    @Autowired
+    public IdempotenciaService idempotencia;
+
     @PostMapping("/cancelar")
-    public ResponseEntity<?> cancelarCita(@RequestBody CitasProcesosDto bean) {
-        try {
-            CitasProcesosDto result = citasProcesosService.cancelarCita(bean);
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
-        }
+    public ResponseEntity<?> cancelarCita(@RequestBody CitasProcesosDto bean,
+                                          @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/cancelar", bean, () -> {
+            try {
+                CitasProcesosDto result = citasProcesosService.cancelarCita(bean);
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
     }
 
     @PostMapping("/reprogramar")
-    public ResponseEntity<?> reprogramarCita(@RequestBody CitasProcesosDto bean) {
-        try {
-            CitasProcesosDto result = citasProcesosService.reprogramarCita(bean);
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
-        }
+    public ResponseEntity<?> reprogramarCita(@RequestBody CitasProcesosDto bean,
+                                             @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/reprogramar", bean, () -> {
+            try {
+                CitasProcesosDto result = reintentoReserva.ejecutar(bean.getMedicoId(), () -> citasProcesosService.reprogramarCita(bean));
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/confirmar")
+    public ResponseEntity<?> confirmarCita(@RequestBody CitasProcesosDto bean,
+                                           @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/confirmar", bean, () -> {
+            try {
+                CitasProcesosDto result = citasProcesosService.confirmarCita(bean);
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/completar")
+    public ResponseEntity<?> completarCita(@RequestBody CitasProcesosDto bean,
+                                           @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/completar", bean, () -> {
+            try {
+                CitasProcesosDto result = citasProcesosService.completarCita(bean);
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/no-asistio")
+    public ResponseEntity<?> marcarNoAsistio(@RequestBody CitasProcesosDto bean,
+                                             @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/no-asistio", bean, () -> {
+            try {
+                CitasProcesosDto result = citasProcesosService.marcarNoAsistio(bean);
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/ausencia")
+    public ResponseEntity<?> gestionarAusenciaMedico(@RequestBody AusenciaMedicoDto bean,
+                                                     @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/ausencia", bean, () -> {
+            try {
+                ResultadoAusenciaDto result = citasProcesosService.gestionarAusenciaMedico(bean);
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
     }
 }
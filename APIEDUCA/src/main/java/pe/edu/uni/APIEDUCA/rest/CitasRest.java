@@ -1,11 +1,22 @@
 package pe.edu.uni.APIEDUCA.rest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.HuecoDisponibleDto;
+import pe.edu.uni.APIEDUCA.dto.ProgramacionLoteDto;
+import pe.edu.uni.APIEDUCA.service.BusquedaHuecosService;
 import pe.edu.uni.APIEDUCA.service.CitasService;
+import pe.edu.uni.APIEDUCA.service.IdempotenciaService;
+import pe.edu.uni.APIEDUCA.service.ReintentoReserva;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/citas")
@@ -14,10 +25,70 @@ public class CitasRest {
     @Autowired
     public CitasService citasService;
 
+    @Autowired
+    public BusquedaHuecosService busquedaHuecosService;
+
+    @Autowired
+    public ReintentoReserva reintentoReserva;
+
+    @Autowired
+    public IdempotenciaService idempotencia;
+
     @PostMapping("/programar")
-    public ResponseEntity<?> programarCita(@RequestBody CitasDto bean) {
+    public ResponseEntity<?> programarCita(@RequestBody CitasDto bean,
+                                           @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/programar", bean, () -> {
+            try {
+                CitasDto result = reintentoReserva.ejecutar(bean.getMedicoId(), () -> citasService.programarCita(bean));
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/programar/rapido")
+    public ResponseEntity<?> programarCitaRapida(@RequestBody CitasDto bean,
+                                                 @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/programar/rapido", bean, () -> {
+            try {
+                CitasDto result = reintentoReserva.ejecutar(bean.getMedicoId(), () -> citasService.programarCitaRapida(bean));
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/programar/lote")
+    public ResponseEntity<?> programarCitasLote(@RequestBody List<CitasDto> beans,
+                                                @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/citas/programar/lote", beans, () -> {
+            try {
+                Set<Long> medicos = new HashSet<>();
+                if (beans != null) {
+                    for (CitasDto bean : beans) {
+                        if (bean != null) {
+                            medicos.add(bean.getMedicoId());
+                        }
+                    }
+                }
+                ProgramacionLoteDto result = reintentoReserva.ejecutar(medicos, () -> citasService.programarCitasLote(beans));
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @GetMapping("/disponibilidad")
+    public ResponseEntity<?> buscarHuecos(@RequestParam long especialidadId,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                          @RequestParam(defaultValue = "10") int cantidad,
+                                          @RequestParam(defaultValue = "0") int duracion) {
         try {
-            CitasDto result = citasService.programarCita(bean);
+            List<HuecoDisponibleDto> result = busquedaHuecosService.buscarHuecos(especialidadId, desde, hasta, cantidad, duracion);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
@@ -0,0 +1,62 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Las fechas de los DTO se leen al deserializar el cuerpo; si el formato no es válido
+ * la solicitud no llega al controlador y se responde aquí con el mismo mensaje de siempre.
+ * Cualquier otro cuerpo ilegible (JSON mal formado, un número con letras) recibe un
+ * mensaje genérico con el campo que falló.
+ */
+@RestControllerAdvice
+public class ErroresEntradaRest {
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<?> cuerpoInvalido(HttpMessageNotReadableException e) {
+        if (esErrorDeFecha(e)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("ERROR: Formato de fecha u hora inválido o no soportado. Use " + FormatosFecha.PATRON_FECHA_HORA + ".");
+        }
+        String campo = campo(e);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(campo == null
+                        ? "ERROR: Cuerpo de la solicitud inválido."
+                        : "ERROR: Cuerpo de la solicitud inválido en el campo " + campo + ".");
+    }
+
+    private static boolean esErrorDeFecha(HttpMessageNotReadableException e) {
+        if (e.getMostSpecificCause() instanceof DateTimeParseException) {
+            return true;
+        }
+        return e.getCause() instanceof InvalidFormatException formato
+                && LocalDateTime.class.equals(formato.getTargetType());
+    }
+
+    // Ruta del campo, por ejemplo "citas[2].duracionMinutos"; null si no es un error de mapeo
+    private static String campo(HttpMessageNotReadableException e) {
+        if (!(e.getCause() instanceof JsonMappingException mapeo) || mapeo.getPath().isEmpty()) {
+            return null;
+        }
+        List<String> partes = new ArrayList<>();
+        for (JsonMappingException.Reference referencia : mapeo.getPath()) {
+            if (referencia.getFieldName() != null) {
+                partes.add((partes.isEmpty() ? "" : ".") + referencia.getFieldName());
+            } else if (referencia.getIndex() >= 0) {
+                partes.add("[" + referencia.getIndex() + "]");
+            }
+        }
+        return partes.isEmpty() ? null : String.join("", partes);
+    }
+}
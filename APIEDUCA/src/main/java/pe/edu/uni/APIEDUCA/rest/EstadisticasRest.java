@@ -0,0 +1,33 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasDto;
+import pe.edu.uni.APIEDUCA.service.EstadisticasCitas;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/estadisticas")
+public class EstadisticasRest {
+
+    @Autowired
+    public EstadisticasCitas estadisticasCitas;
+
+    // Sin desde/hasta: el día de hoy
+    @GetMapping
+    public ResponseEntity<?> consultar(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                       @RequestParam(required = false) Long medicoId,
+                                       @RequestParam(required = false) Long especialidadId) {
+        try {
+            EstadisticasDto result = estadisticasCitas.consultar(desde, hasta, medicoId, especialidadId);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package pe.edu.uni.APIEDUCA.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pe.edu.uni.APIEDUCA.dto.DespachoRecordatoriosDto;
+import pe.edu.uni.APIEDUCA.dto.PaginaRecordatoriosDto;
+import pe.edu.uni.APIEDUCA.dto.PlantillaRecordatorioDto;
 import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
+import pe.edu.uni.APIEDUCA.service.DespachoRecordatoriosService;
+import pe.edu.uni.APIEDUCA.service.IdempotenciaService;
+import pe.edu.uni.APIEDUCA.service.PlantillasRecordatorioService;
 import pe.edu.uni.APIEDUCA.service.RecordatorioService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/recordatorios")
@@ -16,6 +31,18 @@ public class RecordatorioRest {
     @Autowired
     private RecordatorioService notificacionService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DespachoRecordatoriosService despachoService;
+
+    @Autowired
+    private IdempotenciaService idempotencia;
+
+    @Autowired
+    private PlantillasRecordatorioService plantillasService;
+
     @GetMapping("/pendientes")
     public ResponseEntity<?> obtenerRecordatoriosPendientes() {
         try {
@@ -26,13 +53,93 @@ public class RecordatorioRest {
         }
     }
 
+    @GetMapping("/pendientes/pagina")
+    public ResponseEntity<?> obtenerPaginaPendientes(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(defaultValue = "0") long despuesId,
+            @RequestParam(defaultValue = "100") int limite) {
+        try {
+            PaginaRecordatoriosDto pagina = notificacionService.obtenerPaginaPendientes(despuesFecha, despuesId, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    // Un JSON por línea (NDJSON), escrito a medida que se leen las filas
+    @GetMapping(value = "/pendientes/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> transmitirPendientes() {
+        StreamingResponseBody cuerpo = salida -> {
+            int[] escritos = {0};
+            notificacionService.recorrerPendientes(recordatorio -> {
+                try {
+                    salida.write(objectMapper.writeValueAsBytes(recordatorio));
+                    salida.write('\n');
+                    if (++escritos[0] % 100 == 0) {
+                        salida.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            salida.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(cuerpo);
+    }
+
     @PostMapping("/enviar/{idRecordatorio}")
-    public ResponseEntity<?> procesarEnvioRecordatorio(@PathVariable long idRecordatorio) {
+    public ResponseEntity<?> procesarEnvioRecordatorio(@PathVariable long idRecordatorio,
+                                                       @RequestHeader(value = IdempotenciaService.ENCABEZADO, required = false) String claveIdempotencia) {
+        return idempotencia.ejecutar(claveIdempotencia, "POST /api/recordatorios/enviar", idRecordatorio, () -> {
+            try {
+                RecordatorioDto resultado = notificacionService.procesarEnvioRecordatorio(idRecordatorio);
+                return ResponseEntity.ok(resultado);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/despachar")
+    public ResponseEntity<?> despacharPendientes(@RequestParam(defaultValue = "1000") int limite) {
         try {
-            RecordatorioDto resultado = notificacionService.procesarEnvioRecordatorio(idRecordatorio);
+            DespachoRecordatoriosDto resultado = despachoService.despacharPendientes(limite);
             return ResponseEntity.ok(resultado);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/despacho/metricas")
+    public ResponseEntity<?> metricasDespacho() {
+        try {
+            Map<String, Object> metricas = new LinkedHashMap<>();
+            metricas.put("totalEnviados", despachoService.totalEnviados());
+            metricas.put("totalFallidos", despachoService.totalFallidos());
+            metricas.put("ultimoDespacho", despachoService.ultimoDespacho());
+            return ResponseEntity.ok(metricas);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/plantillas")
+    public ResponseEntity<?> listarPlantillas() {
+        try {
+            List<PlantillaRecordatorioDto> plantillas = plantillasService.listar();
+            return ResponseEntity.ok(plantillas);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/plantillas")
+    public ResponseEntity<?> guardarPlantilla(@RequestBody PlantillaRecordatorioDto bean) {
+        try {
+            PlantillaRecordatorioDto result = plantillasService.guardar(bean);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+}
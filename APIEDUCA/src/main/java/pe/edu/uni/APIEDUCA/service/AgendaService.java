@@ -0,0 +1,248 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.AgendaDto;
+import pe.edu.uni.APIEDUCA.dto.CambioCitaDto;
+import pe.edu.uni.APIEDUCA.dto.CambiosCitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitaAgendaDto;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura de la agenda de un médico (día o semana) con ETag, y feed de cambios
+ * por versión para que los clientes solo descarguen lo que cambió.
+ *
+ * El ETag de una agenda sale de las filas de citas_cambios que tocan ese médico y
+ * rango, incluida la agenda de origen de una reprogramación. Se calcula antes de
+ * leer las citas: si algo cambia en medio, el cliente recibe datos más nuevos que
+ * su ETag y en la siguiente consulta los vuelve a descargar, nunca al revés.
+ *
+ * La agenda y el feed no usan transacciones readOnly: se leen de la primaria, igual
+ * que las versiones con que se arman el ETag y el límite estable. Una réplica atrasada
+ * daría citas más viejas que su ETag.
+ */
+@Service
+public class AgendaService {
+
+    private static final Logger log = LoggerFactory.getLogger(AgendaService.class);
+    private static final int LIMITE_MAXIMO_CAMBIOS = 5000;
+
+    public record Consulta(String etag, AgendaDto agenda) {
+        // agenda es null si el ETag coincide con If-None-Match
+    }
+
+    private static final RowMapper<CitaAgendaDto> MAPEO_CITA = (rs, rowNum) -> CitaAgendaDto.builder()
+            .id(rs.getLong("id"))
+            .pacienteId(rs.getLong("paciente_id"))
+            .paciente(rs.getString("nombre") + " " + rs.getString("apellido"))
+            .fechaHora(rs.getTimestamp("fecha_hora").toLocalDateTime().format(FormatosFecha.FECHA_HORA))
+            .duracionMinutos(rs.getInt("duracion_minutos"))
+            .estado(rs.getString("estado"))
+            .motivoConsulta(rs.getString("motivo_consulta"))
+            .build();
+
+    private static final RowMapper<CambioCitaDto> MAPEO_CAMBIO = (rs, rowNum) -> {
+        Timestamp anterior = rs.getTimestamp("fecha_hora_anterior");
+        return CambioCitaDto.builder()
+                .version(rs.getLong("version"))
+                .citaId(rs.getLong("cita_id"))
+                .tipo(rs.getString("tipo"))
+                .medicoId(rs.getLong("medico_id"))
+                .fechaHora(rs.getTimestamp("fecha_hora").toLocalDateTime().format(FormatosFecha.FECHA_HORA))
+                .estado(rs.getString("estado"))
+                .medicoAnteriorId(rs.getObject("medico_anterior_id") == null ? null : rs.getLong("medico_anterior_id"))
+                .fechaHoraAnterior(anterior == null ? null : anterior.toLocalDateTime().format(FormatosFecha.FECHA_HORA))
+                .build();
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Value("${clinica.agenda.cambios.retencion-dias:30}")
+    private int retencionDias;
+
+    /**
+     * Agenda del médico para el día de la fecha o para su semana (lunes a domingo).
+     * Si ifNoneMatch contiene el ETag actual no se leen las citas.
+     */
+    public Consulta consultar(long medicoId, String fecha, String vista, String ifNoneMatch) {
+
+        // Validaciones
+        if (medicoId <= 0) {
+            throw new RuntimeException("ERROR: ID de médico inválido.");
+        }
+        LocalDate dia;
+        try {
+            dia = LocalDate.parse(fecha);
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new RuntimeException("ERROR: Formato de fecha inválido. Use: yyyy-MM-dd");
+        }
+        LocalDate desde;
+        LocalDate hasta;
+        if ("DIA".equals(vista)) {
+            desde = dia;
+            hasta = dia.plusDays(1);
+        } else if ("SEMANA".equals(vista)) {
+            desde = dia.minusDays(dia.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+            hasta = desde.plusDays(7);
+        } else {
+            throw new RuntimeException("ERROR: Vista inválida. Use DIA o SEMANA.");
+        }
+
+        // Proceso - ETag antes que los datos
+        Timestamp inicio = Timestamp.valueOf(desde.atStartOfDay());
+        Timestamp fin = Timestamp.valueOf(hasta.atStartOfDay());
+        long versionCambios = registroCambios.limiteEstable();
+        String etag = etag(medicoId, inicio, fin);
+        if (coincide(ifNoneMatch, etag)) {
+            return new Consulta(etag, null);
+        }
+
+        String sql = """
+            /* AgendaService.consultar */
+            SELECT c.id, c.paciente_id, p.nombre, p.apellido, c.fecha_hora,
+                   c.duracion_minutos, c.estado, c.motivo_consulta
+            FROM citas c
+            INNER JOIN pacientes p ON p.id = c.paciente_id
+            WHERE c.medico_id = ? AND c.fecha_hora >= ? AND c.fecha_hora < ?
+            ORDER BY c.fecha_hora
+            """;
+        List<CitaAgendaDto> citas = jdbcTemplate.query(sql, MAPEO_CITA, medicoId, inicio, fin);
+
+        // Reporte
+        AgendaDto agenda = AgendaDto.builder()
+                .medicoId(medicoId)
+                .vista(vista)
+                .desde(desde.toString())
+                .hasta(hasta.minusDays(1).toString())
+                .versionCambios(versionCambios)
+                .citas(citas)
+                .build();
+        return new Consulta(etag, agenda);
+    }
+
+    /**
+     * Cambios con versión mayor a since, en orden, hasta limite filas. Con medicoId
+     * solo se devuelven los que entran o salen de la agenda de ese médico.
+     */
+    public CambiosCitasDto cambios(long since, int limite, Long medicoId) {
+
+        // Validaciones
+        if (since < 0) {
+            throw new RuntimeException("ERROR: since no puede ser negativo.");
+        }
+        if (limite <= 0 || limite > LIMITE_MAXIMO_CAMBIOS) {
+            throw new RuntimeException("ERROR: El límite debe estar entre 1 y " + LIMITE_MAXIMO_CAMBIOS + ".");
+        }
+
+        // Proceso
+        long versionEstable = registroCambios.limiteEstable();
+
+        // Si lo que sigue a since ya se depuró, el cliente debe volver a leer la agenda
+        Long minima = jdbcTemplate.queryForObject(
+                "/* AgendaService.versionMinima */ SELECT MIN(version) FROM citas_cambios", Long.class);
+        if (minima != null && since < minima - 1) {
+            return CambiosCitasDto.builder()
+                    .desde(since)
+                    .hasta(versionEstable)
+                    .resincronizar(true)
+                    .versionEstable(versionEstable)
+                    .cambios(List.of())
+                    .build();
+        }
+
+        String sql = """
+            /* AgendaService.cambios */
+            SELECT TOP (?) version, cita_id, tipo, medico_id, fecha_hora, estado,
+                   medico_anterior_id, fecha_hora_anterior
+            FROM citas_cambios
+            WHERE version > ? AND version <= ?
+            """;
+        List<Object> parametros = new ArrayList<>(List.of(limite, since, versionEstable));
+        if (medicoId != null) {
+            sql += "AND (medico_id = ? OR medico_anterior_id = ?)\n";
+            parametros.add(medicoId);
+            parametros.add(medicoId);
+        }
+        sql += "ORDER BY version";
+        List<CambioCitaDto> cambios = jdbcTemplate.query(sql, MAPEO_CAMBIO, parametros.toArray());
+
+        // Reporte
+        boolean hayMas = cambios.size() == limite;
+        long hasta = hayMas ? cambios.get(cambios.size() - 1).getVersion() : Math.max(since, versionEstable);
+        return CambiosCitasDto.builder()
+                .desde(since)
+                .hasta(hasta)
+                .hayMas(hayMas)
+                .versionEstable(versionEstable)
+                .cambios(cambios)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${clinica.agenda.cambios.limpieza-ms:3600000}")
+    public void depurarCambios() {
+        try {
+            int borradas = jdbcTemplate.update(
+                    "/* AgendaService.depurarCambios */ "
+                    + "DELETE FROM citas_cambios WHERE fecha_registro < DATEADD(day, -?, GETDATE())", retencionDias);
+            if (borradas > 0) {
+                log.info("Cambios de citas depurados: {}", borradas);
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se pudieron depurar los cambios de citas: {}", e.getMessage());
+        }
+    }
+
+    private String etag(long medicoId, Timestamp inicio, Timestamp fin) {
+        String sql = """
+            /* AgendaService.etag */
+            SELECT COUNT(1) cantidad, MAX(version) maxima
+            FROM citas_cambios
+            WHERE (medico_id = ? AND fecha_hora >= ? AND fecha_hora < ?)
+            OR (medico_anterior_id = ? AND fecha_hora_anterior >= ? AND fecha_hora_anterior < ?)
+            """;
+        Map<String, Object> fila = jdbcTemplate.queryForMap(sql, medicoId, inicio, fin, medicoId, inicio, fin);
+        long cantidad = ((Number) fila.get("cantidad")).longValue();
+        if (cantidad > 0) {
+            return "\"" + ((Number) fila.get("maxima")).longValue() + "-" + cantidad + "\"";
+        }
+        // Sin filas: la agenda no cambió o sus cambios ya se depuraron; la depuración mueve el mínimo
+        Long minima = jdbcTemplate.queryForObject(
+                "/* AgendaService.versionMinima */ SELECT MIN(version) FROM citas_cambios", Long.class);
+        return "\"0-" + (minima == null ? 0 : minima) + "\"";
+    }
+
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String valor : ifNoneMatch.split(",")) {
+            String v = valor.trim();
+            if (v.startsWith("W/")) {
+                v = v.substring(2);
+            }
+            if (v.equals("*") || v.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,119 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Almacén de respuestas idempotentes en la tabla idempotencia_solicitudes
+ * (sql/02_idempotencia_solicitudes.sql), compartido por todos los nodos.
+ *
+ * La clave se reserva con un INSERT (la llave primaria decide qué nodo la
+ * procesa) y se completa con la respuesta. Las reservas EN_PROCESO de un nodo
+ * caído se pueden retomar pasado el tiempo de abandono.
+ */
+@Component
+@ConditionalOnProperty(name = "clinica.idempotencia.bd.habilitado", havingValue = "true")
+public class AlmacenIdempotenciaBd {
+
+    private static final Logger log = LoggerFactory.getLogger(AlmacenIdempotenciaBd.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${clinica.idempotencia.bd.abandono-segundos:60}")
+    private int abandonoSegundos;
+
+    public IdempotenciaService.RespuestaGuardada buscar(String clave) {
+        String sql = """
+            /* AlmacenIdempotenciaBd.buscar */
+            SELECT huella, estado_http, cuerpo
+            FROM idempotencia_solicitudes
+            WHERE clave = ? AND estado = 'COMPLETADA' AND expira_en > GETDATE()
+            """;
+        try {
+            List<IdempotenciaService.RespuestaGuardada> filas = jdbcTemplate.query(sql, (rs, rowNum) ->
+                    new IdempotenciaService.RespuestaGuardada(
+                            rs.getString("huella"), rs.getInt("estado_http"), rs.getString("cuerpo")), clave);
+            return filas.isEmpty() ? null : filas.get(0);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo consultar la solicitud idempotente.", e);
+        }
+    }
+
+    /**
+     * Reserva la clave para este nodo. Devuelve false si otro la tiene o ya la completó.
+     */
+    public boolean reservar(String clave, String huella, long ttlSegundos) {
+        String sql = """
+            /* AlmacenIdempotenciaBd.liberarVencida */
+            DELETE FROM idempotencia_solicitudes
+            WHERE clave = ?
+            AND (expira_en <= GETDATE()
+                 OR (estado = 'EN_PROCESO' AND fecha_creacion < DATEADD(second, ?, GETDATE())))
+            """;
+        try {
+            jdbcTemplate.update(sql, clave, -abandonoSegundos);
+
+            sql = """
+                /* AlmacenIdempotenciaBd.reservar */
+                INSERT INTO idempotencia_solicitudes(clave, huella, estado, fecha_creacion, expira_en)
+                VALUES(?, ?, 'EN_PROCESO', GETDATE(), DATEADD(second, ?, GETDATE()))
+                """;
+            jdbcTemplate.update(sql, clave, huella, ttlSegundos);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo registrar la solicitud idempotente.", e);
+        }
+    }
+
+    public void completar(String clave, IdempotenciaService.RespuestaGuardada respuesta) {
+        String sql = """
+            /* AlmacenIdempotenciaBd.completar */
+            UPDATE idempotencia_solicitudes
+            SET estado = 'COMPLETADA', estado_http = ?, cuerpo = ?
+            WHERE clave = ?
+            """;
+        try {
+            jdbcTemplate.update(sql, respuesta.estadoHttp(), respuesta.cuerpo(), clave);
+        } catch (DataAccessException e) {
+            // La operación ya se hizo; el resto de nodos no verá la respuesta hasta que expire
+            log.warn("No se pudo guardar la respuesta idempotente {}: {}", clave, e.getMessage());
+        }
+    }
+
+    public void liberar(String clave) {
+        String sql = "/* AlmacenIdempotenciaBd.liberar */ "
+                + "DELETE FROM idempotencia_solicitudes WHERE clave = ? AND estado = 'EN_PROCESO'";
+        try {
+            jdbcTemplate.update(sql, clave);
+        } catch (DataAccessException e) {
+            log.warn("No se pudo liberar la clave idempotente {}: {}", clave, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${clinica.idempotencia.bd.limpieza-ms:3600000}")
+    public void limpiarExpiradas() {
+        try {
+            int borradas = jdbcTemplate.update(
+                    "/* AlmacenIdempotenciaBd.limpiarExpiradas */ "
+                    + "DELETE FROM idempotencia_solicitudes WHERE expira_en <= GETDATE()");
+            if (borradas > 0) {
+                log.info("Solicitudes idempotentes expiradas borradas: {}", borradas);
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se pudieron borrar las solicitudes idempotentes expiradas: {}", e.getMessage());
+        }
+    }
+}
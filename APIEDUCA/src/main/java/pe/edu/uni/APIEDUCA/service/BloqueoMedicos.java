@@ -0,0 +1,176 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloqueos por franjas (lock striping) para serializar, dentro de este nodo,
+ * la verificación de disponibilidad y la escritura de citas de un mismo médico.
+ *
+ * La clave es (médico, día). La franja se calcula como (31 * medicoId + día)
+ * módulo la cantidad de franjas, así que en un mismo día dos médicos cuyos IDs
+ * difieren módulo esa cantidad nunca comparten franja. Varias franjas se toman
+ * siempre en orden ascendente para evitar interbloqueos.
+ *
+ * Entre nodos la protección la da el índice único filtrado de
+ * sql/01_citas_unica_medico_fecha.sql junto con ReintentoReserva.
+ */
+@Component
+public class BloqueoMedicos {
+
+    @Value("${clinica.citas.bloqueo.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${clinica.citas.bloqueo.franjas:1024}")
+    private int franjasConfiguradas;
+
+    @Value("${clinica.citas.bloqueo.espera-ms:5000}")
+    private long esperaMs;
+
+    private ReentrantLock[] franjas;
+    private int mascara;
+
+    private final LongAdder adquisiciones = new LongAdder();
+    private final LongAdder contenciones = new LongAdder();
+    private final LongAdder esperaNanos = new LongAdder();
+
+    /**
+     * Franjas tomadas por una llamada a bloquear(); se liberan con close().
+     */
+    public final class Bloqueo implements AutoCloseable {
+
+        private final int[] tomadas;
+
+        private Bloqueo(int[] tomadas) {
+            this.tomadas = tomadas;
+        }
+
+        @Override
+        public void close() {
+            for (int i = tomadas.length - 1; i >= 0; i--) {
+                franjas[tomadas[i]].unlock();
+            }
+        }
+    }
+
+    @PostConstruct
+    void iniciar() {
+        // Potencia de dos para calcular la franja con una máscara
+        int cantidad = Integer.highestOneBit(Math.max(franjasConfiguradas, 1) * 2 - 1);
+        franjas = new ReentrantLock[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        mascara = cantidad - 1;
+    }
+
+    public int franja(long medicoId, LocalDate dia) {
+        return (int) ((31 * medicoId + dia.toEpochDay()) & mascara);
+    }
+
+    /**
+     * Toma las franjas de las claves (medicoId, día) y las mantiene hasta que
+     * termina la transacción actual (commit o rollback), en el mismo hilo.
+     */
+    public void bloquearHastaFinDeTransaccion(long medicoId, LocalDate dia) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        indices.add(franja(medicoId, dia));
+        bloquearHastaFinDeTransaccion(indices);
+    }
+
+    public void bloquearHastaFinDeTransaccion(Collection<Integer> indicesFranja) {
+        if (!habilitado || indicesFranja.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("bloquearHastaFinDeTransaccion requiere una transacción activa");
+        }
+        Bloqueo bloqueo = tomar(indicesFranja);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                bloqueo.close();
+            }
+        });
+    }
+
+    /**
+     * Toma las franjas para usarlas fuera de una transacción (try-with-resources).
+     */
+    public Bloqueo bloquear(long medicoId, LocalDate dia) {
+        if (!habilitado) {
+            return new Bloqueo(new int[0]);
+        }
+        TreeSet<Integer> indices = new TreeSet<>();
+        indices.add(franja(medicoId, dia));
+        return tomar(indices);
+    }
+
+    /**
+     * Toma las franjas de varios días de un médico, fuera de una transacción.
+     */
+    public Bloqueo bloquear(long medicoId, Collection<LocalDate> dias) {
+        if (!habilitado) {
+            return new Bloqueo(new int[0]);
+        }
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (LocalDate dia : dias) {
+            indices.add(franja(medicoId, dia));
+        }
+        return tomar(indices);
+    }
+
+    public long totalAdquisiciones() {
+        return adquisiciones.sum();
+    }
+
+    public long totalContenciones() {
+        return contenciones.sum();
+    }
+
+    public long esperaTotalMs() {
+        return TimeUnit.NANOSECONDS.toMillis(esperaNanos.sum());
+    }
+
+    private Bloqueo tomar(Collection<Integer> indicesFranja) {
+        // Orden ascendente y sin repetidos
+        int[] indices = new TreeSet<>(indicesFranja).stream().mapToInt(Integer::intValue).toArray();
+        int tomadas = 0;
+        try {
+            for (int indice : indices) {
+                ReentrantLock franja = franjas[indice];
+                if (!franja.tryLock()) {
+                    contenciones.increment();
+                    long inicio = System.nanoTime();
+                    boolean obtenido = franja.tryLock(esperaMs, TimeUnit.MILLISECONDS);
+                    esperaNanos.add(System.nanoTime() - inicio);
+                    if (!obtenido) {
+                        throw new RuntimeException("ERROR: La agenda del médico está ocupada, intente nuevamente.");
+                    }
+                }
+                tomadas++;
+                adquisiciones.increment();
+            }
+            return new Bloqueo(indices);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("ERROR: Se interrumpió la espera de la agenda del médico.", e);
+        } finally {
+            if (tomadas < indices.length) {
+                for (int i = tomadas - 1; i >= 0; i--) {
+                    franjas[indices[i]].unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+import pe.edu.uni.APIEDUCA.dto.HuecoDisponibleDto;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Búsqueda de los próximos huecos libres entre los médicos de una especialidad.
+ *
+ * Para cada médico arma los intervalos libres de cada día a partir del horario
+ * compilado (HorarioMedicoCache) menos sus citas activas (OcupacionMedicoIndex),
+ * respetando la duración de las citas. Los médicos se reparten con fork/join y
+ * cada rama devuelve solo sus primeros N huecos, que se mezclan en orden.
+ * No hace viajes a la base de datos cuando los cachés están cargados.
+ */
+@Service
+public class BusquedaHuecosService {
+
+    private static final int MAX_DIAS = 60;
+    private static final int MAX_CANTIDAD = 200;
+    private static final int MEDICOS_POR_TAREA = 4;
+    private static final int APERTURA = 7 * 3600;
+    private static final int CIERRE = 19 * 3600;
+
+    private static final Comparator<Hueco> ORDEN = Comparator.comparing(Hueco::inicio).thenComparingLong(Hueco::medicoId);
+
+    private record Hueco(long medicoId, LocalDateTime inicio) {
+    }
+
+    @Autowired
+    private DatosReferenciaService datosReferencia;
+
+    @Autowired
+    private HorarioMedicoCache horarioCache;
+
+    @Autowired
+    private OcupacionMedicoIndex ocupacionIndex;
+
+    @Autowired
+    private Clock reloj;
+
+    public List<HuecoDisponibleDto> buscarHuecos(long especialidadId, LocalDate desde, LocalDate hasta,
+                                                 int cantidad, int duracionMinutos) {
+
+        // Validaciones
+        if (especialidadId <= 0) {
+            throw new RuntimeException("ERROR: ID de especialidad inválido.");
+        }
+        if (desde == null || hasta == null || hasta.isBefore(desde)) {
+            throw new RuntimeException("ERROR: Rango de fechas inválido.");
+        }
+        if (desde.plusDays(MAX_DIAS).isBefore(hasta)) {
+            throw new RuntimeException("ERROR: El rango no puede superar " + MAX_DIAS + " días.");
+        }
+        if (cantidad <= 0 || cantidad > MAX_CANTIDAD) {
+            throw new RuntimeException("ERROR: La cantidad debe estar entre 1 y " + MAX_CANTIDAD + ".");
+        }
+
+        List<Long> medicos = datosReferencia.medicosDeEspecialidad(especialidadId);
+        if (medicos.isEmpty()) {
+            return List.of();
+        }
+
+        // Proceso - duración por defecto de la especialidad
+        int duracion = duracionMinutos;
+        if (duracion <= 0) {
+            Integer duracionDefault = datosReferencia.duracionEspecialidad(especialidadId);
+            duracion = duracionDefault == null || duracionDefault <= 0 ? 30 : duracionDefault;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now(reloj);
+        List<Hueco> huecos = ForkJoinPool.commonPool().invoke(
+                new BusquedaTarea(medicos, 0, medicos.size(), desde, hasta, ahora, cantidad, duracion));
+
+        // Reporte
+        List<HuecoDisponibleDto> resultado = new ArrayList<>(huecos.size());
+        for (Hueco hueco : huecos) {
+            resultado.add(HuecoDisponibleDto.builder()
+                    .medicoId(hueco.medicoId())
+                    .fechaHora(hueco.inicio().format(FormatosFecha.FECHA_HORA))
+                    .duracionMinutos(duracion)
+                    .build());
+        }
+        return resultado;
+    }
+
+    /**
+     * Primeros huecos libres de un médico en el rango, en orden, como máximo 'cantidad'.
+     */
+    private List<Hueco> huecosDeMedico(long medicoId, LocalDate desde, LocalDate hasta, LocalDateTime ahora,
+                                       int cantidad, int duracion) {
+        List<Hueco> huecos = new ArrayList<>();
+        HorarioMedicoCache.HorarioSemanal horario = horarioCache.obtener(medicoId);
+        int duracionSeg = duracion * 60;
+
+        LocalDate primerDia = desde.isBefore(ahora.toLocalDate()) ? ahora.toLocalDate() : desde;
+        for (LocalDate dia = primerDia; !dia.isAfter(hasta) && huecos.size() < cantidad; dia = dia.plusDays(1)) {
+            int[] rangos = horario.rangosDelDia(dia.getDayOfWeek());
+            if (rangos.length == 0) {
+                continue;
+            }
+
+            // Citas que tocan el día, ordenadas por inicio
+            List<OcupacionMedicoIndex.Reserva> reservas =
+                    ocupacionIndex.reservasEntre(medicoId, dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+            // Hoy solo desde el próximo minuto entero
+            int minimo = dia.equals(ahora.toLocalDate()) ? (ahora.toLocalTime().toSecondOfDay() / 60 + 1) * 60 : 0;
+
+            for (int r = 0; r < rangos.length && huecos.size() < cantidad; r += 2) {
+                int inicioRango = Math.max(Math.max(rangos[r], APERTURA), minimo);
+                int finRango = rangos[r + 1];
+                int t = inicioRango;
+                int k = 0;
+                while (t + duracionSeg <= finRango && t < CIERRE && huecos.size() < cantidad) {
+                    // Saltar las reservas que terminan antes de t
+                    while (k < reservas.size() && segundos(reservas.get(k).fin(), dia) <= t) {
+                        k++;
+                    }
+                    if (k < reservas.size() && segundos(reservas.get(k).inicio(), dia) < t + duracionSeg) {
+                        // Se solapa: continuar desde el fin de esa reserva
+                        t = Math.max(t, segundos(reservas.get(k).fin(), dia));
+                        continue;
+                    }
+                    huecos.add(new Hueco(medicoId, dia.atTime(LocalTime.ofSecondOfDay(t))));
+                    t += duracionSeg;
+                }
+            }
+        }
+        return huecos;
+    }
+
+    // Segundos desde el inicio de 'dia' (acotado a [0, 86400])
+    private static int segundos(LocalDateTime fechaHora, LocalDate dia) {
+        if (fechaHora.toLocalDate().isBefore(dia)) {
+            return 0;
+        }
+        if (fechaHora.toLocalDate().isAfter(dia)) {
+            return 86400;
+        }
+        return fechaHora.toLocalTime().toSecondOfDay();
+    }
+
+    private static List<Hueco> mezclar(List<Hueco> a, List<Hueco> b, int cantidad) {
+        List<Hueco> resultado = new ArrayList<>(Math.min(cantidad, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (resultado.size() < cantidad && (i < a.size() || j < b.size())) {
+            if (j >= b.size() || (i < a.size() && ORDEN.compare(a.get(i), b.get(j)) <= 0)) {
+                resultado.add(a.get(i++));
+            } else {
+                resultado.add(b.get(j++));
+            }
+        }
+        return resultado;
+    }
+
+    private class BusquedaTarea extends RecursiveTask<List<Hueco>> {
+
+        private final List<Long> medicos;
+        private final int desdeIndice;
+        private final int hastaIndice;
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final LocalDateTime ahora;
+        private final int cantidad;
+        private final int duracion;
+
+        BusquedaTarea(List<Long> medicos, int desdeIndice, int hastaIndice, LocalDate desde, LocalDate hasta,
+                      LocalDateTime ahora, int cantidad, int duracion) {
+            this.medicos = medicos;
+            this.desdeIndice = desdeIndice;
+            this.hastaIndice = hastaIndice;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.ahora = ahora;
+            this.cantidad = cantidad;
+            this.duracion = duracion;
+        }
+
+        @Override
+        protected List<Hueco> compute() {
+            if (hastaIndice - desdeIndice <= MEDICOS_POR_TAREA) {
+                List<Hueco> resultado = List.of();
+                for (int i = desdeIndice; i < hastaIndice; i++) {
+                    resultado = mezclar(resultado,
+                            huecosDeMedico(medicos.get(i), desde, hasta, ahora, cantidad, duracion), cantidad);
+                }
+                return resultado;
+            }
+
+            int medio = (desdeIndice + hastaIndice) >>> 1;
+            BusquedaTarea izquierda = new BusquedaTarea(medicos, desdeIndice, medio, desde, hasta, ahora, cantidad, duracion);
+            BusquedaTarea derecha = new BusquedaTarea(medicos, medio, hastaIndice, desde, hasta, ahora, cantidad, duracion);
+            izquierda.fork();
+            List<Hueco> resultadoDerecha = derecha.compute();
+            return mezclar(izquierda.join(), resultadoDerecha, cantidad);
+        }
+    }
+}
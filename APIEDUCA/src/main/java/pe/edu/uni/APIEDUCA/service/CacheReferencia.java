@@ -0,0 +1,163 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import pe.edu.uni.APIEDUCA.dto.EstadisticasCacheDto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada en memoria con desalojo LRU por tamaño y expiración por TTL.
+ *
+ * Si el cargador devuelve null la clave se guarda como negativa (no existe)
+ * con su propio TTL, para no volver a consultar la base por IDs desconocidos.
+ *
+ * La carga se hace fuera del candado; si mientras tanto se invalidó algo, el
+ * valor cargado se devuelve pero no se guarda, porque pudo leerse antes del cambio.
+ */
+public class CacheReferencia<K, V> {
+
+    private record Entrada<V>(V valor, long expiraEn) {
+    }
+
+    private final String nombre;
+    private final int maxEntradas;
+    private final long ttlNanos;
+    private final long ttlNegativoNanos;
+    private final Map<K, Entrada<V>> entradas;
+    private final LongSupplier nanos;
+    // Cambia con cada invalidación (protegida por el candado de entradas)
+    private long generacion;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder aciertosNegativos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    public CacheReferencia(String nombre, int maxEntradas, long ttlSegundos, long ttlNegativoSegundos) {
+        this(nombre, maxEntradas, ttlSegundos, ttlNegativoSegundos, System::nanoTime);
+    }
+
+    // nanos: fuente de tiempo monotónica (System.nanoTime salvo en pruebas)
+    CacheReferencia(String nombre, int maxEntradas, long ttlSegundos, long ttlNegativoSegundos, LongSupplier nanos) {
+        this.nombre = nombre;
+        this.nanos = nanos;
+        this.maxEntradas = maxEntradas;
+        this.ttlNanos = ttlSegundos * 1_000_000_000L;
+        this.ttlNegativoNanos = ttlNegativoSegundos * 1_000_000_000L;
+        this.entradas = new LinkedHashMap<>(Math.min(maxEntradas, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheReferencia.this.maxEntradas) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor en caché o lo carga. Devuelve null si la clave no existe.
+     */
+    public V obtener(K clave, Function<K, V> cargador) {
+        long ahora = nanos.getAsLong();
+        long generacionLeida;
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (ahora - entrada.expiraEn() < 0) {
+                    if (entrada.valor() == null) {
+                        aciertosNegativos.increment();
+                    } else {
+                        aciertos.increment();
+                    }
+                    return entrada.valor();
+                }
+                entradas.remove(clave);
+                desalojos.increment();
+            }
+            generacionLeida = generacion;
+        }
+
+        // La carga se hace fuera del candado para no bloquear a los demás lectores
+        fallos.increment();
+        V valor = cargador.apply(clave);
+        synchronized (entradas) {
+            if (generacion == generacionLeida) {
+                entradas.put(clave, nuevaEntrada(valor));
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Devuelve el valor vigente sin cargarlo; null si no está o expiró.
+     */
+    public V buscar(K clave) {
+        long ahora = nanos.getAsLong();
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null && ahora - entrada.expiraEn() < 0) {
+                aciertos.increment();
+                return entrada.valor();
+            }
+        }
+        fallos.increment();
+        return null;
+    }
+
+    public void poner(K clave, V valor) {
+        synchronized (entradas) {
+            entradas.put(clave, nuevaEntrada(valor));
+        }
+    }
+
+    public boolean contiene(K clave) {
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(clave);
+            return entrada != null && nanos.getAsLong() - entrada.expiraEn() < 0;
+        }
+    }
+
+    public void invalidar(K clave) {
+        synchronized (entradas) {
+            entradas.remove(clave);
+            generacion++;
+        }
+    }
+
+    public void invalidarTodo() {
+        synchronized (entradas) {
+            entradas.clear();
+            generacion++;
+        }
+    }
+
+    private Entrada<V> nuevaEntrada(V valor) {
+        return new Entrada<>(valor, nanos.getAsLong() + (valor == null ? ttlNegativoNanos : ttlNanos));
+    }
+
+    public EstadisticasCacheDto estadisticas() {
+        int tamanio;
+        synchronized (entradas) {
+            tamanio = entradas.size();
+        }
+        long a = aciertos.sum();
+        long an = aciertosNegativos.sum();
+        long f = fallos.sum();
+        long total = a + an + f;
+        return EstadisticasCacheDto.builder()
+                .nombre(nombre)
+                .entradas(tamanio)
+                .maxEntradas(maxEntradas)
+                .aciertos(a)
+                .fallos(f)
+                .aciertosNegativos(an)
+                .desalojos(desalojos.sum())
+                .tasaAciertos(total == 0 ? 0.0 : (double) (a + an) / total)
+                .build();
+    }
+}
@@ -1,196 +1,451 @@
 package pe.edu.uni.APIEDUCA.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import pe.edu.uni.APIEDUCA.dto.AusenciaMedicoDto;
 import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+import pe.edu.uni.APIEDUCA.dto.ResultadoAusenciaDto;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CitasProcesosService {
 
+    private static final int MAX_DIAS_AUSENCIA = 31;
+    private static final int PASO_BUSQUEDA_MINUTOS = 5;
+    private static final int HORA_CIERRE = 19;
+
+    private record CitaVentana(long id, LocalDateTime inicio, int duracion, String estado) {
+    }
+
+    private record Hueco(long medicoId, LocalDateTime inicio) {
+    }
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private OcupacionMedicoIndex ocupacionIndex;
+
+    @Autowired
+    private HorarioMedicoCache horarioCache;
+
+    @Autowired
+    private DatosReferenciaService datosReferencia;
+
+    @Autowired
+    private BloqueoMedicos bloqueoMedicos;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private TransicionesCita transiciones;
+
+    @Autowired
+    private DialectoBd dialecto;
+
+    @Autowired
+    private Clock reloj;
+
     @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
     public CitasProcesosDto cancelarCita(CitasProcesosDto dto) {
-        // Variables
-        String sql;
-
         // Validaciones
-        validarCitaExiste(dto.getCitaId());
-        validarCitaPuedeCancelarse(dto.getCitaId());
         validarUsuario(dto.getUsuarioId());
         validarMotivo(dto.getMotivo());
 
-        // Proceso de cancelación
-        sql = """
-            UPDATE citas
-            SET estado = 'CANCELADA',
-                cancelada_por = ?,
-                motivo_cancelacion = ?,
-                fecha_cancelacion = GETDATE(),
-                fecha_actualizacion = GETDATE()
-            WHERE id = ?
-            """;
+        // Proceso de cancelación - el estado se valida en el mismo UPDATE
+        // Los recordatorios asociados se cancelan fuera de esta transacción (ReprogramacionRecordatorios)
+        transiciones.aplicar(TransicionCita.CANCELAR, dto.getCitaId(), dto.getUsuarioId(), dto.getMotivo(),
+                Map.of(), dto.getUsuarioId(), dto.getMotivo());
+        ocupacionIndex.liberarCita(dto.getCitaId());
 
-        jdbcTemplate.update(sql, dto.getUsuarioId(), dto.getMotivo(), dto.getCitaId());
+        // Reporte
+        dto.setAccion("CANCELADA");
+        return dto;
+    }
 
-        // Cancelar recordatorios asociados
-        sql = """
-            UPDATE recordatorios
-            SET estado = 'FALLIDO'
-            WHERE cita_id = ? AND estado = 'PENDIENTE'
-            """;
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public CitasProcesosDto reprogramarCita(CitasProcesosDto dto) {
+        // Validaciones
+        validarUsuario(dto.getUsuarioId());
+        validarMedico(dto.getMedicoId());
+        validarFechaHora(dto.getFechaHora());
+        int duracion = obtenerDuracionCita(dto.getCitaId());
+        LocalDateTime nuevoInicio = dto.getFechaHora();
+        // La agenda destino queda bloqueada en este nodo hasta el fin de la transacción
+        bloqueoMedicos.bloquearHastaFinDeTransaccion(dto.getMedicoId(), nuevoInicio.toLocalDate());
+        validarDisponibilidadMedico(dto.getCitaId(), dto.getMedicoId(), nuevoInicio, duracion);
+        validarHorarioMedico(dto.getMedicoId(), nuevoInicio);
 
-        jdbcTemplate.update(sql, dto.getCitaId());
+        // Proceso de reprogramación - la agenda anterior queda en citas_transiciones
+        // Los recordatorios asociados se reprograman fuera de esta transacción (ReprogramacionRecordatorios)
+        transiciones.aplicar(TransicionCita.REPROGRAMAR, dto.getCitaId(), dto.getUsuarioId(), dto.getMotivo(),
+                Map.of("medicoId", String.valueOf(dto.getMedicoId()), "fechaHora", nuevoInicio.format(FormatosFecha.FECHA_HORA)),
+                dto.getMedicoId(), Timestamp.valueOf(nuevoInicio));
+        ocupacionIndex.moverCita(dto.getCitaId(), dto.getMedicoId(), nuevoInicio, duracion);
 
         // Reporte
-        dto.setAccion("CANCELADA");
+        dto.setAccion("REPROGRAMADA");
         return dto;
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
-    public CitasProcesosDto reprogramarCita(CitasProcesosDto dto) {
-        // Variables
-        String sql;
+    public CitasProcesosDto confirmarCita(CitasProcesosDto dto) {
+        return cambiarEstado(TransicionCita.CONFIRMAR, dto);
+    }
 
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public CitasProcesosDto completarCita(CitasProcesosDto dto) {
+        return cambiarEstado(TransicionCita.COMPLETAR, dto);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public CitasProcesosDto marcarNoAsistio(CitasProcesosDto dto) {
+        return cambiarEstado(TransicionCita.NO_ASISTIO, dto);
+    }
+
+    // Transiciones sin más datos que el usuario y un motivo opcional: un solo viaje a la base
+    private CitasProcesosDto cambiarEstado(TransicionCita transicion, CitasProcesosDto dto) {
         // Validaciones
-        validarCitaExiste(dto.getCitaId());
-        validarCitaPuedeReprogramarse(dto.getCitaId());
         validarUsuario(dto.getUsuarioId());
+        if (dto.getMotivo() != null && dto.getMotivo().length() > 255) {
+            throw new RuntimeException("ERROR: El motivo es demasiado largo.");
+        }
+
+        // Proceso
+        transiciones.aplicar(transicion, dto.getCitaId(), dto.getUsuarioId(), dto.getMotivo(), Map.of());
+        if (!"CONFIRMADA".equals(transicion.destino())) {
+            ocupacionIndex.liberarCita(dto.getCitaId());
+        }
+
+        // Reporte
+        dto.setAccion(transicion.destino());
+        return dto;
+    }
+
+    /**
+     * Cancela o redistribuye todas las citas activas de un médico en la ventana
+     * [desde, hasta). Todo se hace en una sola transacción corta con UPDATE por
+     * conjuntos y batch para la reasignación; los recordatorios se ajustan después,
+     * desde el outbox.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public ResultadoAusenciaDto gestionarAusenciaMedico(AusenciaMedicoDto dto) {
+
+        // Variables
+        long inicioNanos = System.nanoTime();
+        ViajesBd.iniciar();
+
+        // Validaciones
+        if (dto == null) {
+            throw new RuntimeException("ERROR: Los datos de la ausencia son obligatorios.");
+        }
         validarMedico(dto.getMedicoId());
-        validarFechaHora(dto.getFechaHora());
-        validarDisponibilidadMedico(dto.getMedicoId(), dto.getFechaHora());
-        validarHorarioMedico(dto.getMedicoId(), dto.getFechaHora()); // Este método es el corregido
+        validarUsuario(dto.getUsuarioId());
+        validarMotivo(dto.getMotivo());
+        if (dto.getDesde() == null || dto.getHasta() == null) {
+            throw new RuntimeException("ERROR: Fecha y hora son requeridas.");
+        }
+        LocalDateTime desde = dto.getDesde();
+        LocalDateTime hasta = dto.getHasta();
+        if (!desde.isBefore(hasta)) {
+            throw new RuntimeException("ERROR: La ventana de ausencia es inválida (desde debe ser anterior a hasta).");
+        }
+        if (desde.plusDays(MAX_DIAS_AUSENCIA).isBefore(hasta)) {
+            throw new RuntimeException("ERROR: La ventana de ausencia no puede superar " + MAX_DIAS_AUSENCIA + " días.");
+        }
+        // Las citas ya pasadas no se cancelan ni se mueven: la ventana empieza como mínimo ahora
+        LocalDateTime ahora = LocalDateTime.now(reloj);
+        if (!hasta.isAfter(ahora)) {
+            throw new RuntimeException("ERROR: La ventana de ausencia ya terminó.");
+        }
+        if (desde.isBefore(ahora)) {
+            desde = ahora;
+        }
 
-        // Obtener ID de cita original para auditoría (no se usa aquí en el UPDATE, pero se mantiene la línea)
-        // long citaOriginalId = dto.getCitaId(); // Esto no se usa directamente en el UPDATE, pero es una buena práctica para auditoría si se necesitara una nueva fila.
+        // Proceso
+        ResultadoAusenciaDto resultado;
+        if ("CANCELAR".equals(dto.getAccion())) {
+            resultado = cancelarVentana(dto, desde, hasta);
+        } else if ("REDISTRIBUIR".equals(dto.getAccion())) {
+            resultado = redistribuirVentana(dto, desde, hasta);
+        } else {
+            throw new RuntimeException("ERROR: Acción inválida. Use CANCELAR o REDISTRIBUIR.");
+        }
+
+        // Reporte
+        long duracionNanos = System.nanoTime() - inicioNanos;
+        resultado.setAccion(dto.getAccion());
+        resultado.setDuracionMs(TimeUnit.NANOSECONDS.toMillis(duracionNanos));
+        resultado.setCitasPorSegundo(duracionNanos == 0 ? 0 : resultado.getAfectadas() * 1e9 / duracionNanos);
+        resultado.setViajesBd(ViajesBd.actual());
+        return resultado;
+    }
 
-        // Proceso de reprogramación
-        sql = """
+    private ResultadoAusenciaDto cancelarVentana(AusenciaMedicoDto dto, LocalDateTime desde, LocalDateTime hasta) {
+        String sql = """
             UPDATE citas
-            SET medico_id = ?,
-                fecha_hora = ?,
-                reprogramada_desde = ?, -- Esto no estaba en el DTO, pero se requiere para la auditoría de la tabla
+            SET estado = 'CANCELADA',
+                cancelada_por = ?,
+                motivo_cancelacion = ?,
+                fecha_cancelacion = GETDATE(),
                 fecha_actualizacion = GETDATE()
-            WHERE id = ?
-            """;
-        // Asumiendo que 'reprogramada_desde' se refiere a la misma cita que se está reprogramando,
-        // o a una cita anterior si fuera una 'reprogramación de reprogramación'.
-        // Para la primera reprogramación, podría ser el mismo ID de la cita actual.
-        jdbcTemplate.update(sql, dto.getMedicoId(), dto.getFechaHora(), dto.getCitaId(), dto.getCitaId());
-
-
-        // Actualizar recordatorios asociados
-        sql = """
-            UPDATE recordatorios
-            SET fecha_envio_programada = DATEADD(hour, -24, CAST(? AS DATETIME2)),
-                estado = 'PENDIENTE',
-                intentos = 0
-            WHERE cita_id = ? AND estado IN ('PENDIENTE', 'FALLIDO')
+            %s
+            WHERE medico_id = ? AND fecha_hora >= ? AND fecha_hora < ?
+            AND estado IN ('PROGRAMADA', 'CONFIRMADA')
             """;
+        Object[] parametros = {dto.getUsuarioId(), dto.getMotivo(), dto.getMedicoId(),
+                Timestamp.valueOf(desde), Timestamp.valueOf(hasta)};
+
+        Map<Long, String> estadoAnterior = new LinkedHashMap<>();
+        RowCallbackHandler anotar = rs -> estadoAnterior.put(rs.getLong(1), rs.getString(2));
+        if (dialecto.esSqlServer()) {
+            // Un solo viaje: el UPDATE devuelve el id y el estado anterior de cada cita
+            jdbcTemplate.query("/* CitasProcesosService.cancelarVentana */\n"
+                    + sql.formatted("OUTPUT INSERTED.id, DELETED.estado"), anotar, parametros);
+        } else {
+            // Sin OUTPUT (H2): leer las citas con bloqueo y cancelar las mismas en la transacción
+            jdbcTemplate.query("""
+                /* CitasProcesosService.leerVentanaCancelar */
+                SELECT id, estado FROM citas WITH (UPDLOCK, HOLDLOCK)
+                WHERE medico_id = ? AND fecha_hora >= ? AND fecha_hora < ?
+                AND estado IN ('PROGRAMADA', 'CONFIRMADA')
+                ORDER BY fecha_hora
+                """, anotar, dto.getMedicoId(), Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+            if (!estadoAnterior.isEmpty()) {
+                jdbcTemplate.update("/* CitasProcesosService.cancelarVentanaSinOutput */\n" + sql.formatted(""),
+                        parametros);
+            }
+        }
+        List<Long> canceladas = new ArrayList<>(estadoAnterior.keySet());
 
-        jdbcTemplate.update(sql, dto.getFechaHora(), dto.getCitaId());
+        Map<Long, Map<String, String>> eventos = new LinkedHashMap<>();
+        for (long citaId : canceladas) {
+            ocupacionIndex.liberarCita(citaId);
+            eventos.put(citaId, Map.of());
+        }
+        transiciones.registrarHistorial(TransicionCita.CANCELAR, estadoAnterior, dto.getUsuarioId(), dto.getMotivo());
+        registroCambios.registrarDesdeCitas(RegistroCambiosCitas.CANCELADA, canceladas);
+        outbox.publicarLote(Outbox.CITA_CANCELADA, eventos);
 
-        // Reporte
-        dto.setAccion("REPROGRAMADA");
-        return dto;
+        return ResultadoAusenciaDto.builder()
+                .afectadas(canceladas.size())
+                .canceladas(canceladas.size())
+                .citasSinReubicar(List.of())
+                .build();
     }
 
-    private void validarCitaExiste(long citaId) {
-        String sql = "SELECT COUNT(1) cont FROM citas WHERE id = ?";
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, citaId);
-        if (cont == 0) {
-            throw new RuntimeException("ERROR: Cita no existe.");
+    private ResultadoAusenciaDto redistribuirVentana(AusenciaMedicoDto dto, LocalDateTime desde, LocalDateTime hasta) {
+        // Citas afectadas, bloqueadas hasta el fin de la transacción
+        String sql = """
+            /* CitasProcesosService.redistribuirVentana */
+            SELECT id, fecha_hora, duracion_minutos, estado
+            FROM citas WITH (UPDLOCK, ROWLOCK)
+            WHERE medico_id = ? AND fecha_hora >= ? AND fecha_hora < ?
+            AND estado IN ('PROGRAMADA', 'CONFIRMADA')
+            ORDER BY fecha_hora
+            """;
+        List<CitaVentana> citas = jdbcTemplate.query(sql, (rs, rowNum) -> new CitaVentana(
+                rs.getLong("id"), rs.getTimestamp("fecha_hora").toLocalDateTime(), rs.getInt("duracion_minutos"),
+                rs.getString("estado")
+        ), dto.getMedicoId(), Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+
+        // Médicos de la misma especialidad (sin el ausente)
+        DatosReferenciaService.UsuarioRef medico = datosReferencia.usuario(dto.getMedicoId());
+        List<Long> candidatos = new ArrayList<>();
+        if (medico.especialidadId() != null) {
+            for (long id : datosReferencia.medicosDeEspecialidad(medico.especialidadId())) {
+                if (id != dto.getMedicoId()) {
+                    candidatos.add(id);
+                }
+            }
+        }
+
+        // Bloquear las agendas de los candidatos en los días de la ventana
+        Set<Integer> franjas = new HashSet<>();
+        for (long candidato : candidatos) {
+            for (LocalDate dia = desde.toLocalDate(); dia.isBefore(hasta.toLocalDate().plusDays(1)); dia = dia.plusDays(1)) {
+                franjas.add(bloqueoMedicos.franja(candidato, dia));
+            }
         }
+        bloqueoMedicos.bloquearHastaFinDeTransaccion(franjas);
+
+        // Asignación en memoria: horario compilado + índice de ocupación + lo ya asignado en esta corrida
+        Map<Long, List<LocalDateTime[]>> asignadasEnCorrida = new HashMap<>();
+        List<Object[]> movimientos = new ArrayList<>();
+        List<Object[]> actualizaciones = new ArrayList<>();
+        Map<Long, Map<String, String>> eventos = new LinkedHashMap<>();
+        Map<Long, String> estadoAnterior = new LinkedHashMap<>();
+        List<Long> sinReubicar = new ArrayList<>();
+        for (CitaVentana cita : citas) {
+            long citaId = cita.id();
+            LocalDateTime inicio = cita.inicio();
+            int duracion = cita.duracion();
+
+            Hueco destino = buscarHueco(candidatos, inicio, duracion, asignadasEnCorrida);
+            if (destino == null) {
+                sinReubicar.add(citaId);
+                continue;
+            }
+            long nuevoMedico = destino.medicoId();
+            LocalDateTime nuevoInicio = destino.inicio();
+            asignadasEnCorrida.computeIfAbsent(nuevoMedico, m -> new ArrayList<>())
+                    .add(new LocalDateTime[]{nuevoInicio, nuevoInicio.plusMinutes(duracion)});
+
+            movimientos.add(new Object[]{nuevoMedico, Timestamp.valueOf(nuevoInicio), citaId});
+            List<Object> actualizacion = new ArrayList<>(List.of(nuevoMedico, Timestamp.valueOf(nuevoInicio), citaId));
+            Collections.addAll(actualizacion, SolapamientoCitas.parametros(nuevoMedico, citaId, nuevoInicio, duracion));
+            actualizaciones.add(actualizacion.toArray());
+            estadoAnterior.put(citaId, cita.estado());
+            eventos.put(citaId, Map.of("medicoId", String.valueOf(nuevoMedico),
+                    "fechaHora", nuevoInicio.format(FormatosFecha.FECHA_HORA),
+                    "fechaHoraAnterior", inicio.format(FormatosFecha.FECHA_HORA)));
+            ocupacionIndex.moverCita(citaId, nuevoMedico, nuevoInicio, duracion);
+        }
+
+        if (!movimientos.isEmpty()) {
+            // El historial y el registro de cambios leen la agenda de origen antes del UPDATE
+            transiciones.registrarHistorial(TransicionCita.REPROGRAMAR, estadoAnterior, dto.getUsuarioId(), dto.getMotivo());
+            registroCambios.registrarMovimientos(movimientos);
+
+            // Si otro nodo ocupó un horario destino, la redistribución completa se anula
+            sql = """
+                /* CitasProcesosService.moverCitasVentana */
+                UPDATE citas
+                SET medico_id = ?,
+                    fecha_hora = ?,
+                    fecha_actualizacion = GETDATE()
+                WHERE id = ?
+                AND
+                """ + SolapamientoCitas.SIN_SOLAPAMIENTO_OTRA;
+            for (int actualizadas : jdbcTemplate.batchUpdate(sql, actualizaciones)) {
+                if (actualizadas == 0) {
+                    throw SolapamientoCitas.conflicto();
+                }
+            }
+            outbox.publicarLote(Outbox.CITA_REPROGRAMADA, eventos);
+        }
+
+        return ResultadoAusenciaDto.builder()
+                .afectadas(citas.size())
+                .reasignadas(movimientos.size())
+                .citasSinReubicar(sinReubicar)
+                .build();
     }
 
-    private void validarCitaPuedeCancelarse(long citaId) {
-        String sql = "SELECT estado FROM citas WHERE id = ?";
-        String estado = jdbcTemplate.queryForObject(sql, String.class, citaId);
-        if (!"PROGRAMADA".equals(estado) && !"CONFIRMADA".equals(estado)) {
-            throw new RuntimeException("ERROR: La cita no puede cancelarse en su estado actual.");
+    /**
+     * Busca un médico candidato libre para la cita: primero a la misma hora y, si no hay,
+     * el primer hueco posterior del mismo día dentro de su horario. Reparte la carga
+     * eligiendo al candidato con menos citas asignadas en la corrida.
+     * Devuelve null si ningún candidato tiene lugar ese día.
+     */
+    private Hueco buscarHueco(List<Long> candidatos, LocalDateTime inicio, int duracion,
+                                 Map<Long, List<LocalDateTime[]>> asignadasEnCorrida) {
+        List<Long> ordenados = new ArrayList<>(candidatos);
+        ordenados.sort(Comparator.comparingInt(m -> asignadasEnCorrida.getOrDefault(m, List.of()).size()));
+
+        for (long medicoId : ordenados) {
+            if (estaLibre(medicoId, inicio, duracion, asignadasEnCorrida)) {
+                return new Hueco(medicoId, inicio);
+            }
         }
+
+        LocalDateTime finDelDia = inicio.toLocalDate().atTime(HORA_CIERRE, 0);
+        for (LocalDateTime t = inicio.plusMinutes(PASO_BUSQUEDA_MINUTOS);
+             !t.plusMinutes(duracion).isAfter(finDelDia); t = t.plusMinutes(PASO_BUSQUEDA_MINUTOS)) {
+            for (long medicoId : ordenados) {
+                if (estaLibre(medicoId, t, duracion, asignadasEnCorrida)) {
+                    return new Hueco(medicoId, t);
+                }
+            }
+        }
+        return null;
     }
 
-    private void validarCitaPuedeReprogramarse(long citaId) {
-        String sql = "SELECT estado FROM citas WHERE id = ?";
-        String estado = jdbcTemplate.queryForObject(sql, String.class, citaId);
-        if (!"PROGRAMADA".equals(estado) && !"CONFIRMADA".equals(estado)) {
-            throw new RuntimeException("ERROR: La cita no puede reprogramarse en su estado actual.");
+    private boolean estaLibre(long medicoId, LocalDateTime inicio, int duracion,
+                              Map<Long, List<LocalDateTime[]>> asignadasEnCorrida) {
+        if (!horarioCache.atiende(medicoId, inicio) || !ocupacionIndex.estaDisponible(medicoId, inicio, duracion)) {
+            return false;
+        }
+        LocalDateTime fin = inicio.plusMinutes(duracion);
+        for (LocalDateTime[] asignada : asignadasEnCorrida.getOrDefault(medicoId, List.of())) {
+            if (asignada[0].isBefore(fin) && asignada[1].isAfter(inicio)) {
+                return false;
+            }
         }
+        return true;
     }
 
     private void validarUsuario(long usuarioId) {
-        String sql = "SELECT COUNT(1) cont FROM usuarios WHERE id = ? AND activo = 1";
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, usuarioId);
-        if (cont == 0) {
+        if (!datosReferencia.esUsuarioActivo(usuarioId)) {
             throw new RuntimeException("ERROR: Usuario no existe o no está activo.");
         }
     }
 
     private void validarMedico(long medicoId) {
-        String sql = "SELECT COUNT(1) cont FROM usuarios WHERE id = ? AND rol = 'MEDICO' AND activo = 1";
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, medicoId);
-        if (cont == 0) {
+        if (!datosReferencia.esMedicoActivo(medicoId)) {
             throw new RuntimeException("ERROR: Médico no existe o no está activo.");
         }
     }
 
-    private void validarFechaHora(String fechaHora) {
-        if (fechaHora == null || fechaHora.trim().isEmpty()) {
+    private void validarFechaHora(LocalDateTime fechaHora) {
+        if (fechaHora == null) {
             throw new RuntimeException("ERROR: Fecha y hora son requeridas.");
         }
+        // Con el reloj de la clínica, sin consultar la hora a la base
+        if (!fechaHora.isAfter(LocalDateTime.now(reloj))) {
+            throw new RuntimeException("ERROR: La fecha debe ser futura.");
+        }
+    }
 
+    private int obtenerDuracionCita(long citaId) {
+        OcupacionMedicoIndex.Reserva reserva = ocupacionIndex.obtenerReserva(citaId);
+        if (reserva != null) {
+            return (int) Duration.between(reserva.inicio(), reserva.fin()).toMinutes();
+        }
+        String sql = "/* CitasProcesosService.obtenerDuracionCita */ SELECT duracion_minutos FROM citas WHERE id = ?";
         try {
-            // Validar que la fecha no sea en el pasado
-            // Note: FORMAT(?, 'yyyy-MM-dd HH:mm') podría ser más robusto para el CAST si el formato de entrada varía.
-            String sql = "SELECT CASE WHEN CAST(? AS DATETIME2) > GETDATE() THEN 1 ELSE 0 END";
-            int valida = jdbcTemplate.queryForObject(sql, Integer.class, fechaHora);
-            if (valida == 0) {
-                throw new RuntimeException("ERROR: La fecha debe ser futura.");
-            }
-        } catch (DataAccessException e) {
-            // Captura errores de formato de fecha que resultan en DataAccessException
-            throw new RuntimeException("ERROR: Formato de fecha u hora inválido o no soportado: " + fechaHora, e);
+            return jdbcTemplate.queryForObject(sql, Integer.class, citaId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new RuntimeException("ERROR: Cita no existe.");
         }
     }
 
-    private void validarDisponibilidadMedico(long medicoId, String fechaHora) {
-        String sql = """
-            SELECT COUNT(1) cont
-            FROM citas
-            WHERE medico_id = ? AND fecha_hora = ? AND estado IN ('PROGRAMADA', 'CONFIRMADA')
-            """;
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, medicoId, fechaHora);
-        if (cont > 0) {
+    private void validarDisponibilidadMedico(long citaId, long medicoId, LocalDateTime inicio, int duracion) {
+        // La propia cita no cuenta como ocupación al moverla
+        if (!ocupacionIndex.estaDisponible(medicoId, inicio, duracion, citaId)) {
             throw new RuntimeException("ERROR: El médico no está disponible en esa fecha y hora.");
         }
     }
 
-    // Metodo para manejar el idioma de DATENAME
-    private void validarHorarioMedico(long medicoId, String fechaHora) {
-        String sql = """
-            SET LANGUAGE 'Spanish'; -- Fuerzo el idioma español para esta sesión/consulta
-            SELECT COUNT(1) cont
-            FROM horarios_medicos hm
-            WHERE hm.medico_id = ?
-            AND hm.dia_semana = UPPER(DATENAME(WEEKDAY, CAST(? AS DATETIME2)))
-            AND CAST(? AS TIME) BETWEEN hm.hora_inicio AND hm.hora_fin
-            AND hm.activo = 1
-            """;
-        try {
-            int cont = jdbcTemplate.queryForObject(sql, Integer.class, medicoId, fechaHora, fechaHora);
-            if (cont == 0) {
-                throw new RuntimeException("ERROR: El médico no tiene horario disponible en esa fecha y hora (verifique día o rango de horas).");
-            }
-        } catch (DataAccessException e) {
-            // Capturar si la conversión de fecha/hora dentro de la consulta falla
-            throw new RuntimeException("ERROR SQL en validación de horario: " + e.getMessage() + ". Asegúrese del formato 'YYYY-MM-DD HH:mm'.", e);
+    private void validarHorarioMedico(long medicoId, LocalDateTime fechaHora) {
+        // Consulta en memoria del horario compilado (sin SET LANGUAGE ni DATENAME en la BD)
+        if (!horarioCache.atiende(medicoId, fechaHora)) {
+            throw new RuntimeException("ERROR: El médico no tiene horario disponible en esa fecha y hora (verifique día o rango de horas).");
         }
     }
 
@@ -1,58 +1,83 @@
 package pe.edu.uni.APIEDUCA.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pe.edu.uni.APIEDUCA.config.JdbcTemplateInstrumentado;
 import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+import pe.edu.uni.APIEDUCA.dto.ProgramacionLoteDto;
+import pe.edu.uni.APIEDUCA.dto.ResultadoLoteCitaDto;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Clock;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CitasService {
 
+    private static final int TAMANIO_MAXIMO_LOTE = 1000;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    public boolean verificarDisponibilidadMedico(long medicoId, String fechaHora) {
+    @Autowired
+    private OcupacionMedicoIndex ocupacionIndex;
+
+    @Autowired
+    private HorarioMedicoCache horarioCache;
+
+    @Autowired
+    private DatosReferenciaService datosReferencia;
+
+    @Autowired
+    private BloqueoMedicos bloqueoMedicos;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private DialectoBd dialecto;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Clock reloj;
+
+    public boolean verificarDisponibilidadMedico(long medicoId, LocalDateTime fechaHora) {
 
         // Validación de entrada
         if (medicoId <= 0) {
             throw new IllegalArgumentException("El ID del médico debe ser mayor a 0");
         }
 
-        if (fechaHora == null || fechaHora.trim().isEmpty()) {
+        if (fechaHora == null) {
             throw new IllegalArgumentException("La fecha y hora son obligatorias");
         }
 
-        // Sentencia para verificar si el médico tiene cita en ese horario
-        String sql = """
-            SELECT COUNT(1) cont 
-            FROM citas 
-            WHERE medico_id = ? 
-            AND fecha_hora = ? 
-            AND estado IN ('PROGRAMADA', 'CONFIRMADA')
-            """;
-
-        try {
-            // Proceso
-            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, medicoId, fechaHora);
-
-            // Reporte - true si está disponible (count = 0)
-            return count != null && count == 0;
-
-        } catch (DataAccessException e) {
-            throw new RuntimeException("Error al verificar disponibilidad del médico", e);
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error interno del sistema", e);
-        }
+        // Proceso - consulta en memoria: ¿alguna cita activa cubre ese instante?
+        return ocupacionIndex.estaDisponible(medicoId, fechaHora, 1);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
@@ -60,6 +85,7 @@ public class CitasService {
 
         // Variables
         String sql;
+        ViajesBd.iniciar();
 
         // Validaciones
         validarDatosCita(dto);
@@ -70,37 +96,388 @@ public class CitasService {
         validarHorarioLaboral(dto.getMedicoId(), dto.getFechaHora());
 
         // Proceso - Obtener duración por defecto si no se especifica
-        if (dto.getDuracionMinutos() <= 0) {
-            sql = """
-                SELECT e.duracion_consulta_minutos 
-                FROM usuarios u 
-                INNER JOIN especialidades e ON u.especialidad_id = e.id 
-                WHERE u.id = ?
-                """;
-            int duracionDefault = jdbcTemplate.queryForObject(sql, Integer.class, dto.getMedicoId());
-            dto.setDuracionMinutos(duracionDefault);
-        }
-
-        // Insertar nueva cita
+        asignarDuracionPorDefecto(dto);
+
+        // Validar que el médico no tenga otra cita que se solape. La agenda del médico
+        // queda bloqueada en este nodo hasta el fin de la transacción
+        LocalDateTime inicio = dto.getFechaHora();
+        bloqueoMedicos.bloquearHastaFinDeTransaccion(dto.getMedicoId(), inicio.toLocalDate());
+        if (!ocupacionIndex.estaDisponible(dto.getMedicoId(), inicio, dto.getDuracionMinutos())) {
+            throw new RuntimeException("ERROR: El médico no está disponible en esa fecha y hora.");
+        }
+
+        // Insertar nueva cita, si en la base no hay otra del médico que se cruce (otros nodos)
         sql = """
+            /* CitasService.programarCita */
             INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, 
                              estado, motivo_consulta, observaciones_cita, creada_por, 
                              fecha_creacion, fecha_actualizacion)
-            VALUES(?, ?, ?, ?, 'PROGRAMADA', ?, ?, ?, GETDATE(), GETDATE())
+            SELECT ?, ?, ?, ?, 'PROGRAMADA', ?, ?, ?, GETDATE(), GETDATE()
+            WHERE
+            """ + SolapamientoCitas.SIN_SOLAPAMIENTO;
+
+        List<Object> datos = new ArrayList<>(Arrays.asList(
+                dto.getPacienteId(), dto.getMedicoId(), Timestamp.valueOf(inicio),
+                dto.getDuracionMinutos(), dto.getMotivoConsulta(),
+                dto.getObservacionesCita(), dto.getCreadaPor()));
+        Collections.addAll(datos, SolapamientoCitas.parametros(dto.getMedicoId(), inicio, dto.getDuracionMinutos()));
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int insertadas = jdbcTemplate.update(new JdbcTemplateInstrumentado.SentenciaConSql(sql, con -> {
+            PreparedStatement ps = con.prepareStatement(sql, new String[]{"id"});
+            for (int i = 0; i < datos.size(); i++) {
+                ps.setObject(i + 1, datos.get(i));
+            }
+            return ps;
+        }), keyHolder);
+        if (insertadas == 0) {
+            throw SolapamientoCitas.conflicto();
+        }
+
+        // Actualizar el índice de ocupación (se aplica al confirmar la transacción)
+        ocupacionIndex.registrarCita(keyHolder.getKey().longValue(), dto.getMedicoId(), inicio, dto.getDuracionMinutos());
+        registroCambios.registrarDesdeCita(RegistroCambiosCitas.PROGRAMADA, keyHolder.getKey().longValue());
+        outbox.publicar(Outbox.CITA_PROGRAMADA, keyHolder.getKey().longValue(),
+                Map.of("medicoId", String.valueOf(dto.getMedicoId()), "fechaHora", inicio.format(FormatosFecha.FECHA_HORA)));
+
+        // Reporte
+        dto.setId(keyHolder.getKey().longValue());
+        dto.setViajesBd(ViajesBd.actual());
+        return dto;
+    }
+
+    /**
+     * Programa una cita con un solo viaje a la base de datos: las validaciones de
+     * paciente, médico, usuario creador, duración por defecto, solapamiento y el
+     * INSERT se repiten en un único lote T-SQL contra los datos vigentes. Antes se
+     * hacen las mismas validaciones que en programarCita con los cachés y la
+     * ocupación en memoria. El lote es T-SQL: con otro motor (H2 en las pruebas)
+     * se programa como en programarCita.
+     */
+    public CitasDto programarCitaRapida(CitasDto dto) {
+        if (!dialecto.esSqlServer()) {
+            return transactionTemplate.execute(estado -> programarCita(dto));
+        }
+
+        // Variables
+        ViajesBd.iniciar();
+
+        // Validaciones en memoria
+        validarDatosCita(dto);
+        validarPaciente(dto.getPacienteId());
+        validarMedico(dto.getMedicoId());
+        validarUsuarioCreador(dto.getCreadaPor());
+        validarFechaHora(dto.getFechaHora());
+        validarHorarioLaboral(dto.getMedicoId(), dto.getFechaHora());
+        asignarDuracionPorDefecto(dto);
+        LocalDateTime inicio = dto.getFechaHora();
+        try (BloqueoMedicos.Bloqueo bloqueo = bloqueoMedicos.bloquear(dto.getMedicoId(), inicio.toLocalDate());
+             RegistroCambiosCitas.Escritura escritura = registroCambios.marcarEscritura()) {
+            if (!ocupacionIndex.estaDisponible(dto.getMedicoId(), inicio, dto.getDuracionMinutos())) {
+                throw new RuntimeException("ERROR: El médico no está disponible en esa fecha y hora.");
+            }
+            CitasDto resultado = insertarCitaRapida(dto, inicio);
+            // El lote ya confirmó su evento en el outbox
+            outbox.avisarConfirmado();
+            return resultado;
+        }
+    }
+
+    private CitasDto insertarCitaRapida(CitasDto dto, LocalDateTime inicio) {
+
+        // Proceso - validar e insertar en un solo lote
+        String sql = """
+            /* CitasService.insertarCitaRapida */
+            SET NOCOUNT ON;
+            SET XACT_ABORT ON;
+            DECLARE @paciente_id BIGINT = ?, @medico_id BIGINT = ?, @creada_por BIGINT = ?,
+                    @fecha_hora DATETIME2 = ?, @duracion INT = ?,
+                    @motivo VARCHAR(MAX) = ?, @observaciones VARCHAR(MAX) = ?;
+            DECLARE @codigo INT = 0;
+
+            BEGIN TRANSACTION;
+
+            IF NOT EXISTS (SELECT 1 FROM pacientes WHERE id = @paciente_id AND activo = 1)
+                SET @codigo = 1;
+            ELSE IF NOT EXISTS (SELECT 1 FROM usuarios WHERE id = @medico_id AND rol = 'MEDICO' AND activo = 1)
+                SET @codigo = 2;
+            ELSE IF NOT EXISTS (SELECT 1 FROM usuarios WHERE id = @creada_por
+                                AND rol IN ('RECEPCIONISTA', 'MEDICO') AND activo = 1)
+                SET @codigo = 3;
+
+            IF @codigo = 0 AND @duracion <= 0
+                SELECT @duracion = e.duracion_consulta_minutos
+                FROM usuarios u
+                INNER JOIN especialidades e ON u.especialidad_id = e.id
+                WHERE u.id = @medico_id;
+
+            IF @codigo = 0 AND (@duracion IS NULL OR @duracion <= 0)
+                SET @codigo = 5;
+            ELSE IF @codigo = 0 AND EXISTS (
+                    SELECT 1 FROM citas WITH (UPDLOCK, HOLDLOCK)
+                    WHERE medico_id = @medico_id
+                    AND estado IN ('PROGRAMADA', 'CONFIRMADA')
+                    AND fecha_hora >= CAST(CAST(@fecha_hora AS DATE) AS DATETIME2)
+                    AND fecha_hora < DATEADD(minute, @duracion, @fecha_hora)
+                    AND DATEADD(minute, duracion_minutos, fecha_hora) > @fecha_hora)
+                SET @codigo = 6;
+
+            IF @codigo = 0
+            BEGIN
+                INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos,
+                                  estado, motivo_consulta, observaciones_cita, creada_por,
+                                  fecha_creacion, fecha_actualizacion)
+                VALUES(@paciente_id, @medico_id, @fecha_hora, @duracion, 'PROGRAMADA',
+                       @motivo, @observaciones, @creada_por, GETDATE(), GETDATE());
+                DECLARE @cita_id BIGINT = CAST(SCOPE_IDENTITY() AS BIGINT);
+                INSERT INTO citas_cambios(cita_id, tipo, medico_id, fecha_hora, estado, fecha_registro)
+                VALUES(@cita_id, 'PROGRAMADA', @medico_id, @fecha_hora, 'PROGRAMADA', GETDATE());
+                INSERT INTO outbox(tipo, agregado_id, carga, estado, intentos, proximo_intento, fecha_registro)
+                VALUES('CITA_PROGRAMADA', @cita_id,
+                       CONCAT('{"medicoId":"', @medico_id, '","fechaHora":"', FORMAT(@fecha_hora, 'yyyy-MM-dd HH:mm'), '"}'),
+                       'PENDIENTE', 0, GETDATE(), GETDATE());
+                COMMIT TRANSACTION;
+                SELECT @cita_id AS id, 0 AS codigo, @duracion AS duracion;
+            END
+            ELSE
+            BEGIN
+                ROLLBACK TRANSACTION;
+                SELECT CAST(NULL AS BIGINT) AS id, @codigo AS codigo, @duracion AS duracion;
+            END
             """;
 
         Object[] datos = {
-                dto.getPacienteId(), dto.getMedicoId(), dto.getFechaHora(),
-                dto.getDuracionMinutos(), dto.getMotivoConsulta(),
-                dto.getObservacionesCita(), dto.getCreadaPor()
+                dto.getPacienteId(), dto.getMedicoId(), dto.getCreadaPor(),
+                Timestamp.valueOf(inicio), dto.getDuracionMinutos(),
+                dto.getMotivoConsulta(), dto.getObservacionesCita()
         };
 
-        jdbcTemplate.update(sql, datos);
+        Map<String, Object> resultado = jdbcTemplate.queryForMap(sql, datos);
+
+        int codigo = ((Number) resultado.get("codigo")).intValue();
+        if (codigo != 0) {
+            throw new RuntimeException(mensajeRechazo(codigo));
+        }
+
+        long citaId = ((Number) resultado.get("id")).longValue();
+        dto.setDuracionMinutos(((Number) resultado.get("duracion")).intValue());
+        ocupacionIndex.registrarCita(citaId, dto.getMedicoId(), inicio, dto.getDuracionMinutos());
 
         // Reporte
+        dto.setId(citaId);
+        dto.setViajesBd(ViajesBd.actual());
         return dto;
     }
 
+    /**
+     * Programa un lote de citas. Valida todo el lote en una pasada (datos de referencia
+     * precargados por conjuntos, horario y ocupación en memoria, conflictos dentro del
+     * mismo lote) e inserta las válidas con un solo batchUpdate. Devuelve un resultado
+     * por cita, en el orden recibido.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public ProgramacionLoteDto programarCitasLote(List<CitasDto> citas) {
+
+        // Variables
+        long inicioNanos = System.nanoTime();
+        ViajesBd.iniciar();
+
+        // Validaciones
+        if (citas == null || citas.isEmpty()) {
+            throw new RuntimeException("ERROR: El lote de citas está vacío.");
+        }
+        if (citas.size() > TAMANIO_MAXIMO_LOTE) {
+            throw new RuntimeException("ERROR: El lote no puede tener más de " + TAMANIO_MAXIMO_LOTE + " citas.");
+        }
+
+        // Existencia de pacientes y usuarios por conjuntos (una consulta por bloque de IDs)
+        Set<Long> pacienteIds = new HashSet<>();
+        Set<Long> usuarioIds = new HashSet<>();
+        for (CitasDto dto : citas) {
+            if (dto != null) {
+                pacienteIds.add(dto.getPacienteId());
+                usuarioIds.add(dto.getMedicoId());
+                usuarioIds.add(dto.getCreadaPor());
+            }
+        }
+        datosReferencia.precargarPacientes(pacienteIds);
+        datosReferencia.precargarUsuarios(usuarioIds);
+
+        // Bloquear las agendas (médico, día) del lote antes de verificar la ocupación
+        bloqueoMedicos.bloquearHastaFinDeTransaccion(franjasDelLote(citas));
+
+        // Validación individual en memoria
+        ResultadoLoteCitaDto[] resultados = new ResultadoLoteCitaDto[citas.size()];
+        LocalDateTime[] inicios = new LocalDateTime[citas.size()];
+        List<Integer> validas = new ArrayList<>();
+        for (int i = 0; i < citas.size(); i++) {
+            CitasDto dto = citas.get(i);
+            try {
+                validarDatosCita(dto);
+                validarPaciente(dto.getPacienteId());
+                validarMedico(dto.getMedicoId());
+                validarUsuarioCreador(dto.getCreadaPor());
+                validarFechaHora(dto.getFechaHora());
+                validarHorarioLaboral(dto.getMedicoId(), dto.getFechaHora());
+                asignarDuracionPorDefecto(dto);
+                inicios[i] = dto.getFechaHora();
+                if (!ocupacionIndex.estaDisponible(dto.getMedicoId(), inicios[i], dto.getDuracionMinutos())) {
+                    throw new RuntimeException("ERROR: El médico no está disponible en esa fecha y hora.");
+                }
+                validas.add(i);
+            } catch (RuntimeException e) {
+                resultados[i] = ResultadoLoteCitaDto.builder().indice(i).exito(false).error(e.getMessage()).build();
+            }
+        }
+
+        // Conflictos dentro del lote: por médico y en orden de inicio, cada cita debe
+        // empezar después del fin más tardío de las ya aceptadas de ese médico
+        validas.sort(Comparator.<Integer>comparingLong(i -> citas.get(i).getMedicoId()).thenComparing(i -> inicios[i]));
+        List<Integer> aceptadas = new ArrayList<>(validas.size());
+        long medicoActual = -1;
+        LocalDateTime finMaximo = null;
+        for (int i : validas) {
+            CitasDto dto = citas.get(i);
+            if (dto.getMedicoId() != medicoActual) {
+                medicoActual = dto.getMedicoId();
+                finMaximo = null;
+            }
+            LocalDateTime fin = inicios[i].plusMinutes(dto.getDuracionMinutos());
+            if (finMaximo != null && inicios[i].isBefore(finMaximo)) {
+                resultados[i] = ResultadoLoteCitaDto.builder().indice(i).exito(false)
+                        .error("ERROR: La cita se solapa con otra cita del mismo lote.").build();
+                continue;
+            }
+            finMaximo = fin;
+            aceptadas.add(i);
+        }
+
+        // Proceso - insertar todas las aceptadas en un batch; si otro nodo ya ocupó
+        // alguno de esos horarios, el lote completo se anula y se reintenta
+        if (!aceptadas.isEmpty()) {
+            String sql = """
+                /* CitasService.programarCitasLote */
+                INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, 
+                                 estado, motivo_consulta, observaciones_cita, creada_por, 
+                                 fecha_creacion, fecha_actualizacion)
+                SELECT ?, ?, ?, ?, 'PROGRAMADA', ?, ?, ?, GETDATE(), GETDATE()
+                WHERE
+                """ + SolapamientoCitas.SIN_SOLAPAMIENTO;
+
+            List<Object[]> filas = new ArrayList<>(aceptadas.size());
+            for (int i : aceptadas) {
+                CitasDto dto = citas.get(i);
+                List<Object> fila = new ArrayList<>(Arrays.asList(
+                        dto.getPacienteId(), dto.getMedicoId(), Timestamp.valueOf(inicios[i]),
+                        dto.getDuracionMinutos(), dto.getMotivoConsulta(),
+                        dto.getObservacionesCita(), dto.getCreadaPor()));
+                Collections.addAll(fila, SolapamientoCitas.parametros(dto.getMedicoId(), inicios[i], dto.getDuracionMinutos()));
+                filas.add(fila.toArray());
+            }
+            for (int insertadas : jdbcTemplate.batchUpdate(sql, filas)) {
+                if (insertadas == 0) {
+                    throw SolapamientoCitas.conflicto();
+                }
+            }
+
+            // Recuperar los IDs generados: (médico, fecha_hora) identifica a la cita activa
+            // porque se acaba de verificar que no hay solapamientos para esos médicos
+            Map<String, Long> idsPorClave = obtenerIdsInsertados(aceptadas, citas, inicios);
+            List<Long> ids = new ArrayList<>(aceptadas.size());
+            Map<Long, Map<String, String>> eventos = new LinkedHashMap<>();
+            for (int i : aceptadas) {
+                CitasDto dto = citas.get(i);
+                Long id = idsPorClave.get(dto.getMedicoId() + "|" + inicios[i]);
+                if (id == null) {
+                    // Sin el id no hay índice, cambios ni outbox coherentes: se anula el lote
+                    throw new RuntimeException("ERROR: No se pudo recuperar el id de la cita insertada.");
+                }
+                dto.setId(id);
+                ids.add(id);
+                eventos.put(id, Map.of("medicoId", String.valueOf(dto.getMedicoId()),
+                        "fechaHora", inicios[i].format(FormatosFecha.FECHA_HORA)));
+                ocupacionIndex.registrarCita(id, dto.getMedicoId(), inicios[i], dto.getDuracionMinutos());
+                resultados[i] = ResultadoLoteCitaDto.builder().indice(i).exito(true).id(id).build();
+            }
+            registroCambios.registrarDesdeCitas(RegistroCambiosCitas.PROGRAMADA, ids);
+            outbox.publicarLote(Outbox.CITA_PROGRAMADA, eventos);
+        }
+
+        // Reporte
+        return ProgramacionLoteDto.builder()
+                .total(citas.size())
+                .programadas(aceptadas.size())
+                .rechazadas(citas.size() - aceptadas.size())
+                .duracionMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos))
+                .viajesBd(ViajesBd.actual())
+                .resultados(Arrays.asList(resultados))
+                .build();
+    }
+
+    private Set<Integer> franjasDelLote(List<CitasDto> citas) {
+        Set<Integer> franjas = new HashSet<>();
+        for (CitasDto dto : citas) {
+            // Las que no tienen fecha se rechazan luego en la validación individual
+            if (dto == null || dto.getFechaHora() == null) {
+                continue;
+            }
+            franjas.add(bloqueoMedicos.franja(dto.getMedicoId(), dto.getFechaHora().toLocalDate()));
+        }
+        return franjas;
+    }
+
+    private Map<String, Long> obtenerIdsInsertados(List<Integer> aceptadas, List<CitasDto> citas, LocalDateTime[] inicios) {
+        Set<Long> medicos = new HashSet<>();
+        LocalDateTime desde = null;
+        LocalDateTime hasta = null;
+        for (int i : aceptadas) {
+            medicos.add(citas.get(i).getMedicoId());
+            desde = desde == null || inicios[i].isBefore(desde) ? inicios[i] : desde;
+            hasta = hasta == null || inicios[i].isAfter(hasta) ? inicios[i] : hasta;
+        }
+
+        String sql = String.format("""
+            /* CitasService.obtenerIdsInsertados */
+            SELECT id, medico_id, fecha_hora FROM citas
+            WHERE estado = 'PROGRAMADA'
+            AND fecha_hora BETWEEN ? AND ?
+            AND medico_id IN (%s)
+            """, String.join(",", Collections.nCopies(medicos.size(), "?")));
+
+        List<Object> parametros = new ArrayList<>(medicos.size() + 2);
+        parametros.add(Timestamp.valueOf(desde));
+        parametros.add(Timestamp.valueOf(hasta));
+        parametros.addAll(medicos);
+
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            ids.put(rs.getLong("medico_id") + "|" + rs.getTimestamp("fecha_hora").toLocalDateTime(), rs.getLong("id"));
+        }, parametros.toArray());
+        return ids;
+    }
+
+    private static String mensajeRechazo(int codigo) {
+        return switch (codigo) {
+            case 1 -> "ERROR: Paciente no existe o está inactivo.";
+            case 2 -> "ERROR: Médico no existe o está inactivo.";
+            case 3 -> "ERROR: Usuario creador no válido.";
+            case 5 -> "ERROR: El médico no tiene una especialidad con duración de consulta definida.";
+            case 6 -> "ERROR: El médico no está disponible en esa fecha y hora.";
+            default -> "ERROR: No se pudo programar la cita (código " + codigo + ").";
+        };
+    }
+
+    private void asignarDuracionPorDefecto(CitasDto dto) {
+        if (dto.getDuracionMinutos() > 0) {
+            return;
+        }
+        Integer duracionDefault = datosReferencia.duracionConsulta(dto.getMedicoId());
+        if (duracionDefault == null || duracionDefault <= 0) {
+            throw new RuntimeException("ERROR: El médico no tiene una especialidad con duración de consulta definida.");
+        }
+        dto.setDuracionMinutos(duracionDefault);
+    }
+
     private void validarDatosCita(CitasDto dto) {
         if (dto == null) {
             throw new RuntimeException("ERROR: Los datos de la cita son obligatorios.");
@@ -120,104 +497,44 @@ public class CitasService {
     }
 
     private void validarPaciente(long pacienteId) {
-        String sql = """
-            SELECT COUNT(1) cont FROM pacientes 
-            WHERE id = ? AND activo = 1
-            """;
-
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, pacienteId);
-        if (cont == 0) {
+        if (!datosReferencia.esPacienteActivo(pacienteId)) {
             throw new RuntimeException("ERROR: Paciente no existe o está inactivo.");
         }
     }
 
     private void validarMedico(long medicoId) {
-        String sql = """
-            SELECT COUNT(1) cont FROM usuarios 
-            WHERE id = ? AND rol = 'MEDICO' AND activo = 1
-            """;
-
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, medicoId);
-        if (cont == 0) {
+        if (!datosReferencia.esMedicoActivo(medicoId)) {
             throw new RuntimeException("ERROR: Médico no existe o está inactivo.");
         }
     }
 
     private void validarUsuarioCreador(long usuarioId) {
-        String sql = """
-            SELECT COUNT(1) cont FROM usuarios 
-            WHERE id = ? AND rol IN ('RECEPCIONISTA', 'MEDICO') AND activo = 1
-            """;
-
-        int cont = jdbcTemplate.queryForObject(sql, Integer.class, usuarioId);
-        if (cont == 0) {
+        if (!datosReferencia.esUsuarioActivoConRol(usuarioId, "RECEPCIONISTA", "MEDICO")) {
             throw new RuntimeException("ERROR: Usuario creador no válido.");
         }
     }
 
-    private void validarFechaHora(String fechaHora) {
-        try {
-            LocalDateTime fechaTime = LocalDateTime.parse(fechaHora, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-
-            // No permitir citas en el pasado
-            if (fechaTime.isBefore(LocalDateTime.now())) {
-                throw new RuntimeException("ERROR: No se pueden programar citas en fechas pasadas.");
-            }
+    private void validarFechaHora(LocalDateTime fechaHora) {
+        if (fechaHora == null) {
+            throw new RuntimeException("ERROR: Fecha y hora son requeridas.");
+        }
 
-            // Validar que sea en horario de atención (7:00 - 19:00)
-            int hora = fechaTime.getHour();
-            if (hora < 7 || hora >= 19) {
-                throw new RuntimeException("ERROR: Horario fuera del rango de atención de la clínica (7:00 - 19:00).");
-            }
+        // No permitir citas en el pasado
+        if (fechaHora.isBefore(LocalDateTime.now(reloj))) {
+            throw new RuntimeException("ERROR: No se pueden programar citas en fechas pasadas.");
+        }
 
-        } catch (Exception e) {
-            if (e instanceof RuntimeException) {
-                throw e;
-            }
-            throw new RuntimeException("ERROR: Formato de fecha y hora inválido. Use: yyyy-MM-dd HH:mm");
+        // Validar que sea en horario de atención (7:00 - 19:00)
+        int hora = fechaHora.getHour();
+        if (hora < 7 || hora >= 19) {
+            throw new RuntimeException("ERROR: Horario fuera del rango de atención de la clínica (7:00 - 19:00).");
         }
     }
 
-    private void validarHorarioLaboral(long medicoId, String fechaHora) {
-        try {
-            // Parse de fecha para obtener el día de la semana y hora
-            LocalDateTime fechaTime = LocalDateTime.parse(fechaHora, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-            String diaSemana = fechaTime.getDayOfWeek().name(); // MONDAY, TUESDAY, etc.
-
-            // Mapear días en inglés a español
-            Map<String, String> diasMap = new HashMap<>();
-            diasMap.put("MONDAY", "LUNES");
-            diasMap.put("TUESDAY", "MARTES");
-            diasMap.put("WEDNESDAY", "MIERCOLES");
-            diasMap.put("THURSDAY", "JUEVES");
-            diasMap.put("FRIDAY", "VIERNES");
-            diasMap.put("SATURDAY", "SABADO");
-            diasMap.put("SUNDAY", "DOMINGO");
-
-            String diaEspanol = diasMap.get(diaSemana);
-            String horaConsulta = fechaTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-
-            // Sentencia para verificar horario laboral
-            String sql = """
-                SELECT COUNT(1) cont FROM horarios_medicos 
-                WHERE medico_id = ? AND dia_semana = ? AND activo = 1
-                AND ? BETWEEN hora_inicio AND hora_fin
-                """;
-
-            int cont = jdbcTemplate.queryForObject(sql, Integer.class, medicoId, diaEspanol, horaConsulta);
-
-            if (cont == 0) {
-                throw new RuntimeException("ERROR: El horario solicitado está fuera del horario laboral del médico.");
-            }
-
-        } catch (EmptyResultDataAccessException e) {
-            throw new RuntimeException("ERROR: El médico no trabaja ese día de la semana.", e);
-
-        } catch (Exception e) {
-            if (e instanceof RuntimeException) {
-                throw e;
-            }
-            throw new RuntimeException("ERROR: Error al verificar horario laboral: " + e.getMessage(), e);
+    private void validarHorarioLaboral(long medicoId, LocalDateTime fechaHora) {
+        // Consulta en memoria del horario compilado del médico
+        if (!horarioCache.atiende(medicoId, fechaHora)) {
+            throw new RuntimeException("ERROR: El horario solicitado está fuera del horario laboral del médico.");
         }
     }
 }
@@ -0,0 +1,13 @@
+package pe.edu.uni.APIEDUCA.service;
+
+/**
+ * Consumidor interno de los eventos del outbox. RelayOutbox llama a procesar dentro
+ * de la misma transacción que marca el evento como PROCESADO: si lanza una excepción
+ * se deshace todo y el evento se reintenta, así que procesar debe ser idempotente.
+ */
+public interface ConsumidorOutbox {
+
+    boolean atiende(String tipo);
+
+    void procesar(EventoOutbox evento);
+}
@@ -0,0 +1,57 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crea los recordatorios de una cita nueva a partir del evento CITA_PROGRAMADA del
+ * outbox: uno por canal configurado para el que el paciente tiene contacto, 24 horas
+ * antes de la cita (o de inmediato si falta menos). Si ya existe el del canal no se
+ * repite, así que reprocesar el evento no duplica recordatorios.
+ */
+@Component
+public class CreacionRecordatorios implements ConsumidorOutbox {
+
+    private static final String SQL_CREAR = """
+            /* CreacionRecordatorios.crear */
+            INSERT INTO recordatorios(cita_id, tipo, fecha_envio_programada, estado, intentos)
+            SELECT c.id, ?,
+                   CASE WHEN DATEADD(hour, -24, c.fecha_hora) > GETDATE()
+                        THEN DATEADD(hour, -24, c.fecha_hora) ELSE GETDATE() END,
+                   'PENDIENTE', 0
+            FROM citas c
+            INNER JOIN pacientes p ON p.id = c.paciente_id
+            WHERE c.id = ? AND c.estado IN ('PROGRAMADA', 'CONFIRMADA')
+            AND COALESCE(CASE WHEN ? = 'EMAIL' THEN p.email ELSE p.telefono END, '') <> ''
+            AND NOT EXISTS (SELECT 1 FROM recordatorios r WHERE r.cita_id = c.id AND r.tipo = ?)
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlanificadorRecordatorios planificador;
+
+    @Value("${clinica.recordatorios.canales:EMAIL,SMS}")
+    private List<String> canales;
+
+    @Override
+    public boolean atiende(String tipo) {
+        return Outbox.CITA_PROGRAMADA.equals(tipo);
+    }
+
+    @Override
+    public void procesar(EventoOutbox evento) {
+        List<Object[]> filas = new ArrayList<>(canales.size());
+        for (String canal : canales) {
+            filas.add(new Object[]{canal, evento.agregadoId(), canal, canal});
+        }
+        jdbcTemplate.batchUpdate(SQL_CREAR, filas);
+        planificador.sincronizarCita(evento.agregadoId());
+    }
+}
@@ -0,0 +1,283 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasCacheDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Datos de referencia (pacientes, usuarios y duración de consulta por especialidad)
+ * leídos a través de una caché acotada con TTL. Estos datos cambian poco y se
+ * validan en cada programación, cancelación y reprogramación de citas.
+ *
+ * Con réplica configurada las cargas se leen de ella; lo que la réplica no
+ * encuentra (por ejemplo un paciente recién creado que aún no llegó) se busca
+ * en la primaria antes de guardarlo como ausente.
+ */
+@Service
+public class DatosReferenciaService {
+
+    public record PacienteRef(long id, boolean activo) {
+    }
+
+    public record UsuarioRef(long id, String rol, boolean activo, Long especialidadId, Integer duracionConsultaMinutos) {
+
+        public boolean esMedicoActivo() {
+            return activo && "MEDICO".equals(rol);
+        }
+    }
+
+    private static final int TAMANIO_BLOQUE_IN = 1000;
+
+    private static final RowMapper<UsuarioRef> MAPEO_USUARIO = (rs, rowNum) -> new UsuarioRef(
+            rs.getLong("id"),
+            rs.getString("rol"),
+            rs.getBoolean("activo"),
+            rs.getObject("especialidad_id") == null ? null : rs.getLong("especialidad_id"),
+            rs.getObject("duracion_consulta_minutos") == null ? null : rs.getInt("duracion_consulta_minutos")
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("jdbcLectura")
+    private JdbcTemplate jdbcLectura;
+
+    @Value("${clinica.cache.referencias.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${clinica.cache.referencias.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    @Value("${clinica.cache.referencias.ttl-negativo-segundos:30}")
+    private long ttlNegativoSegundos;
+
+    private CacheReferencia<Long, PacienteRef> pacientes;
+    private CacheReferencia<Long, UsuarioRef> usuarios;
+    private CacheReferencia<Long, List<Long>> medicosPorEspecialidad;
+    private CacheReferencia<Long, Integer> duracionPorEspecialidad;
+
+    @PostConstruct
+    void iniciar() {
+        pacientes = new CacheReferencia<>("pacientes", maxEntradas, ttlSegundos, ttlNegativoSegundos);
+        usuarios = new CacheReferencia<>("usuarios", maxEntradas, ttlSegundos, ttlNegativoSegundos);
+        medicosPorEspecialidad = new CacheReferencia<>("medicosPorEspecialidad", maxEntradas, ttlSegundos, ttlNegativoSegundos);
+        duracionPorEspecialidad = new CacheReferencia<>("duracionPorEspecialidad", maxEntradas, ttlSegundos, ttlNegativoSegundos);
+    }
+
+    public PacienteRef paciente(long pacienteId) {
+        return pacientes.obtener(pacienteId, this::cargarPaciente);
+    }
+
+    public UsuarioRef usuario(long usuarioId) {
+        return usuarios.obtener(usuarioId, this::cargarUsuario);
+    }
+
+    public boolean esPacienteActivo(long pacienteId) {
+        PacienteRef paciente = paciente(pacienteId);
+        return paciente != null && paciente.activo();
+    }
+
+    public boolean esMedicoActivo(long medicoId) {
+        UsuarioRef usuario = usuario(medicoId);
+        return usuario != null && usuario.esMedicoActivo();
+    }
+
+    public boolean esUsuarioActivo(long usuarioId) {
+        UsuarioRef usuario = usuario(usuarioId);
+        return usuario != null && usuario.activo();
+    }
+
+    public boolean esUsuarioActivoConRol(long usuarioId, String... roles) {
+        UsuarioRef usuario = usuario(usuarioId);
+        if (usuario == null || !usuario.activo()) {
+            return false;
+        }
+        for (String rol : roles) {
+            if (rol.equals(usuario.rol())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Duración de consulta de la especialidad del médico, o null si no tiene.
+     */
+    public Integer duracionConsulta(long medicoId) {
+        UsuarioRef usuario = usuario(medicoId);
+        return usuario == null ? null : usuario.duracionConsultaMinutos();
+    }
+
+    /**
+     * Duración de consulta de la especialidad, o null si no existe o no la tiene.
+     */
+    public Integer duracionEspecialidad(long especialidadId) {
+        return duracionPorEspecialidad.obtener(especialidadId, this::cargarDuracionEspecialidad);
+    }
+
+    /**
+     * IDs de los médicos activos de la especialidad (lista vacía si no hay).
+     */
+    public List<Long> medicosDeEspecialidad(long especialidadId) {
+        List<Long> medicos = medicosPorEspecialidad.obtener(especialidadId, this::cargarMedicosDeEspecialidad);
+        return medicos == null ? List.of() : medicos;
+    }
+
+    /**
+     * Carga en la caché, con una consulta por bloque de IDs, los pacientes que aún no están.
+     * Los IDs que no existen quedan como entradas negativas.
+     */
+    public void precargarPacientes(Collection<Long> ids) {
+        precargar(ids, pacientes,
+                "/* DatosReferenciaService.precargarPacientes */ SELECT id, activo FROM pacientes WHERE id IN (%s)",
+                (rs, rowNum) -> new PacienteRef(rs.getLong("id"), rs.getBoolean("activo")), PacienteRef::id);
+    }
+
+    public void precargarUsuarios(Collection<Long> ids) {
+        precargar(ids, usuarios, """
+                /* DatosReferenciaService.precargarUsuarios */
+                SELECT u.id, u.rol, u.activo, u.especialidad_id, e.duracion_consulta_minutos
+                FROM usuarios u
+                LEFT JOIN especialidades e ON u.especialidad_id = e.id
+                WHERE u.id IN (%s)
+                """, MAPEO_USUARIO, UsuarioRef::id);
+    }
+
+    public void invalidarPaciente(long pacienteId) {
+        pacientes.invalidar(pacienteId);
+    }
+
+    public void invalidarUsuario(long usuarioId) {
+        usuarios.invalidar(usuarioId);
+        // El usuario pudo cambiar de especialidad o de estado
+        medicosPorEspecialidad.invalidarTodo();
+    }
+
+    public void invalidarTodo() {
+        pacientes.invalidarTodo();
+        usuarios.invalidarTodo();
+        medicosPorEspecialidad.invalidarTodo();
+        duracionPorEspecialidad.invalidarTodo();
+    }
+
+    public List<EstadisticasCacheDto> estadisticas() {
+        return List.of(pacientes.estadisticas(), usuarios.estadisticas(), medicosPorEspecialidad.estadisticas(),
+                duracionPorEspecialidad.estadisticas());
+    }
+
+    private <V> void precargar(Collection<Long> ids, CacheReferencia<Long, V> cache, String plantillaSql,
+                               RowMapper<V> mapeo, Function<V, Long> idDe) {
+        List<Long> faltantes = new ArrayList<>();
+        for (Long id : new HashSet<>(ids)) {
+            if (!cache.contiene(id)) {
+                faltantes.add(id);
+            }
+        }
+
+        for (int i = 0; i < faltantes.size(); i += TAMANIO_BLOQUE_IN) {
+            List<Long> bloque = faltantes.subList(i, Math.min(i + TAMANIO_BLOQUE_IN, faltantes.size()));
+            String sql = String.format(plantillaSql, String.join(",", Collections.nCopies(bloque.size(), "?")));
+            Set<Long> pendientes = new HashSet<>(bloque);
+            try {
+                for (V valor : jdbcLectura.query(sql, mapeo, bloque.toArray())) {
+                    cache.poner(idDe.apply(valor), valor);
+                    pendientes.remove(idDe.apply(valor));
+                }
+                if (!pendientes.isEmpty() && jdbcLectura != jdbcTemplate) {
+                    sql = String.format(plantillaSql, String.join(",", Collections.nCopies(pendientes.size(), "?")));
+                    for (V valor : jdbcTemplate.query(sql, mapeo, pendientes.toArray())) {
+                        cache.poner(idDe.apply(valor), valor);
+                        pendientes.remove(idDe.apply(valor));
+                    }
+                }
+            } catch (DataAccessException e) {
+                throw new RuntimeException("ERROR: No se pudieron consultar los datos de referencia.", e);
+            }
+            for (Long id : pendientes) {
+                cache.poner(id, null);
+            }
+        }
+    }
+
+    private PacienteRef cargarPaciente(long pacienteId) {
+        String sql = "/* DatosReferenciaService.cargarPaciente */ SELECT id, activo FROM pacientes WHERE id = ?";
+        try {
+            RowMapper<PacienteRef> mapeo = (rs, rowNum) -> new PacienteRef(rs.getLong("id"), rs.getBoolean("activo"));
+            List<PacienteRef> filas = jdbcLectura.query(sql, mapeo, pacienteId);
+            if (filas.isEmpty() && jdbcLectura != jdbcTemplate) {
+                filas = jdbcTemplate.query(sql, mapeo, pacienteId);
+            }
+            return filas.isEmpty() ? null : filas.get(0);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo consultar el paciente.", e);
+        }
+    }
+
+    private UsuarioRef cargarUsuario(long usuarioId) {
+        String sql = """
+            /* DatosReferenciaService.cargarUsuario */
+            SELECT u.id, u.rol, u.activo, u.especialidad_id, e.duracion_consulta_minutos
+            FROM usuarios u
+            LEFT JOIN especialidades e ON u.especialidad_id = e.id
+            WHERE u.id = ?
+            """;
+        try {
+            List<UsuarioRef> filas = jdbcLectura.query(sql, MAPEO_USUARIO, usuarioId);
+            if (filas.isEmpty() && jdbcLectura != jdbcTemplate) {
+                filas = jdbcTemplate.query(sql, MAPEO_USUARIO, usuarioId);
+            }
+            return filas.isEmpty() ? null : filas.get(0);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo consultar el usuario.", e);
+        }
+    }
+
+    private List<Long> cargarMedicosDeEspecialidad(long especialidadId) {
+        String sql = """
+            /* DatosReferenciaService.cargarMedicosDeEspecialidad */
+            SELECT id FROM usuarios
+            WHERE especialidad_id = ? AND rol = 'MEDICO' AND activo = 1
+            ORDER BY id
+            """;
+        try {
+            List<Long> medicos = jdbcLectura.queryForList(sql, Long.class, especialidadId);
+            if (medicos.isEmpty() && jdbcLectura != jdbcTemplate) {
+                medicos = jdbcTemplate.queryForList(sql, Long.class, especialidadId);
+            }
+            return medicos.isEmpty() ? null : List.copyOf(medicos);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudieron consultar los médicos de la especialidad.", e);
+        }
+    }
+
+    private Integer cargarDuracionEspecialidad(long especialidadId) {
+        String sql = """
+            /* DatosReferenciaService.cargarDuracionEspecialidad */
+            SELECT duracion_consulta_minutos FROM especialidades WHERE id = ?
+            """;
+        try {
+            List<Integer> filas = jdbcLectura.queryForList(sql, Integer.class, especialidadId);
+            if (filas.isEmpty() && jdbcLectura != jdbcTemplate) {
+                filas = jdbcTemplate.queryForList(sql, Integer.class, especialidadId);
+            }
+            return filas.isEmpty() ? null : filas.get(0);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo consultar la especialidad.", e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.DespachoRecordatoriosDto;
+import pe.edu.uni.APIEDUCA.dto.PaginaRecordatoriosDto;
+import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
+import pe.edu.uni.APIEDUCA.notificacion.MensajeNotificacion;
+import pe.edu.uni.APIEDUCA.notificacion.ResultadoEnvio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Despacho por lotes de recordatorios pendientes.
+ *
+ * Lee los pendientes por páginas keyset (obtenerPaginaPendientes), los agrupa
+ * por canal en lotes para el proveedor y los envía en paralelo, con un límite
+ * de concurrencia propio por canal (EMAIL y SMS). El envío no retiene
+ * conexiones de la base; solo la actualización de estado de cada lote es un
+ * batch corto.
+ *
+ * Antes de llamar al proveedor cada lote se toma con un lease en la base
+ * (RecordatorioService.tomar) y se envían solo los tomados, así un recordatorio
+ * no sale dos veces aunque lo vean varios nodos, o la rueda y un despacho manual
+ * a la vez.
+ */
+@Service
+public class DespachoRecordatoriosService {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachoRecordatoriosService.class);
+
+    @Autowired
+    private RecordatorioService recordatorioService;
+
+    @Value("${clinica.recordatorios.despacho.concurrencia-email:32}")
+    private int concurrenciaEmail;
+
+    @Value("${clinica.recordatorios.despacho.concurrencia-sms:16}")
+    private int concurrenciaSms;
+
+    @Value("${clinica.recordatorios.despacho.tamanio-lote-proveedor:50}")
+    private int tamanioLoteProveedor;
+
+    @Value("${clinica.recordatorios.despacho.lote-maximo:5000}")
+    private int loteMaximo;
+
+    @Value("${clinica.recordatorios.despacho.automatico:false}")
+    private boolean automatico;
+
+    private ExecutorService ejecutorEmail;
+    private ExecutorService ejecutorSms;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean(false);
+    private final AtomicReference<DespachoRecordatoriosDto> ultimoDespacho = new AtomicReference<>();
+    private final LongAdder totalEnviados = new LongAdder();
+    private final LongAdder totalFallidos = new LongAdder();
+
+    @PostConstruct
+    void iniciar() {
+        ejecutorEmail = Executors.newFixedThreadPool(concurrenciaEmail, hilos("despacho-email-"));
+        ejecutorSms = Executors.newFixedThreadPool(concurrenciaSms, hilos("despacho-sms-"));
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutorEmail.shutdown();
+        ejecutorSms.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${clinica.recordatorios.despacho.intervalo-ms:60000}",
+            initialDelayString = "${clinica.recordatorios.despacho.intervalo-ms:60000}")
+    public void despachoAutomatico() {
+        if (!automatico) {
+            return;
+        }
+        try {
+            despacharPendientes(loteMaximo);
+        } catch (RuntimeException e) {
+            log.warn("Fallo en el despacho automático de recordatorios: {}", e.getMessage());
+        }
+    }
+
+    public DespachoRecordatoriosDto despacharPendientes(int limite) {
+
+        // Validaciones
+        if (limite <= 0 || limite > loteMaximo) {
+            throw new RuntimeException("ERROR: El límite del lote debe estar entre 1 y " + loteMaximo + ".");
+        }
+        if (!enCurso.compareAndSet(false, true)) {
+            throw new RuntimeException("ERROR: Ya hay un despacho de recordatorios en curso.");
+        }
+
+        try {
+            long inicio = System.nanoTime();
+            int pendientes = recordatorioService.contarPendientes();
+
+            // Leer solo el lote a despachar, por páginas keyset
+            List<RecordatorioDto> lote = new ArrayList<>(Math.min(limite, pendientes));
+            PaginaRecordatoriosDto pagina = null;
+            do {
+                int tamanio = Math.min(1000, limite - lote.size());
+                pagina = pagina == null
+                        ? recordatorioService.obtenerPaginaPendientes(null, 0, tamanio)
+                        : recordatorioService.obtenerPaginaPendientes(pagina.getSiguienteFecha(), pagina.getSiguienteId(), tamanio);
+                lote.addAll(pagina.getItems());
+            } while (pagina.isHayMas() && lote.size() < limite);
+
+            // Proceso - agrupar por canal en lotes para el proveedor
+            int[] conteo = enviarPorCanal(lote);
+            int enviados = conteo[0];
+            int fallidos = conteo[1];
+            int omitidos = conteo[2];
+
+            // Reporte
+            long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            int procesados = enviados + fallidos;
+            double porSegundo = duracionMs == 0 ? procesados : procesados * 1000.0 / duracionMs;
+            int restante = Math.max(pendientes - lote.size(), 0);
+
+            DespachoRecordatoriosDto resultado = DespachoRecordatoriosDto.builder()
+                    .pendientesAlInicio(pendientes)
+                    .procesados(procesados)
+                    .enviados(enviados)
+                    .fallidos(fallidos)
+                    .omitidos(omitidos)
+                    .duracionMs(duracionMs)
+                    .recordatoriosPorSegundo(porSegundo)
+                    .backlogRestante(restante)
+                    .segundosEstimadosParaDrenar(porSegundo == 0 ? 0 : restante / porSegundo)
+                    .build();
+
+            ultimoDespacho.set(resultado);
+            return resultado;
+
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    /**
+     * Envía los recordatorios indicados que sigan pendientes y vencidos (los que
+     * entrega la rueda de temporizadores). Devuelve cuántos se enviaron.
+     */
+    public int despacharRecordatorios(List<Long> ids) {
+        List<RecordatorioDto> lote = recordatorioService.obtenerPendientesPorId(ids);
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        return enviarPorCanal(lote)[0];
+    }
+
+    public DespachoRecordatoriosDto ultimoDespacho() {
+        return ultimoDespacho.get();
+    }
+
+    public long totalEnviados() {
+        return totalEnviados.sum();
+    }
+
+    public long totalFallidos() {
+        return totalFallidos.sum();
+    }
+
+    /**
+     * Agrupa el lote por canal en grupos para el proveedor y los envía en paralelo,
+     * cada canal en su propio pool. Devuelve {enviados, fallidos, omitidos}.
+     */
+    private int[] enviarPorCanal(List<RecordatorioDto> lote) {
+        List<RecordatorioDto> candidatos = new ArrayList<>(lote.size());
+        for (RecordatorioDto recordatorio : lote) {
+            if (recordatorio.getIntentos() < recordatorioService.maxIntentos()) {
+                candidatos.add(recordatorio);
+            }
+        }
+        // Los que ya tomó otro nodo o despacho también se omiten
+        List<RecordatorioDto> tomados = recordatorioService.tomar(candidatos);
+        int omitidos = lote.size() - tomados.size();
+
+        Map<String, List<RecordatorioDto>> porCanal = new HashMap<>();
+        for (RecordatorioDto recordatorio : tomados) {
+            porCanal.computeIfAbsent(recordatorio.getTipo(), t -> new ArrayList<>()).add(recordatorio);
+        }
+
+        AtomicInteger enviados = new AtomicInteger();
+        AtomicInteger fallidos = new AtomicInteger();
+        List<CompletableFuture<Void>> tareas = new ArrayList<>();
+        porCanal.forEach((tipo, recordatorios) -> {
+            ExecutorService ejecutor = "SMS".equals(tipo) ? ejecutorSms : ejecutorEmail;
+            for (int i = 0; i < recordatorios.size(); i += tamanioLoteProveedor) {
+                List<RecordatorioDto> grupo = recordatorios.subList(i, Math.min(i + tamanioLoteProveedor, recordatorios.size()));
+                tareas.add(CompletableFuture.runAsync(() -> {
+                    int exitosos = despacharGrupo(tipo, grupo);
+                    enviados.addAndGet(exitosos);
+                    fallidos.addAndGet(grupo.size() - exitosos);
+                }, ejecutor));
+            }
+        });
+        CompletableFuture.allOf(tareas.toArray(new CompletableFuture[0])).join();
+
+        totalEnviados.add(enviados.get());
+        totalFallidos.add(fallidos.get());
+        return new int[]{enviados.get(), fallidos.get(), omitidos};
+    }
+
+    /**
+     * Envía un grupo de recordatorios del mismo canal en una sola solicitud al
+     * proveedor y guarda los resultados en un batch. Devuelve cuántos se enviaron.
+     */
+    private int despacharGrupo(String tipo, List<RecordatorioDto> grupo) {
+        List<ResultadoEnvio> resultados = new ArrayList<>(grupo.size());
+        List<MensajeNotificacion> mensajes = new ArrayList<>(grupo.size());
+        List<Integer> posiciones = new ArrayList<>(grupo.size());
+
+        // Los que no pasan la validación de destino fallan sin llegar al proveedor
+        for (int i = 0; i < grupo.size(); i++) {
+            try {
+                mensajes.add(recordatorioService.prepararMensaje(grupo.get(i)));
+                posiciones.add(i);
+                resultados.add(null);
+            } catch (RuntimeException e) {
+                resultados.add(ResultadoEnvio.falloPermanente(e.getMessage()));
+            }
+        }
+
+        if (!mensajes.isEmpty()) {
+            List<ResultadoEnvio> respuesta;
+            try {
+                respuesta = recordatorioService.canal(tipo).enviarLote(mensajes);
+            } catch (RuntimeException e) {
+                respuesta = Collections.nCopies(mensajes.size(), ResultadoEnvio.fallo(e.getMessage()));
+            }
+            for (int i = 0; i < posiciones.size(); i++) {
+                resultados.set(posiciones.get(i), respuesta.get(i));
+            }
+        }
+
+        try {
+            recordatorioService.registrarResultados(grupo, resultados);
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron registrar los resultados de {} recordatorios {}: {}", grupo.size(), tipo, e.getMessage());
+            return 0;
+        }
+
+        int exitosos = 0;
+        for (ResultadoEnvio resultado : resultados) {
+            if (resultado.exito()) {
+                exitosos++;
+            }
+        }
+        return exitosos;
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
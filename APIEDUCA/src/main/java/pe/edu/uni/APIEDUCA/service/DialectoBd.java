@@ -0,0 +1,33 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Motor de la base principal. Las sentencias con sintaxis propia de SQL Server
+ * (OUTPUT, lotes T-SQL con variables y BEGIN TRANSACTION) tienen una variante
+ * portable que se usa con los demás motores, como H2 en las pruebas.
+ */
+@Component
+public class DialectoBd {
+
+    private static final String SQL_SERVER = "Microsoft SQL Server";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean sqlServer;
+
+    public boolean esSqlServer() {
+        Boolean valor = sqlServer;
+        if (valor == null) {
+            // Se consulta una vez; si la base no responde se vuelve a intentar en el próximo uso
+            valor = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                    con.getMetaData().getDatabaseProductName().startsWith(SQL_SERVER));
+            sqlServer = valor;
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,376 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pe.edu.uni.APIEDUCA.dto.CambioCitaDto;
+import pe.edu.uni.APIEDUCA.dto.CambiosCitasDto;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Empuja a las pantallas de agenda conectadas (Server-Sent Events) los cambios de
+ * citas a medida que se confirman, filtrados por médico y/o fecha.
+ *
+ * Un solo hilo lee citas_cambios desde la última versión difundida (se despierta al
+ * confirmar una escritura en este nodo y, además, cada intervalo-ms para ver las de
+ * otros nodos), serializa cada cambio una vez y lo deja en la cola acotada de cada
+ * suscriptor que coincide. Un pool chico vacía las colas; las conexiones abiertas no
+ * ocupan hilos. Si la cola de un cliente lento se llena, se descarta lo pendiente y se
+ * le envía un evento "resincronizar" para que vuelva a pedir la agenda o
+ * /api/citas/changes?since=. Cada evento lleva la versión como id, así que al
+ * reconectar con Last-Event-ID se reenvía lo que faltó.
+ */
+@Service
+public class DifusionCambiosCitas {
+
+    private static final Logger log = LoggerFactory.getLogger(DifusionCambiosCitas.class);
+    private static final int LOTE_LECTURA = 1000;
+
+    // Elemento de la cola de un suscriptor: evento ya armado, listo para escribir
+    private record Evento(long version, Set<ResponseBodyEmitter.DataWithMediaType> datos) {
+    }
+
+    private static final Evento LATIDO = new Evento(0, SseEmitter.event().comment("latido").build());
+
+    private final class Suscriptor {
+        final SseEmitter emisor;
+        final Long medicoId;
+        final String fecha;
+        final Queue<Evento> cola;
+        final long piso; // versión con la que se suscribió; lo anterior no se le difunde
+        final AtomicBoolean programado = new AtomicBoolean(false);
+        volatile long desdeVersion; // falta reenviar lo posterior a esta versión; -1: al día
+        volatile boolean cerrado;
+
+        Suscriptor(SseEmitter emisor, Long medicoId, LocalDate fecha, long desdeVersion) {
+            this.emisor = emisor;
+            this.medicoId = medicoId;
+            this.fecha = fecha == null ? null : fecha.toString();
+            this.cola = new ArrayBlockingQueue<>(tamanioBuffer);
+            this.piso = desdeVersion;
+            this.desdeVersion = desdeVersion;
+        }
+
+        boolean coincide(CambioCitaDto cambio) {
+            return cambio.getVersion() > piso
+                    && (coincide(cambio.getMedicoId(), cambio.getFechaHora())
+                    || (cambio.getMedicoAnteriorId() != null
+                    && coincide(cambio.getMedicoAnteriorId(), cambio.getFechaHoraAnterior())));
+        }
+
+        private boolean coincide(long medico, String fechaHora) {
+            return (medicoId == null || medicoId == medico) && (fecha == null || fechaHora.startsWith(fecha));
+        }
+    }
+
+    @Autowired
+    private AgendaService agendaService;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Value("${clinica.citas.push.max-suscriptores:1000}")
+    private int maxSuscriptores;
+
+    @Value("${clinica.citas.push.buffer:256}")
+    private int tamanioBuffer;
+
+    @Value("${clinica.citas.push.hilos-envio:4}")
+    private int hilosEnvio;
+
+    @Value("${clinica.citas.push.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    @Value("${clinica.citas.push.latido-ms:25000}")
+    private long latidoMs;
+
+    @Value("${clinica.citas.push.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final List<Suscriptor> suscriptores = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean lecturaPendiente = new AtomicBoolean(false);
+    private ScheduledExecutorService lector;
+    private ExecutorService envio;
+    private long ultimaVersion = -1; // solo la usa el hilo lector; -1: sin leer todavía
+    private long ultimoLatido;
+    private Counter eventosEnviados;
+    private Counter resincronizaciones;
+
+    @PostConstruct
+    void iniciar() {
+        lector = Executors.newSingleThreadScheduledExecutor(hilos("citas-push-lector-"));
+        envio = Executors.newFixedThreadPool(hilosEnvio, hilos("citas-push-envio-"));
+        lector.scheduleWithFixedDelay(this::leer, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        registroCambios.alTerminarEscritura(this::despertar);
+
+        Gauge.builder("clinica.citas.push.suscriptores", suscriptores, List::size)
+                .description("Pantallas de agenda conectadas al stream de cambios")
+                .register(registro);
+        eventosEnviados = Counter.builder("clinica.citas.push.eventos")
+                .description("Eventos de cambios de citas escritos a suscriptores")
+                .register(registro);
+        resincronizaciones = Counter.builder("clinica.citas.push.resincronizaciones")
+                .description("Suscriptores lentos a los que se les descartó la cola")
+                .register(registro);
+    }
+
+    // Antes del apagado ordenado del servidor, que si no esperaría a los streams abiertos
+    @EventListener(ContextClosedEvent.class)
+    public void cerrarConexiones() {
+        for (Suscriptor suscriptor : suscriptores) {
+            retirar(suscriptor);
+            suscriptor.emisor.complete();
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        lector.shutdownNow();
+        envio.shutdownNow();
+    }
+
+    /**
+     * Abre un stream de cambios. medicoId y fecha son filtros opcionales; ultimaVersion
+     * (Last-Event-ID) reenvía los cambios posteriores a esa versión.
+     */
+    public SseEmitter suscribir(Long medicoId, LocalDate fecha, Long ultimaVersion) {
+
+        // Validaciones
+        if (medicoId != null && medicoId <= 0) {
+            throw new RuntimeException("ERROR: ID de médico inválido.");
+        }
+        if (ultimaVersion != null && ultimaVersion < 0) {
+            throw new RuntimeException("ERROR: Last-Event-ID inválido.");
+        }
+        if (suscriptores.size() >= maxSuscriptores) {
+            throw new RuntimeException("ERROR: Se alcanzó el máximo de " + maxSuscriptores + " suscriptores en este nodo.");
+        }
+
+        // Proceso
+        // Sin Last-Event-ID se parte de la versión actual, así no se pierde lo que se confirme
+        // antes de que el hilo lector vea al suscriptor
+        long desde = ultimaVersion == null ? registroCambios.limiteEstable() : ultimaVersion;
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(emisor, medicoId, fecha, desde);
+        emisor.onCompletion(() -> retirar(suscriptor));
+        emisor.onTimeout(() -> retirar(suscriptor));
+        emisor.onError(e -> retirar(suscriptor));
+        try {
+            emisor.send(SseEmitter.event().name("conectado").data(String.valueOf(desde)));
+        } catch (IOException e) {
+            throw new RuntimeException("ERROR: No se pudo abrir el stream de cambios.", e);
+        }
+        suscriptores.add(suscriptor);
+        despertar();
+        return emisor;
+    }
+
+    public int totalSuscriptores() {
+        return suscriptores.size();
+    }
+
+    private void despertar() {
+        if (lecturaPendiente.compareAndSet(false, true)) {
+            try {
+                lector.execute(this::leer);
+            } catch (RuntimeException e) {
+                lecturaPendiente.set(false); // Ejecutor detenido
+            }
+        }
+    }
+
+    // Solo corre en el hilo lector
+    private void leer() {
+        lecturaPendiente.set(false);
+        try {
+            if (suscriptores.isEmpty()) {
+                ultimaVersion = -1;
+                return;
+            }
+            if (ultimaVersion < 0) {
+                ultimaVersion = registroCambios.limiteEstable();
+            }
+            for (Suscriptor suscriptor : suscriptores) {
+                if (suscriptor.desdeVersion >= 0) {
+                    reenviar(suscriptor);
+                }
+            }
+
+            CambiosCitasDto cambios;
+            do {
+                cambios = agendaService.cambios(ultimaVersion, LOTE_LECTURA, null);
+                if (cambios.isResincronizar()) {
+                    for (Suscriptor suscriptor : suscriptores) {
+                        resincronizar(suscriptor, cambios.getHasta());
+                    }
+                } else {
+                    for (CambioCitaDto cambio : cambios.getCambios()) {
+                        difundir(cambio);
+                    }
+                }
+                ultimaVersion = cambios.getHasta();
+            } while (cambios.isHayMas());
+
+            long ahora = System.currentTimeMillis();
+            if (ahora - ultimoLatido >= latidoMs) {
+                ultimoLatido = ahora;
+                for (Suscriptor suscriptor : suscriptores) {
+                    if (suscriptor.cola.offer(LATIDO)) {
+                        programarEnvio(suscriptor);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron leer los cambios de citas para difundir: {}", e.getMessage());
+        }
+    }
+
+    // Reenvía lo que el suscriptor no vio antes de conectarse, hasta la última versión difundida
+    private void reenviar(Suscriptor suscriptor) {
+        long desde = suscriptor.desdeVersion;
+        suscriptor.desdeVersion = -1;
+        while (desde < ultimaVersion) {
+            CambiosCitasDto cambios = agendaService.cambios(desde, tamanioBuffer, suscriptor.medicoId);
+            if (cambios.isResincronizar()) {
+                resincronizar(suscriptor, ultimaVersion);
+                return;
+            }
+            for (CambioCitaDto cambio : cambios.getCambios()) {
+                if (cambio.getVersion() > ultimaVersion) {
+                    return;
+                }
+                if (suscriptor.coincide(cambio) && !encolar(suscriptor, evento(cambio))) {
+                    return;
+                }
+            }
+            if (!cambios.isHayMas()) {
+                return;
+            }
+            desde = cambios.getHasta();
+        }
+    }
+
+    private void difundir(CambioCitaDto cambio) {
+        Evento evento = null;
+        for (Suscriptor suscriptor : suscriptores) {
+            if (suscriptor.coincide(cambio)) {
+                if (evento == null) {
+                    evento = evento(cambio);
+                }
+                encolar(suscriptor, evento);
+            }
+        }
+    }
+
+    // Nunca bloquea: si la cola está llena el suscriptor pasa a resincronizar
+    private boolean encolar(Suscriptor suscriptor, Evento evento) {
+        if (suscriptor.cola.offer(evento)) {
+            programarEnvio(suscriptor);
+            return true;
+        }
+        resincronizar(suscriptor, evento.version());
+        return false;
+    }
+
+    private void resincronizar(Suscriptor suscriptor, long version) {
+        suscriptor.cola.clear();
+        suscriptor.cola.offer(new Evento(version, SseEmitter.event()
+                .id(String.valueOf(version))
+                .name("resincronizar")
+                .data(String.valueOf(version))
+                .build()));
+        resincronizaciones.increment();
+        programarEnvio(suscriptor);
+    }
+
+    private Evento evento(CambioCitaDto cambio) {
+        try {
+            return new Evento(cambio.getVersion(), SseEmitter.event()
+                    .id(String.valueOf(cambio.getVersion()))
+                    .name("cita")
+                    .data(objectMapper.writeValueAsString(cambio))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("ERROR: No se pudo serializar el cambio de cita " + cambio.getVersion() + ".", e);
+        }
+    }
+
+    private void programarEnvio(Suscriptor suscriptor) {
+        if (!suscriptor.cerrado && suscriptor.programado.compareAndSet(false, true)) {
+            try {
+                envio.execute(() -> vaciar(suscriptor));
+            } catch (RuntimeException e) {
+                suscriptor.programado.set(false); // Ejecutor detenido
+            }
+        }
+    }
+
+    private void vaciar(Suscriptor suscriptor) {
+        try {
+            Evento evento;
+            while (!suscriptor.cerrado && (evento = suscriptor.cola.poll()) != null) {
+                suscriptor.emisor.send(evento.datos());
+                if (evento != LATIDO) {
+                    eventosEnviados.increment();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado o emisor ya completado
+            retirar(suscriptor);
+            suscriptor.emisor.completeWithError(e);
+            return;
+        } finally {
+            suscriptor.programado.set(false);
+        }
+        if (!suscriptor.cola.isEmpty()) {
+            programarEnvio(suscriptor);
+        }
+    }
+
+    private void retirar(Suscriptor suscriptor) {
+        suscriptor.cerrado = true;
+        suscriptores.remove(suscriptor);
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
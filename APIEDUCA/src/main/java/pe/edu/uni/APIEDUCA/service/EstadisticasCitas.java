@@ -0,0 +1,734 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pe.edu.uni.APIEDUCA.dto.EstadisticaOcupacionDto;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasDto;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Cifras diarias del tablero (DashboardView) por médico y especialidad: citas del día,
+ * canceladas, reprogramadas, completadas, no asistidas, ocupación y recordatorios
+ * enviados, sin GROUP BY sobre citas ni recordatorios en cada consulta.
+ *
+ * Cada día y médico tiene sus contadores LongAdder. Un solo hilo lee citas_cambios desde
+ * la última versión aplicada (se despierta al confirmar una escritura en este nodo y,
+ * además, cada intervalo-ms para ver las de otros nodos) y ajusta los contadores, así
+ * cuentan también las altas por lotes y las ausencias. Los recordatorios se cuentan al
+ * confirmarse su envío en este nodo, en el día del envío, como pendientes de la foto.
+ *
+ * Cada foto-ms el mismo hilo escribe los días modificados en estadisticas_citas_dia
+ * (sql/08_estadisticas_citas.sql) y quita de memoria los días anteriores a dias-memoria,
+ * que desde entonces se leen de la tabla. Las cifras de citas se escriben completas con
+ * la versión aplicada, solo si la fila no tiene ya una versión mayor de otro nodo; los
+ * recordatorios se suman (recordatorios_enviados + pendientes), de modo que la tabla
+ * reúne los envíos de todos los nodos, y después se releen los de hoy y ayer.
+ *
+ * Al iniciar se parte de la última foto y se aplican los cambios posteriores; si no hay
+ * foto o citas_cambios ya se depuró más allá de ella, se reconstruye desde citas y los
+ * recordatorios se recuentan desde recordatorios.
+ */
+@Service
+public class EstadisticasCitas {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasCitas.class);
+    private static final int LOTE_LECTURA = 1000;
+
+    private static final String SQL_CAMBIOS = """
+            /* EstadisticasCitas.cambios */
+            SELECT TOP (?) cc.version, cc.tipo, cc.medico_id, cc.fecha_hora,
+                   cc.medico_anterior_id, cc.fecha_hora_anterior,
+                   COALESCE(c.duracion_minutos, 0) AS duracion_minutos
+            FROM citas_cambios cc
+            LEFT JOIN citas c ON c.id = cc.cita_id
+            WHERE cc.version > ? AND cc.version <= ?
+            ORDER BY cc.version
+            """;
+
+    // Fila vacía con versión -1 si aún no existe; las dos sentencias siguientes la completan
+    private static final String SQL_ASEGURAR_FOTO = """
+            /* EstadisticasCitas.asegurarFoto */
+            INSERT INTO estadisticas_citas_dia(dia, medico_id, citas, canceladas, reprogramadas, completadas,
+                                               no_asistio, minutos_ocupados, recordatorios_enviados,
+                                               version_cambios, fecha_actualizacion)
+            SELECT ?, ?, 0, 0, 0, 0, 0, 0, 0, -1, GETDATE()
+            WHERE NOT EXISTS (SELECT 1 FROM estadisticas_citas_dia WHERE dia = ? AND medico_id = ?)
+            """;
+
+    // Un nodo atrasado no pisa la foto de uno que ya aplicó más cambios
+    private static final String SQL_ACTUALIZAR_FOTO = """
+            /* EstadisticasCitas.actualizarFoto */
+            UPDATE estadisticas_citas_dia
+            SET citas = ?, canceladas = ?, reprogramadas = ?, completadas = ?, no_asistio = ?,
+                minutos_ocupados = ?, version_cambios = ?, fecha_actualizacion = GETDATE()
+            WHERE dia = ? AND medico_id = ? AND version_cambios <= ?
+            """;
+
+    private static final String SQL_SUMAR_RECORDATORIOS = """
+            /* EstadisticasCitas.sumarRecordatorios */
+            UPDATE estadisticas_citas_dia
+            SET recordatorios_enviados = recordatorios_enviados + ?, fecha_actualizacion = GETDATE()
+            WHERE dia = ? AND medico_id = ?
+            """;
+
+    private static final String SQL_RECORDATORIOS_FOTO = """
+            /* EstadisticasCitas.recordatoriosFoto */
+            SELECT dia, medico_id, recordatorios_enviados
+            FROM estadisticas_citas_dia
+            WHERE dia >= ?
+            """;
+
+    private record Cambio(long version, String tipo, long medicoId, LocalDateTime fechaHora,
+                          Long medicoAnteriorId, LocalDateTime fechaHoraAnterior, int duracion) {
+    }
+
+    private static final RowMapper<Cambio> MAPEO_CAMBIO = (rs, rowNum) -> {
+        long medicoAnterior = rs.getLong("medico_anterior_id");
+        Long medicoAnteriorId = rs.wasNull() ? null : medicoAnterior;
+        Timestamp anterior = rs.getTimestamp("fecha_hora_anterior");
+        return new Cambio(rs.getLong("version"), rs.getString("tipo"), rs.getLong("medico_id"),
+                rs.getTimestamp("fecha_hora").toLocalDateTime(), medicoAnteriorId,
+                anterior == null ? null : anterior.toLocalDateTime(), rs.getInt("duracion_minutos"));
+    };
+
+    private record Clave(LocalDate dia, long medicoId) {
+    }
+
+    // Contadores de un día y un médico
+    private static final class Contadores {
+        final LongAdder citas = new LongAdder();
+        final LongAdder canceladas = new LongAdder();
+        final LongAdder reprogramadas = new LongAdder();
+        final LongAdder completadas = new LongAdder();
+        final LongAdder noAsistio = new LongAdder();
+        final LongAdder minutosOcupados = new LongAdder();
+        // Lo que dice la foto (todos los nodos) más lo enviado aquí que aún no se escribe
+        volatile long recordatoriosFoto; // solo lo escribe el hilo lector
+        final AtomicLong recordatoriosSinFoto = new AtomicLong();
+
+        long recordatoriosEnviados() {
+            return recordatoriosFoto + recordatoriosSinFoto.get();
+        }
+    }
+
+    // Suma de varios días para armar la respuesta
+    private static final class Acumulado {
+        long citas;
+        long canceladas;
+        long reprogramadas;
+        long completadas;
+        long noAsistio;
+        long minutosOcupados;
+        long minutosDisponibles;
+        long recordatoriosEnviados;
+
+        void sumar(Contadores c) {
+            citas += c.citas.sum();
+            canceladas += c.canceladas.sum();
+            reprogramadas += c.reprogramadas.sum();
+            completadas += c.completadas.sum();
+            noAsistio += c.noAsistio.sum();
+            minutosOcupados += c.minutosOcupados.sum();
+            recordatoriosEnviados += c.recordatoriosEnviados();
+        }
+
+        void sumar(Acumulado a) {
+            citas += a.citas;
+            canceladas += a.canceladas;
+            reprogramadas += a.reprogramadas;
+            completadas += a.completadas;
+            noAsistio += a.noAsistio;
+            minutosOcupados += a.minutosOcupados;
+            recordatoriosEnviados += a.recordatoriosEnviados;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Autowired
+    private HorarioMedicoCache horarioCache;
+
+    @Autowired
+    private DatosReferenciaService datosReferencia;
+
+    @Autowired
+    private Clock reloj;
+
+    @Value("${clinica.estadisticas.activa:true}")
+    private boolean activa;
+
+    @Value("${clinica.estadisticas.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    @Value("${clinica.estadisticas.foto-ms:60000}")
+    private long fotoMs;
+
+    @Value("${clinica.estadisticas.dias-memoria:30}")
+    private int diasMemoria;
+
+    @Value("${clinica.estadisticas.max-dias-consulta:31}")
+    private int maxDiasConsulta;
+
+    private final Map<LocalDate, Map<Long, Contadores>> porDia = new ConcurrentHashMap<>();
+    private final Set<Clave> sucios = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean lecturaPendiente = new AtomicBoolean(false);
+    private ScheduledExecutorService lector;
+    private volatile long ultimaVersion = -1; // solo la escribe el hilo lector; -1: sin cargar
+
+    @PostConstruct
+    void iniciar() {
+        if (!activa) {
+            return;
+        }
+        lector = Executors.newSingleThreadScheduledExecutor(hilos("estadisticas-citas-"));
+        lector.scheduleWithFixedDelay(this::leer, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        lector.scheduleWithFixedDelay(this::fotografiar, fotoMs, fotoMs, TimeUnit.MILLISECONDS);
+        registroCambios.alTerminarEscritura(this::despertar);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        despertar();
+    }
+
+    @PreDestroy
+    void detener() {
+        if (lector != null) {
+            lector.shutdownNow();
+        }
+    }
+
+    /**
+     * Cifras de los días [desde, hasta] por médico y por especialidad. Los días dentro de
+     * la ventana en memoria no van a la base; los anteriores se leen de la foto.
+     * medicoId y especialidadId son filtros opcionales.
+     */
+    public EstadisticasDto consultar(LocalDate desde, LocalDate hasta, Long medicoId, Long especialidadId) {
+
+        // Validaciones
+        LocalDate hoy = LocalDate.now(reloj);
+        desde = desde == null ? hoy : desde;
+        hasta = hasta == null ? desde : hasta;
+        if (hasta.isBefore(desde)) {
+            throw new RuntimeException("ERROR: La fecha hasta no puede ser anterior a desde.");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= maxDiasConsulta) {
+            throw new RuntimeException("ERROR: El rango no puede superar " + maxDiasConsulta + " días.");
+        }
+        if (medicoId != null && medicoId <= 0) {
+            throw new RuntimeException("ERROR: ID de médico inválido.");
+        }
+        if (especialidadId != null && especialidadId <= 0) {
+            throw new RuntimeException("ERROR: ID de especialidad inválido.");
+        }
+        long version = ultimaVersion;
+        if (version < 0) {
+            throw new RuntimeException("ERROR: Las estadísticas aún se están cargando; intente en unos segundos.");
+        }
+
+        // Proceso
+        Map<Long, Acumulado> porMedico = new TreeMap<>();
+        LocalDate inicioVentana = inicioVentana();
+        if (desde.isBefore(inicioVentana)) {
+            LocalDate finFoto = hasta.isBefore(inicioVentana) ? hasta : inicioVentana.minusDays(1);
+            leerFoto(desde, finFoto, porMedico);
+        }
+        for (LocalDate dia = desde.isBefore(inicioVentana) ? inicioVentana : desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            Map<Long, Contadores> delDia = porDia.get(dia);
+            if (delDia != null) {
+                delDia.forEach((medico, contadores) -> porMedico.computeIfAbsent(medico, id -> new Acumulado()).sumar(contadores));
+            }
+        }
+
+        // Los médicos filtrados aparecen aunque no tengan citas, con su capacidad
+        if (medicoId != null) {
+            porMedico.keySet().retainAll(Set.of(medicoId));
+            porMedico.computeIfAbsent(medicoId, id -> new Acumulado());
+        }
+        if (especialidadId != null) {
+            List<Long> medicosEspecialidad = datosReferencia.medicosDeEspecialidad(especialidadId);
+            porMedico.keySet().removeIf(id -> !especialidadId.equals(especialidad(id)));
+            if (medicoId == null) {
+                medicosEspecialidad.forEach(id -> porMedico.computeIfAbsent(id, i -> new Acumulado()));
+            }
+        }
+
+        List<EstadisticaOcupacionDto> medicos = new ArrayList<>(porMedico.size());
+        Map<Long, Acumulado> porEspecialidad = new TreeMap<>();
+        for (Map.Entry<Long, Acumulado> entrada : porMedico.entrySet()) {
+            Acumulado acumulado = entrada.getValue();
+            acumulado.minutosDisponibles = minutosDisponibles(entrada.getKey(), desde, hasta);
+            Long especialidad = especialidad(entrada.getKey());
+            medicos.add(fila(entrada.getKey(), especialidad, acumulado));
+            if (especialidad != null) {
+                porEspecialidad.computeIfAbsent(especialidad, id -> new Acumulado()).sumar(acumulado);
+            }
+        }
+
+        // La capacidad de la especialidad incluye a sus médicos sin citas en el rango
+        List<EstadisticaOcupacionDto> especialidades = new ArrayList<>(porEspecialidad.size());
+        for (Map.Entry<Long, Acumulado> entrada : porEspecialidad.entrySet()) {
+            Acumulado acumulado = entrada.getValue();
+            for (long medico : datosReferencia.medicosDeEspecialidad(entrada.getKey())) {
+                acumulado.minutosDisponibles += minutosDisponibles(medico, desde, hasta);
+            }
+            especialidades.add(fila(null, entrada.getKey(), acumulado));
+        }
+
+        // Reporte
+        return EstadisticasDto.builder()
+                .desde(desde.toString())
+                .hasta(hasta.toString())
+                .versionCambios(version)
+                .medicos(medicos)
+                .especialidades(especialidades)
+                .build();
+    }
+
+    /**
+     * Cuenta los recordatorios enviados, uno por médico de la lista (con repetidos), en
+     * el día de hoy. Con una transacción activa se cuentan al confirmarla.
+     */
+    public void contarRecordatoriosEnviados(List<Long> medicoIds) {
+        if (lector == null || medicoIds.isEmpty()) {
+            return;
+        }
+        Runnable contar = () -> {
+            if (ultimaVersion < 0) {
+                return; // El recuento de la carga los incluye
+            }
+            LocalDate hoy = LocalDate.now(reloj);
+            for (long medicoId : medicoIds) {
+                contadores(hoy, medicoId).recordatoriosSinFoto.incrementAndGet();
+                sucios.add(new Clave(hoy, medicoId));
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    contar.run();
+                }
+            });
+        } else {
+            contar.run();
+        }
+    }
+
+    /**
+     * Aplica los cambios pendientes y escribe la foto en el hilo de las estadísticas, y
+     * espera a que termine. Para pruebas y tareas administrativas.
+     */
+    public void sincronizar() {
+        validarActiva();
+        try {
+            lector.submit(() -> {
+                leer();
+                fotografiar();
+            }).get();
+        } catch (Exception e) {
+            throw new RuntimeException("ERROR: No se pudieron sincronizar las estadísticas.", e);
+        }
+    }
+
+    /**
+     * Descarta lo que hay en memoria y vuelve a cargar (foto y cambios posteriores, o
+     * reconstrucción desde citas) en el hilo de las estadísticas.
+     */
+    public void recargar() {
+        validarActiva();
+        try {
+            lector.submit(() -> {
+                ultimaVersion = -1;
+                leer();
+            }).get();
+        } catch (Exception e) {
+            throw new RuntimeException("ERROR: No se pudieron recargar las estadísticas.", e);
+        }
+    }
+
+    private void validarActiva() {
+        if (lector == null) {
+            throw new RuntimeException("ERROR: Las estadísticas de citas están desactivadas (clinica.estadisticas.activa).");
+        }
+    }
+
+    private void despertar() {
+        if (lecturaPendiente.compareAndSet(false, true)) {
+            try {
+                lector.execute(this::leer);
+            } catch (RuntimeException e) {
+                lecturaPendiente.set(false); // Ejecutor detenido
+            }
+        }
+    }
+
+    // Solo corre en el hilo lector
+    private void leer() {
+        lecturaPendiente.set(false);
+        try {
+            if (ultimaVersion < 0) {
+                cargar();
+            }
+            long estable = registroCambios.limiteEstable();
+            while (ultimaVersion < estable) {
+                List<Cambio> cambios = jdbcTemplate.query(SQL_CAMBIOS, MAPEO_CAMBIO, LOTE_LECTURA, ultimaVersion, estable);
+                for (Cambio cambio : cambios) {
+                    aplicar(cambio);
+                }
+                ultimaVersion = cambios.size() < LOTE_LECTURA ? estable : cambios.get(cambios.size() - 1).version();
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron actualizar las estadísticas de citas: {}", e.getMessage());
+        }
+    }
+
+    private void cargar() {
+        LocalDate inicio = inicioVentana();
+        porDia.clear();
+        sucios.clear();
+
+        Long versionFoto = jdbcTemplate.queryForObject(
+                "/* EstadisticasCitas.versionFoto */ SELECT MAX(version_cambios) FROM estadisticas_citas_dia",
+                Long.class);
+        Long minima = jdbcTemplate.queryForObject(
+                "/* EstadisticasCitas.versionMinima */ SELECT MIN(version) FROM citas_cambios", Long.class);
+        long version;
+        String origen;
+        if (versionFoto != null && (minima == null || versionFoto >= minima - 1)) {
+            version = cargarFoto(inicio, versionFoto);
+            origen = "foto";
+        } else {
+            version = reconstruir(inicio);
+            recontarRecordatorios(inicio);
+            origen = "citas";
+        }
+        ultimaVersion = version;
+        log.info("Estadísticas de citas cargadas desde {} hasta la versión {}: {} días en memoria",
+                origen, version, porDia.size());
+    }
+
+    private long cargarFoto(LocalDate inicio, long versionFoto) {
+        String sql = """
+            /* EstadisticasCitas.cargarFoto */
+            SELECT dia, medico_id, citas, canceladas, reprogramadas, completadas, no_asistio,
+                   minutos_ocupados, recordatorios_enviados
+            FROM estadisticas_citas_dia
+            WHERE dia >= ?
+            """;
+        jdbcTemplate.query(sql, rs -> {
+            Contadores c = contadores(rs.getDate("dia").toLocalDate(), rs.getLong("medico_id"));
+            c.citas.add(rs.getLong("citas"));
+            c.canceladas.add(rs.getLong("canceladas"));
+            c.reprogramadas.add(rs.getLong("reprogramadas"));
+            c.completadas.add(rs.getLong("completadas"));
+            c.noAsistio.add(rs.getLong("no_asistio"));
+            c.minutosOcupados.add(rs.getLong("minutos_ocupados"));
+            c.recordatoriosFoto = rs.getLong("recordatorios_enviados");
+        }, Date.valueOf(inicio));
+        return versionFoto;
+    }
+
+    /**
+     * Cifras de las citas de la ventana leídas de citas, y la versión de citas_cambios a
+     * la que corresponden. Va en una transacción serializable sobre la primaria para que
+     * ningún cambio quede entre la versión y el conteo. Las reprogramaciones salen de lo
+     * que aún conserva citas_cambios.
+     */
+    private long reconstruir(LocalDate inicio) {
+        String sqlCitas = """
+            /* EstadisticasCitas.reconstruirCitas */
+            SELECT medico_id, CAST(fecha_hora AS DATE) AS dia,
+                   COUNT(1) AS citas,
+                   SUM(CASE WHEN estado = 'CANCELADA' THEN 1 ELSE 0 END) AS canceladas,
+                   SUM(CASE WHEN estado = 'COMPLETADA' THEN 1 ELSE 0 END) AS completadas,
+                   SUM(CASE WHEN estado = 'NO_ASISTIO' THEN 1 ELSE 0 END) AS no_asistio,
+                   SUM(CASE WHEN estado = 'CANCELADA' THEN 0 ELSE duracion_minutos END) AS minutos_ocupados
+            FROM citas
+            WHERE fecha_hora >= ?
+            GROUP BY medico_id, CAST(fecha_hora AS DATE)
+            """;
+        String sqlReprogramadas = """
+            /* EstadisticasCitas.reconstruirReprogramadas */
+            SELECT medico_id, CAST(fecha_hora AS DATE) AS dia, COUNT(1) AS reprogramadas
+            FROM citas_cambios
+            WHERE tipo = 'REPROGRAMADA' AND fecha_hora >= ?
+            GROUP BY medico_id, CAST(fecha_hora AS DATE)
+            """;
+
+        TransactionTemplate serializable = new TransactionTemplate(transactionManager);
+        serializable.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        Timestamp desde = Timestamp.valueOf(inicio.atStartOfDay());
+        Long version = serializable.execute(estado -> {
+            Long maxima = jdbcTemplate.queryForObject(
+                    "/* EstadisticasCitas.versionMaxima */ SELECT MAX(version) FROM citas_cambios", Long.class);
+            jdbcTemplate.query(sqlCitas, rs -> {
+                Contadores c = contadores(rs.getDate("dia").toLocalDate(), rs.getLong("medico_id"));
+                c.citas.add(rs.getLong("citas"));
+                c.canceladas.add(rs.getLong("canceladas"));
+                c.completadas.add(rs.getLong("completadas"));
+                c.noAsistio.add(rs.getLong("no_asistio"));
+                c.minutosOcupados.add(rs.getLong("minutos_ocupados"));
+            }, desde);
+            jdbcTemplate.query(sqlReprogramadas, rs -> {
+                contadores(rs.getDate("dia").toLocalDate(), rs.getLong("medico_id")).reprogramadas.add(rs.getLong("reprogramadas"));
+            }, desde);
+            return maxima == null ? 0L : maxima;
+        });
+
+        // La primera foto deja la reconstrucción escrita
+        porDia.forEach((dia, medicos) -> medicos.keySet().forEach(medico -> sucios.add(new Clave(dia, medico))));
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * Recuento desde recordatorios al reconstruir. Lo que ya dice la foto se deja como
+     * base y la diferencia queda pendiente, para que la próxima foto la sume.
+     */
+    private void recontarRecordatorios(LocalDate inicio) {
+        jdbcTemplate.query(SQL_RECORDATORIOS_FOTO, rs -> {
+            Contadores c = contadores(rs.getDate("dia").toLocalDate(), rs.getLong("medico_id"));
+            c.recordatoriosFoto = rs.getLong("recordatorios_enviados");
+            c.recordatoriosSinFoto.set(-c.recordatoriosFoto);
+        }, Date.valueOf(inicio));
+
+        String sql = """
+            /* EstadisticasCitas.recontarRecordatorios */
+            SELECT c.medico_id, CAST(r.fecha_envio_real AS DATE) AS dia, COUNT(1) AS enviados
+            FROM recordatorios r
+            INNER JOIN citas c ON r.cita_id = c.id
+            WHERE r.estado = 'ENVIADO' AND r.fecha_envio_real >= ?
+            GROUP BY c.medico_id, CAST(r.fecha_envio_real AS DATE)
+            """;
+        jdbcTemplate.query(sql, rs -> {
+            LocalDate dia = rs.getDate("dia").toLocalDate();
+            long medicoId = rs.getLong("medico_id");
+            contadores(dia, medicoId).recordatoriosSinFoto.addAndGet(rs.getLong("enviados"));
+        }, Timestamp.valueOf(inicio.atStartOfDay()));
+        porDia.forEach((dia, medicos) -> medicos.keySet().forEach(medico -> sucios.add(new Clave(dia, medico))));
+    }
+
+    // Solo corre en el hilo lector
+    private void aplicar(Cambio cambio) {
+        switch (cambio.tipo()) {
+            case RegistroCambiosCitas.PROGRAMADA -> sumar(cambio.medicoId(), cambio.fechaHora(), c -> {
+                c.citas.increment();
+                c.minutosOcupados.add(cambio.duracion());
+            });
+            case RegistroCambiosCitas.CANCELADA -> sumar(cambio.medicoId(), cambio.fechaHora(), c -> {
+                c.canceladas.increment();
+                c.minutosOcupados.add(-cambio.duracion());
+            });
+            case RegistroCambiosCitas.REPROGRAMADA -> {
+                // La cita sale de su día anterior y entra al nuevo
+                if (cambio.medicoAnteriorId() != null && cambio.fechaHoraAnterior() != null) {
+                    sumar(cambio.medicoAnteriorId(), cambio.fechaHoraAnterior(), c -> {
+                        c.citas.decrement();
+                        c.minutosOcupados.add(-cambio.duracion());
+                    });
+                }
+                sumar(cambio.medicoId(), cambio.fechaHora(), c -> {
+                    c.citas.increment();
+                    c.reprogramadas.increment();
+                    c.minutosOcupados.add(cambio.duracion());
+                });
+            }
+            case RegistroCambiosCitas.COMPLETADA -> sumar(cambio.medicoId(), cambio.fechaHora(), c -> c.completadas.increment());
+            case RegistroCambiosCitas.NO_ASISTIO -> sumar(cambio.medicoId(), cambio.fechaHora(), c -> c.noAsistio.increment());
+            default -> {
+                // CONFIRMADA no cambia las cifras
+            }
+        }
+    }
+
+    // Los días anteriores a la ventana quedan como en la foto
+    private void sumar(long medicoId, LocalDateTime fechaHora, Consumer<Contadores> ajuste) {
+        LocalDate dia = fechaHora.toLocalDate();
+        if (dia.isBefore(inicioVentana())) {
+            return;
+        }
+        ajuste.accept(contadores(dia, medicoId));
+        sucios.add(new Clave(dia, medicoId));
+    }
+
+    // Solo corre en el hilo lector
+    private void fotografiar() {
+        if (ultimaVersion < 0) {
+            return;
+        }
+        List<Clave> claves = new ArrayList<>(sucios);
+        Map<Contadores, Long> sumados = new HashMap<>();
+        try {
+            if (!claves.isEmpty()) {
+                // Se quita la marca antes de leer: lo que se sume después vuelve a marcarla
+                List<Object[]> aseguradas = new ArrayList<>(claves.size());
+                List<Object[]> cifras = new ArrayList<>(claves.size());
+                List<Object[]> recordatorios = new ArrayList<>();
+                for (Clave clave : claves) {
+                    sucios.remove(clave);
+                    Map<Long, Contadores> delDia = porDia.get(clave.dia());
+                    Contadores c = delDia == null ? null : delDia.get(clave.medicoId());
+                    if (c == null) {
+                        continue;
+                    }
+                    Date dia = Date.valueOf(clave.dia());
+                    aseguradas.add(new Object[]{dia, clave.medicoId(), dia, clave.medicoId()});
+                    cifras.add(new Object[]{c.citas.sum(), c.canceladas.sum(), c.reprogramadas.sum(),
+                            c.completadas.sum(), c.noAsistio.sum(), c.minutosOcupados.sum(),
+                            ultimaVersion, dia, clave.medicoId(), ultimaVersion});
+                    long pendientes = c.recordatoriosSinFoto.getAndSet(0);
+                    if (pendientes != 0) {
+                        sumados.put(c, pendientes);
+                        recordatorios.add(new Object[]{pendientes, dia, clave.medicoId()});
+                    }
+                }
+                transactionTemplate.executeWithoutResult(estado -> {
+                    jdbcTemplate.batchUpdate(SQL_ASEGURAR_FOTO, aseguradas);
+                    jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_FOTO, cifras);
+                    if (!recordatorios.isEmpty()) {
+                        jdbcTemplate.batchUpdate(SQL_SUMAR_RECORDATORIOS, recordatorios);
+                    }
+                });
+                sumados.forEach((c, pendientes) -> c.recordatoriosFoto += pendientes);
+            }
+            refrescarRecordatorios();
+        } catch (RuntimeException e) {
+            // Se reintentan en la próxima foto
+            sumados.forEach((c, pendientes) -> c.recordatoriosSinFoto.addAndGet(pendientes));
+            sucios.addAll(claves);
+            log.warn("No se pudo guardar la foto de las estadísticas de citas: {}", e.getMessage());
+            return;
+        }
+
+        // Ya escritos, los días viejos se leen de la tabla
+        LocalDate inicio = inicioVentana();
+        porDia.keySet().removeIf(dia -> dia.isBefore(inicio));
+        sucios.removeIf(clave -> clave.dia().isBefore(inicio));
+    }
+
+    // Los envíos de otros nodos llegan por la foto; se cuentan en el día del envío
+    private void refrescarRecordatorios() {
+        LocalDate ayer = LocalDate.now(reloj).minusDays(1);
+        jdbcTemplate.query(SQL_RECORDATORIOS_FOTO, rs -> {
+            contadores(rs.getDate("dia").toLocalDate(), rs.getLong("medico_id")).recordatoriosFoto = rs.getLong("recordatorios_enviados");
+        }, Date.valueOf(ayer));
+    }
+
+    private void leerFoto(LocalDate desde, LocalDate hasta, Map<Long, Acumulado> porMedico) {
+        String sql = """
+            /* EstadisticasCitas.leerFoto */
+            SELECT medico_id, SUM(citas) AS citas, SUM(canceladas) AS canceladas,
+                   SUM(reprogramadas) AS reprogramadas, SUM(completadas) AS completadas,
+                   SUM(no_asistio) AS no_asistio, SUM(minutos_ocupados) AS minutos_ocupados,
+                   SUM(recordatorios_enviados) AS recordatorios_enviados
+            FROM estadisticas_citas_dia
+            WHERE dia >= ? AND dia <= ?
+            GROUP BY medico_id
+            """;
+        jdbcTemplate.query(sql, rs -> {
+            Acumulado a = porMedico.computeIfAbsent(rs.getLong("medico_id"), id -> new Acumulado());
+            a.citas += rs.getLong("citas");
+            a.canceladas += rs.getLong("canceladas");
+            a.reprogramadas += rs.getLong("reprogramadas");
+            a.completadas += rs.getLong("completadas");
+            a.noAsistio += rs.getLong("no_asistio");
+            a.minutosOcupados += rs.getLong("minutos_ocupados");
+            a.recordatoriosEnviados += rs.getLong("recordatorios_enviados");
+        }, Date.valueOf(desde), Date.valueOf(hasta));
+    }
+
+    private Contadores contadores(LocalDate dia, long medicoId) {
+        return porDia.computeIfAbsent(dia, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(medicoId, id -> new Contadores());
+    }
+
+    private LocalDate inicioVentana() {
+        return LocalDate.now(reloj).minusDays(diasMemoria);
+    }
+
+    private long minutosDisponibles(long medicoId, LocalDate desde, LocalDate hasta) {
+        HorarioMedicoCache.HorarioSemanal horario = horarioCache.obtener(medicoId);
+        long minutos = 0;
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            minutos += horario.minutosDelDia(dia.getDayOfWeek());
+        }
+        return minutos;
+    }
+
+    private Long especialidad(long medicoId) {
+        DatosReferenciaService.UsuarioRef usuario = datosReferencia.usuario(medicoId);
+        return usuario == null ? null : usuario.especialidadId();
+    }
+
+    private static EstadisticaOcupacionDto fila(Long medicoId, Long especialidadId, Acumulado a) {
+        double porcentaje = a.minutosDisponibles == 0 ? 0 : Math.round(a.minutosOcupados * 1000.0 / a.minutosDisponibles) / 10.0;
+        return EstadisticaOcupacionDto.builder()
+                .medicoId(medicoId)
+                .especialidadId(especialidadId)
+                .citas(a.citas)
+                .canceladas(a.canceladas)
+                .reprogramadas(a.reprogramadas)
+                .completadas(a.completadas)
+                .noAsistio(a.noAsistio)
+                .minutosOcupados(a.minutosOcupados)
+                .minutosDisponibles(a.minutosDisponibles)
+                .porcentajeOcupacion(porcentaje)
+                .recordatoriosEnviados(a.recordatoriosEnviados)
+                .build();
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import java.util.Map;
+
+/**
+ * Evento leído de la tabla outbox para entregarlo a los consumidores.
+ * intentos es la cantidad de entregas fallidas previas.
+ */
+public record EventoOutbox(long id, String tipo, long agregadoId, Map<String, String> carga, int intentos) {
+
+    public String dato(String clave) {
+        return carga.get(clave);
+    }
+}
@@ -0,0 +1,218 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de horarios_medicos compilados por médico.
+ *
+ * Cada horario semanal se guarda como 7 arreglos (uno por día, indexados por
+ * DayOfWeek.ordinal()) con pares [inicio, fin] en segundos del día, ordenados.
+ * La verificación no va a la base de datos ni crea mapas o formateadores.
+ * Se debe invalidar cuando cambian los horarios de un médico.
+ */
+@Component
+public class HorarioMedicoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HorarioMedicoCache.class);
+
+    private static final int[] SIN_RANGOS = new int[0];
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, HorarioSemanal> horarios = new ConcurrentHashMap<>();
+
+    /**
+     * Horario semanal compilado. rangos[dia] = {inicio0, fin0, inicio1, fin1, ...}
+     */
+    public record HorarioSemanal(int[][] rangos) {
+
+        public boolean atiende(DayOfWeek dia, int segundoDelDia) {
+            int[] r = rangos[dia.ordinal()];
+            for (int i = 0; i < r.length; i += 2) {
+                if (segundoDelDia < r[i]) {
+                    return false;
+                }
+                if (segundoDelDia <= r[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int[] rangosDelDia(DayOfWeek dia) {
+            return rangos[dia.ordinal()];
+        }
+
+        // Capacidad del día para el porcentaje de ocupación
+        public int minutosDelDia(DayOfWeek dia) {
+            int[] r = rangos[dia.ordinal()];
+            int segundos = 0;
+            for (int i = 0; i < r.length; i += 2) {
+                segundos += r[i + 1] - r[i];
+            }
+            return segundos / 60;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        try {
+            cargarTodos();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron cargar los horarios al iniciar; se cargarán por médico en el primer uso: {}", e.getMessage());
+        }
+    }
+
+    public void cargarTodos() {
+        String sql = """
+            /* HorarioMedicoCache.cargarTodos */
+            SELECT medico_id, dia_semana, hora_inicio, hora_fin
+            FROM horarios_medicos
+            WHERE activo = 1
+            """;
+
+        Map<Long, List<int[]>[]> filas = new HashMap<>();
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                agregarFila(filas.computeIfAbsent(rs.getLong("medico_id"), id -> nuevoAcumulador()),
+                        rs.getString("dia_semana"), rs.getTime("hora_inicio").toLocalTime(), rs.getTime("hora_fin").toLocalTime());
+            });
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudieron cargar los horarios de los médicos.", e);
+        }
+
+        horarios.clear();
+        filas.forEach((medicoId, acumulador) -> horarios.put(medicoId, compilar(acumulador)));
+        log.info("Horarios compilados para {} médicos", horarios.size());
+    }
+
+    /**
+     * Verifica si el médico atiende en la fecha y hora indicadas
+     * (hora de inicio dentro de algún rango activo de ese día, extremos incluidos).
+     */
+    public boolean atiende(long medicoId, LocalDateTime fechaHora) {
+        return obtener(medicoId).atiende(fechaHora.getDayOfWeek(), fechaHora.toLocalTime().toSecondOfDay());
+    }
+
+    public HorarioSemanal obtener(long medicoId) {
+        HorarioSemanal horario = horarios.get(medicoId);
+        if (horario == null) {
+            horario = horarios.computeIfAbsent(medicoId, this::cargarMedico);
+        }
+        return horario;
+    }
+
+    public void invalidar(long medicoId) {
+        horarios.remove(medicoId);
+    }
+
+    public void invalidarTodo() {
+        horarios.clear();
+    }
+
+    public int totalMedicos() {
+        return horarios.size();
+    }
+
+    private HorarioSemanal cargarMedico(long medicoId) {
+        String sql = """
+            /* HorarioMedicoCache.cargarMedico */
+            SELECT dia_semana, hora_inicio, hora_fin
+            FROM horarios_medicos
+            WHERE medico_id = ? AND activo = 1
+            """;
+
+        List<int[]>[] acumulador = nuevoAcumulador();
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                agregarFila(acumulador, rs.getString("dia_semana"),
+                        rs.getTime("hora_inicio").toLocalTime(), rs.getTime("hora_fin").toLocalTime());
+            }, medicoId);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo obtener el horario del médico.", e);
+        }
+        return compilar(acumulador);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<int[]>[] nuevoAcumulador() {
+        List<int[]>[] acumulador = new List[7];
+        for (int i = 0; i < 7; i++) {
+            acumulador[i] = new ArrayList<>();
+        }
+        return acumulador;
+    }
+
+    private static void agregarFila(List<int[]>[] acumulador, String diaSemana, LocalTime inicio, LocalTime fin) {
+        DayOfWeek dia = diaDesdeNombre(diaSemana);
+        if (dia == null) {
+            log.warn("Día de semana no reconocido en horarios_medicos: {}", diaSemana);
+            return;
+        }
+        acumulador[dia.ordinal()].add(new int[]{inicio.toSecondOfDay(), fin.toSecondOfDay()});
+    }
+
+    private static HorarioSemanal compilar(List<int[]>[] acumulador) {
+        int[][] rangos = new int[7][];
+        for (int d = 0; d < 7; d++) {
+            List<int[]> lista = acumulador[d];
+            if (lista.isEmpty()) {
+                rangos[d] = SIN_RANGOS;
+                continue;
+            }
+            lista.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+            // Fusionar rangos que se solapan para que la búsqueda pueda cortar temprano
+            int[] compactado = new int[lista.size() * 2];
+            int n = 0;
+            for (int[] rango : lista) {
+                if (n > 0 && rango[0] <= compactado[n - 1]) {
+                    compactado[n - 1] = Math.max(compactado[n - 1], rango[1]);
+                } else {
+                    compactado[n++] = rango[0];
+                    compactado[n++] = rango[1];
+                }
+            }
+            rangos[d] = Arrays.copyOf(compactado, n);
+        }
+        return new HorarioSemanal(rangos);
+    }
+
+    // Acepta los nombres con o sin tilde (MIERCOLES / MIÉRCOLES, SABADO / SÁBADO)
+    static DayOfWeek diaDesdeNombre(String diaSemana) {
+        if (diaSemana == null) {
+            return null;
+        }
+        String normalizado = Normalizer.normalize(diaSemana.trim().toUpperCase(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return switch (normalizado) {
+            case "LUNES" -> DayOfWeek.MONDAY;
+            case "MARTES" -> DayOfWeek.TUESDAY;
+            case "MIERCOLES" -> DayOfWeek.WEDNESDAY;
+            case "JUEVES" -> DayOfWeek.THURSDAY;
+            case "VIERNES" -> DayOfWeek.FRIDAY;
+            case "SABADO" -> DayOfWeek.SATURDAY;
+            case "DOMINGO" -> DayOfWeek.SUNDAY;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasCacheDto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Soporte del encabezado Idempotency-Key en los POST de citas y recordatorios.
+ *
+ * La primera solicitud con una clave ejecuta la operación y, si responde 2xx,
+ * guarda el estado y el cuerpo JSON. Las repeticiones con la misma clave y el
+ * mismo cuerpo reciben la respuesta guardada sin pasar por los servicios; con
+ * otro cuerpo se responde 422, y mientras la primera sigue en proceso, 409.
+ * Las respuestas de error no se guardan: la operación no tuvo efecto y se
+ * puede reintentar con la misma clave.
+ *
+ * Las respuestas se guardan en una caché acotada con TTL y, si está habilitado,
+ * también en la tabla idempotencia_solicitudes para compartirlas entre nodos.
+ */
+@Service
+public class IdempotenciaService {
+
+    public static final String ENCABEZADO = "Idempotency-Key";
+    public static final String ENCABEZADO_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 100;
+
+    public record RespuestaGuardada(String huella, int estadoHttp, String cuerpo) {
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private AlmacenIdempotenciaBd almacenBd;
+
+    @Value("${clinica.idempotencia.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${clinica.idempotencia.ttl-segundos:86400}")
+    private long ttlSegundos;
+
+    private CacheReferencia<String, RespuestaGuardada> respuestas;
+    private final Map<String, String> enProceso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void iniciar() {
+        respuestas = new CacheReferencia<>("idempotencia", maxEntradas, ttlSegundos, 0);
+    }
+
+    /**
+     * Ejecuta la acción una sola vez por (operación, clave). Sin clave, la ejecuta siempre.
+     */
+    public ResponseEntity<?> ejecutar(String clave, String operacion, Object solicitud,
+                                      Supplier<ResponseEntity<?>> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+
+        // Validaciones
+        if (clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("ERROR: La " + ENCABEZADO + " no puede superar " + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+        String claveCompleta = operacion + "|" + clave;
+        String huella = huella(operacion, solicitud);
+
+        // Respuesta ya guardada
+        RespuestaGuardada guardada = buscar(claveCompleta);
+        if (guardada != null) {
+            return repetir(guardada, huella);
+        }
+
+        // Reservar la clave en este nodo y, si aplica, en la base
+        if (enProceso.putIfAbsent(claveCompleta, huella) != null) {
+            return enProcesoRespuesta();
+        }
+        try {
+            // Otra solicitud pudo guardar su respuesta y soltar la clave entre buscar y reservar
+            guardada = buscar(claveCompleta);
+            if (guardada != null) {
+                return repetir(guardada, huella);
+            }
+            if (almacenBd != null && !almacenBd.reservar(claveCompleta, huella, ttlSegundos)) {
+                guardada = almacenBd.buscar(claveCompleta);
+                return guardada != null ? repetir(guardada, huella) : enProcesoRespuesta();
+            }
+
+            // Proceso
+            ResponseEntity<?> respuesta = accion.get();
+            if (respuesta.getStatusCode().is2xxSuccessful()) {
+                guardada = new RespuestaGuardada(huella, respuesta.getStatusCode().value(), aJson(respuesta.getBody()));
+                respuestas.poner(claveCompleta, guardada);
+                if (almacenBd != null) {
+                    almacenBd.completar(claveCompleta, guardada);
+                }
+            } else if (almacenBd != null) {
+                almacenBd.liberar(claveCompleta);
+            }
+            return respuesta;
+
+        } catch (RuntimeException e) {
+            if (almacenBd != null) {
+                almacenBd.liberar(claveCompleta);
+            }
+            throw e;
+        } finally {
+            enProceso.remove(claveCompleta);
+        }
+    }
+
+    public EstadisticasCacheDto estadisticas() {
+        return respuestas.estadisticas();
+    }
+
+    private RespuestaGuardada buscar(String claveCompleta) {
+        RespuestaGuardada guardada = respuestas.buscar(claveCompleta);
+        if (guardada == null && almacenBd != null) {
+            guardada = almacenBd.buscar(claveCompleta);
+            if (guardada != null) {
+                respuestas.poner(claveCompleta, guardada);
+            }
+        }
+        return guardada;
+    }
+
+    private ResponseEntity<?> repetir(RespuestaGuardada guardada, String huella) {
+        if (!guardada.huella().equals(huella)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("ERROR: La " + ENCABEZADO + " ya se usó con una solicitud distinta.");
+        }
+        return ResponseEntity.status(guardada.estadoHttp())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(ENCABEZADO_REPETIDA, "true")
+                .body(guardada.cuerpo());
+    }
+
+    private static ResponseEntity<?> enProcesoRespuesta() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("ERROR: Ya hay una solicitud en proceso con la misma " + ENCABEZADO + ".");
+    }
+
+    private String huella(String operacion, Object solicitud) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(operacion.getBytes(StandardCharsets.UTF_8));
+            sha.update(objectMapper.writeValueAsBytes(solicitud));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+
+    private String aJson(Object cuerpo) {
+        try {
+            return objectMapper.writeValueAsString(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo guardar la respuesta idempotente", e);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Índice en memoria de la ocupación de cada médico.
+ *
+ * Por cada médico se guarda un conjunto ordenado de intervalos [inicio, fin)
+ * de sus citas activas (PROGRAMADA, CONFIRMADA) que terminan desde el día actual.
+ * La consulta de disponibilidad tiene en cuenta la duración de las citas y se
+ * resuelve sin ir a la base de datos. El índice se carga al iniciar la aplicación
+ * (o en el primer uso si la base no estaba disponible) y se actualiza cuando se
+ * programa, cancela o reprograma una cita, siempre después del commit de la
+ * transacción.
+ *
+ * Los cambios de otros nodos llegan por citas_cambios: cada intervalo-ms se leen
+ * las filas nuevas y, si el estado actual de la cita no coincide con el índice, se
+ * recargan los médicos afectados. Cada depuracion-ms se quitan las citas que
+ * terminaron antes de hoy.
+ *
+ * Todo cambio pasa por aplicar(): mientras cargar() lee la base, los cambios se
+ * anotan y se repiten sobre el índice nuevo antes de reemplazar al anterior.
+ */
+@Component
+public class OcupacionMedicoIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(OcupacionMedicoIndex.class);
+    private static final int LOTE_CAMBIOS = 1000;
+
+    private static final Comparator<Reserva> POR_INICIO =
+            Comparator.comparing(Reserva::inicio).thenComparingLong(Reserva::citaId);
+
+    // Estado actual de las citas tocadas por cambios posteriores a la versión aplicada
+    private static final String SQL_CAMBIOS = """
+            /* OcupacionMedicoIndex.cambios */
+            SELECT TOP (?) cc.version, cc.cita_id, cc.medico_anterior_id,
+                   c.medico_id, c.fecha_hora, c.duracion_minutos, c.estado
+            FROM citas_cambios cc
+            LEFT JOIN citas c ON c.id = cc.cita_id
+            WHERE cc.version > ? AND cc.version <= ?
+            ORDER BY cc.version
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private Clock reloj;
+
+    @Autowired
+    private BloqueoMedicos bloqueoMedicos;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    private record Indice(Map<Long, AgendaMedico> agendas, Map<Long, Reserva> reservasPorCita) {
+    }
+
+    private volatile Indice indice = new Indice(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    private volatile boolean cargado = false;
+
+    // Los cambios toman la lectura; el reemplazo del índice, la escritura
+    private final ReentrantReadWriteLock reemplazo = new ReentrantReadWriteLock();
+    private volatile Queue<Consumer<Indice>> durante = null;
+    private final AtomicLong ultimaVersion = new AtomicLong(-1);
+
+    public record Reserva(long citaId, long medicoId, LocalDateTime inicio, LocalDateTime fin) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        try {
+            cargar();
+        } catch (RuntimeException e) {
+            log.warn("No se pudo cargar el índice de ocupación al iniciar; se cargará en el primer uso: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void cargar() {
+        String sql = """
+            /* OcupacionMedicoIndex.cargar */
+            SELECT id, medico_id, fecha_hora, duracion_minutos
+            FROM citas
+            WHERE estado IN ('PROGRAMADA', 'CONFIRMADA')
+            AND fecha_hora >= DATEADD(day, -1, CAST(GETDATE() AS DATE))
+            """;
+
+        // Desde aquí los cambios de este nodo se anotan para el índice nuevo
+        Queue<Consumer<Indice>> anotados = new ConcurrentLinkedQueue<>();
+        cambiarDurante(anotados);
+
+        Indice nuevo = new Indice(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        try {
+            // Lo que otros nodos confirmen después de esta versión lo trae seguirCambios()
+            long version = registroCambios.limiteEstable();
+            LocalDateTime limite = inicioDeHoy();
+            jdbcTemplate.query(sql, rs -> {
+                LocalDateTime inicio = rs.getTimestamp("fecha_hora").toLocalDateTime();
+                agregar(nuevo, rs.getLong("id"), rs.getLong("medico_id"), inicio, rs.getInt("duracion_minutos"), limite);
+            });
+
+            reemplazo.writeLock().lock();
+            try {
+                for (Consumer<Indice> cambio : anotados) {
+                    cambio.accept(nuevo);
+                }
+                indice = nuevo;
+                durante = null;
+                ultimaVersion.set(version);
+                cargado = true;
+            } finally {
+                reemplazo.writeLock().unlock();
+            }
+            log.info("Índice de ocupación cargado: {} citas activas de {} médicos",
+                    nuevo.reservasPorCita().size(), nuevo.agendas().size());
+        } catch (DataAccessException e) {
+            cambiarDurante(null);
+            if (!cargado) {
+                throw new RuntimeException("ERROR: No se pudo cargar la ocupación de los médicos.", e);
+            }
+            // Se sigue con el índice anterior, que recibió todos los cambios
+            log.warn("No se pudo recargar el índice de ocupación; se mantiene el anterior: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a leer de la base las citas activas de un médico. Se usa cuando otro
+     * nodo pudo haber escrito en su agenda (un choque con el índice único de citas o
+     * un cambio leído de citas_cambios).
+     *
+     * La lectura y el cambio de agenda se hacen con las franjas de BloqueoMedicos de
+     * los días afectados tomadas: así ninguna reserva de este nodo confirma entre la
+     * lectura y el cambio (y se pierde al reemplazar la agenda). La agenda nueva se arma
+     * aparte y reemplaza a la anterior de una vez; las consultas nunca ven al médico
+     * sin citas. Si la lectura trae días cuyas franjas no se tenían, se repite con ellas.
+     */
+    public void recargarMedico(long medicoId) {
+        if (!cargado) {
+            return;
+        }
+        Set<LocalDate> dias = new HashSet<>();
+        diasDe(indice.agendas().get(medicoId), dias);
+        diasDe(leerMedico(medicoId), dias);
+        while (true) {
+            try (BloqueoMedicos.Bloqueo bloqueo = bloqueoMedicos.bloquear(medicoId, dias)) {
+                List<Reserva> leidas = leerMedico(medicoId);
+                Set<LocalDate> necesarios = new HashSet<>();
+                diasDe(indice.agendas().get(medicoId), necesarios);
+                diasDe(leidas, necesarios);
+                if (!dias.containsAll(necesarios)) {
+                    dias.addAll(necesarios);
+                    continue;
+                }
+                aplicar(destino -> reemplazarAgenda(destino, medicoId, leidas));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Aplica los cambios de citas_cambios que el índice no refleja (en la práctica, los
+     * de otros nodos): recarga a los médicos cuyas citas no coinciden con la base.
+     */
+    @Scheduled(fixedDelayString = "${clinica.ocupacion.intervalo-ms:1000}")
+    public void seguirCambios() {
+        if (!cargado) {
+            return;
+        }
+        try {
+            long estable = registroCambios.limiteEstable();
+            long desde = ultimaVersion.get();
+            while (desde < estable) {
+                Set<Long> medicos = new LinkedHashSet<>();
+                LocalDateTime limite = inicioDeHoy();
+                long[] ultima = {desde};
+                int leidos = jdbcTemplate.query(SQL_CAMBIOS, rs -> {
+                    int filas = 0;
+                    while (rs.next()) {
+                        filas++;
+                        ultima[0] = rs.getLong("version");
+                        long citaId = rs.getLong("cita_id");
+                        Reserva actual = indice.reservasPorCita().get(citaId);
+                        Reserva esperada = null;
+                        String estado = rs.getString("estado");
+                        if ("PROGRAMADA".equals(estado) || "CONFIRMADA".equals(estado)) {
+                            LocalDateTime inicio = rs.getTimestamp("fecha_hora").toLocalDateTime();
+                            LocalDateTime fin = inicio.plusMinutes(Math.max(rs.getInt("duracion_minutos"), 1));
+                            if (fin.isAfter(limite)) {
+                                esperada = new Reserva(citaId, rs.getLong("medico_id"), inicio, fin);
+                            }
+                        }
+                        if (!Objects.equals(actual, esperada)) {
+                            if (esperada != null) {
+                                medicos.add(esperada.medicoId());
+                            }
+                            if (actual != null) {
+                                medicos.add(actual.medicoId());
+                            }
+                            long anterior = rs.getLong("medico_anterior_id");
+                            if (!rs.wasNull()) {
+                                medicos.add(anterior);
+                            }
+                        }
+                    }
+                    return filas;
+                }, LOTE_CAMBIOS, desde, estable);
+                for (long medicoId : medicos) {
+                    recargarMedico(medicoId);
+                }
+                long hasta = leidos < LOTE_CAMBIOS ? estable : ultima[0];
+                // Si cargar() fijó otra versión en medio, se sigue desde la suya
+                desde = ultimaVersion.compareAndSet(desde, hasta) ? hasta : ultimaVersion.get();
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron aplicar los cambios de citas al índice de ocupación: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Quita las citas que terminaron antes de hoy y las agendas que quedan vacías.
+     */
+    @Scheduled(fixedDelayString = "${clinica.ocupacion.depuracion-ms:3600000}")
+    public void depurar() {
+        if (!cargado) {
+            return;
+        }
+        LocalDateTime limite = inicioDeHoy();
+        aplicar(destino -> {
+            for (Long medicoId : destino.agendas().keySet()) {
+                destino.agendas().computeIfPresent(medicoId, (id, agenda) -> {
+                    for (Reserva r : agenda.quitarTerminadasAntesDe(limite)) {
+                        destino.reservasPorCita().remove(r.citaId(), r);
+                    }
+                    return agenda.vacia() ? null : agenda;
+                });
+            }
+        });
+    }
+
+    /**
+     * Indica si el médico está libre en el intervalo [inicio, inicio + duración).
+     * La cita indicada en citaIgnorada no cuenta como ocupación (útil al reprogramar).
+     */
+    public boolean estaDisponible(long medicoId, LocalDateTime inicio, int duracionMinutos, long citaIgnorada) {
+        asegurarCargado();
+        AgendaMedico agenda = indice.agendas().get(medicoId);
+        if (agenda == null) {
+            return true;
+        }
+        return agenda.estaLibre(inicio, inicio.plusMinutes(Math.max(duracionMinutos, 1)), citaIgnorada);
+    }
+
+    public boolean estaDisponible(long medicoId, LocalDateTime inicio, int duracionMinutos) {
+        return estaDisponible(medicoId, inicio, duracionMinutos, 0);
+    }
+
+    /**
+     * Reservas del médico que tocan el intervalo [desde, hasta), ordenadas por inicio.
+     */
+    public List<Reserva> reservasEntre(long medicoId, LocalDateTime desde, LocalDateTime hasta) {
+        asegurarCargado();
+        AgendaMedico agenda = indice.agendas().get(medicoId);
+        return agenda == null ? List.of() : agenda.reservasEntre(desde, hasta);
+    }
+
+    public Reserva obtenerReserva(long citaId) {
+        asegurarCargado();
+        return indice.reservasPorCita().get(citaId);
+    }
+
+    public void registrarCita(long citaId, long medicoId, LocalDateTime inicio, int duracionMinutos) {
+        despuesDelCommit(destino -> agregar(destino, citaId, medicoId, inicio, duracionMinutos, inicioDeHoy()));
+    }
+
+    public void liberarCita(long citaId) {
+        despuesDelCommit(destino -> quitar(destino, citaId));
+    }
+
+    public void moverCita(long citaId, long medicoId, LocalDateTime inicio, int duracionMinutos) {
+        despuesDelCommit(destino -> {
+            quitar(destino, citaId);
+            agregar(destino, citaId, medicoId, inicio, duracionMinutos, inicioDeHoy());
+        });
+    }
+
+    public int totalReservas() {
+        return indice.reservasPorCita().size();
+    }
+
+    private void asegurarCargado() {
+        if (!cargado) {
+            synchronized (this) {
+                if (!cargado) {
+                    cargar();
+                }
+            }
+        }
+    }
+
+    private void despuesDelCommit(Consumer<Indice> cambio) {
+        if (!cargado) {
+            // Se reconstruirá completo desde la base en el primer uso
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(cambio);
+                }
+            });
+        } else {
+            aplicar(cambio);
+        }
+    }
+
+    // Aplica el cambio al índice vigente y, si hay una carga en curso, lo anota para el nuevo
+    private void aplicar(Consumer<Indice> cambio) {
+        reemplazo.readLock().lock();
+        try {
+            cambio.accept(indice);
+            Queue<Consumer<Indice>> anotados = durante;
+            if (anotados != null) {
+                anotados.add(cambio);
+            }
+        } finally {
+            reemplazo.readLock().unlock();
+        }
+    }
+
+    private void cambiarDurante(Queue<Consumer<Indice>> anotados) {
+        reemplazo.writeLock().lock();
+        try {
+            durante = anotados;
+        } finally {
+            reemplazo.writeLock().unlock();
+        }
+    }
+
+    private LocalDateTime inicioDeHoy() {
+        return LocalDate.now(reloj).atStartOfDay();
+    }
+
+    private static void agregar(Indice destino, long citaId, long medicoId, LocalDateTime inicio,
+                                int duracionMinutos, LocalDateTime limite) {
+        Reserva reserva = new Reserva(citaId, medicoId, inicio, inicio.plusMinutes(Math.max(duracionMinutos, 1)));
+        if (!reserva.fin().isAfter(limite)) {
+            return;
+        }
+        // Dentro de compute: depurar() no puede quitar la agenda entre la búsqueda y el agregado
+        destino.agendas().compute(medicoId, (id, agenda) -> {
+            AgendaMedico resultado = agenda == null ? new AgendaMedico() : agenda;
+            resultado.agregar(reserva);
+            return resultado;
+        });
+        destino.reservasPorCita().put(citaId, reserva);
+    }
+
+    private static void quitar(Indice destino, long citaId) {
+        Reserva reserva = destino.reservasPorCita().remove(citaId);
+        if (reserva != null) {
+            AgendaMedico agenda = destino.agendas().get(reserva.medicoId());
+            if (agenda != null) {
+                agenda.quitar(reserva);
+            }
+        }
+    }
+
+    private static void reemplazarAgenda(Indice destino, long medicoId, List<Reserva> leidas) {
+        AgendaMedico nueva = new AgendaMedico();
+        Set<Long> citas = new HashSet<>();
+        for (Reserva r : leidas) {
+            nueva.agregar(r);
+            citas.add(r.citaId());
+        }
+        AgendaMedico anterior = destino.agendas().put(medicoId, nueva);
+        for (Reserva r : leidas) {
+            destino.reservasPorCita().put(r.citaId(), r);
+        }
+        if (anterior != null) {
+            for (Reserva r : anterior.todas()) {
+                if (!citas.contains(r.citaId())) {
+                    destino.reservasPorCita().remove(r.citaId(), r);
+                }
+            }
+        }
+    }
+
+    private List<Reserva> leerMedico(long medicoId) {
+        String sql = """
+            /* OcupacionMedicoIndex.leerMedico */
+            SELECT id, fecha_hora, duracion_minutos
+            FROM citas
+            WHERE medico_id = ?
+            AND estado IN ('PROGRAMADA', 'CONFIRMADA')
+            AND fecha_hora >= DATEADD(day, -1, CAST(GETDATE() AS DATE))
+            """;
+
+        LocalDateTime limite = inicioDeHoy();
+        List<Reserva> leidas = new ArrayList<>();
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                LocalDateTime inicio = rs.getTimestamp("fecha_hora").toLocalDateTime();
+                Reserva reserva = new Reserva(rs.getLong("id"), medicoId, inicio,
+                        inicio.plusMinutes(Math.max(rs.getInt("duracion_minutos"), 1)));
+                if (reserva.fin().isAfter(limite)) {
+                    leidas.add(reserva);
+                }
+            }, medicoId);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudo recargar la ocupación del médico.", e);
+        }
+        return leidas;
+    }
+
+    private static void diasDe(AgendaMedico agenda, Set<LocalDate> dias) {
+        if (agenda != null) {
+            diasDe(agenda.todas(), dias);
+        }
+    }
+
+    private static void diasDe(List<Reserva> reservas, Set<LocalDate> dias) {
+        for (Reserva r : reservas) {
+            dias.add(r.inicio().toLocalDate());
+        }
+    }
+
+    private static class AgendaMedico {
+
+        private final NavigableSet<Reserva> reservas = new TreeSet<>(POR_INICIO);
+        private long duracionMaximaMinutos = 0;
+
+        synchronized void agregar(Reserva reserva) {
+            reservas.add(reserva);
+            long minutos = Duration.between(reserva.inicio(), reserva.fin()).toMinutes();
+            duracionMaximaMinutos = Math.max(duracionMaximaMinutos, minutos);
+        }
+
+        synchronized void quitar(Reserva reserva) {
+            reservas.remove(reserva);
+        }
+
+        synchronized List<Reserva> quitarTerminadasAntesDe(LocalDateTime limite) {
+            // Solo pueden haber terminado las que empiezan antes del límite
+            List<Reserva> quitadas = new ArrayList<>();
+            for (Reserva r : reservas.headSet(new Reserva(Long.MIN_VALUE, 0, limite, null), false)) {
+                if (!r.fin().isAfter(limite)) {
+                    quitadas.add(r);
+                }
+            }
+            quitadas.forEach(reservas::remove);
+            return quitadas;
+        }
+
+        synchronized boolean vacia() {
+            return reservas.isEmpty();
+        }
+
+        synchronized List<Reserva> todas() {
+            return new ArrayList<>(reservas);
+        }
+
+        synchronized List<Reserva> reservasEntre(LocalDateTime desde, LocalDateTime hasta) {
+            List<Reserva> resultado = new ArrayList<>();
+            Reserva inicio = new Reserva(Long.MIN_VALUE, 0, desde.minusMinutes(duracionMaximaMinutos), null);
+            Reserva fin = new Reserva(Long.MIN_VALUE, 0, hasta, null);
+            for (Reserva r : reservas.subSet(inicio, true, fin, false)) {
+                if (r.fin().isAfter(desde)) {
+                    resultado.add(r);
+                }
+            }
+            return resultado;
+        }
+
+        synchronized boolean estaLibre(LocalDateTime inicio, LocalDateTime fin, long citaIgnorada) {
+            // Solo pueden solaparse las reservas que empiezan antes del fin pedido
+            // y no antes de (inicio - duración máxima registrada)
+            Reserva desde = new Reserva(Long.MIN_VALUE, 0, inicio.minusMinutes(duracionMaximaMinutos), null);
+            Reserva hasta = new Reserva(Long.MIN_VALUE, 0, fin, null);
+            for (Reserva r : reservas.subSet(desde, true, hasta, false)) {
+                if (r.citaId() != citaIgnorada && r.fin().isAfter(inicio)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Escribe eventos en la tabla outbox (sql/05_outbox.sql) dentro de la transacción del
+ * cambio que los origina; RelayOutbox los entrega después a los consumidores. Así los
+ * efectos secundarios (recordatorios, notificaciones, etc.) no alargan la transacción
+ * de la cita y se reintentan si fallan.
+ */
+@Component
+public class Outbox {
+
+    public static final String CITA_PROGRAMADA = "CITA_PROGRAMADA";
+    public static final String CITA_CANCELADA = "CITA_CANCELADA";
+    public static final String CITA_REPROGRAMADA = "CITA_REPROGRAMADA";
+    public static final String CITA_CONFIRMADA = "CITA_CONFIRMADA";
+    public static final String CITA_COMPLETADA = "CITA_COMPLETADA";
+    public static final String CITA_NO_ASISTIO = "CITA_NO_ASISTIO";
+
+    static final String SQL_PUBLICAR = """
+            /* Outbox.publicar */
+            INSERT INTO outbox(tipo, agregado_id, carga, estado, intentos, proximo_intento, fecha_registro)
+            VALUES(?, ?, ?, 'PENDIENTE', 0, GETDATE(), GETDATE())
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Runnable> oyentes = new CopyOnWriteArrayList<>();
+
+    public void publicar(String tipo, long agregadoId, Map<String, String> carga) {
+        avisarAlConfirmar();
+        jdbcTemplate.update(SQL_PUBLICAR, tipo, agregadoId, serializar(carga));
+    }
+
+    /**
+     * Un evento por agregado, en el orden del mapa.
+     */
+    public void publicarLote(String tipo, Map<Long, Map<String, String>> cargasPorAgregado) {
+        if (cargasPorAgregado.isEmpty()) {
+            return;
+        }
+        avisarAlConfirmar();
+        List<Object[]> filas = new ArrayList<>(cargasPorAgregado.size());
+        cargasPorAgregado.forEach((agregadoId, carga) -> filas.add(new Object[]{tipo, agregadoId, serializar(carga)}));
+        jdbcTemplate.batchUpdate(SQL_PUBLICAR, filas);
+    }
+
+    /**
+     * Registra un aviso que se ejecuta cuando confirma una transacción que publicó eventos.
+     * Debe ser breve y no lanzar excepciones.
+     */
+    public void alConfirmar(Runnable oyente) {
+        oyentes.add(oyente);
+    }
+
+    // Para quien envía SQL_PUBLICAR dentro de su propio lote
+    void avisarAlConfirmar() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El outbox requiere una transacción activa.");
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(Outbox.this);
+                if (status == STATUS_COMMITTED) {
+                    avisarConfirmado();
+                }
+            }
+        });
+    }
+
+    // Para quien ya confirmó SQL_PUBLICAR en su propio lote, sin transacción de Spring
+    void avisarConfirmado() {
+        for (Runnable oyente : oyentes) {
+            oyente.run();
+        }
+    }
+
+    String serializar(Map<String, String> carga) {
+        if (carga == null || carga.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(carga);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("ERROR: No se pudo serializar el evento del outbox.", e);
+        }
+    }
+}
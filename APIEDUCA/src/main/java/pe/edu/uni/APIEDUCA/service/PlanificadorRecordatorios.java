@@ -0,0 +1,218 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiene en memoria, en una rueda de temporizadores, el vencimiento de los
+ * recordatorios pendientes de las próximas horizonte-horas y los envía cuando
+ * vencen, sin consultar la tabla completa cada vez.
+ *
+ * Al iniciar carga los pendientes hasta el horizonte (incluidos los atrasados) y cada
+ * recarga-ms vuelve a leer esa ventana por el índice (estado, fecha_envio_programada)
+ * para sumar los que entran en ella y los que otro nodo programó. Cuando el outbox
+ * crea, reprograma o cancela los recordatorios de una cita, la rueda se actualiza al
+ * confirmar esa transacción; los reintentos y envíos diferidos se reprograman al
+ * guardar su resultado.
+ */
+@Service
+public class PlanificadorRecordatorios {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanificadorRecordatorios.class);
+    private static final int RANURAS = 64;
+
+    private record Programado(long id, String estado, int intentos, LocalDateTime envio) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DespachoRecordatoriosService despacho;
+
+    @Autowired
+    private RecordatorioService recordatorioService;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Autowired
+    private Clock relojClinica;
+
+    @Value("${clinica.recordatorios.rueda.activa:true}")
+    private boolean activa;
+
+    @Value("${clinica.recordatorios.rueda.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${clinica.recordatorios.rueda.horizonte-horas:48}")
+    private int horizonteHoras;
+
+    private RuedaTemporizadores rueda;
+    private ScheduledExecutorService reloj;
+    private Counter disparados;
+
+    @PostConstruct
+    void iniciar() {
+        rueda = new RuedaTemporizadores(tickMs, RANURAS, relojClinica.millis());
+        disparados = registro.counter("clinica.recordatorios.rueda.disparados");
+        Gauge.builder("clinica.recordatorios.rueda.programados", this, p -> p.programados())
+                .description("Recordatorios pendientes en la rueda de temporizadores")
+                .register(registro);
+        if (!activa) {
+            return;
+        }
+        // Los reintentos y diferidos del despacho vuelven a la rueda con su nueva fecha
+        recordatorioService.alReprogramar((id, envio) -> {
+            synchronized (rueda) {
+                rueda.programar(id, envio.atZone(relojClinica.getZone()).toInstant().toEpochMilli());
+            }
+        });
+        try {
+            recargar();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron cargar los recordatorios al iniciar; se cargarán en la próxima recarga: {}", e.getMessage());
+        }
+        reloj = Executors.newSingleThreadScheduledExecutor(hilos("recordatorios-rueda-"));
+        reloj.scheduleWithFixedDelay(this::avanzar, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        if (reloj != null) {
+            reloj.shutdownNow();
+        }
+    }
+
+    /**
+     * Lee los pendientes que vencen antes del horizonte y los programa; los que ya
+     * estaban quedan igual.
+     */
+    @Scheduled(fixedDelayString = "${clinica.recordatorios.rueda.recarga-ms:600000}",
+            initialDelayString = "${clinica.recordatorios.rueda.recarga-ms:600000}")
+    public void recargar() {
+        if (!activa) {
+            return;
+        }
+        String sql = """
+            /* PlanificadorRecordatorios.recargar */
+            SELECT id, estado, intentos, fecha_envio_programada
+            FROM recordatorios
+            WHERE estado = 'PENDIENTE' AND fecha_envio_programada < ?
+            """;
+        List<Programado> pendientes;
+        try {
+            pendientes = jdbcTemplate.query(sql, (rs, rowNum) -> new Programado(rs.getLong("id"), rs.getString("estado"),
+                    rs.getInt("intentos"), rs.getTimestamp("fecha_envio_programada").toLocalDateTime()
+            ), Timestamp.valueOf(LocalDateTime.now(relojClinica).plusHours(horizonteHoras)));
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudieron cargar los recordatorios pendientes.", e);
+        }
+        synchronized (rueda) {
+            for (Programado pendiente : pendientes) {
+                aplicar(pendiente);
+            }
+        }
+        log.debug("Recordatorios en la rueda: {}", programados());
+    }
+
+    /**
+     * Vuelve a leer los recordatorios de la cita y los programa o los quita de la rueda.
+     * Dentro de una transacción se hace al confirmarla.
+     */
+    public void sincronizarCita(long citaId) {
+        if (!activa) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sincronizarCita(citaId);
+                }
+            });
+            return;
+        }
+        String sql = """
+            /* PlanificadorRecordatorios.sincronizarCita */
+            SELECT id, estado, intentos, fecha_envio_programada
+            FROM recordatorios
+            WHERE cita_id = ?
+            """;
+        try {
+            List<Programado> recordatorios = jdbcTemplate.query(sql, (rs, rowNum) -> new Programado(rs.getLong("id"),
+                    rs.getString("estado"), rs.getInt("intentos"), rs.getTimestamp("fecha_envio_programada").toLocalDateTime()
+            ), citaId);
+            synchronized (rueda) {
+                for (Programado recordatorio : recordatorios) {
+                    aplicar(recordatorio);
+                }
+            }
+        } catch (DataAccessException e) {
+            // La próxima recarga lo corrige
+            log.warn("No se pudo actualizar la rueda para la cita {}: {}", citaId, e.getMessage());
+        }
+    }
+
+    public int programados() {
+        synchronized (rueda) {
+            return rueda.tamanio();
+        }
+    }
+
+    private void aplicar(Programado recordatorio) {
+        if ("PENDIENTE".equals(recordatorio.estado()) && recordatorio.intentos() < recordatorioService.maxIntentos()) {
+            rueda.programar(recordatorio.id(), recordatorio.envio().atZone(relojClinica.getZone()).toInstant().toEpochMilli());
+        } else {
+            rueda.cancelar(recordatorio.id());
+        }
+    }
+
+    private void avanzar() {
+        try {
+            List<Long> vencidos;
+            synchronized (rueda) {
+                vencidos = rueda.avanzar(relojClinica.millis());
+            }
+            if (vencidos.isEmpty()) {
+                return;
+            }
+            disparados.increment(vencidos.size());
+            despacho.despacharRecordatorios(vencidos);
+        } catch (RuntimeException e) {
+            log.warn("Fallo al enviar los recordatorios vencidos: {}", e.getMessage());
+        }
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
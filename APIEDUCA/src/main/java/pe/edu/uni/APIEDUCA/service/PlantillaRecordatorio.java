@@ -0,0 +1,188 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plantilla de recordatorio ya compilada: el texto se separa una sola vez en
+ * segmentos literales y variables ({paciente}, {fecha}, {medico}, {clinica}).
+ * Para escribir una llave literal se usa {{ o }}.
+ *
+ * El render reutiliza un StringBuilder por hilo, así que lo único que se asigna
+ * por mensaje es el String final.
+ */
+public final class PlantillaRecordatorio {
+
+    public enum Variable {
+        PACIENTE("paciente", true),
+        FECHA("fecha", false),
+        MEDICO("medico", true),
+        CLINICA("clinica", false);
+
+        private final String nombre;
+        private final boolean recortable; // Los nombres se pueden acortar para que el SMS entre en el límite
+
+        Variable(String nombre, boolean recortable) {
+            this.nombre = nombre;
+            this.recortable = recortable;
+        }
+    }
+
+    private static final Variable[] VARIABLES = Variable.values();
+    private static final int LARGO_MINIMO_NOMBRE = 3;
+    private static final int CAPACIDAD_MAXIMA_RETENIDA = 4096;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    // Segmento i: literales[i] si variables[i] es null, o la variable indicada
+    private final String[] literales;
+    private final Variable[] variables;
+    private final int largoLiterales;
+    private final int[] ocurrencias = new int[VARIABLES.length];
+
+    private PlantillaRecordatorio(List<String> literales, List<Variable> variables) {
+        this.literales = literales.toArray(new String[0]);
+        this.variables = variables.toArray(new Variable[0]);
+        int largo = 0;
+        for (int i = 0; i < this.variables.length; i++) {
+            if (this.variables[i] == null) {
+                largo += this.literales[i].length();
+            } else {
+                ocurrencias[this.variables[i].ordinal()]++;
+            }
+        }
+        this.largoLiterales = largo;
+    }
+
+    /**
+     * Compila el cuerpo de una plantilla. Lanza error si una variable no existe
+     * o si una llave queda sin cerrar.
+     */
+    public static PlantillaRecordatorio compilar(String cuerpo) {
+        if (cuerpo == null || cuerpo.isEmpty()) {
+            throw new RuntimeException("ERROR: La plantilla no puede estar vacía.");
+        }
+
+        List<String> literales = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < cuerpo.length()) {
+            char c = cuerpo.charAt(i);
+            if ((c == '{' || c == '}') && i + 1 < cuerpo.length() && cuerpo.charAt(i + 1) == c) {
+                literal.append(c);
+                i += 2;
+            } else if (c == '{') {
+                int cierre = cuerpo.indexOf('}', i);
+                if (cierre < 0) {
+                    throw new RuntimeException("ERROR: Llave sin cerrar en la plantilla, posición " + i + ".");
+                }
+                Variable variable = variable(cuerpo.substring(i + 1, cierre).trim());
+                if (!literal.isEmpty()) {
+                    literales.add(literal.toString());
+                    variables.add(null);
+                    literal.setLength(0);
+                }
+                literales.add(null);
+                variables.add(variable);
+                i = cierre + 1;
+            } else if (c == '}') {
+                throw new RuntimeException("ERROR: Llave de cierre sin abrir en la plantilla, posición " + i + ".");
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (!literal.isEmpty()) {
+            literales.add(literal.toString());
+            variables.add(null);
+        }
+        return new PlantillaRecordatorio(literales, variables);
+    }
+
+    /**
+     * Plantilla sin variables: el texto se envía tal cual.
+     */
+    public static PlantillaRecordatorio literal(String texto) {
+        return new PlantillaRecordatorio(List.of(texto), Collections.singletonList(null));
+    }
+
+    /**
+     * Arma el mensaje con los valores indexados por Variable.ordinal().
+     * Con maxCaracteres mayor a cero el resultado no lo supera: primero se acortan
+     * los nombres (el más largo primero) y, si aún no alcanza, se corta el texto.
+     */
+    public String renderizar(String[] valores, int maxCaracteres) {
+        int[] largos = new int[VARIABLES.length];
+        int total = largoLiterales;
+        for (Variable variable : VARIABLES) {
+            int v = variable.ordinal();
+            String valor = valores[v];
+            largos[v] = valor == null ? 0 : valor.length();
+            total += largos[v] * ocurrencias[v];
+        }
+
+        boolean cortar = false;
+        if (maxCaracteres > 0 && total > maxCaracteres) {
+            total = acortarNombres(valores, largos, total, maxCaracteres);
+            cortar = total > maxCaracteres;
+        }
+
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        for (int i = 0; i < variables.length; i++) {
+            Variable variable = variables[i];
+            if (variable == null) {
+                sb.append(literales[i]);
+            } else if (valores[variable.ordinal()] != null) {
+                sb.append(valores[variable.ordinal()], 0, largos[variable.ordinal()]);
+            }
+        }
+        if (cortar) {
+            int fin = maxCaracteres - 1;
+            if (fin > 0 && Character.isHighSurrogate(sb.charAt(fin - 1))) {
+                fin--;
+            }
+            sb.setLength(fin);
+            sb.append('…');
+        }
+
+        String texto = sb.toString();
+        if (sb.capacity() > CAPACIDAD_MAXIMA_RETENIDA) {
+            BUFFER.remove();
+        }
+        return texto;
+    }
+
+    private int acortarNombres(String[] valores, int[] largos, int total, int maxCaracteres) {
+        while (total > maxCaracteres) {
+            int elegido = -1;
+            for (Variable variable : VARIABLES) {
+                int v = variable.ordinal();
+                if (variable.recortable && ocurrencias[v] > 0 && largos[v] > LARGO_MINIMO_NOMBRE
+                        && (elegido < 0 || largos[v] > largos[elegido])) {
+                    elegido = v;
+                }
+            }
+            if (elegido < 0) {
+                break;
+            }
+            largos[elegido]--;
+            if (largos[elegido] > 0 && Character.isHighSurrogate(valores[elegido].charAt(largos[elegido] - 1))) {
+                largos[elegido]--;
+                total -= ocurrencias[elegido];
+            }
+            total -= ocurrencias[elegido];
+        }
+        return total;
+    }
+
+    private static Variable variable(String nombre) {
+        for (Variable variable : VARIABLES) {
+            if (variable.nombre.equals(nombre)) {
+                return variable;
+            }
+        }
+        throw new RuntimeException("ERROR: Variable desconocida en la plantilla: {" + nombre + "}.");
+    }
+}
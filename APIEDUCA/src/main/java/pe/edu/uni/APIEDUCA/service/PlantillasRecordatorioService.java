@@ -0,0 +1,203 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasCacheDto;
+import pe.edu.uni.APIEDUCA.dto.PlantillaRecordatorioDto;
+import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
+
+import java.util.List;
+
+/**
+ * Plantillas de los textos de recordatorio, guardadas en la tabla
+ * plantillas_recordatorio (sql/03_plantillas_recordatorio.sql) y editables sin
+ * redesplegar. Se compilan una vez y se guardan en caché por (canal, idioma, clínica).
+ * Un cambio se ve al vencer el TTL, o de inmediato en el nodo que lo guarda o invalida.
+ *
+ * Si el recordatorio trae su propio texto en recordatorios.mensaje, ese texto
+ * (con o sin variables) reemplaza a la plantilla del canal.
+ */
+@Service
+public class PlantillasRecordatorioService {
+
+    private static final Logger log = LoggerFactory.getLogger(PlantillasRecordatorioService.class);
+
+    public record ClavePlantilla(String canal, String idioma, long clinicaId) {
+    }
+
+    // Textos que se usaban antes de las plantillas; aplican si la tabla no tiene una para el canal
+    static final String EMAIL_POR_DEFECTO =
+            "Estimado/a {paciente},\n\nLe recordamos su cita médica programada para el {fecha} con {medico}.\n\n{clinica}";
+    static final String SMS_POR_DEFECTO =
+            "Hola {paciente}, recordatorio: cita médica {fecha} con {medico}. {clinica}";
+
+    private static final PlantillaRecordatorio EMAIL = PlantillaRecordatorio.compilar(EMAIL_POR_DEFECTO);
+    private static final PlantillaRecordatorio SMS = PlantillaRecordatorio.compilar(SMS_POR_DEFECTO);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${clinica.recordatorios.idioma:es-PE}")
+    private String idioma;
+
+    @Value("${clinica.recordatorios.clinica-id:1}")
+    private long clinicaId;
+
+    @Value("${clinica.recordatorios.nombre-clinica:Clínica Salud y Vida}")
+    private String nombreClinica;
+
+    @Value("${clinica.recordatorios.sms.max-caracteres:160}")
+    private int maxCaracteresSms;
+
+    @Value("${clinica.recordatorios.plantillas.max-entradas:1000}")
+    private int maxEntradas;
+
+    @Value("${clinica.recordatorios.plantillas.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    private CacheReferencia<ClavePlantilla, PlantillaRecordatorio> plantillas;
+    private CacheReferencia<String, PlantillaRecordatorio> personalizadas;
+
+    @PostConstruct
+    void iniciar() {
+        plantillas = new CacheReferencia<>("plantillas", maxEntradas, ttlSegundos, ttlSegundos);
+        personalizadas = new CacheReferencia<>("plantillasPersonalizadas", maxEntradas, ttlSegundos, ttlSegundos);
+    }
+
+    /**
+     * Texto del recordatorio para su canal. Los SMS no superan el máximo de caracteres configurado.
+     */
+    public String renderizar(RecordatorioDto recordatorio) {
+        String tipo = recordatorio.getTipo();
+        PlantillaRecordatorio plantilla = plantilla(tipo, recordatorio.getMensaje());
+
+        String[] valores = new String[PlantillaRecordatorio.Variable.values().length];
+        valores[PlantillaRecordatorio.Variable.PACIENTE.ordinal()] = recordatorio.getNombrePaciente();
+        valores[PlantillaRecordatorio.Variable.FECHA.ordinal()] = recordatorio.getFechaHora();
+        valores[PlantillaRecordatorio.Variable.MEDICO.ordinal()] = recordatorio.getNombreMedico();
+        valores[PlantillaRecordatorio.Variable.CLINICA.ordinal()] = nombreClinica;
+        return plantilla.renderizar(valores, "SMS".equals(tipo) ? maxCaracteresSms : 0);
+    }
+
+    public List<PlantillaRecordatorioDto> listar() {
+        String sql = """
+            /* PlantillasRecordatorioService.listar */
+            SELECT id, canal, idioma, clinica_id, cuerpo, activo
+            FROM plantillas_recordatorio
+            ORDER BY canal, idioma, clinica_id
+            """;
+        try {
+            return jdbcTemplate.query(sql, (rs, rowNum) -> PlantillaRecordatorioDto.builder()
+                    .id(rs.getLong("id"))
+                    .canal(rs.getString("canal"))
+                    .idioma(rs.getString("idioma"))
+                    .clinicaId(rs.getObject("clinica_id") == null ? null : rs.getLong("clinica_id"))
+                    .cuerpo(rs.getString("cuerpo"))
+                    .activo(rs.getBoolean("activo"))
+                    .build());
+        } catch (DataAccessException e) {
+            throw new RuntimeException("ERROR: No se pudieron obtener las plantillas.", e);
+        }
+    }
+
+    /**
+     * Crea o reemplaza la plantilla de (canal, idioma, clínica). El cuerpo se compila
+     * antes de guardarlo para rechazar variables desconocidas.
+     */
+    public PlantillaRecordatorioDto guardar(PlantillaRecordatorioDto dto) {
+
+        // Validaciones
+        if (!"EMAIL".equals(dto.getCanal()) && !"SMS".equals(dto.getCanal())) {
+            throw new RuntimeException("ERROR: El canal debe ser EMAIL o SMS.");
+        }
+        if (dto.getIdioma() == null || dto.getIdioma().isBlank()) {
+            throw new RuntimeException("ERROR: El idioma es requerido.");
+        }
+        PlantillaRecordatorio.compilar(dto.getCuerpo());
+
+        // Proceso
+        String sql = """
+            /* PlantillasRecordatorioService.actualizar */
+            UPDATE plantillas_recordatorio
+            SET cuerpo = ?, activo = ?, fecha_actualizacion = GETDATE()
+            WHERE canal = ? AND idioma = ?
+            AND (clinica_id = ? OR (clinica_id IS NULL AND ? IS NULL))
+            """;
+        int filas = jdbcTemplate.update(sql, dto.getCuerpo(), dto.isActivo(), dto.getCanal(), dto.getIdioma(),
+                dto.getClinicaId(), dto.getClinicaId());
+        if (filas == 0) {
+            sql = """
+                /* PlantillasRecordatorioService.insertar */
+                INSERT INTO plantillas_recordatorio(canal, idioma, clinica_id, cuerpo, activo, fecha_actualizacion)
+                VALUES(?, ?, ?, ?, ?, GETDATE())
+                """;
+            jdbcTemplate.update(sql, dto.getCanal(), dto.getIdioma(), dto.getClinicaId(), dto.getCuerpo(), dto.isActivo());
+        }
+        plantillas.invalidarTodo();
+
+        // Reporte
+        return dto;
+    }
+
+    public void invalidarTodo() {
+        plantillas.invalidarTodo();
+        personalizadas.invalidarTodo();
+    }
+
+    public List<EstadisticasCacheDto> estadisticas() {
+        return List.of(plantillas.estadisticas(), personalizadas.estadisticas());
+    }
+
+    private PlantillaRecordatorio plantilla(String tipo, String mensaje) {
+        if (!"EMAIL".equals(tipo) && !"SMS".equals(tipo)) {
+            throw new RuntimeException("ERROR: Tipo de recordatorio no soportado: " + tipo);
+        }
+        if (mensaje != null && !mensaje.isBlank()) {
+            return personalizadas.obtener(mensaje, PlantillasRecordatorioService::compilarPersonalizada);
+        }
+        PlantillaRecordatorio plantilla = plantillas.obtener(new ClavePlantilla(tipo, idioma, clinicaId), this::cargar);
+        if (plantilla != null) {
+            return plantilla;
+        }
+        return "EMAIL".equals(tipo) ? EMAIL : SMS;
+    }
+
+    // Prioridad: misma clínica antes que la general, e idioma exacto antes que el idioma base ("es-PE" -> "es")
+    private PlantillaRecordatorio cargar(ClavePlantilla clave) {
+        String sql = """
+            /* PlantillasRecordatorioService.cargar */
+            SELECT TOP 1 cuerpo
+            FROM plantillas_recordatorio
+            WHERE canal = ? AND idioma IN (?, ?) AND activo = 1
+            AND (clinica_id = ? OR clinica_id IS NULL)
+            ORDER BY CASE WHEN clinica_id IS NULL THEN 1 ELSE 0 END,
+                     CASE WHEN idioma = ? THEN 0 ELSE 1 END
+            """;
+        int guion = clave.idioma().indexOf('-');
+        String idiomaBase = guion > 0 ? clave.idioma().substring(0, guion) : clave.idioma();
+        try {
+            List<String> cuerpos = jdbcTemplate.queryForList(sql, String.class,
+                    clave.canal(), clave.idioma(), idiomaBase, clave.clinicaId(), clave.idioma());
+            return cuerpos.isEmpty() ? null : PlantillaRecordatorio.compilar(cuerpos.get(0));
+        } catch (RuntimeException e) {
+            // Con la tabla caída o una plantilla inválida se sigue enviando con el texto por defecto
+            log.warn("No se pudo cargar la plantilla {}; se usa la plantilla por defecto: {}", clave, e.getMessage());
+            return null;
+        }
+    }
+
+    // Un texto propio que no compila como plantilla se envía tal cual
+    private static PlantillaRecordatorio compilarPersonalizada(String mensaje) {
+        try {
+            return PlantillaRecordatorio.compilar(mensaje);
+        } catch (RuntimeException e) {
+            return PlantillaRecordatorio.literal(mensaje);
+        }
+    }
+}
@@ -1,67 +1,181 @@
 package pe.edu.uni.APIEDUCA.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import pe.edu.uni.APIEDUCA.config.JdbcTemplateInstrumentado;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+import pe.edu.uni.APIEDUCA.dto.PaginaRecordatoriosDto;
 import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
-
+import pe.edu.uni.APIEDUCA.notificacion.CanalNotificacion;
+import pe.edu.uni.APIEDUCA.notificacion.MensajeNotificacion;
+import pe.edu.uni.APIEDUCA.notificacion.ProteccionCanales;
+import pe.edu.uni.APIEDUCA.notificacion.ResultadoEnvio;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Service
 public class RecordatorioService {
 
-    @Autowired
-    private JdbcTemplate jdbcTemplate;
-
-    public List<RecordatorioDto> obtenerRecordatoriosPendientes() {
+    private static final int LIMITE_MAXIMO_PAGINA = 1000;
+    private static final int TAMANIO_FETCH = 500;
+
+    // Columnas crudas: la concatenación de nombres y el formato de fecha se hacen en Java
+    private static final String COLUMNAS_PENDIENTES = """
+            r.id,
+            r.cita_id,
+            c.paciente_id,
+            c.medico_id,
+            p.nombre AS paciente_nombre,
+            p.apellido AS paciente_apellido,
+            p.telefono,
+            p.email,
+            u.nombre AS medico_nombre,
+            u.apellido AS medico_apellido,
+            c.fecha_hora,
+            r.tipo,
+            r.mensaje,
+            r.estado,
+            r.intentos,
+            r.fecha_envio_programada
+            """;
 
-        // Validación básica
-        String sql = """
-            SELECT 
-                r.id,
-                r.cita_id,
-                c.paciente_id,
-                CONCAT(p.nombre, ' ', p.apellido) as nombre_paciente,
-                p.telefono,
-                p.email,
-                CONCAT(u.nombre, ' ', u.apellido) as nombre_medico,
-                FORMAT(c.fecha_hora, 'dd/MM/yyyy HH:mm') as fecha_hora,
-                r.tipo,
-                r.mensaje,
-                r.estado,
-                r.intentos
+    private static final String FROM_PENDIENTES = """
             FROM recordatorios r
             INNER JOIN citas c ON r.cita_id = c.id
             INNER JOIN pacientes p ON c.paciente_id = p.id
             INNER JOIN usuarios u ON c.medico_id = u.id
-            WHERE r.estado = 'PENDIENTE' 
+            WHERE r.estado = 'PENDIENTE'
             AND r.fecha_envio_programada <= GETDATE()
+            AND (r.bloqueado_hasta IS NULL OR r.bloqueado_hasta < GETDATE())
             AND c.estado IN ('PROGRAMADA', 'CONFIRMADA')
-            ORDER BY r.fecha_envio_programada ASC
+            """;
+
+    // Solo un nodo (o un despacho) toma cada recordatorio; la condición se reevalúa al bloquear la fila
+    private static final String SQL_TOMAR = """
+            /* RecordatorioService.tomar */
+            UPDATE recordatorios
+            SET bloqueado_hasta = DATEADD(second, ?, GETDATE())
+            WHERE id = ? AND estado = 'PENDIENTE'
+            AND (bloqueado_hasta IS NULL OR bloqueado_hasta < GETDATE())
+            """;
+
+    private static final RowMapper<RecordatorioDto> MAPEO_PENDIENTE = (rs, rowNum) ->
+            RecordatorioDto.builder()
+                    .idRecordatorio(rs.getLong("id"))
+                    .idCita(rs.getLong("cita_id"))
+                    .idPaciente(rs.getLong("paciente_id"))
+                    .idMedico(rs.getLong("medico_id"))
+                    .nombrePaciente(nombreCompleto(rs.getString("paciente_nombre"), rs.getString("paciente_apellido")))
+                    .telefonoPaciente(rs.getString("telefono"))
+                    .emailPaciente(rs.getString("email"))
+                    .nombreMedico(nombreCompleto(rs.getString("medico_nombre"), rs.getString("medico_apellido")))
+                    .fechaHora(rs.getTimestamp("fecha_hora").toLocalDateTime().format(FormatosFecha.FECHA_HORA_MENSAJE))
+                    .tipo(rs.getString("tipo"))
+                    .mensaje(rs.getString("mensaje"))
+                    .estado(rs.getString("estado"))
+                    .intentos(rs.getInt("intentos"))
+                    .fechaEnvioProgramada(rs.getTimestamp("fecha_envio_programada").toLocalDateTime())
+                    .build();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlantillasRecordatorioService plantillas;
+
+    @Autowired
+    private ProteccionCanales proteccion;
+
+    @Autowired
+    private Clock reloj;
+
+    @Autowired
+    private EstadisticasCitas estadisticas;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Value("${clinica.recordatorios.reintentos.max-intentos:3}")
+    private int maxIntentos;
+
+    @Value("${clinica.recordatorios.reintentos.espera-base-ms:60000}")
+    private long esperaBaseMs;
+
+    @Value("${clinica.recordatorios.reintentos.espera-maxima-ms:3600000}")
+    private long esperaMaximaMs;
+
+    @Value("${clinica.recordatorios.despacho.bloqueo-segundos:120}")
+    private int bloqueoSegundos;
+
+    private final Map<String, CanalNotificacion> canalesPorTipo = new HashMap<>();
+    private final List<BiConsumer<Long, LocalDateTime>> alReprogramar = new CopyOnWriteArrayList<>();
+
+    private Counter enviados;
+    private Counter reintentos;
+    private Counter diferidos;
+    private Counter fallidos;
+
+    // Cada canal queda detrás de su límite de tasa y su circuito
+    @Autowired
+    void registrarCanales(List<CanalNotificacion> canales) {
+        for (CanalNotificacion canal : canales) {
+            canalesPorTipo.put(canal.tipo(), proteccion.proteger(canal));
+        }
+    }
+
+    @PostConstruct
+    void iniciarMetricas() {
+        enviados = registro.counter("clinica.recordatorios.resultados", "resultado", "enviado");
+        reintentos = registro.counter("clinica.recordatorios.resultados", "resultado", "reintento");
+        diferidos = registro.counter("clinica.recordatorios.resultados", "resultado", "diferido");
+        fallidos = registro.counter("clinica.recordatorios.resultados", "resultado", "fallido");
+    }
+
+    /**
+     * Avisa con (id, nueva fecha de envío) cada recordatorio que queda pendiente para
+     * más tarde, después de guardarlo.
+     */
+    public void alReprogramar(BiConsumer<Long, LocalDateTime> oyente) {
+        alReprogramar.add(oyente);
+    }
+
+    public int maxIntentos() {
+        return maxIntentos;
+    }
+
+    @Transactional(readOnly = true)
+    public List<RecordatorioDto> obtenerRecordatoriosPendientes() {
+
+        // Validación básica
+        String sql = "/* RecordatorioService.obtenerRecordatoriosPendientes */ "
+                + "SELECT " + COLUMNAS_PENDIENTES + FROM_PENDIENTES + """
+            ORDER BY r.fecha_envio_programada ASC, r.id ASC
             """;
 
         try {
-            return jdbcTemplate.query(sql, (rs, rowNum) ->
-                    RecordatorioDto.builder()
-                            .idRecordatorio(rs.getLong("id"))
-                            .idCita(rs.getLong("cita_id"))
-                            .idPaciente(rs.getLong("paciente_id"))
-                            .nombrePaciente(rs.getString("nombre_paciente"))
-                            .telefonoPaciente(rs.getString("telefono"))
-                            .emailPaciente(rs.getString("email"))
-                            .nombreMedico(rs.getString("nombre_medico"))
-                            .fechaHora(rs.getString("fecha_hora"))
-                            .tipo(rs.getString("tipo"))
-                            .mensaje(rs.getString("mensaje"))
-                            .estado(rs.getString("estado"))
-                            .intentos(rs.getInt("intentos"))
-                            .build()
-            );
+            return jdbcTemplate.query(sql, MAPEO_PENDIENTE);
 
         } catch (DataAccessException e) {
             throw new RuntimeException("Error al obtener recordatorios pendientes", e);
@@ -70,7 +184,127 @@ public class RecordatorioService {
         }
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    /**
+     * Página de pendientes por keyset sobre (fecha_envio_programada, id): devuelve los
+     * siguientes al cursor indicado. Sin cursor (despuesFecha null) empieza desde el inicio.
+     */
+    @Transactional(readOnly = true)
+    public PaginaRecordatoriosDto obtenerPaginaPendientes(LocalDateTime despuesFecha, long despuesId, int limite) {
+
+        // Validaciones
+        if (limite <= 0 || limite > LIMITE_MAXIMO_PAGINA) {
+            throw new RuntimeException("ERROR: El límite debe estar entre 1 y " + LIMITE_MAXIMO_PAGINA + ".");
+        }
+
+        // Proceso - se pide uno extra para saber si hay más páginas
+        List<RecordatorioDto> filas;
+        try {
+            if (despuesFecha == null) {
+                String sql = "/* RecordatorioService.obtenerPaginaPendientes */ "
+                        + "SELECT TOP (?) " + COLUMNAS_PENDIENTES + FROM_PENDIENTES + """
+                    ORDER BY r.fecha_envio_programada ASC, r.id ASC
+                    """;
+                filas = jdbcTemplate.query(sql, MAPEO_PENDIENTE, limite + 1);
+            } else {
+                String sql = "/* RecordatorioService.obtenerPaginaPendientesCursor */ "
+                        + "SELECT TOP (?) " + COLUMNAS_PENDIENTES + FROM_PENDIENTES + """
+                    AND (r.fecha_envio_programada > ?
+                         OR (r.fecha_envio_programada = ? AND r.id > ?))
+                    ORDER BY r.fecha_envio_programada ASC, r.id ASC
+                    """;
+                Timestamp cursor = Timestamp.valueOf(despuesFecha);
+                filas = jdbcTemplate.query(sql, MAPEO_PENDIENTE, limite + 1, cursor, cursor, despuesId);
+            }
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Error al obtener recordatorios pendientes", e);
+        }
+
+        // Reporte
+        boolean hayMas = filas.size() > limite;
+        List<RecordatorioDto> items = hayMas ? filas.subList(0, limite) : filas;
+        RecordatorioDto ultimo = items.isEmpty() ? null : items.get(items.size() - 1);
+        return PaginaRecordatoriosDto.builder()
+                .items(items)
+                .hayMas(hayMas)
+                .siguienteFecha(hayMas ? ultimo.getFechaEnvioProgramada() : null)
+                .siguienteId(hayMas ? ultimo.getIdRecordatorio() : 0)
+                .build();
+    }
+
+    /**
+     * Los recordatorios indicados que siguen pendientes y vencidos. Se lee de la
+     * primaria: los ids vienen de la rueda de temporizadores y deben estar al día.
+     */
+    public List<RecordatorioDto> obtenerPendientesPorId(List<Long> ids) {
+        List<RecordatorioDto> pendientes = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += LIMITE_MAXIMO_PAGINA) {
+            List<Long> bloque = ids.subList(i, Math.min(i + LIMITE_MAXIMO_PAGINA, ids.size()));
+            String sql = "/* RecordatorioService.obtenerPendientesPorId */ "
+                    + "SELECT " + COLUMNAS_PENDIENTES + FROM_PENDIENTES
+                    + "AND r.id IN (" + String.join(",", Collections.nCopies(bloque.size(), "?")) + ")\n"
+                    + "ORDER BY r.fecha_envio_programada ASC, r.id ASC";
+            try {
+                pendientes.addAll(jdbcTemplate.query(sql, MAPEO_PENDIENTE, bloque.toArray()));
+            } catch (DataAccessException e) {
+                throw new RuntimeException("Error al obtener recordatorios pendientes", e);
+            }
+        }
+        return pendientes;
+    }
+
+    /**
+     * Toma los recordatorios con un lease de bloqueo-segundos antes de enviarlos y
+     * devuelve solo los que tomó: los que otro nodo o despacho ya tiene, o que dejaron
+     * de estar pendientes, se descartan. registrarResultados libera el lease.
+     */
+    public List<RecordatorioDto> tomar(List<RecordatorioDto> recordatorios) {
+        if (recordatorios.isEmpty()) {
+            return recordatorios;
+        }
+        List<Object[]> filas = new ArrayList<>(recordatorios.size());
+        for (RecordatorioDto recordatorio : recordatorios) {
+            filas.add(new Object[]{bloqueoSegundos, recordatorio.getIdRecordatorio()});
+        }
+        int[] tomados = jdbcTemplate.batchUpdate(SQL_TOMAR, filas);
+
+        List<RecordatorioDto> lote = new ArrayList<>(recordatorios.size());
+        for (int i = 0; i < recordatorios.size(); i++) {
+            if (tomados[i] != 0) {
+                lote.add(recordatorios.get(i));
+            }
+        }
+        return lote;
+    }
+
+    public int contarPendientes() {
+        String sql = "/* RecordatorioService.contarPendientes */ SELECT COUNT(1) cont " + FROM_PENDIENTES;
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
+    /**
+     * Recorre todos los pendientes leyendo del cursor JDBC por bloques (fetch size)
+     * y entrega cada fila al consumidor a medida que llega, sin acumularlas en memoria.
+     */
+    public void recorrerPendientes(Consumer<RecordatorioDto> consumidor) {
+        String sql = "/* RecordatorioService.recorrerPendientes */ "
+                + "SELECT " + COLUMNAS_PENDIENTES + FROM_PENDIENTES + """
+            ORDER BY r.fecha_envio_programada ASC, r.id ASC
+            """;
+
+        try {
+            jdbcTemplate.query(new JdbcTemplateInstrumentado.SentenciaConSql(sql, con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(TAMANIO_FETCH);
+                return ps;
+            }), (RowCallbackHandler) rs -> consumidor.accept(MAPEO_PENDIENTE.mapRow(rs, 0)));
+
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Error al obtener recordatorios pendientes", e);
+        }
+    }
+
+    // Sin transacción: el envío al proveedor no debe retener una conexión del pool;
+    // solo la actualización final de estado toca la base (una sentencia, atómica).
     public RecordatorioDto procesarEnvioRecordatorio(long idRecordatorio) {
 
         // Variables
@@ -83,77 +317,187 @@ public class RecordatorioService {
 
         // Obtener datos del recordatorio
         sql = """
+            /* RecordatorioService.procesarEnvioRecordatorio */
             SELECT 
-                r.id, r.cita_id, r.tipo, r.mensaje, r.intentos,
+                r.id, r.cita_id, c.medico_id, r.tipo, r.mensaje, r.intentos,
                 CONCAT(p.nombre, ' ', p.apellido) as nombre_paciente,
                 p.telefono, p.email,
                 CONCAT(u.nombre, ' ', u.apellido) as nombre_medico,
-                FORMAT(c.fecha_hora, 'dd/MM/yyyy HH:mm') as fecha_hora
+                c.fecha_hora
             FROM recordatorios r
             INNER JOIN citas c ON r.cita_id = c.id
             INNER JOIN pacientes p ON c.paciente_id = p.id
             INNER JOIN usuarios u ON c.medico_id = u.id
             WHERE r.id = ?
+            AND c.estado IN ('PROGRAMADA', 'CONFIRMADA')
             """;
 
-        Map<String, Object> datos = jdbcTemplate.queryForMap(sql, idRecordatorio);
+        // Una cita cancelada o atendida no se recuerda
+        List<Map<String, Object>> filas = jdbcTemplate.queryForList(sql, idRecordatorio);
+        if (filas.isEmpty()) {
+            throw new RuntimeException("ERROR: La cita del recordatorio no está activa.");
+        }
+        Map<String, Object> datos = filas.get(0);
 
-        String tipo = datos.get("tipo").toString();
-        String nombrePaciente = datos.get("nombre_paciente").toString();
-        String fechaHora = datos.get("fecha_hora").toString();
-        String nombreMedico = datos.get("nombre_medico").toString();
-        String telefono = datos.get("telefono") != null ? datos.get("telefono").toString() : "";
-        String email = datos.get("email") != null ? datos.get("email").toString() : "";
-        int intentos = Integer.parseInt(datos.get("intentos").toString());
+        RecordatorioDto recordatorio = RecordatorioDto.builder()
+                .idRecordatorio(idRecordatorio)
+                .idCita(Long.parseLong(datos.get("cita_id").toString()))
+                .idMedico(Long.parseLong(datos.get("medico_id").toString()))
+                .nombrePaciente(datos.get("nombre_paciente").toString())
+                .telefonoPaciente(datos.get("telefono") != null ? datos.get("telefono").toString() : "")
+                .emailPaciente(datos.get("email") != null ? datos.get("email").toString() : "")
+                .nombreMedico(datos.get("nombre_medico").toString())
+                .fechaHora(((Timestamp) datos.get("fecha_hora")).toLocalDateTime().format(FormatosFecha.FECHA_HORA_MENSAJE))
+                .tipo(datos.get("tipo").toString())
+                .mensaje(datos.get("mensaje") != null ? datos.get("mensaje").toString() : null)
+                .intentos(Integer.parseInt(datos.get("intentos").toString()))
+                .build();
+
+        if (tomar(List.of(recordatorio)).isEmpty()) {
+            throw new RuntimeException("ERROR: El recordatorio ya se está enviando.");
+        }
 
         // Proceso de envío
-        boolean envioExitoso = false;
-        String errorMensaje = null;
+        ResultadoEnvio resultado = enviar(recordatorio);
+
+        // Actualizar estado del recordatorio
+        registrarResultado(recordatorio, resultado);
 
+        // Reporte
+        return recordatorio;
+    }
+
+    /**
+     * Envía el recordatorio por su canal. No toca la base de datos.
+     */
+    ResultadoEnvio enviar(RecordatorioDto recordatorio) {
+        MensajeNotificacion mensaje;
         try {
-            if ("EMAIL".equals(tipo)) {
-                validarEmail(email);
-                envioExitoso = enviarEmail(email, nombrePaciente, fechaHora, nombreMedico);
-            } else if ("SMS".equals(tipo)) {
-                validarTelefono(telefono);
-                envioExitoso = enviarSMS(telefono, nombrePaciente, fechaHora, nombreMedico);
-            }
+            mensaje = prepararMensaje(recordatorio);
+        } catch (RuntimeException e) {
+            // Un destino inválido no se arregla reintentando
+            return ResultadoEnvio.falloPermanente(e.getMessage());
+        }
+        try {
+            return canal(recordatorio.getTipo()).enviar(mensaje);
         } catch (Exception e) {
-            errorMensaje = e.getMessage();
+            return ResultadoEnvio.fallo(e.getMessage());
         }
+    }
 
-        // Actualizar estado del recordatorio
-        intentos++;
-        String nuevoEstado = envioExitoso ? "ENVIADO" : "FALLIDO";
+    /**
+     * Valida el destino y arma el texto del recordatorio con la plantilla de su canal.
+     */
+    MensajeNotificacion prepararMensaje(RecordatorioDto recordatorio) {
+        if ("EMAIL".equals(recordatorio.getTipo())) {
+            validarEmail(recordatorio.getEmailPaciente());
+            return new MensajeNotificacion(recordatorio.getIdRecordatorio(), recordatorio.getEmailPaciente(),
+                    plantillas.renderizar(recordatorio));
+        } else if ("SMS".equals(recordatorio.getTipo())) {
+            validarTelefono(recordatorio.getTelefonoPaciente());
+            return new MensajeNotificacion(recordatorio.getIdRecordatorio(), recordatorio.getTelefonoPaciente(),
+                    plantillas.renderizar(recordatorio));
+        }
+        throw new RuntimeException("ERROR: Tipo de recordatorio no soportado: " + recordatorio.getTipo());
+    }
 
-        sql = """
+    CanalNotificacion canal(String tipo) {
+        CanalNotificacion canal = canalesPorTipo.get(tipo);
+        if (canal == null) {
+            throw new RuntimeException("ERROR: Tipo de recordatorio no soportado: " + tipo);
+        }
+        return canal;
+    }
+
+    /**
+     * Guarda el resultado del envío con una sola sentencia. Solo actualiza si el
+     * recordatorio sigue PENDIENTE, para no pisar un envío concurrente.
+     */
+    void registrarResultado(RecordatorioDto recordatorio, ResultadoEnvio resultado) {
+        registrarResultados(List.of(recordatorio), List.of(resultado));
+    }
+
+    /**
+     * Guarda los resultados de un lote de envíos en un solo batch.
+     *
+     * Un envío diferido por el canal (límite de tasa o circuito abierto) sigue
+     * pendiente para cuando indica, sin gastar un intento. Un fallo reintentable se
+     * reprograma con espera exponencial (espera-base-ms, 2x, 4x... hasta
+     * espera-maxima-ms, con hasta 20 % de jitter) mientras queden intentos; si no, o si
+     * el fallo es permanente, queda FALLIDO.
+     */
+    void registrarResultados(List<RecordatorioDto> recordatorios, List<ResultadoEnvio> resultados) {
+        String sql = """
+            /* RecordatorioService.registrarResultados */
             UPDATE recordatorios 
             SET estado = ?, 
                 intentos = ?, 
                 fecha_envio_real = CASE WHEN ? = 'ENVIADO' THEN GETDATE() ELSE fecha_envio_real END,
-                error_mensaje = ?
-            WHERE id = ?
+                fecha_envio_programada = COALESCE(?, fecha_envio_programada),
+                error_mensaje = ?,
+                bloqueado_hasta = NULL
+            WHERE id = ? AND estado = 'PENDIENTE'
             """;
 
-        jdbcTemplate.update(sql, nuevoEstado, intentos, nuevoEstado, errorMensaje, idRecordatorio);
+        LocalDateTime ahora = LocalDateTime.now(reloj);
+        List<Object[]> filas = new ArrayList<>(recordatorios.size());
+        Map<Long, LocalDateTime> reprogramados = new HashMap<>();
+        for (int i = 0; i < recordatorios.size(); i++) {
+            RecordatorioDto recordatorio = recordatorios.get(i);
+            ResultadoEnvio resultado = resultados.get(i);
+            String nuevoEstado;
+            LocalDateTime nuevaFecha = null;
+            if (resultado.exito()) {
+                nuevoEstado = "ENVIADO";
+                recordatorio.setIntentos(recordatorio.getIntentos() + 1);
+                enviados.increment();
+            } else if (resultado.diferido()) {
+                nuevoEstado = "PENDIENTE";
+                nuevaFecha = ahora.plusNanos(resultado.diferirMs() * 1_000_000);
+                diferidos.increment();
+            } else if (resultado.reintentable() && recordatorio.getIntentos() + 1 < maxIntentos) {
+                nuevoEstado = "PENDIENTE";
+                recordatorio.setIntentos(recordatorio.getIntentos() + 1);
+                nuevaFecha = ahora.plusNanos(esperaReintento(recordatorio.getIntentos()) * 1_000_000);
+                reintentos.increment();
+            } else {
+                nuevoEstado = "FALLIDO";
+                recordatorio.setIntentos(recordatorio.getIntentos() + 1);
+                fallidos.increment();
+            }
+            recordatorio.setEstado(nuevoEstado);
+            if (nuevaFecha != null) {
+                recordatorio.setFechaEnvioProgramada(nuevaFecha);
+                reprogramados.put(recordatorio.getIdRecordatorio(), nuevaFecha);
+            }
+            filas.add(new Object[]{nuevoEstado, recordatorio.getIntentos(), nuevoEstado,
+                    nuevaFecha == null ? null : Timestamp.valueOf(nuevaFecha),
+                    resultado.error(), recordatorio.getIdRecordatorio()});
+        }
 
-        // Reporte
-        return RecordatorioDto.builder()
-                .idRecordatorio(idRecordatorio)
-                .idCita(Long.parseLong(datos.get("cita_id").toString()))
-                .nombrePaciente(nombrePaciente)
-                .telefonoPaciente(telefono)
-                .emailPaciente(email)
-                .nombreMedico(nombreMedico)
-                .fechaHora(fechaHora)
-                .tipo(tipo)
-                .estado(nuevoEstado)
-                .intentos(intentos)
-                .build();
+        int[] actualizados = jdbcTemplate.batchUpdate(sql, filas);
+        List<Long> medicosEnviados = new ArrayList<>();
+        for (int i = 0; i < actualizados.length; i++) {
+            if (actualizados[i] != 0 && "ENVIADO".equals(recordatorios.get(i).getEstado())) {
+                medicosEnviados.add(recordatorios.get(i).getIdMedico());
+            }
+        }
+        estadisticas.contarRecordatoriosEnviados(medicosEnviados);
+        reprogramados.forEach((id, fecha) -> alReprogramar.forEach(oyente -> oyente.accept(id, fecha)));
+    }
+
+    // Espera antes del intento siguiente al número indicado (1 = primer fallo)
+    private long esperaReintento(int intentos) {
+        long espera = esperaBaseMs << Math.min(Math.max(intentos - 1, 0), 30);
+        if (espera <= 0 || espera > esperaMaximaMs) {
+            espera = esperaMaximaMs;
+        }
+        return espera + ThreadLocalRandom.current().nextLong(espera / 5 + 1);
     }
 
     private void validarRecordatorioExiste(long idRecordatorio) {
-        String sql = "SELECT COUNT(1) cont FROM recordatorios WHERE id = ?";
+        String sql = "/* RecordatorioService.validarRecordatorioExiste */ "
+                + "SELECT COUNT(1) cont FROM recordatorios WHERE id = ?";
         int cont = jdbcTemplate.queryForObject(sql, Integer.class, idRecordatorio);
         if (cont == 0) {
             throw new RuntimeException("ERROR: Recordatorio no existe.");
@@ -161,7 +505,8 @@ public class RecordatorioService {
     }
 
     private void validarRecordatorioEstadoPendiente(long idRecordatorio) {
-        String sql = "SELECT COUNT(1) cont FROM recordatorios WHERE id = ? AND estado = 'PENDIENTE'";
+        String sql = "/* RecordatorioService.validarRecordatorioEstadoPendiente */ "
+                + "SELECT COUNT(1) cont FROM recordatorios WHERE id = ? AND estado = 'PENDIENTE'";
         int cont = jdbcTemplate.queryForObject(sql, Integer.class, idRecordatorio);
         if (cont == 0) {
             throw new RuntimeException("ERROR: Recordatorio no está pendiente.");
@@ -169,9 +514,9 @@ public class RecordatorioService {
     }
 
     private void validarIntentosMaximos(long idRecordatorio) {
-        String sql = "SELECT intentos FROM recordatorios WHERE id = ?";
+        String sql = "/* RecordatorioService.validarIntentosMaximos */ SELECT intentos FROM recordatorios WHERE id = ?";
         int intentos = jdbcTemplate.queryForObject(sql, Integer.class, idRecordatorio);
-        if (intentos >= 3) {
+        if (intentos >= maxIntentos) {
             throw new RuntimeException("ERROR: Máximo número de intentos alcanzado.");
         }
     }
@@ -191,43 +536,8 @@ public class RecordatorioService {
         }
     }
 
-    private boolean enviarEmail(String email, String nombrePaciente, String fechaHora, String nombreMedico) {
-        // Simulación de envío de email
-        // En implementación real se integraría con servicio de email (ej: SendGrid, AWS SES)
-        try {
-            String mensaje = String.format(
-                    "Estimado/a %s,\n\nLe recordamos su cita médica programada para el %s con %s.\n\nClínica Salud y Vida",
-                    nombrePaciente, fechaHora, nombreMedico
-            );
-
-            // Simulación de delay de envío
-            Thread.sleep(100);
-
-            // Simulación de éxito (90% de probabilidad)
-            return Math.random() > 0.1;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error al enviar email: " + e.getMessage());
-        }
-    }
-
-    private boolean enviarSMS(String telefono, String nombrePaciente, String fechaHora, String nombreMedico) {
-        // Simulación de envío de SMS
-        // En implementación real se integraría con servicio de SMS (ej: Twilio, AWS SNS)
-        try {
-            String mensaje = String.format(
-                    "Hola %s, recordatorio: cita médica %s con %s. Clínica Salud y Vida",
-                    nombrePaciente, fechaHora, nombreMedico
-            );
-
-            // Simulación de delay de envío
-            Thread.sleep(200);
-
-            // Simulación de éxito (85% de probabilidad)
-            return Math.random() > 0.15;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error al enviar SMS: " + e.getMessage());
-        }
+    // Igual que CONCAT(nombre, ' ', apellido) en SQL Server: NULL se toma como vacío
+    private static String nombreCompleto(String nombre, String apellido) {
+        return (nombre == null ? "" : nombre) + " " + (apellido == null ? "" : apellido);
     }
 }
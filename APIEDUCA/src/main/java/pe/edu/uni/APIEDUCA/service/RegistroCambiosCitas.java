@@ -0,0 +1,188 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escribe en citas_cambios (sql/04_citas_cambios.sql) una fila por cada alta,
+ * reprogramación o cambio de estado de una cita, dentro de la misma transacción.
+ *
+ * Una versión IDENTITY puede hacerse visible después de otra mayor si su
+ * transacción confirma más tarde. Para que el feed no se la salte, limiteEstable()
+ * no pasa de la menor versión aún sin confirmar: la base la da para todos los nodos
+ * (filas que se ven con NOLOCK pero que READPAST salta por estar bloqueadas) y, en
+ * este nodo, cada escritura en curso deja además una marca (la última versión
+ * conocida al empezar) que cubre el tiempo antes de que su fila exista.
+ */
+@Component
+public class RegistroCambiosCitas {
+
+    public static final String PROGRAMADA = "PROGRAMADA";
+    public static final String CANCELADA = "CANCELADA";
+    public static final String REPROGRAMADA = "REPROGRAMADA";
+    public static final String CONFIRMADA = "CONFIRMADA";
+    public static final String COMPLETADA = "COMPLETADA";
+    public static final String NO_ASISTIO = "NO_ASISTIO";
+
+    // Guarda el estado con que queda la cita; se ejecuta después del INSERT o UPDATE de citas
+    static final String SQL_DESDE_CITA = """
+            /* RegistroCambiosCitas.desdeCita */
+            INSERT INTO citas_cambios(cita_id, tipo, medico_id, fecha_hora, estado, fecha_registro)
+            SELECT id, ?, medico_id, fecha_hora, estado, GETDATE()
+            FROM citas
+            WHERE id = ?
+            """;
+
+    // Guarda el destino y la agenda de origen; se ejecuta antes del UPDATE de citas
+    static final String SQL_MOVIMIENTO = """
+            /* RegistroCambiosCitas.movimiento */
+            INSERT INTO citas_cambios(cita_id, tipo, medico_id, fecha_hora, estado,
+                                      medico_anterior_id, fecha_hora_anterior, fecha_registro)
+            SELECT id, 'REPROGRAMADA', ?, ?, estado, medico_id, fecha_hora, GETDATE()
+            FROM citas
+            WHERE id = ?
+            """;
+
+    // Mayor versión confirmada y menor versión escrita por una transacción aún abierta (de cualquier nodo)
+    private static final String SQL_LIMITE = """
+            /* RegistroCambiosCitas.limiteEstable */
+            SELECT
+                (SELECT MAX(version) FROM citas_cambios WITH (READPAST)) AS confirmada,
+                (SELECT MIN(v.version) FROM citas_cambios v WITH (NOLOCK)
+                 WHERE v.version > ?
+                 AND NOT EXISTS (SELECT 1 FROM citas_cambios c WITH (READPAST) WHERE c.version = v.version)) AS en_curso
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Marca -> cantidad de escrituras en curso con esa marca
+    private final ConcurrentSkipListMap<Long, Integer> enCurso = new ConcurrentSkipListMap<>();
+    private final AtomicLong ultimaVersionVista = new AtomicLong();
+    // Toda versión asignada después de calcular un límite es mayor que él
+    private final AtomicLong ultimoLimite = new AtomicLong();
+    private final List<Runnable> oyentes = new CopyOnWriteArrayList<>();
+
+    public void registrarDesdeCita(String tipo, long citaId) {
+        marcarHastaFinDeTransaccion();
+        jdbcTemplate.update(SQL_DESDE_CITA, tipo, citaId);
+    }
+
+    public void registrarDesdeCitas(String tipo, List<Long> citaIds) {
+        if (citaIds.isEmpty()) {
+            return;
+        }
+        marcarHastaFinDeTransaccion();
+        List<Object[]> filas = new ArrayList<>(citaIds.size());
+        for (long citaId : citaIds) {
+            filas.add(new Object[]{tipo, citaId});
+        }
+        jdbcTemplate.batchUpdate(SQL_DESDE_CITA, filas);
+    }
+
+    public void registrarMovimiento(long citaId, long nuevoMedicoId, LocalDateTime nuevoInicio) {
+        marcarHastaFinDeTransaccion();
+        jdbcTemplate.update(SQL_MOVIMIENTO, nuevoMedicoId, Timestamp.valueOf(nuevoInicio), citaId);
+    }
+
+    /**
+     * Filas de {nuevoMedicoId, nuevoInicio (Timestamp), citaId}.
+     */
+    public void registrarMovimientos(List<Object[]> movimientos) {
+        if (movimientos.isEmpty()) {
+            return;
+        }
+        marcarHastaFinDeTransaccion();
+        jdbcTemplate.batchUpdate(SQL_MOVIMIENTO, movimientos);
+    }
+
+    /**
+     * Marca una escritura que maneja su propia transacción (por ejemplo un lote T-SQL
+     * con BEGIN/COMMIT). Se usa con try-with-resources.
+     */
+    public Escritura marcarEscritura() {
+        long marca = ultimaVersionVista.get();
+        enCurso.merge(marca, 1, Integer::sum);
+        return () -> {
+            desmarcar(marca);
+            avisar();
+        };
+    }
+
+    /**
+     * Registra un aviso que se ejecuta, en el hilo de la escritura, cuando termina una
+     * escritura registrada en este nodo. Debe ser breve y no lanzar excepciones.
+     */
+    public void alTerminarEscritura(Runnable oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Mayor versión que el feed puede entregar sin saltarse cambios aún no confirmados,
+     * en este nodo o en otro. Lee de la primaria: debe llamarse fuera de una transacción
+     * readOnly.
+     */
+    public long limiteEstable() {
+        Long marcaMinima = enCurso.isEmpty() ? null : enCurso.firstKey();
+        long[] leido = jdbcTemplate.queryForObject(SQL_LIMITE, (rs, rowNum) -> new long[]{
+                rs.getLong("confirmada"), rs.getObject("en_curso") == null ? Long.MAX_VALUE : rs.getLong("en_curso")
+        }, ultimoLimite.get());
+        long version = leido[0];
+        ultimaVersionVista.accumulateAndGet(version, Math::max);
+        long limite = Math.min(version, leido[1] - 1);
+        if (marcaMinima != null) {
+            limite = Math.min(limite, marcaMinima);
+        }
+        ultimoLimite.accumulateAndGet(limite, Math::max);
+        return limite;
+    }
+
+    public interface Escritura extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Para quien envía SQL_DESDE_CITA o SQL_MOVIMIENTO dentro de su propio lote
+    void marcarHastaFinDeTransaccion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El registro de cambios de citas requiere una transacción activa.");
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        long marca = ultimaVersionVista.get();
+        enCurso.merge(marca, 1, Integer::sum);
+        TransactionSynchronizationManager.bindResource(this, marca);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(RegistroCambiosCitas.this);
+                desmarcar(marca);
+                if (status == STATUS_COMMITTED) {
+                    avisar();
+                }
+            }
+        });
+    }
+
+    private void avisar() {
+        for (Runnable oyente : oyentes) {
+            oyente.run();
+        }
+    }
+
+    private void desmarcar(long marca) {
+        enCurso.computeIfPresent(marca, (m, cantidad) -> cantidad == 1 ? null : cantidad - 1);
+    }
+}
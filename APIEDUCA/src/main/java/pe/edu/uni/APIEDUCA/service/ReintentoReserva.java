@@ -0,0 +1,65 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Reintento acotado de las operaciones que reservan la agenda de un médico.
+ *
+ * Si la base rechaza la escritura por el índice único de citas activas o por la
+ * verificación de solapamiento (otro nodo tomó un horario igual o que se cruza) o
+ * por un bloqueo/interbloqueo, se recarga la ocupación del médico y se vuelve a
+ * intentar la operación completa en una transacción nueva. En el reintento la validación en memoria ya ve la cita
+ * del otro nodo y responde que el médico no está disponible.
+ */
+@Component
+public class ReintentoReserva {
+
+    @Autowired
+    private OcupacionMedicoIndex ocupacionIndex;
+
+    @Value("${clinica.citas.reintentos.maximo:3}")
+    private int maximoIntentos;
+
+    @Value("${clinica.citas.reintentos.espera-base-ms:10}")
+    private long esperaBaseMs;
+
+    public <T> T ejecutar(long medicoId, Supplier<T> operacion) {
+        return ejecutar(List.of(medicoId), operacion);
+    }
+
+    public <T> T ejecutar(Collection<Long> medicoIds, Supplier<T> operacion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return operacion.get();
+            } catch (DuplicateKeyException | PessimisticLockingFailureException e) {
+                if (intento >= maximoIntentos) {
+                    throw new RuntimeException("ERROR: El médico no está disponible en esa fecha y hora.", e);
+                }
+                for (long medicoId : medicoIds) {
+                    ocupacionIndex.recargarMedico(medicoId);
+                }
+                esperar(intento);
+            }
+        }
+    }
+
+    // Espera exponencial con variación aleatoria para no reintentar todos a la vez
+    private void esperar(int intento) {
+        long espera = esperaBaseMs << (intento - 1);
+        try {
+            Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("ERROR: Se interrumpió la reserva de la cita.", e);
+        }
+    }
+}
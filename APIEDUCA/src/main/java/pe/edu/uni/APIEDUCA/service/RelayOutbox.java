@@ -0,0 +1,312 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entrega los eventos del outbox a los consumidores internos, por lotes y en orden
+ * de id por agregado.
+ *
+ * Un solo hilo por nodo toma un lote de pendientes con un lease (bloqueado_hasta) para
+ * que otro nodo no los tome a la vez, y procesa cada evento en su propia transacción
+ * junto con el cambio a PROCESADO: lo que escriben los consumidores en la base se
+ * aplica una sola vez. Si un consumidor falla, el evento se reintenta con espera
+ * exponencial y, al llegar a max-intentos, queda FALLIDO. Un evento no se entrega
+ * mientras haya otro anterior PENDIENTE del mismo agregado.
+ *
+ * Se despierta al confirmar una transacción que publicó eventos en este nodo y,
+ * además, cada intervalo-ms para los de otros nodos y los reintentos.
+ */
+@Service
+public class RelayOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(RelayOutbox.class);
+    private static final int LARGO_ERROR = 1000;
+    private static final TypeReference<Map<String, String>> TIPO_CARGA = new TypeReference<>() {
+    };
+
+    private static final String SQL_PENDIENTES = """
+            /* RelayOutbox.pendientes */
+            SELECT TOP (?) o.id, o.tipo, o.agregado_id, o.carga, o.intentos,
+                   DATEDIFF(millisecond, o.fecha_registro, GETDATE()) AS demora_ms
+            FROM outbox o
+            WHERE o.estado = 'PENDIENTE'
+            AND o.proximo_intento <= GETDATE()
+            AND (o.bloqueado_hasta IS NULL OR o.bloqueado_hasta < GETDATE())
+            AND NOT EXISTS (SELECT 1 FROM outbox a
+                            WHERE a.agregado_id = o.agregado_id AND a.id < o.id AND a.estado = 'PENDIENTE')
+            ORDER BY o.id
+            """;
+
+    // Solo uno de los nodos que vieron el evento libre lo toma (la condición se reevalúa al bloquear la fila)
+    private static final String SQL_TOMAR = """
+            /* RelayOutbox.tomar */
+            UPDATE outbox
+            SET bloqueado_hasta = DATEADD(second, ?, GETDATE())
+            WHERE id = ? AND estado = 'PENDIENTE'
+            AND (bloqueado_hasta IS NULL OR bloqueado_hasta < GETDATE())
+            """;
+
+    private static final String SQL_PROCESADO = """
+            /* RelayOutbox.procesado */
+            UPDATE outbox
+            SET estado = 'PROCESADO', procesado_en = GETDATE(), bloqueado_hasta = NULL, error = NULL
+            WHERE id = ? AND estado = 'PENDIENTE'
+            """;
+
+    private static final String SQL_FALLO = """
+            /* RelayOutbox.fallo */
+            UPDATE outbox
+            SET intentos = intentos + 1,
+                estado = CASE WHEN intentos + 1 >= ? THEN 'FALLIDO' ELSE 'PENDIENTE' END,
+                proximo_intento = DATEADD(second, ?, GETDATE()),
+                bloqueado_hasta = NULL,
+                error = ?
+            WHERE id = ? AND estado = 'PENDIENTE'
+            """;
+
+    private record Pendiente(EventoOutbox evento, long demoraMs) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private List<ConsumidorOutbox> consumidores;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Value("${clinica.outbox.relay.activo:true}")
+    private boolean activo;
+
+    @Value("${clinica.outbox.relay.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    @Value("${clinica.outbox.relay.lote:100}")
+    private int tamanioLote;
+
+    @Value("${clinica.outbox.relay.bloqueo-segundos:60}")
+    private int bloqueoSegundos;
+
+    @Value("${clinica.outbox.relay.max-intentos:10}")
+    private int maxIntentos;
+
+    @Value("${clinica.outbox.relay.espera-maxima-segundos:300}")
+    private int esperaMaximaSegundos;
+
+    @Value("${clinica.outbox.retencion-dias:7}")
+    private int retencionDias;
+
+    private ScheduledExecutorService lector;
+    private final AtomicBoolean programado = new AtomicBoolean(false);
+
+    private Counter procesados;
+    private Counter reintentos;
+    private Counter fallidos;
+    private Timer demora;
+
+    @PostConstruct
+    void iniciar() {
+        procesados = registro.counter("clinica.outbox.eventos", "resultado", "procesado");
+        reintentos = registro.counter("clinica.outbox.eventos", "resultado", "reintento");
+        fallidos = registro.counter("clinica.outbox.eventos", "resultado", "fallido");
+        demora = Timer.builder("clinica.outbox.demora")
+                .description("Tiempo desde que se registra un evento hasta que se procesa")
+                .register(registro);
+        if (!activo) {
+            return;
+        }
+        lector = Executors.newSingleThreadScheduledExecutor(hilos("outbox-relay-"));
+        lector.scheduleWithFixedDelay(this::despertar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        outbox.alConfirmar(this::despertar);
+    }
+
+    @PreDestroy
+    void detener() {
+        if (lector != null) {
+            lector.shutdownNow();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${clinica.outbox.limpieza-ms:3600000}")
+    public void depurarProcesados() {
+        try {
+            int borradas = jdbcTemplate.update(
+                    "/* RelayOutbox.depurarProcesados */ "
+                    + "DELETE FROM outbox WHERE estado = 'PROCESADO' AND procesado_en < DATEADD(day, -?, GETDATE())",
+                    retencionDias);
+            if (borradas > 0) {
+                log.info("Eventos del outbox depurados: {}", borradas);
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se pudieron depurar los eventos del outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Entrega lotes hasta vaciar lo que está listo. Devuelve cuántos eventos se procesaron.
+     */
+    public int drenar() {
+        int total = 0;
+        int tomados;
+        do {
+            List<Pendiente> lote = tomarLote();
+            tomados = lote.size();
+            for (Pendiente pendiente : lote) {
+                if (entregar(pendiente)) {
+                    total++;
+                }
+            }
+        } while (tomados == tamanioLote);
+        return total;
+    }
+
+    private void despertar() {
+        if (!programado.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lector.execute(() -> {
+                programado.set(false);
+                try {
+                    drenar();
+                } catch (RuntimeException e) {
+                    log.warn("Fallo en el relay del outbox: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // El nodo se está deteniendo
+            programado.set(false);
+        }
+    }
+
+    private List<Pendiente> tomarLote() {
+        List<Pendiente> candidatos = jdbcTemplate.query(SQL_PENDIENTES, (rs, rowNum) -> new Pendiente(
+                new EventoOutbox(rs.getLong("id"), rs.getString("tipo"), rs.getLong("agregado_id"),
+                        leerCarga(rs.getString("carga")), rs.getInt("intentos")),
+                rs.getLong("demora_ms")
+        ), tamanioLote);
+        if (candidatos.isEmpty()) {
+            return candidatos;
+        }
+
+        List<Object[]> filas = new ArrayList<>(candidatos.size());
+        for (Pendiente candidato : candidatos) {
+            filas.add(new Object[]{bloqueoSegundos, candidato.evento().id()});
+        }
+        int[] tomados = jdbcTemplate.batchUpdate(SQL_TOMAR, filas);
+
+        List<Pendiente> lote = new ArrayList<>(candidatos.size());
+        for (int i = 0; i < candidatos.size(); i++) {
+            if (tomados[i] != 0) {
+                lote.add(candidatos.get(i));
+            }
+        }
+        return lote;
+    }
+
+    private boolean entregar(Pendiente pendiente) {
+        EventoOutbox evento = pendiente.evento();
+        try {
+            if (evento.carga() == null) {
+                throw new IllegalStateException("Carga inválida en el evento " + evento.id() + ".");
+            }
+            transactionTemplate.executeWithoutResult(estado -> {
+                for (ConsumidorOutbox consumidor : consumidores) {
+                    if (consumidor.atiende(evento.tipo())) {
+                        consumidor.procesar(evento);
+                    }
+                }
+                if (jdbcTemplate.update(SQL_PROCESADO, evento.id()) == 0) {
+                    throw new IllegalStateException("El evento " + evento.id() + " ya no está pendiente.");
+                }
+            });
+            procesados.increment();
+            demora.record(pendiente.demoraMs(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RuntimeException e) {
+            registrarFallo(evento, e);
+            return false;
+        }
+    }
+
+    private void registrarFallo(EventoOutbox evento, RuntimeException causa) {
+        int intentos = evento.intentos() + 1;
+        long espera = Math.min(1L << Math.min(intentos, 20), esperaMaximaSegundos);
+        String error = causa.getMessage() == null ? causa.getClass().getName() : causa.getMessage();
+        if (error.length() > LARGO_ERROR) {
+            error = error.substring(0, LARGO_ERROR);
+        }
+        try {
+            jdbcTemplate.update(SQL_FALLO, maxIntentos, espera, error, evento.id());
+        } catch (DataAccessException e) {
+            // El lease vence y el evento se vuelve a tomar
+            log.warn("No se pudo registrar el fallo del evento {} del outbox: {}", evento.id(), e.getMessage());
+            return;
+        }
+        if (intentos >= maxIntentos) {
+            fallidos.increment();
+            log.error("Evento {} del outbox ({}, agregado {}) FALLIDO tras {} intentos: {}",
+                    evento.id(), evento.tipo(), evento.agregadoId(), intentos, error);
+        } else {
+            reintentos.increment();
+            log.warn("Evento {} del outbox ({}) falló, se reintenta en {} s: {}", evento.id(), evento.tipo(), espera, error);
+        }
+    }
+
+    private Map<String, String> leerCarga(String carga) {
+        if (carga == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(carga, TIPO_CARGA);
+        } catch (Exception e) {
+            // El evento se marca como fallido al entregarlo, sin frenar al resto del lote
+            return null;
+        }
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
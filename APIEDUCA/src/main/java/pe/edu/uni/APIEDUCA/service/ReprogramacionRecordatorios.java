@@ -0,0 +1,64 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import pe.edu.uni.APIEDUCA.dto.FormatosFecha;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Ajusta los recordatorios de una cita a partir de los eventos del outbox: al
+ * cancelarla, completarla o marcar que no asistió se dan por fallidos los
+ * pendientes y al reprogramarla se vuelven a
+ * programar 24 horas antes de la nueva fecha. Ambas sentencias son idempotentes.
+ * La rueda de temporizadores se actualiza al confirmar.
+ */
+@Component
+public class ReprogramacionRecordatorios implements ConsumidorOutbox {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlanificadorRecordatorios planificador;
+
+    @Override
+    public boolean atiende(String tipo) {
+        return Outbox.CITA_CANCELADA.equals(tipo) || Outbox.CITA_COMPLETADA.equals(tipo)
+                || Outbox.CITA_NO_ASISTIO.equals(tipo) || Outbox.CITA_REPROGRAMADA.equals(tipo);
+    }
+
+    @Override
+    public void procesar(EventoOutbox evento) {
+        if (!Outbox.CITA_REPROGRAMADA.equals(evento.tipo())) {
+            String sql = """
+                /* ReprogramacionRecordatorios.fallarPendientes */
+                UPDATE recordatorios
+                SET estado = 'FALLIDO'
+                WHERE cita_id = ? AND estado = 'PENDIENTE'
+                """;
+            jdbcTemplate.update(sql, evento.agregadoId());
+            planificador.sincronizarCita(evento.agregadoId());
+            return;
+        }
+
+        // Si solo cambió el médico, los recordatorios siguen valiendo
+        String fechaHora = evento.dato("fechaHora");
+        if (fechaHora.equals(evento.dato("fechaHoraAnterior"))) {
+            return;
+        }
+        String sql = """
+            /* ReprogramacionRecordatorios.reprogramar */
+            UPDATE recordatorios
+            SET fecha_envio_programada = ?,
+                estado = 'PENDIENTE',
+                intentos = 0
+            WHERE cita_id = ? AND estado IN ('PENDIENTE', 'FALLIDO')
+            """;
+        LocalDateTime envio = LocalDateTime.parse(fechaHora, FormatosFecha.FECHA_HORA).minusHours(24);
+        jdbcTemplate.update(sql, Timestamp.valueOf(envio), evento.agregadoId());
+        planificador.sincronizarCita(evento.agregadoId());
+    }
+}
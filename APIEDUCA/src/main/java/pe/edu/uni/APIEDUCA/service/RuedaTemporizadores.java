@@ -0,0 +1,165 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rueda de temporizadores jerárquica: guarda ids con su vencimiento (epoch ms) y
+ * devuelve los vencidos al avanzar el reloj, con costo O(1) por alta y baja.
+ *
+ * El nivel 0 tiene ranuras de un tick; cada nivel superior tiene ranuras del tamaño
+ * de toda la vuelta del nivel anterior y se crea solo cuando hace falta. Al avanzar,
+ * la ranura que empieza en el nivel superior se baja al inferior. Los vencimientos
+ * se entregan con a lo sumo un tick de atraso, nunca antes.
+ *
+ * Las bajas y reprogramaciones solo actualizan el mapa de vencimientos; la entrada
+ * vieja queda en su ranura y se descarta al llegar su turno. No es thread-safe por
+ * sí misma.
+ */
+class RuedaTemporizadores {
+
+    private record Entrada(long id, long vencimiento) {
+    }
+
+    private static final class Nivel {
+        final long tick;
+        final int ranuras;
+        final long vuelta;
+        final List<Entrada>[] cubetas;
+        long actual; // inicio de la ranura en curso, múltiplo de tick
+        Nivel superior;
+
+        @SuppressWarnings("unchecked")
+        Nivel(long tick, int ranuras, long ahora) {
+            this.tick = tick;
+            this.ranuras = ranuras;
+            this.vuelta = tick * ranuras;
+            this.cubetas = new List[ranuras];
+            this.actual = ahora - Math.floorMod(ahora, tick);
+        }
+
+        List<Entrada> cubeta(long vencimiento) {
+            int indice = (int) Math.floorMod(Math.floorDiv(vencimiento, tick), (long) ranuras);
+            if (cubetas[indice] == null) {
+                cubetas[indice] = new ArrayList<>();
+            }
+            return cubetas[indice];
+        }
+
+        List<Entrada> vaciar(long inicio) {
+            int indice = (int) Math.floorMod(Math.floorDiv(inicio, tick), (long) ranuras);
+            List<Entrada> cubeta = cubetas[indice];
+            cubetas[indice] = null;
+            return cubeta;
+        }
+    }
+
+    private final Nivel base;
+    private final Map<Long, Long> vencimientos = new HashMap<>();
+    private List<Entrada> listos = new ArrayList<>();
+
+    RuedaTemporizadores(long tickMs, int ranuras, long ahora) {
+        if (tickMs <= 0 || ranuras < 2) {
+            throw new IllegalArgumentException("Tick o cantidad de ranuras inválidos.");
+        }
+        this.base = new Nivel(tickMs, ranuras, ahora);
+    }
+
+    /**
+     * Programa o reprograma el id. Si el vencimiento ya pasó, sale en el próximo avanzar.
+     */
+    void programar(long id, long vencimiento) {
+        Long anterior = vencimientos.put(id, vencimiento);
+        if (anterior != null && anterior == vencimiento) {
+            return;
+        }
+        ubicar(new Entrada(id, vencimiento));
+    }
+
+    boolean cancelar(long id) {
+        return vencimientos.remove(id) != null;
+    }
+
+    boolean contiene(long id) {
+        return vencimientos.containsKey(id);
+    }
+
+    int tamanio() {
+        return vencimientos.size();
+    }
+
+    /**
+     * Mueve el reloj hasta ahora y devuelve los ids vencidos, que dejan de estar programados.
+     */
+    List<Long> avanzar(long ahora) {
+        List<Long> vencidos = new ArrayList<>();
+        disparar(tomarListos(), vencidos);
+        while (base.actual + base.tick <= ahora) {
+            // La ranura que termina ya venció por completo
+            disparar(base.vaciar(base.actual), vencidos);
+            base.actual += base.tick;
+
+            // Primero se mueven todos los relojes y después se bajan las ranuras, de arriba hacia abajo
+            List<Nivel> bajar = new ArrayList<>();
+            for (Nivel nivel = base.superior; nivel != null; nivel = nivel.superior) {
+                if (Math.floorMod(base.actual, nivel.tick) != 0) {
+                    break;
+                }
+                nivel.actual = base.actual;
+                bajar.add(0, nivel);
+            }
+            for (Nivel nivel : bajar) {
+                List<Entrada> cubeta = nivel.vaciar(nivel.actual);
+                if (cubeta != null) {
+                    for (Entrada entrada : cubeta) {
+                        if (vigente(entrada)) {
+                            ubicar(entrada);
+                        }
+                    }
+                }
+            }
+        }
+        disparar(tomarListos(), vencidos);
+        return vencidos;
+    }
+
+    private List<Entrada> tomarListos() {
+        List<Entrada> tomados = listos;
+        listos = new ArrayList<>();
+        return tomados;
+    }
+
+    private void disparar(List<Entrada> cubeta, List<Long> vencidos) {
+        if (cubeta == null) {
+            return;
+        }
+        for (Entrada entrada : cubeta) {
+            if (vigente(entrada)) {
+                vencimientos.remove(entrada.id());
+                vencidos.add(entrada.id());
+            }
+        }
+    }
+
+    private void ubicar(Entrada entrada) {
+        if (entrada.vencimiento() < base.actual) {
+            listos.add(entrada);
+            return;
+        }
+        Nivel nivel = base;
+        while (entrada.vencimiento() >= nivel.actual + nivel.vuelta) {
+            if (nivel.superior == null) {
+                nivel.superior = new Nivel(nivel.vuelta, nivel.ranuras, nivel.actual);
+            }
+            nivel = nivel.superior;
+        }
+        nivel.cubeta(entrada.vencimiento()).add(entrada);
+    }
+
+    private boolean vigente(Entrada entrada) {
+        Long vencimiento = vencimientos.get(entrada.id());
+        return vencimiento != null && vencimiento == entrada.vencimiento();
+    }
+}
@@ -0,0 +1,56 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Verificación de solapamiento en la base para las escrituras que reservan la agenda
+ * de un médico. BloqueoMedicos solo serializa dentro de un nodo y el índice único de
+ * sql/01_citas_unica_medico_fecha.sql solo rechaza dos citas que empiezan a la misma
+ * hora; esta condición, dentro del mismo INSERT o UPDATE, rechaza también las que se
+ * cruzan (09:00 de 30 minutos y 09:15) aunque vengan de nodos distintos.
+ *
+ * Lee las citas activas del médico en ese día con UPDLOCK, HOLDLOCK: el rango queda
+ * bloqueado hasta el fin de la transacción y otro nodo que reserve ese día espera y
+ * ve la cita (o cae como víctima de interbloqueo). Si la sentencia no escribe la
+ * fila, el llamador lanza conflicto() y ReintentoReserva recarga y reintenta.
+ */
+final class SolapamientoCitas {
+
+    // excluir: condición extra sobre o (la cita que se mueve); fin: expresión del fin de la nueva cita
+    private static final String CONDICION = """
+            NOT EXISTS (SELECT 1 FROM citas o WITH (UPDLOCK, HOLDLOCK)
+                        WHERE o.medico_id = ?%s
+                        AND o.estado IN ('PROGRAMADA', 'CONFIRMADA')
+                        AND o.fecha_hora >= ? AND o.fecha_hora < %s
+                        AND DATEADD(minute, o.duracion_minutos, o.fecha_hora) > ?)""";
+
+    // Parámetros: parametros(medico, inicio, duración)
+    static final String SIN_SOLAPAMIENTO = condicion("", "?");
+
+    // Parámetros: parametros(medico, citaId, inicio, duración); no choca consigo misma
+    static final String SIN_SOLAPAMIENTO_OTRA = condicion(" AND o.id <> ?", "?");
+
+    private SolapamientoCitas() {
+    }
+
+    static String condicion(String excluir, String fin) {
+        return CONDICION.formatted(excluir, fin);
+    }
+
+    static Object[] parametros(long medicoId, LocalDateTime inicio, int duracion) {
+        return new Object[]{medicoId, Timestamp.valueOf(inicio.toLocalDate().atStartOfDay()),
+                Timestamp.valueOf(inicio.plusMinutes(duracion)), Timestamp.valueOf(inicio)};
+    }
+
+    static Object[] parametros(long medicoId, long citaId, LocalDateTime inicio, int duracion) {
+        return new Object[]{medicoId, citaId, Timestamp.valueOf(inicio.toLocalDate().atStartOfDay()),
+                Timestamp.valueOf(inicio.plusMinutes(duracion)), Timestamp.valueOf(inicio)};
+    }
+
+    static DuplicateKeyException conflicto() {
+        return new DuplicateKeyException("La cita se cruza con otra cita activa del médico registrada en otro nodo.");
+    }
+}
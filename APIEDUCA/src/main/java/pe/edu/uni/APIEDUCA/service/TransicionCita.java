@@ -0,0 +1,98 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import java.util.List;
+
+/**
+ * Tabla de transiciones de estado de una cita: a qué estado lleva cada una, desde
+ * qué estados se puede aplicar, qué columnas actualiza y qué cambio y evento del
+ * outbox deja. TransicionesCita arma con esto, una sola vez, la sentencia de cada una.
+ *
+ * PROGRAMADA -> CONFIRMADA
+ * PROGRAMADA | CONFIRMADA -> CANCELADA, COMPLETADA, NO_ASISTIO
+ * PROGRAMADA | CONFIRMADA -> (mismo estado, otra agenda) al reprogramar
+ */
+public enum TransicionCita {
+
+    CONFIRMAR("CONFIRMADA", "confirmarse", false,
+            "estado = 'CONFIRMADA'",
+            RegistroCambiosCitas.CONFIRMADA, Outbox.CITA_CONFIRMADA,
+            "PROGRAMADA"),
+
+    // Parámetros: cancelada_por, motivo_cancelacion
+    CANCELAR("CANCELADA", "cancelarse", false,
+            "estado = 'CANCELADA', cancelada_por = ?, motivo_cancelacion = ?, fecha_cancelacion = GETDATE()",
+            RegistroCambiosCitas.CANCELADA, Outbox.CITA_CANCELADA,
+            "PROGRAMADA", "CONFIRMADA"),
+
+    // Parámetros: medico_id, fecha_hora. El estado no cambia
+    REPROGRAMAR(null, "reprogramarse", false,
+            "medico_id = ?, fecha_hora = ?",
+            RegistroCambiosCitas.REPROGRAMADA, Outbox.CITA_REPROGRAMADA,
+            "PROGRAMADA", "CONFIRMADA"),
+
+    // Solo citas que ya empezaron
+    COMPLETAR("COMPLETADA", "completarse", true,
+            "estado = 'COMPLETADA'",
+            RegistroCambiosCitas.COMPLETADA, Outbox.CITA_COMPLETADA,
+            "PROGRAMADA", "CONFIRMADA"),
+
+    NO_ASISTIO("NO_ASISTIO", "marcarse como no asistida", true,
+            "estado = 'NO_ASISTIO'",
+            RegistroCambiosCitas.NO_ASISTIO, Outbox.CITA_NO_ASISTIO,
+            "PROGRAMADA", "CONFIRMADA");
+
+    private final String destino;
+    private final String verbo;
+    private final boolean soloIniciadas;
+    private final String asignaciones;
+    private final String tipoCambio;
+    private final String evento;
+    private final List<String> origenes;
+
+    TransicionCita(String destino, String verbo, boolean soloIniciadas, String asignaciones,
+                   String tipoCambio, String evento, String... origenes) {
+        this.destino = destino;
+        this.verbo = verbo;
+        this.soloIniciadas = soloIniciadas;
+        this.asignaciones = asignaciones;
+        this.tipoCambio = tipoCambio;
+        this.evento = evento;
+        this.origenes = List.of(origenes);
+    }
+
+    /**
+     * Estado con que queda la cita; null si lo conserva.
+     */
+    public String destino() {
+        return destino;
+    }
+
+    public boolean permite(String estado) {
+        return origenes.contains(estado);
+    }
+
+    // Para los mensajes de error: "La cita no puede <verbo> ..."
+    String verbo() {
+        return verbo;
+    }
+
+    boolean soloIniciadas() {
+        return soloIniciadas;
+    }
+
+    String asignaciones() {
+        return asignaciones;
+    }
+
+    String tipoCambio() {
+        return tipoCambio;
+    }
+
+    String evento() {
+        return evento;
+    }
+
+    List<String> origenes() {
+        return origenes;
+    }
+}
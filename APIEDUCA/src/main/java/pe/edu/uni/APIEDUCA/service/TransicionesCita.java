@@ -0,0 +1,178 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aplica una TransicionCita en un solo viaje a la base: un lote con el registro en
+ * citas_transiciones (sql/07_citas_transiciones.sql), el UPDATE condicional
+ * (WHERE id = ? AND estado IN (...)), la fila de citas_cambios y el evento del outbox.
+ *
+ * El INSERT del historial va primero y toma la fila con UPDLOCK, así guarda el estado
+ * y la agenda anteriores y el UPDATE que le sigue no puede fallar por una carrera. Su
+ * conteo de filas dice si la transición era válida; si es 0 el llamador debe anular la
+ * transacción, y solo entonces se lee la cita para armar el mensaje de error.
+ *
+ * En REPROGRAMAR el historial además exige que la agenda destino no tenga otra cita
+ * activa que se cruce (SolapamientoCitas); si el estado permitía la transición y no se
+ * escribió, se lanza el conflicto para que ReintentoReserva reintente.
+ */
+@Component
+public class TransicionesCita {
+
+    private static final String SQL_HISTORIAL = """
+            INSERT INTO citas_transiciones(cita_id, transicion, estado_anterior, estado_nuevo,
+                                           medico_anterior_id, fecha_hora_anterior, usuario_id, motivo, fecha_registro)
+            SELECT id, '%s', estado, %s, medico_id, fecha_hora, ?, ?, GETDATE()
+            FROM citas WITH (UPDLOCK, ROWLOCK)
+            WHERE id = ? AND estado IN (%s)%s
+            """;
+
+    private static final String SQL_TRANSICION = """
+            UPDATE citas
+            SET %s,
+                fecha_actualizacion = GETDATE()
+            WHERE id = ? AND estado IN (%s)%s
+            """;
+
+    // Historial de cambios por conjuntos: el estado anterior viene como parámetro
+    private static final String SQL_HISTORIAL_LOTE = """
+            /* TransicionesCita.historialLote */
+            INSERT INTO citas_transiciones(cita_id, transicion, estado_anterior, estado_nuevo,
+                                           medico_anterior_id, fecha_hora_anterior, usuario_id, motivo, fecha_registro)
+            SELECT id, ?, ?, estado, medico_id, fecha_hora, ?, ?, GETDATE()
+            FROM citas
+            WHERE id = ?
+            """;
+
+    private static final String SOLO_INICIADAS = " AND fecha_hora <= GETDATE()";
+
+    // Parámetros: médico destino, inicio del día, inicio (para el fin) e inicio
+    private static final String SIN_SOLAPAMIENTO_DESTINO = "\nAND " + SolapamientoCitas.condicion(
+            " AND o.id <> citas.id", "DATEADD(minute, citas.duracion_minutos, CAST(? AS DATETIME2))");
+
+    // Se arman una vez, al cargar la clase
+    private static final Map<TransicionCita, String> SENTENCIAS = new EnumMap<>(TransicionCita.class);
+
+    static {
+        for (TransicionCita transicion : TransicionCita.values()) {
+            List<String> origenes = new ArrayList<>();
+            for (String origen : transicion.origenes()) {
+                origenes.add("'" + origen + "'");
+            }
+            String enOrigen = String.join(", ", origenes);
+            String condicion = transicion.soloIniciadas() ? SOLO_INICIADAS : "";
+            String destino = transicion.destino() == null ? "estado" : "'" + transicion.destino() + "'";
+
+            List<String> lote = new ArrayList<>();
+            if (transicion == TransicionCita.REPROGRAMAR) {
+                lote.add(SQL_HISTORIAL.formatted(transicion.name(), destino, enOrigen, condicion + SIN_SOLAPAMIENTO_DESTINO).strip());
+                // El movimiento lee la agenda de origen antes del UPDATE
+                lote.add(RegistroCambiosCitas.SQL_MOVIMIENTO.strip());
+                lote.add(SQL_TRANSICION.formatted(transicion.asignaciones(), enOrigen, condicion).strip());
+            } else {
+                lote.add(SQL_HISTORIAL.formatted(transicion.name(), destino, enOrigen, condicion).strip());
+                lote.add(SQL_TRANSICION.formatted(transicion.asignaciones(), enOrigen, condicion).strip());
+                lote.add(RegistroCambiosCitas.SQL_DESDE_CITA.strip());
+            }
+            lote.add(Outbox.SQL_PUBLICAR.strip());
+            SENTENCIAS.put(transicion, "/* TransicionesCita." + transicion.name() + " */\n" + String.join(";\n", lote));
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RegistroCambiosCitas registroCambios;
+
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Aplica la transición a la cita. valores son los parámetros de las asignaciones de
+     * la transición, en su orden; en REPROGRAMAR son el médico y la fecha (Timestamp)
+     * nuevos. Lanza RuntimeException si la cita no existe o su estado no lo permite.
+     * Requiere una transacción activa.
+     */
+    public void aplicar(TransicionCita transicion, long citaId, Long usuarioId, String motivo,
+                        Map<String, String> carga, Object... valores) {
+        registroCambios.marcarHastaFinDeTransaccion();
+        outbox.avisarAlConfirmar();
+
+        // Parámetros en el orden de las sentencias del lote
+        List<Object> parametros = new ArrayList<>();
+        Collections.addAll(parametros, usuarioId, motivo, citaId);
+        if (transicion == TransicionCita.REPROGRAMAR) {
+            Timestamp inicio = (Timestamp) valores[1];
+            Collections.addAll(parametros, valores[0], Timestamp.valueOf(inicio.toLocalDateTime().toLocalDate().atStartOfDay()),
+                    inicio, inicio);
+            Collections.addAll(parametros, valores[0], valores[1], citaId);
+            Collections.addAll(parametros, valores);
+            parametros.add(citaId);
+        } else {
+            Collections.addAll(parametros, valores);
+            Collections.addAll(parametros, citaId, transicion.tipoCambio(), citaId);
+        }
+        Collections.addAll(parametros, transicion.evento(), citaId, outbox.serializar(carga));
+
+        Integer filas = jdbcTemplate.execute(SENTENCIAS.get(transicion), (PreparedStatementCallback<Integer>) ps -> {
+            new ArgumentPreparedStatementSetter(parametros.toArray()).setValues(ps);
+            int historial = ps.execute() ? -1 : ps.getUpdateCount();
+            // Se recorren los demás resultados para que un error en otra sentencia del lote no se pierda
+            while (ps.getMoreResults() || ps.getUpdateCount() != -1) {
+                // nada
+            }
+            return historial;
+        });
+
+        if (filas == null || filas == 0) {
+            throw new RuntimeException(motivoRechazo(transicion, citaId));
+        }
+    }
+
+    /**
+     * Historial de una transición aplicada por conjuntos (ausencias de un médico).
+     * Toma la agenda de la fila: en REPROGRAMAR se llama antes del UPDATE y en las
+     * demás, que no mueven la cita, después.
+     */
+    public void registrarHistorial(TransicionCita transicion, Map<Long, String> estadoAnteriorPorCita,
+                                   Long usuarioId, String motivo) {
+        if (estadoAnteriorPorCita.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>(estadoAnteriorPorCita.size());
+        estadoAnteriorPorCita.forEach((citaId, estado) ->
+                filas.add(new Object[]{transicion.name(), estado, usuarioId, motivo, citaId}));
+        jdbcTemplate.batchUpdate(SQL_HISTORIAL_LOTE, filas);
+    }
+
+    private String motivoRechazo(TransicionCita transicion, long citaId) {
+        String estado;
+        try {
+            estado = jdbcTemplate.queryForObject(
+                    "/* TransicionesCita.motivoRechazo */ SELECT estado FROM citas WHERE id = ?", String.class, citaId);
+        } catch (EmptyResultDataAccessException e) {
+            return "ERROR: Cita no existe.";
+        }
+        if (transicion.permite(estado) && transicion == TransicionCita.REPROGRAMAR) {
+            // El estado lo permitía: otra cita activa del médico destino se cruza con el nuevo horario
+            throw SolapamientoCitas.conflicto();
+        }
+        if (transicion.permite(estado) && transicion.soloIniciadas()) {
+            return "ERROR: La cita aún no ha comenzado; no puede " + transicion.verbo() + ".";
+        }
+        return "ERROR: La cita no puede " + transicion.verbo() + " en su estado actual (" + estado + ").";
+    }
+}
@@ -0,0 +1,64 @@
+package pe.edu.uni.APIEDUCA.service;
+
+/**
+ * Contador de viajes (sentencias enviadas) a la base de datos por hilo.
+ * Lo incrementa el JdbcTemplate de la aplicación cada vez que prepara una sentencia.
+ * También acumula, por solicitud HTTP, los viajes, la espera por conexiones del pool
+ * y el tiempo que se retuvieron (ver MetricasSolicitudInterceptor).
+ */
+public final class ViajesBd {
+
+    private static final int VIAJES = 0;
+    private static final int VIAJES_SOLICITUD = 1;
+    private static final int ESPERA_NANOS = 2;
+    private static final int RETENCION_NANOS = 3;
+
+    private static final ThreadLocal<long[]> CONTADOR = ThreadLocal.withInitial(() -> new long[4]);
+
+    private ViajesBd() {
+    }
+
+    // Reinicia el contador de la operación en curso (lo usan los servicios)
+    public static void iniciar() {
+        CONTADOR.get()[VIAJES] = 0;
+    }
+
+    // Reinicia los acumulados de la solicitud HTTP
+    public static void iniciarSolicitud() {
+        long[] contador = CONTADOR.get();
+        contador[VIAJES] = 0;
+        contador[VIAJES_SOLICITUD] = 0;
+        contador[ESPERA_NANOS] = 0;
+        contador[RETENCION_NANOS] = 0;
+    }
+
+    public static void registrar() {
+        long[] contador = CONTADOR.get();
+        contador[VIAJES]++;
+        contador[VIAJES_SOLICITUD]++;
+    }
+
+    public static void registrarEsperaConexion(long nanos) {
+        CONTADOR.get()[ESPERA_NANOS] += nanos;
+    }
+
+    public static void registrarRetencionConexion(long nanos) {
+        CONTADOR.get()[RETENCION_NANOS] += nanos;
+    }
+
+    public static int actual() {
+        return (int) CONTADOR.get()[VIAJES];
+    }
+
+    public static long viajesSolicitud() {
+        return CONTADOR.get()[VIAJES_SOLICITUD];
+    }
+
+    public static long esperaConexionNanos() {
+        return CONTADOR.get()[ESPERA_NANOS];
+    }
+
+    public static long retencionConexionNanos() {
+        return CONTADOR.get()[RETENCION_NANOS];
+    }
+}
@@ -0,0 +1,25 @@
+-- Garantiza en la base que un médico no tenga dos citas activas que empiecen
+-- a la misma hora, aunque las escrituras vengan de nodos distintos.
+-- Dentro de un nodo, BloqueoMedicos ya serializa la verificación de solapamiento.
+-- Al chocar con este índice la aplicación recibe DuplicateKeyException y
+-- ReintentoReserva recarga la agenda del médico y reintenta.
+-- El índice no ve los cruces (09:00 de 30 minutos y 09:15): para esos cada INSERT o
+-- UPDATE que reserva agenda lleva un NOT EXISTS sobre las citas activas del médico en
+-- ese día con WITH (UPDLOCK, HOLDLOCK) (SolapamientoCitas), que usa este mismo índice
+-- para bloquear el rango (medico_id, fecha_hora) hasta el fin de la transacción.
+
+-- 1. Revisar duplicados existentes (el índice no se crea si los hay)
+SELECT medico_id, fecha_hora, COUNT(*) AS cantidad
+FROM citas
+WHERE estado IN ('PROGRAMADA', 'CONFIRMADA')
+GROUP BY medico_id, fecha_hora
+HAVING COUNT(*) > 1;
+GO
+
+-- 2. Índice único filtrado sobre las citas activas
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UX_citas_medico_fecha_activa' AND object_id = OBJECT_ID('citas'))
+    CREATE UNIQUE NONCLUSTERED INDEX UX_citas_medico_fecha_activa
+    ON citas(medico_id, fecha_hora)
+    INCLUDE (duracion_minutos)
+    WHERE estado IN ('PROGRAMADA', 'CONFIRMADA');
+GO
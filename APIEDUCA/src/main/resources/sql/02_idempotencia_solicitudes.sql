@@ -0,0 +1,19 @@
+-- Respuestas de los POST con encabezado Idempotency-Key, compartidas entre nodos.
+-- Solo se usa con clinica.idempotencia.bd.habilitado=true (AlmacenIdempotenciaBd).
+-- clave = "<operación>|<Idempotency-Key>"; huella = SHA-256 del cuerpo de la solicitud.
+
+IF OBJECT_ID('idempotencia_solicitudes') IS NULL
+    CREATE TABLE idempotencia_solicitudes (
+        clave VARCHAR(200) NOT NULL PRIMARY KEY,
+        huella CHAR(64) NOT NULL,
+        estado VARCHAR(20) NOT NULL,          -- EN_PROCESO, COMPLETADA
+        estado_http INT NULL,
+        cuerpo NVARCHAR(MAX) NULL,
+        fecha_creacion DATETIME2 NOT NULL,
+        expira_en DATETIME2 NOT NULL
+    );
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_idempotencia_expira' AND object_id = OBJECT_ID('idempotencia_solicitudes'))
+    CREATE INDEX IX_idempotencia_expira ON idempotencia_solicitudes(expira_en);
+GO
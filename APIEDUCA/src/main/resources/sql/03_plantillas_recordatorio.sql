@@ -0,0 +1,28 @@
+-- Plantillas de los textos de recordatorio por canal, idioma y clínica (PlantillasRecordatorioService).
+-- clinica_id NULL aplica a todas las clínicas. Variables: {paciente}, {fecha}, {medico}, {clinica}.
+-- Los cambios se ven al vencer clinica.recordatorios.plantillas.ttl-segundos o con
+-- POST /api/admin/cache/plantillas/invalidar.
+
+IF OBJECT_ID('plantillas_recordatorio') IS NULL
+    CREATE TABLE plantillas_recordatorio (
+        id BIGINT IDENTITY(1,1) PRIMARY KEY,
+        canal VARCHAR(10) NOT NULL,           -- EMAIL, SMS
+        idioma VARCHAR(20) NOT NULL,          -- es, es-PE, en, ...
+        clinica_id BIGINT NULL,
+        cuerpo NVARCHAR(MAX) NOT NULL,
+        activo BIT NOT NULL DEFAULT 1,
+        fecha_actualizacion DATETIME2 NOT NULL
+    );
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UX_plantillas_canal_idioma_clinica' AND object_id = OBJECT_ID('plantillas_recordatorio'))
+    CREATE UNIQUE INDEX UX_plantillas_canal_idioma_clinica ON plantillas_recordatorio(canal, idioma, clinica_id);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM plantillas_recordatorio)
+    INSERT INTO plantillas_recordatorio(canal, idioma, clinica_id, cuerpo, activo, fecha_actualizacion)
+    VALUES ('EMAIL', 'es', NULL, N'Estimado/a {paciente},' + CHAR(10) + CHAR(10) + N'Le recordamos su cita médica programada para el {fecha} con {medico}.' + CHAR(10) + CHAR(10) + N'{clinica}', 1, GETDATE()),
+           ('SMS', 'es', NULL, N'Hola {paciente}, recordatorio: cita médica {fecha} con {medico}. {clinica}', 1, GETDATE()),
+           ('EMAIL', 'en', NULL, N'Dear {paciente},' + CHAR(10) + CHAR(10) + N'This is a reminder of your medical appointment on {fecha} with {medico}.' + CHAR(10) + CHAR(10) + N'{clinica}', 1, GETDATE()),
+           ('SMS', 'en', NULL, N'Hi {paciente}, reminder: appointment {fecha} with {medico}. {clinica}', 1, GETDATE());
+GO
@@ -0,0 +1,32 @@
+-- Registro de cambios de citas para el feed GET /api/citas/changes?since=<version>
+-- y los ETag de GET /api/citas/agenda (RegistroCambiosCitas, AgendaService).
+-- Cada alta, cancelación o reprogramación agrega una fila en la misma transacción
+-- que el cambio; version es creciente. En una reprogramación, medico_anterior_id y
+-- fecha_hora_anterior indican la agenda de la que salió la cita.
+
+IF OBJECT_ID('citas_cambios') IS NULL
+    CREATE TABLE citas_cambios (
+        version BIGINT IDENTITY(1,1) PRIMARY KEY,
+        cita_id BIGINT NOT NULL,
+        tipo VARCHAR(20) NOT NULL,            -- PROGRAMADA, CANCELADA, REPROGRAMADA
+        medico_id BIGINT NOT NULL,
+        fecha_hora DATETIME2 NOT NULL,
+        estado VARCHAR(20) NOT NULL,
+        medico_anterior_id BIGINT NULL,
+        fecha_hora_anterior DATETIME2 NULL,
+        fecha_registro DATETIME2 NOT NULL
+    );
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_citas_cambios_medico_fecha' AND object_id = OBJECT_ID('citas_cambios'))
+    CREATE INDEX IX_citas_cambios_medico_fecha ON citas_cambios(medico_id, fecha_hora) INCLUDE (version);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_citas_cambios_medico_anterior' AND object_id = OBJECT_ID('citas_cambios'))
+    CREATE INDEX IX_citas_cambios_medico_anterior ON citas_cambios(medico_anterior_id, fecha_hora_anterior)
+        INCLUDE (version) WHERE medico_anterior_id IS NOT NULL;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_citas_cambios_registro' AND object_id = OBJECT_ID('citas_cambios'))
+    CREATE INDEX IX_citas_cambios_registro ON citas_cambios(fecha_registro);
+GO
@@ -0,0 +1,34 @@
+-- Outbox transaccional (Outbox, RelayOutbox). Cada cambio de estado de una cita
+-- escribe aquí un evento compacto en la misma transacción que el cambio; un relay
+-- en segundo plano los entrega por lotes a los consumidores internos (por ejemplo
+-- la reprogramación de recordatorios) y los marca PROCESADO, o los reintenta con
+-- espera creciente hasta max-intentos y luego los deja FALLIDO para revisión.
+-- Los eventos de un mismo agregado se entregan en orden de id.
+
+IF OBJECT_ID('outbox') IS NULL
+    CREATE TABLE outbox (
+        id BIGINT IDENTITY(1,1) PRIMARY KEY,
+        tipo VARCHAR(40) NOT NULL,            -- CITA_PROGRAMADA, CITA_CANCELADA, CITA_REPROGRAMADA
+        agregado_id BIGINT NOT NULL,          -- id de la cita
+        carga VARCHAR(1000) NULL,             -- JSON plano con los datos del cambio
+        estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',  -- PENDIENTE, PROCESADO, FALLIDO
+        intentos INT NOT NULL DEFAULT 0,
+        proximo_intento DATETIME2 NOT NULL,
+        bloqueado_hasta DATETIME2 NULL,       -- lease del relay que lo tomó
+        error VARCHAR(1000) NULL,
+        fecha_registro DATETIME2 NOT NULL,
+        procesado_en DATETIME2 NULL
+    );
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_outbox_pendientes' AND object_id = OBJECT_ID('outbox'))
+    CREATE INDEX IX_outbox_pendientes ON outbox(proximo_intento, id) WHERE estado = 'PENDIENTE';
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_outbox_agregado' AND object_id = OBJECT_ID('outbox'))
+    CREATE INDEX IX_outbox_agregado ON outbox(agregado_id, id) INCLUDE (estado);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_outbox_procesado' AND object_id = OBJECT_ID('outbox'))
+    CREATE INDEX IX_outbox_procesado ON outbox(procesado_en) WHERE estado = 'PROCESADO';
+GO
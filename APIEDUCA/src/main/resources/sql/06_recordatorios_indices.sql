@@ -0,0 +1,12 @@
+-- Índices para la rueda de temporizadores de recordatorios (PlanificadorRecordatorios).
+-- La recarga periódica lee solo los pendientes que vencen antes del horizonte y cada
+-- cambio de una cita relee sus recordatorios; ninguna de las dos recorre la tabla.
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_recordatorios_pendientes_envio' AND object_id = OBJECT_ID('recordatorios'))
+    CREATE INDEX IX_recordatorios_pendientes_envio ON recordatorios(fecha_envio_programada)
+        INCLUDE (intentos) WHERE estado = 'PENDIENTE';
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_recordatorios_cita' AND object_id = OBJECT_ID('recordatorios'))
+    CREATE INDEX IX_recordatorios_cita ON recordatorios(cita_id) INCLUDE (tipo, estado, intentos, fecha_envio_programada);
+GO
@@ -0,0 +1,35 @@
+-- Historial de transiciones de estado de las citas (TransicionCita, TransicionesCita).
+-- Cada confirmación, cancelación, reprogramación, atención o inasistencia agrega una
+-- fila en la misma sentencia por lotes que el cambio, con el estado y la agenda que
+-- tenía la cita antes. Las filas no se modifican ni se borran.
+-- Reemplaza a citas.reprogramada_desde, que guardaba el id de la propia cita y no
+-- conservaba la agenda anterior; la columna queda para compatibilidad y ya no se escribe.
+
+IF OBJECT_ID('citas_transiciones') IS NULL
+    CREATE TABLE citas_transiciones (
+        id BIGINT IDENTITY(1,1) PRIMARY KEY,
+        cita_id BIGINT NOT NULL,
+        transicion VARCHAR(20) NOT NULL,      -- CONFIRMAR, CANCELAR, REPROGRAMAR, COMPLETAR, NO_ASISTIO
+        estado_anterior VARCHAR(20) NOT NULL,
+        estado_nuevo VARCHAR(20) NOT NULL,
+        medico_anterior_id BIGINT NOT NULL,
+        fecha_hora_anterior DATETIME2 NOT NULL,
+        usuario_id BIGINT NULL,
+        motivo VARCHAR(255) NULL,
+        fecha_registro DATETIME2 NOT NULL
+    );
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_citas_transiciones_cita' AND object_id = OBJECT_ID('citas_transiciones'))
+    CREATE INDEX IX_citas_transiciones_cita ON citas_transiciones(cita_id, id);
+GO
+
+-- Solo inserciones
+IF OBJECT_ID('TR_citas_transiciones_solo_insercion') IS NULL
+    EXEC('CREATE TRIGGER TR_citas_transiciones_solo_insercion ON citas_transiciones
+          INSTEAD OF UPDATE, DELETE
+          AS THROW 50001, ''citas_transiciones solo admite inserciones.'', 1;');
+GO
+
+-- NO_ASISTIO es un estado nuevo de citas.estado. Si la tabla tiene una restricción
+-- CHECK sobre los estados, debe incluirlo.
@@ -0,0 +1,24 @@
+-- Foto periódica de las cifras diarias del tablero (EstadisticasCitas, GET /api/estadisticas).
+-- Una fila por día de cita y médico. Las cifras se mantienen en memoria a partir de
+-- citas_cambios y se escriben aquí cada clinica.estadisticas.foto-ms; version_cambios es
+-- la última versión de citas_cambios aplicada en la foto, desde donde se retoma al iniciar,
+-- y ningún nodo escribe cifras de citas con una versión menor. recordatorios_enviados no se
+-- reemplaza: cada nodo le suma los envíos que hizo desde su última foto.
+-- Los días fuera de la ventana en memoria (clinica.estadisticas.dias-memoria) se leen de aquí.
+
+IF OBJECT_ID('estadisticas_citas_dia') IS NULL
+    CREATE TABLE estadisticas_citas_dia (
+        dia DATE NOT NULL,
+        medico_id BIGINT NOT NULL,
+        citas INT NOT NULL,                   -- citas con fecha ese día, en cualquier estado
+        canceladas INT NOT NULL,
+        reprogramadas INT NOT NULL,           -- reprogramaciones que llegaron a ese día
+        completadas INT NOT NULL,
+        no_asistio INT NOT NULL,
+        minutos_ocupados INT NOT NULL,        -- duración de las citas no canceladas
+        recordatorios_enviados INT NOT NULL,  -- por día de envío, de todos los nodos
+        version_cambios BIGINT NOT NULL,
+        fecha_actualizacion DATETIME2 NOT NULL,
+        CONSTRAINT PK_estadisticas_citas_dia PRIMARY KEY (dia, medico_id)
+    );
+GO
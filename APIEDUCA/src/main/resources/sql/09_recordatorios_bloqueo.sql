@@ -0,0 +1,8 @@
+-- Lease de envío de recordatorios (DespachoRecordatoriosService), como en el outbox.
+-- Antes de llamar al proveedor cada nodo toma los recordatorios con un UPDATE condicionado
+-- (PENDIENTE y sin lease vigente) y envía solo los que tomó; al guardar el resultado se
+-- libera. Si el nodo cae, otro los vuelve a tomar cuando vence el lease.
+
+IF COL_LENGTH('recordatorios', 'bloqueado_hasta') IS NULL
+    ALTER TABLE recordatorios ADD bloqueado_hasta DATETIME2 NULL;
+GO
@@ -0,0 +1,76 @@
+package pe.edu.uni.APIEDUCA.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JdbcTemplateInstrumentadoTest {
+
+	private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+	private JdbcTemplateInstrumentado jdbc;
+
+	@BeforeEach
+	void preparar() {
+		jdbc = new JdbcTemplateInstrumentado(
+				new DriverManagerDataSource("jdbc:h2:mem:instrumentado;MODE=MSSQLServer;DB_CLOSE_DELAY=-1", "sa", ""),
+				registro);
+		jdbc.execute("/* Prueba.crear */ CREATE TABLE IF NOT EXISTS numeros(n INT)");
+		jdbc.update("DELETE FROM numeros");
+		jdbc.batchUpdate("INSERT INTO numeros(n) VALUES(?)", List.of(new Object[]{1}, new Object[]{2}));
+	}
+
+	@Test
+	void cadaConsultaTieneSuPropiaMetrica() {
+		jdbc.queryForObject("/* Prueba.contar */ SELECT COUNT(1) FROM numeros", Integer.class);
+		jdbc.queryForObject("/* Prueba.maximo */ SELECT MAX(n) FROM numeros", Integer.class);
+		jdbc.queryForObject("/* Prueba.maximo */ SELECT MAX(n) FROM numeros WHERE n < ?", Integer.class, 5);
+
+		assertEquals(1, medidas("Prueba.contar", "ok"));
+		assertEquals(2, medidas("Prueba.maximo", "ok"));
+		assertEquals(1, medidas("Prueba.crear", "ok"));
+		// DELETE e INSERT sin nombre
+		assertEquals(2, medidas(JdbcTemplateInstrumentado.SIN_NOMBRE, "ok"));
+	}
+
+	@Test
+	void laConsultaAnidadaNoPisaLaMedicionDeLaExterna() {
+		jdbc.query("/* Prueba.externa */ SELECT n FROM numeros", (RowCallbackHandler) rs ->
+				jdbc.queryForObject("/* Prueba.interna */ SELECT COUNT(1) FROM numeros WHERE n = ?", Integer.class,
+						rs.getInt(1)));
+
+		assertEquals(1, medidas("Prueba.externa", "ok"));
+		assertEquals(2, medidas("Prueba.interna", "ok"));
+	}
+
+	@Test
+	void losErroresYLosCreadoresAManoSeMidenConSuNombre() {
+		assertThrows(DataAccessException.class,
+				() -> jdbc.queryForObject("/* Prueba.fallida */ SELECT x FROM no_existe", Integer.class));
+		String sql = "/* Prueba.aMano */ SELECT n FROM numeros";
+		jdbc.query(new JdbcTemplateInstrumentado.SentenciaConSql(sql, con -> {
+			PreparedStatement ps = con.prepareStatement(sql);
+			ps.setFetchSize(1);
+			return ps;
+		}), (RowCallbackHandler) rs -> {
+		});
+
+		assertEquals(1, medidas("Prueba.aMano", "ok"));
+		assertNull(registro.find("clinica.bd.consulta").tag("consulta", "Prueba.fallida").tag("resultado", "ok").timer());
+	}
+
+	private long medidas(String consulta, String resultado) {
+		Timer timer = registro.find("clinica.bd.consulta").tag("consulta", consulta).tag("resultado", resultado).timer();
+		return timer == null ? 0 : timer.count();
+	}
+}
@@ -0,0 +1,143 @@
+package pe.edu.uni.APIEDUCA.notificacion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CanalProtegidoTest {
+
+	private static final CanalProtegido.Limites LIMITES = new CanalProtegido.Limites(
+			10, 1, 1, 0.2, 1000, 1000, 20, 10, 0.5, 60_000, 30_000);
+
+	private final AtomicLong reloj = new AtomicLong(1_000_000);
+	private final CanalFalso falso = new CanalFalso();
+	private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+	private final CanalProtegido canal = new CanalProtegido(falso, LIMITES, registro, reloj::get);
+
+	@Test
+	void loQueExcedeLaTasaSeDifiere() {
+		List<ResultadoEnvio> resultados = canal.enviarLote(mensajes(15));
+		assertEquals(10, resultados.stream().filter(ResultadoEnvio::exito).count());
+		assertTrue(resultados.get(14).diferido());
+		assertEquals(10, falso.recibidos.get());
+
+		// Medio segundo a 10/s recarga 5 fichas
+		reloj.addAndGet(500);
+		assertEquals(5, canal.enviarLote(mensajes(8)).stream().filter(ResultadoEnvio::exito).count());
+		assertEquals(8.0, registro.get("clinica.notificaciones.diferidos").tag("motivo", "tasa").counter().count());
+	}
+
+	@Test
+	void elCircuitoSeAbreYSeCierraConUnaPruebaExitosa() {
+		falso.fallar = true;
+		canal.enviarLote(mensajes(10));
+		assertEquals(CanalProtegido.EstadoCircuito.ABIERTO, canal.estadoCircuito());
+		assertTrue(canal.tasa() < LIMITES.tasaMaxima());
+
+		// Abierto: nada llega al proveedor
+		reloj.addAndGet(10_000);
+		ResultadoEnvio diferido = canal.enviar(mensajes(1).get(0));
+		assertTrue(diferido.diferido());
+		assertEquals(20_000, diferido.diferirMs());
+		assertEquals(10, falso.recibidos.get());
+
+		// Pasada la espera sale un solo mensaje de prueba
+		falso.fallar = false;
+		reloj.addAndGet(20_000);
+		List<ResultadoEnvio> resultados = canal.enviarLote(mensajes(5));
+		assertEquals(1, resultados.stream().filter(ResultadoEnvio::exito).count());
+		assertEquals(CanalProtegido.EstadoCircuito.CERRADO, canal.estadoCircuito());
+		assertEquals(1.0, registro.get("clinica.notificaciones.circuito.aperturas").counter().count());
+	}
+
+	@Test
+	void losErroresBajanLaTasaYLosAciertosLaRecuperan() {
+		falso.fallarCada = 3;
+		for (int i = 0; i < 3; i++) {
+			reloj.addAndGet(1000);
+			canal.enviarLote(mensajes(3));
+		}
+		double reducida = canal.tasa();
+		assertTrue(reducida < LIMITES.tasaMaxima(), "La tasa no bajó: " + reducida);
+
+		falso.fallarCada = 0;
+		for (int i = 0; i < 5; i++) {
+			reloj.addAndGet(1000);
+			canal.enviarLote(mensajes(1));
+		}
+		assertTrue(canal.tasa() > reducida);
+	}
+
+	@Test
+	void laLentitudSeMidePorMensajeYNoPorLote() {
+		CanalProtegido.Limites limites = new CanalProtegido.Limites(
+				100, 1, 1, 0.2, 1000, 1000, 20, 10, 0.5, 50, 30_000);
+		CanalProtegido lento = new CanalProtegido(falso, limites, new SimpleMeterRegistry(), reloj::get);
+		falso.esperaMs = 100;
+
+		// 10 mensajes en unos 100 ms: 10 ms por mensaje, por debajo del umbral de 50
+		lento.enviarLote(mensajes(10));
+		assertEquals(CanalProtegido.EstadoCircuito.CERRADO, lento.estadoCircuito());
+
+		// Uno por envío, 100 ms cada uno: todos cuentan como fallo y el circuito se abre
+		for (int i = 0; i < 10; i++) {
+			reloj.addAndGet(100);
+			lento.enviar(mensajes(1).get(0));
+		}
+		assertEquals(CanalProtegido.EstadoCircuito.ABIERTO, lento.estadoCircuito());
+	}
+
+	private static List<MensajeNotificacion> mensajes(int cantidad) {
+		List<MensajeNotificacion> lista = new ArrayList<>();
+		for (int i = 0; i < cantidad; i++) {
+			lista.add(new MensajeNotificacion(i, "paciente" + i + "@correo.pe", "Recordatorio"));
+		}
+		return lista;
+	}
+
+	private static class CanalFalso implements CanalNotificacion {
+
+		private final AtomicInteger recibidos = new AtomicInteger();
+		private boolean fallar;
+		private int fallarCada;
+		private long esperaMs;
+
+		@Override
+		public String tipo() {
+			return "EMAIL";
+		}
+
+		@Override
+		public ResultadoEnvio enviar(MensajeNotificacion mensaje) {
+			int numero = recibidos.incrementAndGet();
+			if (fallar || (fallarCada > 0 && numero % fallarCada == 0)) {
+				return ResultadoEnvio.fallo("Proveedor no disponible");
+			}
+			return ResultadoEnvio.ok();
+		}
+
+		@Override
+		public List<ResultadoEnvio> enviarLote(List<MensajeNotificacion> mensajes) {
+			// Como el proveedor: la espera se paga una vez por llamada
+			if (esperaMs > 0) {
+				try {
+					Thread.sleep(esperaMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			List<ResultadoEnvio> resultados = new ArrayList<>();
+			for (MensajeNotificacion mensaje : mensajes) {
+				resultados.add(enviar(mensaje));
+			}
+			return resultados;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba de carga de punta a punta: levanta la aplicación completa sobre H2 (modo
+ * MSSQLServer) con 2000 médicos y un millón de citas, y lanza por HTTP una mezcla
+ * concurrente de programar, cancelar y consultar recordatorios pendientes.
+ * Reporta throughput, percentiles de latencia y tasas de rechazo y error por
+ * operación, y falla si el throughput cae más de lo permitido respecto de la
+ * línea base. Solo corre con el perfil carga (mvn -Pcarga test).
+ */
+@Tag("carga")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:carga;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.datasource.hikari.maximum-pool-size=20",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-carga-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class CargaEndpointsTest {
+
+	private static final long RECEPCIONISTA = 1;
+	private static final long PRIMER_MEDICO = 2;
+	private static final int TOTAL_MEDICOS = 2000;
+	private static final int TOTAL_PACIENTES = 50000;
+
+	private enum Operacion { PROGRAMAR, CANCELAR, PENDIENTES }
+
+	@LocalServerPort
+	private int puerto;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// Los valores y umbrales vienen solo del pom (perfil carga, -Dcarga.*=...)
+	@Value("${carga.hilos}")
+	private int hilos;
+
+	@Value("${carga.calentamiento-segundos}")
+	private int calentamientoSegundos;
+
+	@Value("${carga.duracion-segundos}")
+	private int duracionSegundos;
+
+	// Porcentajes de la mezcla; el resto de cada 100 solicitudes son consultas de pendientes
+	@Value("${carga.mezcla.programar:60}")
+	private int porcentajeProgramar;
+
+	@Value("${carga.mezcla.cancelar:25}")
+	private int porcentajeCancelar;
+
+	@Value("${carga.linea-base-rps}")
+	private double lineaBaseRps;
+
+	@Value("${carga.regresion-maxima}")
+	private double regresionMaxima;
+
+	@Value("${carga.errores-maximos}")
+	private double erroresMaximos;
+
+	private final HttpClient cliente = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(5))
+			.version(HttpClient.Version.HTTP_1_1)
+			.build();
+
+	private final Queue<Long> citasCancelables = new ConcurrentLinkedQueue<>();
+
+	@Test
+	void mezclaConcurrenteDeEndpoints() throws Exception {
+		// Citas futuras que los hilos irán cancelando, en orden aleatorio
+		List<Long> ids = jdbcTemplate.queryForList("""
+				SELECT id FROM citas
+				WHERE estado = 'PROGRAMADA' AND fecha_hora > CURRENT_TIMESTAMP
+				""", Long.class);
+		Collections.shuffle(ids);
+		citasCancelables.addAll(ids);
+		System.out.printf("Carga: %d citas, %d cancelables, %d hilos, %d s de calentamiento y %d s de medición%n",
+				jdbcTemplate.queryForObject("SELECT COUNT(*) FROM citas", Long.class), ids.size(),
+				hilos, calentamientoSegundos, duracionSegundos);
+
+		ejecutar(calentamientoSegundos);
+		Resultados resultados = ejecutar(duracionSegundos);
+		resultados.imprimir(duracionSegundos);
+
+		// Reporte
+		double rps = resultados.total() / (double) duracionSegundos;
+		double tasaErrores = resultados.errores() / (double) Math.max(1, resultados.total());
+		assertTrue(tasaErrores <= erroresMaximos,
+				String.format("Tasa de errores %.4f supera el máximo %.4f", tasaErrores, erroresMaximos));
+		if (lineaBaseRps > 0) {
+			double minimo = lineaBaseRps * (1 - regresionMaxima);
+			assertTrue(rps >= minimo,
+					String.format("Throughput %.1f sol/s por debajo de %.1f (línea base %.1f, regresión máxima %.0f%%)",
+							rps, minimo, lineaBaseRps, regresionMaxima * 100));
+		}
+	}
+
+	private Resultados ejecutar(int segundos) throws Exception {
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		CountDownLatch largada = new CountDownLatch(1);
+		try {
+			List<Future<Resultados>> futuros = new ArrayList<>();
+			for (int h = 0; h < hilos; h++) {
+				futuros.add(ejecutor.submit(() -> {
+					largada.await();
+					Resultados propios = new Resultados();
+					long fin = System.nanoTime() + segundos * 1_000_000_000L;
+					while (System.nanoTime() < fin) {
+						solicitar(elegirOperacion(), propios);
+					}
+					return propios;
+				}));
+			}
+			largada.countDown();
+
+			Resultados total = new Resultados();
+			for (Future<Resultados> futuro : futuros) {
+				total.sumar(futuro.get());
+			}
+			return total;
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+
+	private Operacion elegirOperacion() {
+		int valor = ThreadLocalRandom.current().nextInt(100);
+		if (valor < porcentajeProgramar) {
+			return Operacion.PROGRAMAR;
+		}
+		if (valor < porcentajeProgramar + porcentajeCancelar && !citasCancelables.isEmpty()) {
+			return Operacion.CANCELAR;
+		}
+		return Operacion.PENDIENTES;
+	}
+
+	private void solicitar(Operacion operacion, Resultados resultados) throws IOException, InterruptedException {
+		HttpRequest solicitud = switch (operacion) {
+			case PROGRAMAR -> post("/api/citas/programar", nuevaCita());
+			case CANCELAR -> {
+				Long citaId = citasCancelables.poll();
+				if (citaId == null) {
+					yield get("/api/recordatorios/pendientes");
+				}
+				yield post("/api/citas/cancelar", CitasProcesosDto.builder()
+						.citaId(citaId)
+						.usuarioId(RECEPCIONISTA)
+						.motivo("Paciente no podrá asistir")
+						.build());
+			}
+			case PENDIENTES -> get("/api/recordatorios/pendientes");
+		};
+
+		long inicio = System.nanoTime();
+		int estado;
+		try {
+			estado = cliente.send(solicitud, HttpResponse.BodyHandlers.discarding()).statusCode();
+		} catch (IOException e) {
+			estado = -1;
+		}
+		resultados.registrar(operacion, System.nanoTime() - inicio, estado);
+	}
+
+	// Horario libre o no: los choques con citas existentes cuentan como rechazos
+	private CitasDto nuevaCita() {
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		LocalDate dia = LocalDate.now().plusDays(1 + azar.nextInt(49));
+		if (dia.getDayOfWeek() == DayOfWeek.SUNDAY) {
+			dia = dia.plusDays(1);
+		}
+		int ultimoTurno = dia.getDayOfWeek() == DayOfWeek.SATURDAY ? 1 : 2;
+		LocalDateTime hora = dia.atTime(azar.nextInt(ultimoTurno) == 0 ? 8 : 14, 0)
+				.plusMinutes(30L * azar.nextInt(10));
+		return CitasDto.builder()
+				.pacienteId(1 + azar.nextInt(TOTAL_PACIENTES))
+				.medicoId(PRIMER_MEDICO + azar.nextInt(TOTAL_MEDICOS))
+				.fechaHora(hora)
+				.duracionMinutos(30)
+				.motivoConsulta("Control")
+				.creadaPor(RECEPCIONISTA)
+				.build();
+	}
+
+	private HttpRequest post(String ruta, Object cuerpo) throws IOException {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.timeout(Duration.ofSeconds(30))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(cuerpo)))
+				.build();
+	}
+
+	private HttpRequest get(String ruta) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.timeout(Duration.ofSeconds(30))
+				.GET()
+				.build();
+	}
+
+	/**
+	 * Latencias y resultados por operación. Cada hilo llena el suyo y al final se suman.
+	 * 2xx es éxito, 4xx es rechazo de negocio (horario ocupado, cita ya cancelada)
+	 * y 5xx o fallas de conexión son errores.
+	 */
+	private static class Resultados {
+
+		private final long[][] latencias = new long[Operacion.values().length][1024];
+		private final int[] cantidades = new int[Operacion.values().length];
+		private final int[] rechazos = new int[Operacion.values().length];
+		private final int[] errores = new int[Operacion.values().length];
+
+		void registrar(Operacion operacion, long nanos, int estado) {
+			int i = operacion.ordinal();
+			if (cantidades[i] == latencias[i].length) {
+				latencias[i] = Arrays.copyOf(latencias[i], latencias[i].length * 2);
+			}
+			latencias[i][cantidades[i]++] = nanos;
+			if (estado >= 400 && estado < 500) {
+				rechazos[i]++;
+			} else if (estado < 200 || estado >= 500) {
+				errores[i]++;
+			}
+		}
+
+		void sumar(Resultados otros) {
+			for (int i = 0; i < cantidades.length; i++) {
+				latencias[i] = Arrays.copyOf(latencias[i], cantidades[i] + otros.cantidades[i]);
+				System.arraycopy(otros.latencias[i], 0, latencias[i], cantidades[i], otros.cantidades[i]);
+				cantidades[i] += otros.cantidades[i];
+				rechazos[i] += otros.rechazos[i];
+				errores[i] += otros.errores[i];
+			}
+		}
+
+		long total() {
+			return Arrays.stream(cantidades).asLongStream().sum();
+		}
+
+		long errores() {
+			return Arrays.stream(errores).asLongStream().sum();
+		}
+
+		void imprimir(int segundos) {
+			System.out.printf("%-11s %8s %9s %9s %9s %9s %9s %9s %8s%n",
+					"Operación", "total", "sol/s", "p50 ms", "p90 ms", "p99 ms", "máx ms", "rechazos", "errores");
+			for (Operacion operacion : Operacion.values()) {
+				int i = operacion.ordinal();
+				long[] ordenadas = Arrays.copyOf(latencias[i], cantidades[i]);
+				Arrays.sort(ordenadas);
+				System.out.printf("%-11s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %8.2f%% %7.2f%%%n",
+						operacion, cantidades[i], cantidades[i] / (double) segundos,
+						percentil(ordenadas, 0.50), percentil(ordenadas, 0.90), percentil(ordenadas, 0.99),
+						percentil(ordenadas, 1.0),
+						porcentaje(rechazos[i], cantidades[i]), porcentaje(errores[i], cantidades[i]));
+			}
+			System.out.printf("%-11s %8d %9.1f%n", "TOTAL", total(), total() / (double) segundos);
+		}
+
+		private static double percentil(long[] ordenadas, double p) {
+			if (ordenadas.length == 0) {
+				return 0;
+			}
+			int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+			return ordenadas[Math.max(0, indice)] / 1e6;
+		}
+
+		private static double porcentaje(int parte, int total) {
+			return total == 0 ? 0 : 100.0 * parte / total;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ErroresEntradaRestTest {
+
+	private final JsonMapper mapper = JsonMapper.builder().findAndAddModules().build();
+	private final ErroresEntradaRest errores = new ErroresEntradaRest();
+
+	@Test
+	void soloLasFechasMalEscritasRecibenElMensajeDeFecha() {
+		assertEquals("ERROR: Formato de fecha u hora inválido o no soportado. Use yyyy-MM-dd HH:mm.",
+				mensaje("{\"medicoId\": 2, \"fechaHora\": \"15/06/2030 14:30\"}"));
+		assertEquals("ERROR: Cuerpo de la solicitud inválido en el campo duracionMinutos.",
+				mensaje("{\"medicoId\": 2, \"duracionMinutos\": \"media hora\"}"));
+		assertEquals("ERROR: Cuerpo de la solicitud inválido.",
+				mensaje("{\"medicoId\": 2,"));
+	}
+
+	@Test
+	void elCampoIncluyeLaPosicionEnLaLista() {
+		assertEquals("ERROR: Cuerpo de la solicitud inválido en el campo [1].pacienteId.",
+				mensaje("[{\"pacienteId\": 1}, {\"pacienteId\": \"x\"}]", new TypeReference<List<CitasDto>>() {
+				}));
+	}
+
+	private String mensaje(String cuerpo) {
+		return mensaje(cuerpo, new TypeReference<CitasDto>() {
+		});
+	}
+
+	private String mensaje(String cuerpo, TypeReference<?> tipo) {
+		try {
+			mapper.readValue(cuerpo, tipo);
+		} catch (Exception e) {
+			HttpMessageNotReadableException error = new HttpMessageNotReadableException(
+					"JSON parse error", e, new MockHttpInputMessage(cuerpo.getBytes()));
+			return (String) errores.cuerpoInvalido(error).getBody();
+		}
+		throw new AssertionError("El cuerpo debía ser inválido: " + cuerpo);
+	}
+}
@@ -0,0 +1,122 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+
+import javax.sql.DataSource;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ruteo de lecturas con dos H2 independientes como primaria y réplica (sin
+ * replicación entre ellas): los recordatorios pendientes se leen de la réplica, salvo
+ * para el cliente que acaba de escribir; la agenda, con su ETag, siempre de la primaria.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:rw_primaria;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"clinica.datasource.replica.url=jdbc:h2:mem:rw_replica;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"clinica.datasource.replica.username=sa",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class RuteoReplicaTest {
+
+	private static boolean replicaCargada;
+
+	@LocalServerPort
+	private int puerto;
+
+	@Autowired
+	@Qualifier("replica")
+	private DataSource replica;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MeterRegistry registro;
+
+	@BeforeEach
+	void cargarReplica() {
+		if (!replicaCargada) {
+			ResourceDatabasePopulator script = new ResourceDatabasePopulator(
+					new ClassPathResource("sql/esquema-h2.sql"), new ClassPathResource("sql/datos-h2.sql"));
+			script.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+			script.execute(replica);
+			replicaCargada = true;
+		}
+	}
+
+	@Test
+	void lecturaPropiaVaALaPrimariaYElRestoALaReplica() throws Exception {
+		long medico = 7;
+		LocalDate dia = LocalDate.now().plusDays(5);
+		HttpClient quienEscribe = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+		HttpClient otro = HttpClient.newHttpClient();
+
+		CitasDto cita = CitasDto.builder().pacienteId(4).medicoId(medico).fechaHora(dia.atTime(9, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(1).build();
+		HttpResponse<String> programada = quienEscribe.send(HttpRequest.newBuilder(uri("/api/citas/programar"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(cita))).build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, programada.statusCode(), programada.body());
+
+		String agenda = "/api/citas/agenda?medicoId=" + medico + "&fecha=" + dia;
+		assertEquals(1, citas(quienEscribe, agenda), "Quien escribió lee de la primaria");
+		assertEquals(1, citas(otro, agenda), "La agenda no se lee de la réplica");
+
+		double replicaAntes = conexiones("destino", "replica");
+		double propiasAntes = conexiones("motivo", "lectura-propia");
+		leer(otro, "/api/recordatorios/pendientes");
+		assertTrue(conexiones("destino", "replica") > replicaAntes, "Los demás leen de la réplica");
+		leer(quienEscribe, "/api/recordatorios/pendientes");
+		assertTrue(conexiones("motivo", "lectura-propia") > propiasAntes, "Quien escribió lee de la primaria");
+		assertNotNull(registro.find("hikaricp.connections").tag("pool", "primaria").gauge());
+		assertNotNull(registro.find("hikaricp.connections").tag("pool", "replica").gauge());
+	}
+
+	private int citas(HttpClient cliente, String ruta) throws Exception {
+		JsonNode cuerpo = objectMapper.readTree(leer(cliente, ruta));
+		return cuerpo.get("citas").size();
+	}
+
+	private String leer(HttpClient cliente, String ruta) throws Exception {
+		HttpResponse<String> respuesta = cliente.send(HttpRequest.newBuilder(uri(ruta)).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, respuesta.statusCode(), respuesta.body());
+		return respuesta.body();
+	}
+
+	private double conexiones(String etiqueta, String valor) {
+		return registro.get("clinica.bd.ruteo").tag(etiqueta, valor).counter().count();
+	}
+
+	private URI uri(String ruta) {
+		return URI.create("http://localhost:" + puerto + ruta);
+	}
+}
@@ -0,0 +1,102 @@
+package pe.edu.uni.APIEDUCA.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.service.CitasService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stream SSE de cambios de citas sobre H2: cada pantalla recibe solo los cambios de
+ * su filtro y, al reconectar con Last-Event-ID, los que se perdió.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:stream;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class StreamCambiosTest {
+
+	private static final long RECEPCIONISTA = 1;
+
+	@LocalServerPort
+	private int puerto;
+
+	@Autowired
+	private CitasService citasService;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	@Test
+	void soloLlegaLoDelMedicoYSeReenviaAlReconectar() throws Exception {
+		long medico = 20;
+		LocalDate dia = LocalDate.now().plusDays(8);
+		BlockingQueue<String> lineas = conectar("/api/citas/stream?medicoId=" + medico, null);
+		siguiente(lineas, "event:conectado");
+
+		programar(medico + 1, dia, 9);
+		long citaId = programar(medico, dia, 9);
+
+		String id = siguiente(lineas, "id:");
+		assertEquals("event:cita", siguiente(lineas, "event:"));
+		assertTrue(siguiente(lineas, "data:").contains("\"citaId\":" + citaId));
+
+		// Reconexión: lo que se programó mientras tanto llega con Last-Event-ID
+		long otraCitaId = programar(medico, dia, 11);
+		BlockingQueue<String> reconectado = conectar("/api/citas/stream?fecha=" + dia, id.substring(3));
+		siguiente(reconectado, "event:cita");
+		assertTrue(siguiente(reconectado, "data:").contains("\"citaId\":" + otraCitaId));
+	}
+
+	private BlockingQueue<String> conectar(String ruta, String ultimaVersion) {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Accept", "text/event-stream");
+		if (ultimaVersion != null) {
+			solicitud.header("Last-Event-ID", ultimaVersion);
+		}
+		BlockingQueue<String> lineas = new LinkedBlockingQueue<>();
+		cliente.sendAsync(solicitud.build(), HttpResponse.BodyHandlers.ofLines())
+				.thenAccept(respuesta -> {
+					try (Stream<String> cuerpo = respuesta.body()) {
+						cuerpo.forEach(lineas::add);
+					}
+				});
+		return lineas;
+	}
+
+	private static String siguiente(BlockingQueue<String> lineas, String prefijo) throws InterruptedException {
+		while (true) {
+			String linea = lineas.poll(10, TimeUnit.SECONDS);
+			assertNotNull(linea, "No llegó una línea " + prefijo);
+			if (linea.startsWith(prefijo)) {
+				return linea;
+			}
+		}
+	}
+
+	private long programar(long medicoId, LocalDate dia, int hora) {
+		return citasService.programarCita(CitasDto.builder()
+				.pacienteId(3).medicoId(medicoId).fechaHora(dia.atTime(hora, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+	}
+}
@@ -0,0 +1,94 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import pe.edu.uni.APIEDUCA.dto.CambioCitaDto;
+import pe.edu.uni.APIEDUCA.dto.CambiosCitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Agenda con ETag y feed de cambios sobre H2: cada alta, reprogramación y
+ * cancelación cambia el ETag de las agendas que toca y aparece en el feed.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:agenda;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class AgendaCambiosTest {
+
+	private static final long RECEPCIONISTA = 1;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private AgendaService agendaService;
+
+	@Test
+	void agendaYCambiosSiguenAProgramarReprogramarYCancelar() {
+		long medico = 10;
+		long otroMedico = 11;
+		LocalDate dia = LocalDate.now().plusDays(6);
+		String fecha = dia.toString();
+
+		AgendaService.Consulta vacia = agendaService.consultar(medico, fecha, "DIA", null);
+		assertTrue(vacia.agenda().getCitas().isEmpty());
+		long version = vacia.agenda().getVersionCambios();
+
+		CitasDto cita = citasService.programarCita(CitasDto.builder()
+				.pacienteId(5).medicoId(medico).fechaHora(dia.atTime(9, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build());
+
+		AgendaService.Consulta conCita = agendaService.consultar(medico, fecha, "SEMANA", null);
+		assertEquals(1, conCita.agenda().getCitas().size());
+		assertNotEquals(vacia.etag(), agendaService.consultar(medico, fecha, "DIA", null).etag());
+		assertNull(agendaService.consultar(medico, fecha, "SEMANA", "W/" + conCita.etag()).agenda());
+
+		citasProcesosService.reprogramarCita(CitasProcesosDto.builder()
+				.citaId(cita.getId()).usuarioId(RECEPCIONISTA).medicoId(otroMedico)
+				.fechaHora(dia.atTime(10, 0)).build());
+		AgendaService.Consulta sinCita = agendaService.consultar(medico, fecha, "SEMANA", conCita.etag());
+		assertNotNull(sinCita.agenda(), "La agenda de origen de la reprogramación cambia de ETag");
+		assertTrue(sinCita.agenda().getCitas().isEmpty());
+
+		citasProcesosService.cancelarCita(CitasProcesosDto.builder()
+				.citaId(cita.getId()).usuarioId(RECEPCIONISTA).motivo("Viaje").build());
+
+		CambiosCitasDto cambios = agendaService.cambios(version, 500, null);
+		List<CambioCitaDto> lista = cambios.getCambios();
+		assertEquals(List.of("PROGRAMADA", "REPROGRAMADA", "CANCELADA"), lista.stream().map(CambioCitaDto::getTipo).toList());
+		assertEquals(medico, lista.get(1).getMedicoAnteriorId());
+		assertEquals(otroMedico, lista.get(1).getMedicoId());
+		assertEquals("CANCELADA", lista.get(2).getEstado());
+		assertFalse(cambios.isHayMas());
+
+		// La cancelación ya ocurre en la agenda del otro médico
+		assertEquals(2, agendaService.cambios(version, 500, medico).getCambios().size());
+
+		CambiosCitasDto paginado = agendaService.cambios(version, 2, null);
+		assertTrue(paginado.isHayMas());
+		assertEquals(1, agendaService.cambios(paginado.getHasta(), 2, null).getCambios().size());
+		assertTrue(agendaService.cambios(cambios.getHasta(), 500, null).getCambios().isEmpty());
+	}
+}
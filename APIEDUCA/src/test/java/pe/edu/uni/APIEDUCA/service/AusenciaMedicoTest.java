@@ -0,0 +1,182 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.AusenciaMedicoDto;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.ProgramacionLoteDto;
+import pe.edu.uni.APIEDUCA.dto.ResultadoAusenciaDto;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Ausencias de médicos sobre H2 (modo MSSQLServer). H2 no tiene OUTPUT, así que
+ * CANCELAR corre aquí por su variante portable (DialectoBd).
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:ausencias;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class AusenciaMedicoTest {
+
+	private static final long RECEPCIONISTA = 1;
+	private static final long PRIMER_MEDICO = 2;
+	private static final int TOTAL_MEDICOS = 32;
+	// Lunes 2030-01-07 a las 10:00
+	private static final LocalDateTime AHORA = LocalDateTime.of(2030, 1, 7, 10, 0);
+
+	@TestConfiguration
+	static class RelojFijo {
+
+		@Bean
+		@Primary
+		Clock relojFijo() {
+			ZoneId zona = ZoneId.systemDefault();
+			return Clock.fixed(AHORA.atZone(zona).toInstant(), zona);
+		}
+	}
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private DialectoBd dialecto;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void cancelarSoloTocaLasCitasActivasDesdeAhora() {
+		long medicoId = PRIMER_MEDICO + 3;
+		// Ya pasó: queda como estaba aunque la ventana empiece antes
+		long pasada = insertarCita(medicoId, AHORA.minusHours(1), "PROGRAMADA");
+		long confirmada = insertarCita(medicoId, AHORA.plusHours(1), "CONFIRMADA");
+		long programada = programar(1, medicoId, AHORA.plusHours(2));
+		long yaCancelada = insertarCita(medicoId, AHORA.plusHours(3), "CANCELADA");
+		// Fuera de la ventana (hasta es excluyente)
+		long despues = programar(2, medicoId, AHORA.plusHours(4));
+
+		ResultadoAusenciaDto resultado = citasProcesosService.gestionarAusenciaMedico(
+				ausencia(medicoId, AHORA.minusHours(3), AHORA.plusHours(4), "CANCELAR"));
+
+		assertFalse(dialecto.esSqlServer());
+		assertEquals(2, resultado.getAfectadas());
+		assertEquals(2, resultado.getCanceladas());
+		assertEquals(List.of(), resultado.getCitasSinReubicar());
+		assertEquals("PROGRAMADA", estado(pasada));
+		assertEquals("CANCELADA", estado(confirmada));
+		assertEquals("CANCELADA", estado(programada));
+		assertEquals("CANCELADA", estado(yaCancelada));
+		assertEquals("PROGRAMADA", estado(despues));
+
+		// Cada cancelada deja su historial con el estado que tenía
+		assertEquals("CONFIRMADA", jdbcTemplate.queryForObject(
+				"SELECT estado_anterior FROM citas_transiciones WHERE cita_id = ?", String.class, confirmada));
+		assertEquals("PROGRAMADA", jdbcTemplate.queryForObject(
+				"SELECT estado_anterior FROM citas_transiciones WHERE cita_id = ?", String.class, programada));
+		// El horario liberado se puede volver a reservar
+		programar(3, medicoId, AHORA.plusHours(2));
+	}
+
+	@Test
+	void redistribuirListaLasCitasQueNoCabenEnNingunCandidato() {
+		long ausente = PRIMER_MEDICO + 4;
+		LocalDateTime manana = AHORA.plusDays(1);
+		long movible = programar(4, ausente, manana.withHour(10));
+		long alCierre = programar(5, ausente, manana.withHour(18).withMinute(30));
+
+		// Todos los demás médicos ocupan el último bloque del día
+		List<CitasDto> lote = new ArrayList<>();
+		for (long medicoId = PRIMER_MEDICO; medicoId < PRIMER_MEDICO + TOTAL_MEDICOS; medicoId++) {
+			if (medicoId != ausente) {
+				lote.add(cita(10 + medicoId, medicoId, manana.withHour(18).withMinute(30)));
+			}
+		}
+		ProgramacionLoteDto ocupadas = citasService.programarCitasLote(lote);
+		assertEquals(TOTAL_MEDICOS - 1, ocupadas.getProgramadas());
+
+		ResultadoAusenciaDto resultado = citasProcesosService.gestionarAusenciaMedico(
+				ausencia(ausente, manana.withHour(7), manana.withHour(19), "REDISTRIBUIR"));
+
+		assertEquals(2, resultado.getAfectadas());
+		assertEquals(1, resultado.getReasignadas());
+		assertEquals(List.of(alCierre), resultado.getCitasSinReubicar());
+
+		Map<String, Object> movida = jdbcTemplate.queryForMap(
+				"SELECT medico_id, fecha_hora FROM citas WHERE id = ?", movible);
+		assertNotEquals(ausente, ((Number) movida.get("medico_id")).longValue());
+		assertEquals(manana.withHour(10), ((Timestamp) movida.get("fecha_hora")).toLocalDateTime());
+		Map<String, Object> sinMover = jdbcTemplate.queryForMap(
+				"SELECT medico_id, estado FROM citas WHERE id = ?", alCierre);
+		assertEquals(ausente, ((Number) sinMover.get("medico_id")).longValue());
+		assertEquals("PROGRAMADA", sinMover.get("estado"));
+	}
+
+	@Test
+	void laVentanaNoPuedeSuperarTreintaYUnDias() {
+		long medicoId = PRIMER_MEDICO + 6;
+		LocalDateTime desde = AHORA.plusDays(1).withHour(0);
+
+		RuntimeException error = assertThrows(RuntimeException.class, () -> citasProcesosService.gestionarAusenciaMedico(
+				ausencia(medicoId, desde, desde.plusDays(31).plusMinutes(1), "CANCELAR")));
+		assertEquals("ERROR: La ventana de ausencia no puede superar 31 días.", error.getMessage());
+
+		long cita = programar(6, medicoId, desde.plusDays(30).withHour(9));
+		ResultadoAusenciaDto resultado = citasProcesosService.gestionarAusenciaMedico(
+				ausencia(medicoId, desde, desde.plusDays(31), "CANCELAR"));
+		assertEquals(1, resultado.getCanceladas());
+		assertEquals("CANCELADA", estado(cita));
+	}
+
+	private static AusenciaMedicoDto ausencia(long medicoId, LocalDateTime desde, LocalDateTime hasta, String accion) {
+		return AusenciaMedicoDto.builder().medicoId(medicoId).usuarioId(RECEPCIONISTA)
+				.desde(desde).hasta(hasta).motivo("Congreso").accion(accion).build();
+	}
+
+	private long programar(long pacienteId, long medicoId, LocalDateTime fechaHora) {
+		return citasService.programarCita(cita(pacienteId, medicoId, fechaHora)).getId();
+	}
+
+	private static CitasDto cita(long pacienteId, long medicoId, LocalDateTime fechaHora) {
+		return CitasDto.builder().pacienteId(pacienteId).medicoId(medicoId).fechaHora(fechaHora)
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build();
+	}
+
+	// Fila escrita directo en la base, como la dejaría otro nodo o una corrida anterior
+	private long insertarCita(long medicoId, LocalDateTime fechaHora, String estado) {
+		jdbcTemplate.update("""
+			INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, estado, creada_por)
+			VALUES(7, ?, ?, 30, ?, 1)
+			""", medicoId, Timestamp.valueOf(fechaHora), estado);
+		return jdbcTemplate.queryForObject("SELECT MAX(id) FROM citas", Long.class);
+	}
+
+	private String estado(long citaId) {
+		return jdbcTemplate.queryForObject("SELECT estado FROM citas WHERE id = ?", String.class, citaId);
+	}
+}
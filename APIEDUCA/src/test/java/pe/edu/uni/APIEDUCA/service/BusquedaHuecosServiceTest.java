@@ -0,0 +1,121 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.edu.uni.APIEDUCA.dto.HuecoDisponibleDto;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusquedaHuecosServiceTest {
+
+	// Lunes 2030-01-07 a las 08:10:30
+	private static final LocalDateTime AHORA = LocalDateTime.of(2030, 1, 7, 8, 10, 30);
+	private static final LocalDate HOY = AHORA.toLocalDate();
+	private static final long ESPECIALIDAD = 1;
+
+	private BusquedaHuecosService busqueda;
+	private OcupacionMedicoIndex ocupacion;
+
+	@BeforeEach
+	void preparar() {
+		Clock reloj = Clock.fixed(AHORA.toInstant(ZoneOffset.UTC), ZoneId.of("UTC"));
+
+		// Médico 2: 08:00-10:00 todos los días. Médico 3: 08:00-09:00 y 09:30-10:00 todos los días.
+		// Médico 6: solo el martes de 08:00 a 08:30. Médicos 4, 5 y 7 no atienden.
+		Map<Long, HorarioMedicoCache.HorarioSemanal> horarios = Map.of(
+				2L, horario(null, 8, 10),
+				3L, horario(null, 8, 9, 9.5, 10),
+				6L, horario(DayOfWeek.TUESDAY, 8, 8.5));
+		HorarioMedicoCache horarioCache = new HorarioMedicoCache() {
+			@Override
+			public HorarioSemanal obtener(long medicoId) {
+				return horarios.getOrDefault(medicoId, horario(DayOfWeek.SUNDAY));
+			}
+		};
+
+		DatosReferenciaService datosReferencia = new DatosReferenciaService() {
+			@Override
+			public List<Long> medicosDeEspecialidad(long especialidadId) {
+				// Más de MEDICOS_POR_TAREA para que la búsqueda se reparta
+				return List.of(5L, 4L, 3L, 2L, 6L, 7L);
+			}
+
+			@Override
+			public Integer duracionEspecialidad(long especialidadId) {
+				return 30;
+			}
+
+			@Override
+			public Integer duracionConsulta(long medicoId) {
+				// Ningún médico en particular define la duración por defecto
+				return 45;
+			}
+		};
+
+		ocupacion = new OcupacionMedicoIndex();
+		ReflectionTestUtils.setField(ocupacion, "reloj", reloj);
+		ReflectionTestUtils.setField(ocupacion, "cargado", true);
+
+		busqueda = new BusquedaHuecosService();
+		ReflectionTestUtils.setField(busqueda, "reloj", reloj);
+		ReflectionTestUtils.setField(busqueda, "horarioCache", horarioCache);
+		ReflectionTestUtils.setField(busqueda, "datosReferencia", datosReferencia);
+		ReflectionTestUtils.setField(busqueda, "ocupacionIndex", ocupacion);
+	}
+
+	@Test
+	void saltaLasCitasEmpiezaHoyDesdeElMinutoSiguienteYMezclaEnOrden() {
+		// Ya terminó: no bloquea nada
+		ocupacion.registrarCita(1, 3, HOY.atTime(7, 0), 30);
+		// Obliga al médico 2 a seguir desde las 09:11
+		ocupacion.registrarCita(2, 2, HOY.atTime(8, 41), 30);
+		// Mañana el médico 3 empieza a las 08:20
+		ocupacion.registrarCita(3, 3, HOY.plusDays(1).atTime(8, 0), 20);
+
+		List<HuecoDisponibleDto> huecos = busqueda.buscarHuecos(ESPECIALIDAD, HOY.minusDays(1), HOY.plusDays(5), 7, 0);
+
+		assertEquals(List.of(
+				"2:2030-01-07 08:11",
+				"3:2030-01-07 08:11",
+				"2:2030-01-07 09:11",
+				"3:2030-01-07 09:30",
+				"2:2030-01-08 08:00",
+				"6:2030-01-08 08:00",
+				"3:2030-01-08 08:20"), huecos.stream().map(h -> h.getMedicoId() + ":" + h.getFechaHora()).toList());
+		// Duración de la especialidad, no la del primer médico
+		huecos.forEach(h -> assertEquals(30, h.getDuracionMinutos()));
+	}
+
+	@Test
+	void laDuracionPedidaMandaSobreLaDeLaEspecialidad() {
+		List<HuecoDisponibleDto> huecos = busqueda.buscarHuecos(ESPECIALIDAD, HOY, HOY, 10, 60);
+
+		// 08:11-09:11 y nada más cabe antes de las 10:00 para el médico 2; el médico 3 no tiene una hora seguida
+		assertEquals(List.of("2:2030-01-07 08:11"),
+				huecos.stream().map(h -> h.getMedicoId() + ":" + h.getFechaHora()).toList());
+		assertEquals(60, huecos.get(0).getDuracionMinutos());
+	}
+
+	// Los mismos rangos (en horas) todos los días, o solo el día indicado
+	private static HorarioMedicoCache.HorarioSemanal horario(DayOfWeek soloDia, double... horas) {
+		int[] rangos = new int[horas.length];
+		for (int i = 0; i < horas.length; i++) {
+			rangos[i] = (int) (horas[i] * 3600);
+		}
+		int[][] semana = new int[7][];
+		for (DayOfWeek dia : DayOfWeek.values()) {
+			semana[dia.ordinal()] = soloDia == null || soloDia == dia ? rangos : new int[0];
+		}
+		return new HorarioMedicoCache.HorarioSemanal(semana);
+	}
+}
@@ -0,0 +1,113 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasCacheDto;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheReferenciaTest {
+
+	private final AtomicLong tiempo = new AtomicLong();
+	private final AtomicInteger cargas = new AtomicInteger();
+
+	// TTL de 60 s para valores y de 10 s para ausentes
+	private CacheReferencia<Long, String> cache(int maxEntradas) {
+		return new CacheReferencia<>("prueba", maxEntradas, 60, 10, tiempo::get);
+	}
+
+	// Las claves negativas no existen; las demás valen "v<clave>"
+	private final Function<Long, String> cargador = clave -> {
+		cargas.incrementAndGet();
+		return clave < 0 ? null : "v" + clave;
+	};
+
+	@Test
+	void elValorExpiraAlCumplirseElTtl() {
+		CacheReferencia<Long, String> cache = cache(10);
+
+		assertEquals("v1", cache.obtener(1L, cargador));
+		avanzar(59_999);
+		assertEquals("v1", cache.obtener(1L, cargador));
+		assertEquals(1, cargas.get());
+
+		avanzar(1);
+		assertFalse(cache.contiene(1L));
+		assertEquals("v1", cache.obtener(1L, cargador));
+		assertEquals(2, cargas.get());
+	}
+
+	@Test
+	void lasClavesAusentesSeGuardanConSuPropioTtl() {
+		CacheReferencia<Long, String> cache = cache(10);
+
+		assertNull(cache.obtener(-1L, cargador));
+		cache.obtener(1L, cargador);
+		avanzar(9_000);
+		assertNull(cache.obtener(-1L, cargador));
+		assertTrue(cache.contiene(-1L));
+		assertEquals(2, cargas.get());
+
+		// Vence antes que los valores normales
+		avanzar(1_000);
+		assertFalse(cache.contiene(-1L));
+		assertTrue(cache.contiene(1L));
+		assertNull(cache.obtener(-1L, cargador));
+		assertEquals(3, cargas.get());
+
+		EstadisticasCacheDto estadisticas = cache.estadisticas();
+		assertEquals(1, estadisticas.getAciertosNegativos());
+		assertEquals(3, estadisticas.getFallos());
+	}
+
+	@Test
+	void alLlenarseSeDesalojaLaMenosUsada() {
+		CacheReferencia<Long, String> cache = cache(2);
+		cache.obtener(1L, cargador);
+		cache.obtener(2L, cargador);
+		// 1 pasa a ser la más reciente
+		cache.obtener(1L, cargador);
+
+		cache.obtener(3L, cargador);
+
+		assertTrue(cache.contiene(1L));
+		assertFalse(cache.contiene(2L));
+		assertTrue(cache.contiene(3L));
+		assertEquals(2, cache.estadisticas().getEntradas());
+		assertEquals(1, cache.estadisticas().getDesalojos());
+	}
+
+	@Test
+	void unaInvalidacionDuranteLaCargaNoSePierde() {
+		CacheReferencia<Long, String> cache = cache(10);
+		// Mientras se lee el valor viejo, otro hilo cambia el dato e invalida la clave
+		String leido = cache.obtener(1L, clave -> {
+			cargas.incrementAndGet();
+			cache.invalidar(clave);
+			return "viejo";
+		});
+
+		assertEquals("viejo", leido);
+		assertFalse(cache.contiene(1L));
+		assertEquals("v1", cache.obtener(1L, cargador));
+
+		// Lo mismo con invalidarTodo
+		cache.obtener(2L, clave -> {
+			cache.invalidarTodo();
+			return "viejo";
+		});
+		assertFalse(cache.contiene(2L));
+		assertEquals(2, cargas.get());
+	}
+
+	private void avanzar(long milisegundos) {
+		tiempo.addAndGet(TimeUnit.MILLISECONDS.toNanos(milisegundos));
+	}
+}
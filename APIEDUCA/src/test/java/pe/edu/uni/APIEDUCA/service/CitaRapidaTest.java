@@ -0,0 +1,105 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * programarCitaRapida sobre H2 (modo MSSQLServer): el lote T-SQL de un solo viaje
+ * solo se envía a SQL Server; con H2 la cita se programa por el camino normal.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:rapida;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class CitaRapidaTest {
+
+	private static final long RECEPCIONISTA = 1;
+	private static final long MEDICO = 12;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private DialectoBd dialecto;
+
+	@Autowired
+	private Outbox outbox;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void conH2SeProgramaComoEnProgramarCita() {
+		AtomicInteger avisos = new AtomicInteger();
+		outbox.alConfirmar(avisos::incrementAndGet);
+		LocalDate dia = LocalDate.now().plusDays(2);
+
+		assertFalse(dialecto.esSqlServer());
+		// Sin duración o con una negativa se usa la de la especialidad
+		CitasDto sinDuracion = citasService.programarCitaRapida(cita(1, dia.atTime(9, 0), 0));
+		CitasDto negativa = citasService.programarCitaRapida(cita(2, dia.atTime(10, 0), -15));
+
+		assertEquals(30, sinDuracion.getDuracionMinutos());
+		assertEquals(30, negativa.getDuracionMinutos());
+		assertEquals(30, jdbcTemplate.queryForObject(
+				"SELECT duracion_minutos FROM citas WHERE id = ?", Integer.class, sinDuracion.getId()));
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM outbox WHERE tipo = 'CITA_PROGRAMADA' AND agregado_id = ?", Integer.class,
+				negativa.getId()));
+		assertTrue(avisos.get() >= 2);
+
+		// El horario ocupado se rechaza con el mismo mensaje que programarCita
+		RuntimeException ocupado = assertThrows(RuntimeException.class,
+				() -> citasService.programarCitaRapida(cita(3, dia.atTime(9, 15), 0)));
+		assertEquals("ERROR: El médico no está disponible en esa fecha y hora.", ocupado.getMessage());
+	}
+
+	@Test
+	void elLoteTSqlSoloSeEnviaASqlServer() {
+		LocalDateTime hora = LocalDate.now().plusDays(3).atTime(11, 0);
+		ReflectionTestUtils.setField(dialecto, "sqlServer", true);
+		BadSqlGrammarException error;
+		try {
+			// H2 no entiende el lote (DECLARE, BEGIN TRANSACTION): el error muestra que se envió
+			error = assertThrows(BadSqlGrammarException.class,
+					() -> citasService.programarCitaRapida(cita(4, hora, 30)));
+		} finally {
+			ReflectionTestUtils.setField(dialecto, "sqlServer", null);
+		}
+		assertTrue(error.getSql().startsWith("/* CitasService.insertarCitaRapida */"));
+		assertTrue(error.getSql().contains("BEGIN TRANSACTION;"));
+		assertTrue(error.getSql().contains("WITH (UPDLOCK, HOLDLOCK)"));
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM citas WHERE medico_id = ? AND fecha_hora = ?", Integer.class,
+				MEDICO, Timestamp.valueOf(hora)));
+
+		// De vuelta en H2 el mismo horario se programa sin el lote
+		assertTrue(citasService.programarCitaRapida(cita(4, hora, 30)).getId() > 0);
+	}
+
+	private static CitasDto cita(long pacienteId, LocalDateTime fechaHora, int duracion) {
+		return CitasDto.builder().pacienteId(pacienteId).medicoId(MEDICO).fechaHora(fechaHora)
+				.duracionMinutos(duracion).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build();
+	}
+}
@@ -0,0 +1,147 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+import pe.edu.uni.APIEDUCA.dto.EstadisticaOcupacionDto;
+import pe.edu.uni.APIEDUCA.dto.EstadisticasDto;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cifras del tablero sobre H2: se ajustan con los cambios de citas sin consultar la base,
+ * y al recargar dan lo mismo desde la foto que reconstruidas desde citas.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:estadisticas;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class EstadisticasCitasTest {
+
+	private static final long RECEPCIONISTA = 1;
+
+	@Autowired
+	private EstadisticasCitas estadisticas;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void lasCifrasSiguenALosCambiosYSeRecarganIguales() {
+		LocalDate dia = LocalDate.now().plusDays(5);
+		long primera = programar(21, dia.atTime(9, 0));
+		long segunda = programar(21, dia.atTime(10, 0));
+		programar(21, dia.atTime(11, 0));
+
+		citasProcesosService.cancelarCita(CitasProcesosDto.builder()
+				.citaId(primera).usuarioId(RECEPCIONISTA).motivo("Viaje").build());
+		citasProcesosService.reprogramarCita(CitasProcesosDto.builder()
+				.citaId(segunda).usuarioId(RECEPCIONISTA).medicoId(22).fechaHora(dia.atTime(14, 0)).build());
+		estadisticas.sincronizar();
+
+		EstadisticasDto cifras = estadisticas.consultar(dia, dia, null, null);
+		EstadisticaOcupacionDto medico21 = cifras.getMedicos().get(0);
+		assertEquals(21L, medico21.getMedicoId());
+		assertEquals(2, medico21.getCitas());
+		assertEquals(1, medico21.getCanceladas());
+		assertEquals(30, medico21.getMinutosOcupados());
+		// 30 de 720 minutos (07:00 a 19:00)
+		assertEquals(4.2, medico21.getPorcentajeOcupacion());
+		EstadisticaOcupacionDto medico22 = cifras.getMedicos().get(1);
+		assertEquals(1, medico22.getReprogramadas());
+		assertEquals(30, medico22.getMinutosOcupados());
+		EstadisticaOcupacionDto especialidad = cifras.getEspecialidades().get(0);
+		assertEquals(3, especialidad.getCitas());
+		assertEquals(32 * 720, especialidad.getMinutosDisponibles());
+
+		// Sin viajes a la base una vez en caché los horarios y los médicos
+		ViajesBd.iniciar();
+		assertEquals(cifras, estadisticas.consultar(dia, dia, null, null));
+		assertEquals(0, ViajesBd.actual());
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT citas FROM estadisticas_citas_dia WHERE dia = ? AND medico_id = 21", Integer.class, Date.valueOf(dia)));
+
+		// Desde la foto y los cambios posteriores
+		programar(22, dia.atTime(16, 0));
+		estadisticas.recargar();
+		EstadisticasDto desdeFoto = estadisticas.consultar(dia, dia, null, null);
+		assertEquals(2, desdeFoto.getMedicos().get(1).getCitas());
+
+		// Reconstruidas desde citas
+		jdbcTemplate.update("DELETE FROM estadisticas_citas_dia");
+		estadisticas.recargar();
+		EstadisticasDto reconstruidas = estadisticas.consultar(dia, dia, null, null);
+		assertEquals(desdeFoto.getMedicos(), reconstruidas.getMedicos());
+		assertEquals(desdeFoto.getEspecialidades(), reconstruidas.getEspecialidades());
+	}
+
+	@Test
+	void losRecordatoriosSeRecuentanAlRecargar() {
+		long citaId = programar(23, LocalDate.now().plusDays(6).atTime(9, 0));
+		jdbcTemplate.update("""
+				INSERT INTO recordatorios(cita_id, tipo, fecha_envio_programada, fecha_envio_real, estado, intentos)
+				VALUES(?, 'EMAIL', ?, ?, 'ENVIADO', 1)
+				""", citaId, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(LocalDateTime.now()));
+		// Sin foto se reconstruye y se recuenta desde recordatorios
+		jdbcTemplate.update("DELETE FROM estadisticas_citas_dia");
+		estadisticas.recargar();
+
+		EstadisticasDto hoy = estadisticas.consultar(null, null, 23L, null);
+		assertEquals(List.of(23L), hoy.getMedicos().stream().map(EstadisticaOcupacionDto::getMedicoId).toList());
+		assertEquals(1, hoy.getMedicos().get(0).getRecordatoriosEnviados());
+
+		estadisticas.contarRecordatoriosEnviados(List.of(23L));
+		assertEquals(2, estadisticas.consultar(null, null, 23L, null).getMedicos().get(0).getRecordatoriosEnviados());
+		estadisticas.sincronizar();
+		Date dia = Date.valueOf(LocalDate.now());
+		String sqlFoto = "SELECT recordatorios_enviados FROM estadisticas_citas_dia WHERE dia = ? AND medico_id = 23";
+		assertEquals(2, jdbcTemplate.queryForObject(sqlFoto, Integer.class, dia));
+
+		// Otro nodo suma sus envíos y ya aplicó más cambios de citas: su foto no se pisa
+		jdbcTemplate.update("""
+				UPDATE estadisticas_citas_dia
+				SET recordatorios_enviados = recordatorios_enviados + 3, citas = 7, version_cambios = version_cambios + 1000
+				WHERE dia = ? AND medico_id = 23
+				""", dia);
+		estadisticas.contarRecordatoriosEnviados(List.of(23L));
+		estadisticas.sincronizar();
+		assertEquals(6, jdbcTemplate.queryForObject(sqlFoto, Integer.class, dia));
+		assertEquals(7, jdbcTemplate.queryForObject(
+				"SELECT citas FROM estadisticas_citas_dia WHERE dia = ? AND medico_id = 23", Integer.class, dia));
+		assertEquals(6, estadisticas.consultar(null, null, 23L, null).getMedicos().get(0).getRecordatoriosEnviados());
+		jdbcTemplate.update("DELETE FROM estadisticas_citas_dia WHERE medico_id = 23");
+
+		LocalDate desde = LocalDate.now();
+		RuntimeException rango = assertThrows(RuntimeException.class,
+				() -> estadisticas.consultar(desde, desde.plusDays(40), null, null));
+		assertEquals("ERROR: El rango no puede superar 31 días.", rango.getMessage());
+	}
+
+	private long programar(long medicoId, LocalDateTime fechaHora) {
+		return citasService.programarCita(CitasDto.builder()
+				.pacienteId(medicoId + 100).medicoId(medicoId).fechaHora(fechaHora)
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+	}
+}
@@ -0,0 +1,163 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Idempotency-Key con la tabla idempotencia_solicitudes sobre H2: la repetición recibe
+ * la respuesta guardada, una clave en proceso (en este nodo o en otro) responde 409, otro
+ * cuerpo con la misma clave 422, y al vencer el TTL la clave se puede volver a usar.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:idempotencia;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8",
+		"clinica.idempotencia.bd.habilitado=true",
+		"clinica.idempotencia.ttl-segundos=2"
+})
+class IdempotenciaServiceTest {
+
+	private static final String OPERACION = "citas.programar";
+
+	@Autowired
+	private IdempotenciaService idempotencia;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void laRepeticionRecibeLaRespuestaGuardada() {
+		AtomicInteger ejecuciones = new AtomicInteger();
+		Map<String, Object> solicitud = Map.of("medicoId", 2, "fechaHora", "2030-01-07 10:00");
+
+		ResponseEntity<?> primera = idempotencia.ejecutar("repetida", OPERACION, solicitud, () -> crear(ejecuciones));
+		ResponseEntity<?> repetida = idempotencia.ejecutar("repetida", OPERACION, solicitud, () -> crear(ejecuciones));
+
+		assertEquals(1, ejecuciones.get());
+		assertEquals(200, primera.getStatusCode().value());
+		assertNull(primera.getHeaders().getFirst(IdempotenciaService.ENCABEZADO_REPETIDA));
+		assertEquals(200, repetida.getStatusCode().value());
+		assertEquals("true", repetida.getHeaders().getFirst(IdempotenciaService.ENCABEZADO_REPETIDA));
+		assertEquals("{\"id\":1}", repetida.getBody());
+		assertEquals("COMPLETADA", jdbcTemplate.queryForObject(
+				"SELECT estado FROM idempotencia_solicitudes WHERE clave = ?", String.class, OPERACION + "|repetida"));
+	}
+
+	@Test
+	void otroCuerpoConLaMismaClaveRecibe422() {
+		AtomicInteger ejecuciones = new AtomicInteger();
+		idempotencia.ejecutar("distinta", OPERACION, Map.of("medicoId", 2), () -> crear(ejecuciones));
+		ResponseEntity<?> otra = idempotencia.ejecutar("distinta", OPERACION, Map.of("medicoId", 3), () -> crear(ejecuciones));
+
+		assertEquals(1, ejecuciones.get());
+		assertEquals(422, otra.getStatusCode().value());
+	}
+
+	@Test
+	void unaClaveEnProcesoRecibe409() {
+		AtomicInteger ejecuciones = new AtomicInteger();
+		Map<String, Object> solicitud = Map.of("medicoId", 2);
+
+		// En este nodo: la misma clave llega mientras la primera aún se ejecuta
+		AtomicReference<ResponseEntity<?>> mientras = new AtomicReference<>();
+		idempotencia.ejecutar("en-proceso", OPERACION, solicitud, () -> {
+			mientras.set(idempotencia.ejecutar("en-proceso", OPERACION, solicitud, () -> crear(ejecuciones)));
+			return crear(ejecuciones);
+		});
+		assertEquals(409, mientras.get().getStatusCode().value());
+
+		// En otro nodo: la reserva EN_PROCESO está en la tabla
+		jdbcTemplate.update("""
+			INSERT INTO idempotencia_solicitudes(clave, huella, estado, fecha_creacion, expira_en)
+			VALUES(?, 'x', 'EN_PROCESO', GETDATE(), DATEADD(hour, 1, GETDATE()))
+			""", OPERACION + "|otro-nodo");
+		ResponseEntity<?> otroNodo = idempotencia.ejecutar("otro-nodo", OPERACION, solicitud, () -> crear(ejecuciones));
+		assertEquals(409, otroNodo.getStatusCode().value());
+		assertEquals(1, ejecuciones.get());
+	}
+
+	@Test
+	void alVencerLaClaveSeVuelveAEjecutar() throws InterruptedException {
+		AtomicInteger ejecuciones = new AtomicInteger();
+		Map<String, Object> solicitud = Map.of("medicoId", 2);
+
+		idempotencia.ejecutar("vencida", OPERACION, solicitud, () -> crear(ejecuciones));
+		Thread.sleep(2_100);
+		ResponseEntity<?> nueva = idempotencia.ejecutar("vencida", OPERACION, solicitud, () -> crear(ejecuciones));
+
+		assertEquals(2, ejecuciones.get());
+		assertNull(nueva.getHeaders().getFirst(IdempotenciaService.ENCABEZADO_REPETIDA));
+		assertEquals("{\"id\":2}", jdbcTemplate.queryForObject(
+				"SELECT cuerpo FROM idempotencia_solicitudes WHERE clave = ?", String.class, OPERACION + "|vencida"));
+	}
+
+	@Test
+	void laClaveLiberadaJustoDespuesDeBuscarSeRepite() throws Exception {
+		// Solo la caché de este nodo, como con clinica.idempotencia.bd.habilitado=false
+		IdempotenciaService local = new IdempotenciaService();
+		ReflectionTestUtils.setField(local, "objectMapper", new ObjectMapper());
+		local.iniciar();
+
+		// La segunda solicitud no encuentra respuesta y se detiene hasta que la primera termina
+		CountDownLatch segundaBusco = new CountDownLatch(1);
+		CountDownLatch primeraTermino = new CountDownLatch(1);
+		AtomicReference<Thread> segunda = new AtomicReference<>();
+		ReflectionTestUtils.setField(local, "respuestas",
+				new CacheReferencia<String, IdempotenciaService.RespuestaGuardada>("idempotencia", 100, 60, 0) {
+					@Override
+					public IdempotenciaService.RespuestaGuardada buscar(String clave) {
+						IdempotenciaService.RespuestaGuardada guardada = super.buscar(clave);
+						if (Thread.currentThread() == segunda.get() && segundaBusco.getCount() > 0) {
+							segundaBusco.countDown();
+							try {
+								primeraTermino.await(10, TimeUnit.SECONDS);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return guardada;
+					}
+				});
+
+		AtomicInteger ejecuciones = new AtomicInteger();
+		Map<String, Object> solicitud = Map.of("medicoId", 2);
+		AtomicReference<ResponseEntity<?>> respuestaSegunda = new AtomicReference<>();
+		Thread hilo = new Thread(() -> respuestaSegunda.set(
+				local.ejecutar("carrera", OPERACION, solicitud, () -> crear(ejecuciones))));
+		segunda.set(hilo);
+		hilo.start();
+		assertTrue(segundaBusco.await(10, TimeUnit.SECONDS));
+
+		local.ejecutar("carrera", OPERACION, solicitud, () -> crear(ejecuciones));
+		primeraTermino.countDown();
+		hilo.join(10_000);
+
+		assertEquals(1, ejecuciones.get());
+		assertEquals("true", respuestaSegunda.get().getHeaders().getFirst(IdempotenciaService.ENCABEZADO_REPETIDA));
+		assertEquals("{\"id\":1}", respuestaSegunda.get().getBody());
+	}
+
+	private static ResponseEntity<?> crear(AtomicInteger ejecuciones) {
+		return ResponseEntity.ok(Map.of("id", ejecuciones.incrementAndGet()));
+	}
+}
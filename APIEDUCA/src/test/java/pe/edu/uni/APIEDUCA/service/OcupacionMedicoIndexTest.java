@@ -0,0 +1,131 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcupacionMedicoIndexTest {
+
+	private static final LocalDateTime HOY = LocalDateTime.of(2030, 1, 7, 10, 0);
+	private static final long MEDICO = 2;
+
+	private OcupacionMedicoIndex indice;
+
+	@BeforeEach
+	void preparar() {
+		indice = new OcupacionMedicoIndex();
+		fijarReloj(HOY);
+		// Sin base: los cambios se aplican directo, fuera de transacción
+		ReflectionTestUtils.setField(indice, "cargado", true);
+	}
+
+	@Test
+	void lasCitasSeguidasNoSeSolapan() {
+		indice.registrarCita(1, MEDICO, HOY.withHour(14), 30);
+
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(13).withMinute(30), 30));
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(14).withMinute(30), 30));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(13).withMinute(31), 30));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(14).withMinute(29), 30));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(13), 120));
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(14), 30, 1));
+		assertTrue(indice.estaDisponible(MEDICO + 1, HOY.withHour(14), 30));
+	}
+
+	@Test
+	void lasDuracionesNoPositivasOcupanUnMinuto() {
+		indice.registrarCita(1, MEDICO, HOY.withHour(15), 0);
+		indice.registrarCita(2, MEDICO, HOY.withHour(16), -20);
+
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(15), 1));
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(15).withMinute(1), 30));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(16), 0));
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(15).withMinute(58), -5));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(15).withMinute(58), 3));
+		assertEquals(HOY.withHour(16).withMinute(1), indice.obtenerReserva(2).fin());
+	}
+
+	@Test
+	void unaCitaQueCruzaLaMedianocheOcupaElDiaSiguiente() {
+		LocalDateTime noche = HOY.withHour(23).withMinute(45);
+		indice.registrarCita(1, MEDICO, noche, 30);
+
+		LocalDateTime manana = HOY.plusDays(1).withHour(0).withMinute(0);
+		assertFalse(indice.estaDisponible(MEDICO, manana, 10));
+		assertTrue(indice.estaDisponible(MEDICO, manana.withMinute(15), 10));
+		assertEquals(1, indice.reservasEntre(MEDICO, manana, manana.plusHours(1)).size());
+
+		// Al día siguiente sigue contando aunque empezó ayer, y se depura al terminar
+		fijarReloj(manana.withMinute(5));
+		indice.depurar();
+		assertFalse(indice.estaDisponible(MEDICO, manana, 10));
+		fijarReloj(manana.plusDays(1));
+		indice.depurar();
+		assertNull(indice.obtenerReserva(1));
+		assertEquals(0, indice.totalReservas());
+	}
+
+	@Test
+	void laDepuracionQuitaLosDiasPasados() {
+		indice.registrarCita(1, MEDICO, HOY.withHour(9), 30);
+		indice.registrarCita(2, MEDICO, HOY.plusDays(1).withHour(9), 30);
+		indice.registrarCita(3, MEDICO + 1, HOY.withHour(11), 30);
+		// Lo que ya terminó antes de hoy ni siquiera entra
+		indice.registrarCita(4, MEDICO, HOY.minusDays(1).withHour(9), 30);
+		assertEquals(3, indice.totalReservas());
+
+		fijarReloj(HOY.plusDays(1).withHour(8));
+		indice.depurar();
+
+		assertEquals(1, indice.totalReservas());
+		assertNotNull(indice.obtenerReserva(2));
+		assertFalse(indice.estaDisponible(MEDICO, HOY.plusDays(1).withHour(9), 30));
+		assertTrue(indice.estaDisponible(MEDICO + 1, HOY.withHour(11), 30));
+	}
+
+	@Test
+	void losCambiosDuranteLaCargaLleganAlIndiceNuevo() {
+		indice.registrarCita(1, MEDICO, HOY.withHour(12), 30);
+		indice.registrarCita(2, MEDICO, HOY.withHour(13), 30);
+		ReflectionTestUtils.setField(indice, "registroCambios", new RegistroCambiosCitas() {
+			@Override
+			public long limiteEstable() {
+				return 0;
+			}
+		});
+		// Mientras se lee la base confirman una reserva y una cancelación de este nodo
+		ReflectionTestUtils.setField(indice, "jdbcTemplate", new JdbcTemplate() {
+			@Override
+			public void query(String sql, RowCallbackHandler rch) {
+				indice.registrarCita(3, MEDICO, HOY.withHour(16), 30);
+				indice.liberarCita(2);
+			}
+		});
+
+		indice.cargar();
+
+		assertEquals(1, indice.totalReservas());
+		assertFalse(indice.estaDisponible(MEDICO, HOY.withHour(16), 30));
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(13), 30));
+		// La base leída no traía la cita 1: el índice nuevo solo tiene lo leído más lo anotado
+		assertTrue(indice.estaDisponible(MEDICO, HOY.withHour(12), 30));
+	}
+
+	private void fijarReloj(LocalDateTime ahora) {
+		ReflectionTestUtils.setField(indice, "reloj",
+				Clock.fixed(ahora.toInstant(ZoneOffset.UTC), ZoneId.of("UTC")));
+	}
+}
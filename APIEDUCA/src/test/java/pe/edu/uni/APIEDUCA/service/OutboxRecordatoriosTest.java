@@ -0,0 +1,162 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Outbox y rueda de temporizadores sobre H2: programar, reprogramar y cancelar una
+ * cita dejan eventos que el relay entrega después; los consumidores crean y ajustan
+ * los recordatorios y la rueda los envía al vencer.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:outbox;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8",
+		// Simulador sin fallos: los envíos de la rueda terminan siempre en ENVIADO
+		"clinica.notificaciones.simulador.tasa-fallo-email=0",
+		"clinica.notificaciones.simulador.tasa-fallo-sms=0"
+})
+class OutboxRecordatoriosTest {
+
+	private static final long RECEPCIONISTA = 1;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlanificadorRecordatorios planificador;
+
+	@Autowired
+	private RecordatorioService recordatorioService;
+
+	@Autowired
+	private DespachoRecordatoriosService despacho;
+
+	@Test
+	void losRecordatoriosSeAjustanDesdeElOutbox() throws InterruptedException {
+		LocalDate dia = LocalDate.now().plusDays(9);
+		long citaId = citasService.programarCita(CitasDto.builder()
+				.pacienteId(6).medicoId(15).fechaHora(dia.atTime(9, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+		esperar("EMAIL,SMS", () -> String.join(",", jdbcTemplate.queryForList(
+				"SELECT tipo FROM recordatorios WHERE cita_id = ? AND estado = 'PENDIENTE' ORDER BY tipo", String.class, citaId)));
+		jdbcTemplate.update("UPDATE recordatorios SET estado = 'FALLIDO', intentos = 2 WHERE cita_id = ? AND tipo = 'SMS'", citaId);
+
+		LocalDateTime nuevaFecha = dia.atTime(11, 0);
+		citasProcesosService.reprogramarCita(CitasProcesosDto.builder()
+				.citaId(citaId).usuarioId(RECEPCIONISTA).medicoId(15).fechaHora(nuevaFecha).build());
+		Timestamp envio = Timestamp.valueOf(nuevaFecha.minusHours(24));
+		esperar("2", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ? AND estado = 'PENDIENTE' AND intentos = 0 AND fecha_envio_programada = ?",
+				Integer.class, citaId, envio)));
+
+		citasProcesosService.cancelarCita(CitasProcesosDto.builder()
+				.citaId(citaId).usuarioId(RECEPCIONISTA).motivo("Viaje").build());
+		esperar("0", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ? AND estado = 'PENDIENTE'", Integer.class, citaId)));
+
+		List<String> eventos = jdbcTemplate.queryForList(
+				"SELECT tipo FROM outbox WHERE agregado_id = ? AND estado = 'PROCESADO' ORDER BY id", String.class, citaId);
+		assertEquals(List.of(Outbox.CITA_PROGRAMADA, Outbox.CITA_REPROGRAMADA, Outbox.CITA_CANCELADA), eventos);
+	}
+
+	@Test
+	void laRuedaEnviaElRecordatorioAlVencer() throws InterruptedException {
+		LocalDate dia = LocalDate.now().plusDays(10);
+		long citaId = citasService.programarCita(CitasDto.builder()
+				.pacienteId(7).medicoId(16).fechaHora(dia.atTime(10, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+		esperar("2", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ?", Integer.class, citaId)));
+
+		// Se adelanta el envío y se avisa a la rueda, como haría el outbox
+		jdbcTemplate.update("UPDATE recordatorios SET fecha_envio_programada = DATEADD(second, -1, GETDATE()) WHERE cita_id = ?", citaId);
+		planificador.sincronizarCita(citaId);
+		esperar("0", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ? AND estado = 'PENDIENTE'", Integer.class, citaId)));
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ? AND estado = 'ENVIADO'", Integer.class, citaId));
+	}
+
+	@Test
+	void unRecordatorioTomadoNoLoEnviaOtroNodo() throws InterruptedException {
+		LocalDate dia = LocalDate.now().plusDays(11);
+		long citaId = citasService.programarCita(CitasDto.builder()
+				.pacienteId(8).medicoId(17).fechaHora(dia.atTime(10, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+		esperar("2", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ?", Integer.class, citaId)));
+		List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM recordatorios WHERE cita_id = ?", Long.class, citaId);
+		List<RecordatorioDto> recordatorios = ids.stream()
+				.map(id -> RecordatorioDto.builder().idRecordatorio(id).build()).toList();
+
+		// El segundo nodo no toma lo que el primero tiene con lease vigente
+		assertEquals(2, recordatorioService.tomar(recordatorios).size());
+		assertEquals(0, recordatorioService.tomar(recordatorios).size());
+		jdbcTemplate.update("UPDATE recordatorios SET bloqueado_hasta = DATEADD(second, -1, GETDATE()) WHERE cita_id = ?", citaId);
+		assertEquals(2, recordatorioService.tomar(recordatorios).size());
+
+		// Ya vencido, un despacho (la rueda de otro nodo) no lo envía mientras dure el lease
+		jdbcTemplate.update("UPDATE recordatorios SET fecha_envio_programada = DATEADD(second, -1, GETDATE()) WHERE cita_id = ?", citaId);
+		assertEquals(0, despacho.despacharRecordatorios(ids));
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ? AND estado = 'PENDIENTE' AND intentos = 0", Integer.class, citaId));
+	}
+
+	@Test
+	void noSeEnviaElRecordatorioDeUnaCitaInactiva() throws InterruptedException {
+		LocalDate dia = LocalDate.now().plusDays(12);
+		long citaId = citasService.programarCita(CitasDto.builder()
+				.pacienteId(9).medicoId(18).fechaHora(dia.atTime(10, 0))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+		esperar("2", () -> String.valueOf(jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM recordatorios WHERE cita_id = ?", Integer.class, citaId)));
+		long recordatorioId = jdbcTemplate.queryForObject(
+				"SELECT MIN(id) FROM recordatorios WHERE cita_id = ?", Long.class, citaId);
+
+		// Cancelada sin que el outbox haya ajustado aún sus recordatorios
+		jdbcTemplate.update("UPDATE citas SET estado = 'CANCELADA' WHERE id = ?", citaId);
+		RuntimeException error = assertThrows(RuntimeException.class,
+				() -> recordatorioService.procesarEnvioRecordatorio(recordatorioId));
+		assertEquals("ERROR: La cita del recordatorio no está activa.", error.getMessage());
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT intentos FROM recordatorios WHERE id = ?", Integer.class, recordatorioId));
+	}
+
+	private static void esperar(String esperado, Supplier<String> valor) throws InterruptedException {
+		long limite = System.currentTimeMillis() + 10_000;
+		while (System.currentTimeMillis() < limite) {
+			if (esperado.equals(valor.get())) {
+				return;
+			}
+			Thread.sleep(50);
+		}
+		fail("No se llegó a " + esperado + "; quedó " + valor.get());
+	}
+}
@@ -0,0 +1,51 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlantillaRecordatorioTest {
+
+	private static final String[] VALORES = {"María Quispe Huamán", "14/03/2030 10:30", "Jorge Salazar Rojas", "Clínica Salud y Vida"};
+
+	@Test
+	void plantillasPorDefectoRepitenLosTextosAnteriores() {
+		assertEquals(String.format("Hola %s, recordatorio: cita médica %s con %s. Clínica Salud y Vida",
+						VALORES[0], VALORES[1], VALORES[2]),
+				PlantillaRecordatorio.compilar(PlantillasRecordatorioService.SMS_POR_DEFECTO).renderizar(VALORES, 160));
+		assertEquals(String.format("Estimado/a %s,\n\nLe recordamos su cita médica programada para el %s con %s.\n\nClínica Salud y Vida",
+						VALORES[0], VALORES[1], VALORES[2]),
+				PlantillaRecordatorio.compilar(PlantillasRecordatorioService.EMAIL_POR_DEFECTO).renderizar(VALORES, 0));
+	}
+
+	@Test
+	void llavesDoblesSonLiterales() {
+		assertEquals("{Jorge Salazar Rojas}", PlantillaRecordatorio.compilar("{{{medico}}}").renderizar(VALORES, 0));
+	}
+
+	@Test
+	void smsAcortaPrimeroLosNombres() {
+		PlantillaRecordatorio plantilla = PlantillaRecordatorio.compilar("Hola {paciente}, cita {fecha} con {medico}.");
+		String texto = plantilla.renderizar(VALORES, 50);
+		assertEquals(50, texto.length());
+		assertTrue(texto.contains("14/03/2030 10:30"), texto);
+		assertTrue(texto.startsWith("Hola María"), texto);
+		assertTrue(texto.contains("con Jorge"), texto);
+	}
+
+	@Test
+	void smsSeCortaSiLosNombresNoAlcanzan() {
+		PlantillaRecordatorio plantilla = PlantillaRecordatorio.compilar("Recordatorio de la {clinica}: cita {fecha} con {medico}.");
+		String texto = plantilla.renderizar(VALORES, 40);
+		assertEquals(40, texto.length());
+		assertTrue(texto.endsWith("…"), texto);
+	}
+
+	@Test
+	void variableDesconocidaSeRechaza() {
+		assertThrows(RuntimeException.class, () -> PlantillaRecordatorio.compilar("Hola {nombre}"));
+		assertThrows(RuntimeException.class, () -> PlantillaRecordatorio.compilar("Hola {paciente"));
+	}
+}
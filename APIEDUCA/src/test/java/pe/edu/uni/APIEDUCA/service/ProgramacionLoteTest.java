@@ -0,0 +1,144 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.ProgramacionLoteDto;
+import pe.edu.uni.APIEDUCA.dto.ResultadoLoteCitaDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Programación de citas por lote sobre H2 (modo MSSQLServer): rechazos por cita,
+ * límite del lote y correspondencia entre cada id devuelto y su fila.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:lote;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class ProgramacionLoteTest {
+
+	private static final long RECEPCIONISTA = 1;
+	private static final long PRIMER_MEDICO = 2;
+	private static final int TOTAL_MEDICOS = 32;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void cadaConflictoSeRechazaSoloEnSuCita() {
+		long medicoId = PRIMER_MEDICO + 8;
+		LocalDate dia = LocalDate.now().plusDays(3);
+		citasService.programarCita(cita(40, medicoId, dia.atTime(9, 0)));
+
+		// Fuera de orden a propósito: los conflictos se resuelven por hora de inicio
+		List<CitasDto> lote = List.of(
+				cita(1, medicoId, dia.atTime(8, 30)),
+				cita(2, medicoId, dia.atTime(8, 15)),
+				cita(3, medicoId, dia.atTime(8, 0)),
+				cita(4, medicoId, dia.atTime(9, 10)),
+				cita(5, medicoId + 1, dia.atTime(8, 0)),
+				cita(99_999, medicoId + 1, dia.atTime(10, 0)));
+
+		ProgramacionLoteDto resultado = citasService.programarCitasLote(lote);
+
+		assertEquals(6, resultado.getTotal());
+		assertEquals(3, resultado.getProgramadas());
+		assertEquals(3, resultado.getRechazadas());
+		List<ResultadoLoteCitaDto> resultados = resultado.getResultados();
+		for (int i = 0; i < resultados.size(); i++) {
+			assertEquals(i, resultados.get(i).getIndice());
+		}
+		assertTrue(resultados.get(0).isExito());
+		assertEquals("ERROR: La cita se solapa con otra cita del mismo lote.", resultados.get(1).getError());
+		assertTrue(resultados.get(2).isExito());
+		assertEquals("ERROR: El médico no está disponible en esa fecha y hora.", resultados.get(3).getError());
+		assertTrue(resultados.get(4).isExito());
+		assertEquals("ERROR: Paciente no existe o está inactivo.", resultados.get(5).getError());
+		verificarFilas(lote, resultados);
+
+		// Solo la cita previa y las tres aceptadas quedaron en la base
+		assertEquals(3, citasDelDia(medicoId, dia));
+		assertEquals(1, citasDelDia(medicoId + 1, dia));
+	}
+
+	@Test
+	void milCitasEntranEnUnLoteYCadaIdEsSuFila() {
+		// 32 médicos x 32 bloques de 30 minutos repartidos en dos días
+		LocalDate dia = LocalDate.now().plusDays(20);
+		List<CitasDto> lote = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			int bloque = i / TOTAL_MEDICOS;
+			LocalDateTime hora = dia.plusDays(bloque / 24).atTime(7, 0).plusMinutes(30L * (bloque % 24));
+			lote.add(cita(1 + i % 200, PRIMER_MEDICO + i % TOTAL_MEDICOS, hora));
+		}
+
+		ProgramacionLoteDto resultado = citasService.programarCitasLote(lote);
+
+		assertEquals(1000, resultado.getProgramadas());
+		verificarFilas(lote, resultado.getResultados());
+		// Los viajes a la base no crecen con el tamaño del lote
+		assertTrue(resultado.getViajesBd() <= 10, "Viajes a la base: " + resultado.getViajesBd());
+
+		List<CitasDto> excedido = new ArrayList<>(lote);
+		excedido.add(cita(1, PRIMER_MEDICO, dia.plusDays(5).atTime(8, 0)));
+		RuntimeException error = assertThrows(RuntimeException.class, () -> citasService.programarCitasLote(excedido));
+		assertEquals("ERROR: El lote no puede tener más de 1000 citas.", error.getMessage());
+	}
+
+	private void verificarFilas(List<CitasDto> lote, List<ResultadoLoteCitaDto> resultados) {
+		for (ResultadoLoteCitaDto resultado : resultados) {
+			if (!resultado.isExito()) {
+				continue;
+			}
+			CitasDto dto = lote.get(resultado.getIndice());
+			assertEquals(dto.getId(), resultado.getId());
+			Map<String, Object> fila = jdbcTemplate.queryForMap(
+					"SELECT paciente_id, medico_id, fecha_hora, estado FROM citas WHERE id = ?", resultado.getId());
+			assertEquals(dto.getPacienteId(), ((Number) fila.get("paciente_id")).longValue());
+			assertEquals(dto.getMedicoId(), ((Number) fila.get("medico_id")).longValue());
+			assertEquals(dto.getFechaHora(), ((Timestamp) fila.get("fecha_hora")).toLocalDateTime());
+			assertEquals("PROGRAMADA", fila.get("estado"));
+		}
+		assertFalse(resultados.isEmpty());
+	}
+
+	private int citasDelDia(long medicoId, LocalDate dia) {
+		return jdbcTemplate.queryForObject("""
+			SELECT COUNT(*) FROM citas
+			WHERE medico_id = ? AND estado = 'PROGRAMADA' AND CAST(fecha_hora AS DATE) = ?
+			""", Integer.class, medicoId, dia);
+	}
+
+	private static CitasDto cita(long pacienteId, long medicoId, LocalDateTime hora) {
+		return CitasDto.builder()
+				.pacienteId(pacienteId)
+				.medicoId(medicoId)
+				.fechaHora(hora)
+				.duracionMinutos(30)
+				.motivoConsulta("Control")
+				.creadaPor(RECEPCIONISTA)
+				.build();
+	}
+}
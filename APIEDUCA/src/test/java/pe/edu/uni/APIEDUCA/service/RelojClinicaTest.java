@@ -0,0 +1,108 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.AusenciaMedicoDto;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Las validaciones de "fecha futura" toman la hora del reloj de la clínica y no la del
+ * sistema: con un reloj fijo el límite es exacto y no depende de cuándo corre la prueba.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:reloj;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class RelojClinicaTest {
+
+	private static final long RECEPCIONISTA = 1;
+	private static final LocalDateTime AHORA = LocalDateTime.of(2030, 1, 7, 10, 0);
+
+	@TestConfiguration
+	static class RelojFijo {
+
+		@Bean
+		@Primary
+		Clock relojFijo() {
+			ZoneId zona = ZoneId.systemDefault();
+			return Clock.fixed(AHORA.atZone(zona).toInstant(), zona);
+		}
+	}
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void laFechaFuturaSeMideConElRelojDeLaClinica() {
+		RuntimeException pasada = assertThrows(RuntimeException.class, () -> programar(AHORA.minusMinutes(30)));
+		assertEquals("ERROR: No se pueden programar citas en fechas pasadas.", pasada.getMessage());
+
+		// En 2030 según el reloj fijo, aunque la prueba corra antes
+		long citaId = programar(AHORA.plusHours(1));
+
+		CitasProcesosDto reprogramacion = CitasProcesosDto.builder()
+				.citaId(citaId).usuarioId(RECEPCIONISTA).medicoId(24).fechaHora(AHORA).build();
+		RuntimeException ahora = assertThrows(RuntimeException.class, () -> citasProcesosService.reprogramarCita(reprogramacion));
+		assertEquals("ERROR: La fecha debe ser futura.", ahora.getMessage());
+
+		reprogramacion.setFechaHora(AHORA.plusMinutes(1));
+		citasProcesosService.reprogramarCita(reprogramacion);
+	}
+
+	@Test
+	void laAusenciaNoTocaCitasPasadas() {
+		AusenciaMedicoDto terminada = AusenciaMedicoDto.builder().medicoId(25).usuarioId(RECEPCIONISTA)
+				.desde(AHORA.minusHours(3)).hasta(AHORA.minusHours(1)).motivo("Congreso").accion("REDISTRIBUIR").build();
+		RuntimeException error = assertThrows(RuntimeException.class, () -> citasProcesosService.gestionarAusenciaMedico(terminada));
+		assertEquals("ERROR: La ventana de ausencia ya terminó.", error.getMessage());
+
+		// La cita de hace una hora queda como estaba; la de dentro de una hora se redistribuye
+		jdbcTemplate.update("""
+			INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, estado, creada_por)
+			VALUES(31, 25, ?, 30, 'PROGRAMADA', 1)
+			""", Timestamp.valueOf(AHORA.minusHours(1)));
+		long futura = citasService.programarCita(CitasDto.builder()
+				.pacienteId(32).medicoId(25).fechaHora(AHORA.plusHours(1))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+
+		citasProcesosService.gestionarAusenciaMedico(AusenciaMedicoDto.builder().medicoId(25).usuarioId(RECEPCIONISTA)
+				.desde(AHORA.minusHours(2)).hasta(AHORA.plusHours(2)).motivo("Congreso").accion("REDISTRIBUIR").build());
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM citas WHERE medico_id = 25 AND fecha_hora = ? AND estado = 'PROGRAMADA'",
+				Integer.class, Timestamp.valueOf(AHORA.minusHours(1))));
+		assertNotEquals(25L, jdbcTemplate.queryForObject("SELECT medico_id FROM citas WHERE id = ?", Long.class, futura));
+	}
+
+	private long programar(LocalDateTime fechaHora) {
+		return citasService.programarCita(CitasDto.builder()
+				.pacienteId(30).medicoId(24).fechaHora(fechaHora)
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+	}
+}
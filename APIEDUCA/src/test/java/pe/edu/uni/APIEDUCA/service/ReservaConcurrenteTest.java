@@ -0,0 +1,268 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Prueba de estrés de la programación concurrente de citas sobre H2 (modo MSSQLServer):
+ * ninguna agenda termina con citas solapadas y las reservas de médicos distintos
+ * no se bloquean entre sí.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:reservas;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.datasource.hikari.maximum-pool-size=20",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class ReservaConcurrenteTest {
+
+	private static final Logger log = LoggerFactory.getLogger(ReservaConcurrenteTest.class);
+
+	private static final long RECEPCIONISTA = 1;
+	private static final long PRIMER_MEDICO = 2;
+	private static final int TOTAL_MEDICOS = 32;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private ReintentoReserva reintentoReserva;
+
+	@Autowired
+	private BloqueoMedicos bloqueoMedicos;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void sinDobleReservaBajoContencion() throws Exception {
+		// 16 hilos piden las mismas horas (cada 15 minutos, citas de 30) de un mismo médico
+		long medicoId = PRIMER_MEDICO;
+		LocalDate dia = LocalDate.now().plusDays(2);
+		List<LocalDateTime> horas = new ArrayList<>();
+		for (LocalDateTime t = dia.atTime(8, 0); t.isBefore(dia.atTime(12, 0)); t = t.plusMinutes(15)) {
+			horas.add(t);
+		}
+
+		int hilos = 16;
+		AtomicInteger exitos = new AtomicInteger();
+		ejecutarEnParalelo(hilos, hilo -> {
+			List<LocalDateTime> orden = new ArrayList<>(horas);
+			Collections.shuffle(orden);
+			for (LocalDateTime hora : orden) {
+				if (reservar(medicoId, hora, 1 + hilo)) {
+					exitos.incrementAndGet();
+				}
+			}
+		});
+
+		List<LocalDateTime[]> citas = citasActivas(medicoId, dia);
+		assertEquals(exitos.get(), citas.size());
+		for (int i = 1; i < citas.size(); i++) {
+			assertFalse(citas.get(i)[0].isBefore(citas.get(i - 1)[1]),
+					"Citas solapadas: " + citas.get(i - 1)[0] + " y " + citas.get(i)[0]);
+		}
+	}
+
+	@Test
+	void cadaHorarioSeAsignaUnaSolaVez() throws Exception {
+		// 16 hilos piden los mismos 8 horarios alineados: cada uno se asigna exactamente una vez
+		long medicoId = PRIMER_MEDICO + 2;
+		LocalDate dia = LocalDate.now().plusDays(4);
+		AtomicInteger exitos = new AtomicInteger();
+		ejecutarEnParalelo(16, hilo -> {
+			for (int i = 0; i < 8; i++) {
+				if (reservar(medicoId, dia.atTime(8, 0).plusMinutes(30L * ((i + hilo) % 8)), 1 + hilo)) {
+					exitos.incrementAndGet();
+				}
+			}
+		});
+
+		assertEquals(8, exitos.get());
+		assertEquals(8, citasActivas(medicoId, dia).size());
+	}
+
+	@Test
+	void indiceUnicoRechazaCitasActivasDuplicadas() {
+		LocalDateTime hora = LocalDate.now().plusDays(3).atTime(9, 0);
+		String sql = """
+			INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, estado, creada_por)
+			VALUES(1, ?, ?, 30, 'PROGRAMADA', 1)
+			""";
+		jdbcTemplate.update(sql, PRIMER_MEDICO + 1, Timestamp.valueOf(hora));
+		assertThrows(DuplicateKeyException.class,
+				() -> jdbcTemplate.update(sql, PRIMER_MEDICO + 1, Timestamp.valueOf(hora)));
+	}
+
+	@Test
+	void losCrucesConCitasDeOtroNodoSeRechazanEnLaBase() {
+		// Otro nodo registró 10:00 (30 min): este nodo aún no la tiene en memoria
+		long medicoId = PRIMER_MEDICO + 5;
+		LocalDate dia = LocalDate.now().plusDays(3);
+		jdbcTemplate.update("""
+			INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, estado, creada_por)
+			VALUES(2, ?, ?, 30, 'PROGRAMADA', 1)
+			""", medicoId, Timestamp.valueOf(dia.atTime(10, 0)));
+
+		CitasDto cruce = CitasDto.builder().pacienteId(3).medicoId(medicoId).fechaHora(dia.atTime(10, 15))
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build();
+		assertThrows(DuplicateKeyException.class, () -> citasService.programarCita(cruce));
+		assertThrows(DuplicateKeyException.class, () -> citasService.programarCitasLote(List.of(cruce)));
+
+		// Una cita propia no puede moverse encima de la del otro nodo
+		long citaId = citasService.programarCita(CitasDto.builder().pacienteId(4).medicoId(medicoId)
+				.fechaHora(dia.atTime(12, 0)).duracionMinutos(30).motivoConsulta("Control")
+				.creadaPor(RECEPCIONISTA).build()).getId();
+		assertThrows(DuplicateKeyException.class, () -> citasProcesosService.reprogramarCita(CitasProcesosDto.builder()
+				.citaId(citaId).usuarioId(RECEPCIONISTA).medicoId(medicoId).fechaHora(dia.atTime(9, 45)).build()));
+
+		// Con el reintento se recarga la agenda y se responde que no está disponible
+		assertFalse(reservar(medicoId, dia.atTime(9, 50), 5));
+		assertEquals(2, citasActivas(medicoId, dia).size());
+	}
+
+	@Test
+	void rendimientoSegunHilos() throws Exception {
+		int citasPorHilo = 20;
+		int ronda = 0;
+		for (int hilos : new int[]{1, 2, 4, 8, 16}) {
+			// Cada hilo trabaja con su propio médico y cada ronda con su propio día
+			LocalDate dia = LocalDate.now().plusDays(10 + ronda++);
+			long contencionesAntes = bloqueoMedicos.totalContenciones();
+			AtomicInteger exitos = new AtomicInteger();
+			AtomicInteger rechazos = new AtomicInteger();
+
+			long inicio = System.nanoTime();
+			ejecutarEnParalelo(hilos, hilo -> {
+				long medicoId = PRIMER_MEDICO + hilo % TOTAL_MEDICOS;
+				for (int i = 0; i < citasPorHilo; i++) {
+					if (reservar(medicoId, dia.atTime(7, 0).plusMinutes(30L * i), 1 + i)) {
+						exitos.incrementAndGet();
+					} else {
+						rechazos.incrementAndGet();
+					}
+				}
+			});
+			long nanos = System.nanoTime() - inicio;
+
+			// Cada pedido terminó aceptado o rechazado, y la base tiene exactamente los aceptados
+			assertEquals(hilos * citasPorHilo, exitos.get() + rechazos.get());
+			assertEquals(hilos * citasPorHilo, exitos.get());
+			assertEquals(0, horariosRepetidos(dia));
+			int registradas = 0;
+			for (int hilo = 0; hilo < hilos; hilo++) {
+				registradas += citasActivas(PRIMER_MEDICO + hilo % TOTAL_MEDICOS, dia).size();
+			}
+			assertEquals(exitos.get(), registradas);
+			assertEquals(contencionesAntes, bloqueoMedicos.totalContenciones(),
+					"Médicos distintos no deben esperar por la misma franja");
+			log.info("Hilos: {}  citas: {}  citas/s: {}",
+					hilos, exitos.get(), String.format("%.1f", exitos.get() / (nanos / 1e9)));
+		}
+	}
+
+	private boolean reservar(long medicoId, LocalDateTime hora, long pacienteId) {
+		CitasDto dto = CitasDto.builder()
+				.pacienteId(pacienteId)
+				.medicoId(medicoId)
+				.fechaHora(hora)
+				.duracionMinutos(30)
+				.motivoConsulta("Control")
+				.creadaPor(RECEPCIONISTA)
+				.build();
+		try {
+			reintentoReserva.ejecutar(medicoId, () -> citasService.programarCita(dto));
+			return true;
+		} catch (RuntimeException e) {
+			if (!e.getMessage().contains("no está disponible")) {
+				throw e;
+			}
+			return false;
+		}
+	}
+
+	private List<LocalDateTime[]> citasActivas(long medicoId, LocalDate dia) {
+		String sql = """
+			SELECT fecha_hora, duracion_minutos FROM citas
+			WHERE medico_id = ? AND estado IN ('PROGRAMADA', 'CONFIRMADA')
+			AND fecha_hora >= ? AND fecha_hora < ?
+			ORDER BY fecha_hora
+			""";
+		return jdbcTemplate.query(sql, (rs, rowNum) -> {
+			LocalDateTime inicio = rs.getTimestamp("fecha_hora").toLocalDateTime();
+			return new LocalDateTime[]{inicio, inicio.plusMinutes(rs.getInt("duracion_minutos"))};
+		}, medicoId, Timestamp.valueOf(dia.atStartOfDay()), Timestamp.valueOf(dia.plusDays(1).atStartOfDay()));
+	}
+
+	private int horariosRepetidos(LocalDate dia) {
+		String sql = """
+			SELECT COUNT(*) FROM (
+				SELECT medico_id, fecha_hora FROM citas
+				WHERE estado IN ('PROGRAMADA', 'CONFIRMADA')
+				AND fecha_hora >= ? AND fecha_hora < ?
+				GROUP BY medico_id, fecha_hora
+				HAVING COUNT(*) > 1
+			) repetidos
+			""";
+		return jdbcTemplate.queryForObject(sql, Integer.class,
+				Timestamp.valueOf(dia.atStartOfDay()), Timestamp.valueOf(dia.plusDays(1).atStartOfDay()));
+	}
+
+	private interface TareaHilo {
+		void ejecutar(int hilo) throws Exception;
+	}
+
+	private static void ejecutarEnParalelo(int hilos, TareaHilo tarea) throws Exception {
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		CountDownLatch largada = new CountDownLatch(1);
+		try {
+			List<Future<?>> futuros = new ArrayList<>();
+			for (int h = 0; h < hilos; h++) {
+				int hilo = h;
+				futuros.add(ejecutor.submit(() -> {
+					largada.await();
+					tarea.ejecutar(hilo);
+					return null;
+				}));
+			}
+			largada.countDown();
+			for (Future<?> futuro : futuros) {
+				futuro.get(2, TimeUnit.MINUTES);
+			}
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuedaTemporizadoresTest {
+
+	private static final long INICIO = 1_000_000_000_000L;
+	private static final long SEGUNDO = 1000;
+
+	@Test
+	void nadaSaleAntesDeVencerNiMasDeUnTickDespues() {
+		RuedaTemporizadores rueda = new RuedaTemporizadores(SEGUNDO, 8, INICIO);
+		SplittableRandom azar = new SplittableRandom(7);
+		long[] vencimientos = new long[2000];
+		for (int id = 0; id < vencimientos.length; id++) {
+			// Hasta unos 3 días: usa varios niveles con 8 ranuras
+			vencimientos[id] = INICIO + azar.nextLong(3 * 24 * 3600 * SEGUNDO);
+			rueda.programar(id, vencimientos[id]);
+		}
+
+		int disparados = 0;
+		for (long ahora = INICIO; ahora <= INICIO + 3 * 24 * 3600 * SEGUNDO + SEGUNDO; ahora += 37 * SEGUNDO) {
+			for (long id : rueda.avanzar(ahora)) {
+				assertTrue(vencimientos[(int) id] <= ahora, "Salió antes de vencer: " + id);
+				assertTrue(vencimientos[(int) id] > ahora - 38 * SEGUNDO, "Salió tarde: " + id);
+				disparados++;
+			}
+		}
+		assertEquals(vencimientos.length, disparados);
+		assertEquals(0, rueda.tamanio());
+	}
+
+	@Test
+	void cancelarYReprogramar() {
+		RuedaTemporizadores rueda = new RuedaTemporizadores(SEGUNDO, 64, INICIO);
+		rueda.programar(1, INICIO + 10 * SEGUNDO);
+		rueda.programar(2, INICIO + 10 * SEGUNDO);
+		rueda.programar(3, INICIO + 10 * SEGUNDO);
+		assertTrue(rueda.cancelar(2));
+		rueda.programar(3, INICIO + 2 * 3600 * SEGUNDO);
+
+		assertEquals(List.of(1L), rueda.avanzar(INICIO + 11 * SEGUNDO));
+		assertFalse(rueda.contiene(1));
+		assertTrue(rueda.avanzar(INICIO + 3599 * SEGUNDO).isEmpty());
+		assertEquals(List.of(3L), rueda.avanzar(INICIO + 2 * 3600 * SEGUNDO + SEGUNDO));
+	}
+
+	@Test
+	void loVencidoSaleUnaSolaVezEnElSiguienteAvance() {
+		RuedaTemporizadores rueda = new RuedaTemporizadores(SEGUNDO, 64, INICIO);
+		rueda.programar(5, INICIO - 3600 * SEGUNDO);
+		rueda.programar(5, INICIO - 3600 * SEGUNDO);
+		List<Long> vencidos = new ArrayList<>(rueda.avanzar(INICIO));
+		assertEquals(List.of(5L), vencidos);
+		assertTrue(rueda.avanzar(INICIO + SEGUNDO).isEmpty());
+	}
+}
@@ -0,0 +1,116 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pe.edu.uni.APIEDUCA.dto.CitasDto;
+import pe.edu.uni.APIEDUCA.dto.CitasProcesosDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Transiciones de estado de las citas sobre H2: cada una se aplica en un solo viaje,
+ * deja su historial y rechaza los estados de origen no permitidos.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:transiciones;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.sql.init.mode=always",
+		"spring.sql.init.schema-locations=classpath:sql/esquema-h2.sql",
+		"spring.sql.init.data-locations=classpath:sql/datos-h2.sql",
+		"spring.sql.init.encoding=UTF-8"
+})
+class TransicionesCitaTest {
+
+	private static final long RECEPCIONISTA = 1;
+
+	@Autowired
+	private CitasService citasService;
+
+	@Autowired
+	private CitasProcesosService citasProcesosService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void confirmarReprogramarYCancelarDejanHistorial() {
+		LocalDateTime original = LocalDate.now().plusDays(12).atTime(9, 0);
+		long citaId = programar(8, 17, original);
+
+		citasProcesosService.confirmarCita(accion(citaId));
+		ViajesBd.iniciar();
+		RuntimeException repetida = assertThrows(RuntimeException.class, () -> citasProcesosService.confirmarCita(accion(citaId)));
+		assertEquals("ERROR: La cita no puede confirmarse en su estado actual (CONFIRMADA).", repetida.getMessage());
+		// El lote rechazado y la lectura del estado para el mensaje
+		assertEquals(2, ViajesBd.actual());
+
+		LocalDateTime nueva = original.plusHours(2);
+		CitasProcesosDto reprogramacion = accion(citaId);
+		reprogramacion.setMedicoId(18);
+		reprogramacion.setFechaHora(nueva);
+		citasProcesosService.reprogramarCita(reprogramacion);
+
+		CitasProcesosDto cancelacion = accion(citaId);
+		cancelacion.setMotivo("Viaje");
+		citasProcesosService.cancelarCita(cancelacion);
+		assertThrows(RuntimeException.class, () -> citasProcesosService.completarCita(accion(citaId)));
+
+		List<Map<String, Object>> historial = jdbcTemplate.queryForList(
+				"SELECT transicion, estado_anterior, estado_nuevo, medico_anterior_id, fecha_hora_anterior FROM citas_transiciones WHERE cita_id = ? ORDER BY id",
+				citaId);
+		assertEquals(3, historial.size());
+		assertEquals(List.of("CONFIRMAR", "PROGRAMADA", "CONFIRMADA"), List.of(historial.get(0).get("transicion"),
+				historial.get(0).get("estado_anterior"), historial.get(0).get("estado_nuevo")));
+		assertEquals(17L, ((Number) historial.get(1).get("medico_anterior_id")).longValue());
+		assertEquals(Timestamp.valueOf(original), historial.get(1).get("fecha_hora_anterior"));
+		assertEquals("CONFIRMADA", historial.get(1).get("estado_nuevo"));
+		assertEquals(18L, ((Number) historial.get(2).get("medico_anterior_id")).longValue());
+		assertEquals("CANCELADA", historial.get(2).get("estado_nuevo"));
+
+		assertNull(jdbcTemplate.queryForObject("SELECT reprogramada_desde FROM citas WHERE id = ?", Long.class, citaId));
+		assertEquals(List.of("PROGRAMADA", "CONFIRMADA", "REPROGRAMADA", "CANCELADA"), jdbcTemplate.queryForList(
+				"SELECT tipo FROM citas_cambios WHERE cita_id = ? ORDER BY version", String.class, citaId));
+	}
+
+	@Test
+	void completarYNoAsistioSoloEnCitasYaIniciadas() {
+		long futura = programar(9, 19, LocalDate.now().plusDays(12).atTime(10, 0));
+		RuntimeException temprana = assertThrows(RuntimeException.class, () -> citasProcesosService.marcarNoAsistio(accion(futura)));
+		assertEquals("ERROR: La cita aún no ha comenzado; no puede marcarse como no asistida.", temprana.getMessage());
+
+		long pasada = programar(10, 20, LocalDate.now().plusDays(12).atTime(11, 0));
+		jdbcTemplate.update("UPDATE citas SET fecha_hora = ? WHERE id = ?",
+				Timestamp.valueOf(LocalDateTime.now().minusHours(1).withNano(0)), pasada);
+		ViajesBd.iniciar();
+		assertEquals("COMPLETADA", citasProcesosService.completarCita(accion(pasada)).getAccion());
+		assertEquals(1, ViajesBd.actual());
+		assertEquals("COMPLETADA", jdbcTemplate.queryForObject("SELECT estado FROM citas WHERE id = ?", String.class, pasada));
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT COUNT(1) FROM outbox WHERE agregado_id = ? AND tipo = ?", Integer.class, pasada, Outbox.CITA_COMPLETADA));
+
+		RuntimeException inexistente = assertThrows(RuntimeException.class, () -> citasProcesosService.confirmarCita(accion(999_999)));
+		assertEquals("ERROR: Cita no existe.", inexistente.getMessage());
+	}
+
+	private long programar(long pacienteId, long medicoId, LocalDateTime fechaHora) {
+		return citasService.programarCita(CitasDto.builder()
+				.pacienteId(pacienteId).medicoId(medicoId).fechaHora(fechaHora)
+				.duracionMinutos(30).motivoConsulta("Control").creadaPor(RECEPCIONISTA).build()).getId();
+	}
+
+	private static CitasProcesosDto accion(long citaId) {
+		return CitasProcesosDto.builder().citaId(citaId).usuarioId(RECEPCIONISTA).build();
+	}
+}
@@ -0,0 +1,75 @@
+-- Datos para la prueba de carga (perfil carga): 10 especialidades, una recepcionista,
+-- 2000 médicos con turnos de lunes a sábado (22000 filas de horarios_medicos:
+-- mañana y tarde, el sábado solo mañana),
+-- 50000 pacientes, 1000000 de citas y recordatorios para una de cada 50 citas.
+-- Cada médico tiene 500 citas, dos por día (09:00 y 15:00): 400 en los 200 días
+-- pasados (atendidas, canceladas o sin asistencia) y 100 en los 50 días siguientes
+-- (programadas, una de cada diez cancelada). Quedan vencidos sin enviar los
+-- recordatorios de las citas de las próximas 24 horas.
+
+INSERT INTO especialidades(nombre, duracion_consulta_minutos)
+SELECT CONCAT('Especialidad ', r."X"), 30
+FROM SYSTEM_RANGE(1, 10) r;
+
+INSERT INTO usuarios(nombre, apellido, email, rol, especialidad_id, activo)
+VALUES ('Recepción', 'Central', 'recepcion@saludvida.pe', 'RECEPCIONISTA', NULL, 1);
+
+INSERT INTO usuarios(nombre, apellido, email, rol, especialidad_id, activo)
+SELECT 'Médico', CAST(r."X" AS VARCHAR(10)), CONCAT('medico', r."X", '@saludvida.pe'), 'MEDICO', 1 + MOD(r."X", 10), 1
+FROM SYSTEM_RANGE(1, 2000) r;
+
+INSERT INTO horarios_medicos(medico_id, dia_semana, hora_inicio, hora_fin, activo)
+SELECT u.id, d.dia, t.inicio, t.fin, 1
+FROM usuarios u
+CROSS JOIN (VALUES ('LUNES'), ('MARTES'), ('MIÉRCOLES'), ('JUEVES'), ('VIERNES'), ('SÁBADO')) AS d(dia)
+CROSS JOIN (VALUES (TIME '08:00:00', TIME '13:00:00'), (TIME '14:00:00', TIME '19:00:00')) AS t(inicio, fin)
+WHERE u.rol = 'MEDICO'
+AND (t.inicio = TIME '08:00:00' OR d.dia <> 'SÁBADO');
+
+INSERT INTO pacientes(nombre, apellido, telefono, email, activo)
+SELECT 'Paciente', CAST(r."X" AS VARCHAR(10)), CONCAT('9', LPAD(CAST(r."X" AS VARCHAR(8)), 8, '0')), CONCAT('paciente', r."X", '@correo.pe'), 1
+FROM SYSTEM_RANGE(1, 50000) r;
+
+-- r - 1 = k * 2000 + m: médico 2 + m, día -200 + k / 2, turno según la paridad de k
+INSERT INTO citas(paciente_id, medico_id, fecha_hora, duracion_minutos, estado, motivo_consulta,
+                  creada_por, fecha_creacion, fecha_actualizacion)
+SELECT 1 + MOD(c.n * 7, 50000),
+       2 + MOD(c.n, 2000),
+       c.fecha_hora,
+       30,
+       CASE
+           WHEN c.fecha_hora < CURRENT_TIMESTAMP THEN
+               CASE MOD(c.n, 10) WHEN 0 THEN 'CANCELADA' WHEN 1 THEN 'NO_ASISTIO' ELSE 'COMPLETADA' END
+           WHEN MOD(c.n, 10) = 0 THEN 'CANCELADA'
+           ELSE 'PROGRAMADA'
+       END,
+       'Control',
+       1,
+       c.fecha_hora - INTERVAL '7' DAY,
+       c.fecha_hora - INTERVAL '7' DAY
+FROM (
+    SELECT r."X" - 1 AS n,
+           DATEADD(HOUR, 9 + 6 * MOD((r."X" - 1) / 2000, 2),
+                   DATEADD(DAY, -200 + (r."X" - 1) / 4000, CAST(CURRENT_DATE AS TIMESTAMP))) AS fecha_hora
+    FROM SYSTEM_RANGE(1, 1000000) r
+) c;
+
+INSERT INTO recordatorios(cita_id, tipo, mensaje, fecha_envio_programada, fecha_envio_real, estado, intentos)
+SELECT c.id,
+       CASE MOD(c.id, 2) WHEN 0 THEN 'EMAIL' ELSE 'SMS' END,
+       NULL,
+       c.fecha_hora - INTERVAL '1' DAY,
+       CASE WHEN c.fecha_hora - INTERVAL '1' DAY < CURRENT_TIMESTAMP - INTERVAL '1' DAY THEN c.fecha_hora - INTERVAL '1' DAY END,
+       CASE
+           WHEN c.fecha_hora - INTERVAL '1' DAY < CURRENT_TIMESTAMP - INTERVAL '1' DAY THEN 'ENVIADO'
+           WHEN c.estado NOT IN ('PROGRAMADA', 'CONFIRMADA') THEN 'FALLIDO'
+           ELSE 'PENDIENTE'
+       END,
+       0
+FROM citas c
+WHERE MOD(c.id, 50) = 0;
+
+-- Índices de apoyo para las consultas por médico y por cita
+CREATE INDEX IX_citas_medico_fecha ON citas(medico_id, fecha_hora);
+CREATE INDEX IX_recordatorios_cita ON recordatorios(cita_id);
+CREATE INDEX IX_recordatorios_estado_envio ON recordatorios(estado, fecha_envio_programada);
@@ -0,0 +1,21 @@
+-- Datos base para pruebas: una especialidad de 30 minutos, una recepcionista,
+-- 32 médicos que atienden todos los días de 07:00 a 19:00 y 200 pacientes.
+
+INSERT INTO especialidades(nombre, duracion_consulta_minutos) VALUES ('Medicina General', 30);
+
+INSERT INTO usuarios(nombre, apellido, email, rol, especialidad_id, activo)
+VALUES ('Recepción', 'Central', 'recepcion@saludvida.pe', 'RECEPCIONISTA', NULL, 1);
+
+INSERT INTO usuarios(nombre, apellido, email, rol, especialidad_id, activo)
+SELECT 'Médico', CAST(r."X" AS VARCHAR(10)), CONCAT('medico', r."X", '@saludvida.pe'), 'MEDICO', 1, 1
+FROM SYSTEM_RANGE(1, 32) r;
+
+INSERT INTO horarios_medicos(medico_id, dia_semana, hora_inicio, hora_fin, activo)
+SELECT u.id, d.dia, TIME '07:00:00', TIME '19:00:00', 1
+FROM usuarios u
+CROSS JOIN (VALUES ('LUNES'), ('MARTES'), ('MIÉRCOLES'), ('JUEVES'), ('VIERNES'), ('SÁBADO'), ('DOMINGO')) AS d(dia)
+WHERE u.rol = 'MEDICO';
+
+INSERT INTO pacientes(nombre, apellido, telefono, email, activo)
+SELECT 'Paciente', CAST(r."X" AS VARCHAR(10)), CONCAT('9', LPAD(CAST(r."X" AS VARCHAR(8)), 8, '0')), CONCAT('paciente', r."X", '@correo.pe'), 1
+FROM SYSTEM_RANGE(1, 200) r;
@@ -0,0 +1,156 @@
+-- Esquema mínimo de ClinicaDB para pruebas sobre H2 en modo MSSQLServer.
+-- H2 no tiene índices filtrados: el índice único de citas activas se emula con
+-- una columna calculada que, cuando la cita no está activa, toma el -id de la
+-- cita (en modo MSSQLServer el índice único no admite NULL repetidos).
+
+CREATE TABLE especialidades (
+    id BIGINT IDENTITY PRIMARY KEY,
+    nombre VARCHAR(100) NOT NULL,
+    duracion_consulta_minutos INT
+);
+
+CREATE TABLE usuarios (
+    id BIGINT IDENTITY PRIMARY KEY,
+    nombre VARCHAR(100) NOT NULL,
+    apellido VARCHAR(100) NOT NULL,
+    email VARCHAR(150),
+    rol VARCHAR(20) NOT NULL,
+    especialidad_id BIGINT,
+    activo BIT NOT NULL DEFAULT 1
+);
+
+CREATE TABLE pacientes (
+    id BIGINT IDENTITY PRIMARY KEY,
+    nombre VARCHAR(100) NOT NULL,
+    apellido VARCHAR(100) NOT NULL,
+    telefono VARCHAR(20),
+    email VARCHAR(150),
+    activo BIT NOT NULL DEFAULT 1
+);
+
+CREATE TABLE horarios_medicos (
+    id BIGINT IDENTITY PRIMARY KEY,
+    medico_id BIGINT NOT NULL,
+    dia_semana VARCHAR(15) NOT NULL,
+    hora_inicio TIME NOT NULL,
+    hora_fin TIME NOT NULL,
+    activo BIT NOT NULL DEFAULT 1
+);
+
+CREATE TABLE citas (
+    id BIGINT IDENTITY PRIMARY KEY,
+    paciente_id BIGINT NOT NULL,
+    medico_id BIGINT NOT NULL,
+    fecha_hora DATETIME2 NOT NULL,
+    duracion_minutos INT NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    motivo_consulta VARCHAR(MAX),
+    observaciones_cita VARCHAR(MAX),
+    creada_por BIGINT NOT NULL,
+    cancelada_por BIGINT,
+    motivo_cancelacion VARCHAR(255),
+    fecha_cancelacion DATETIME2,
+    reprogramada_desde BIGINT,
+    fecha_creacion DATETIME2,
+    fecha_actualizacion DATETIME2,
+    medico_activo BIGINT AS (CASE WHEN estado IN ('PROGRAMADA', 'CONFIRMADA') THEN medico_id ELSE -id END)
+);
+
+CREATE UNIQUE INDEX UX_citas_medico_fecha_activa ON citas(medico_activo, fecha_hora);
+
+CREATE TABLE recordatorios (
+    id BIGINT IDENTITY PRIMARY KEY,
+    cita_id BIGINT NOT NULL,
+    tipo VARCHAR(10) NOT NULL,
+    mensaje VARCHAR(MAX),
+    fecha_envio_programada DATETIME2 NOT NULL,
+    fecha_envio_real DATETIME2,
+    estado VARCHAR(20) NOT NULL,
+    intentos INT NOT NULL DEFAULT 0,
+    error_mensaje VARCHAR(MAX),
+    bloqueado_hasta DATETIME2
+);
+
+CREATE TABLE plantillas_recordatorio (
+    id BIGINT IDENTITY PRIMARY KEY,
+    canal VARCHAR(10) NOT NULL,
+    idioma VARCHAR(20) NOT NULL,
+    clinica_id BIGINT,
+    cuerpo VARCHAR(MAX) NOT NULL,
+    activo BIT NOT NULL DEFAULT 1,
+    fecha_actualizacion DATETIME2 NOT NULL
+);
+
+CREATE TABLE citas_cambios (
+    version BIGINT IDENTITY PRIMARY KEY,
+    cita_id BIGINT NOT NULL,
+    tipo VARCHAR(20) NOT NULL,
+    medico_id BIGINT NOT NULL,
+    fecha_hora DATETIME2 NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    medico_anterior_id BIGINT,
+    fecha_hora_anterior DATETIME2,
+    fecha_registro DATETIME2 NOT NULL
+);
+
+CREATE INDEX IX_citas_cambios_medico_fecha ON citas_cambios(medico_id, fecha_hora);
+CREATE INDEX IX_citas_cambios_medico_anterior ON citas_cambios(medico_anterior_id, fecha_hora_anterior);
+
+CREATE TABLE outbox (
+    id BIGINT IDENTITY PRIMARY KEY,
+    tipo VARCHAR(40) NOT NULL,
+    agregado_id BIGINT NOT NULL,
+    carga VARCHAR(1000),
+    estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+    intentos INT NOT NULL DEFAULT 0,
+    proximo_intento DATETIME2 NOT NULL,
+    bloqueado_hasta DATETIME2,
+    error VARCHAR(1000),
+    fecha_registro DATETIME2 NOT NULL,
+    procesado_en DATETIME2
+);
+
+CREATE INDEX IX_outbox_pendientes ON outbox(estado, proximo_intento);
+CREATE INDEX IX_outbox_agregado ON outbox(agregado_id, id);
+
+CREATE TABLE idempotencia_solicitudes (
+    clave VARCHAR(200) NOT NULL PRIMARY KEY,
+    huella CHAR(64) NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    estado_http INT,
+    cuerpo VARCHAR(10000),
+    fecha_creacion DATETIME2 NOT NULL,
+    expira_en DATETIME2 NOT NULL
+);
+
+CREATE INDEX IX_idempotencia_expira ON idempotencia_solicitudes(expira_en);
+
+CREATE TABLE citas_transiciones (
+    id BIGINT IDENTITY PRIMARY KEY,
+    cita_id BIGINT NOT NULL,
+    transicion VARCHAR(20) NOT NULL,
+    estado_anterior VARCHAR(20) NOT NULL,
+    estado_nuevo VARCHAR(20) NOT NULL,
+    medico_anterior_id BIGINT NOT NULL,
+    fecha_hora_anterior DATETIME2 NOT NULL,
+    usuario_id BIGINT,
+    motivo VARCHAR(255),
+    fecha_registro DATETIME2 NOT NULL
+);
+
+CREATE INDEX IX_citas_transiciones_cita ON citas_transiciones(cita_id, id);
+
+CREATE TABLE estadisticas_citas_dia (
+    dia DATE NOT NULL,
+    medico_id BIGINT NOT NULL,
+    citas INT NOT NULL,
+    canceladas INT NOT NULL,
+    reprogramadas INT NOT NULL,
+    completadas INT NOT NULL,
+    no_asistio INT NOT NULL,
+    minutos_ocupados INT NOT NULL,
+    recordatorios_enviados INT NOT NULL,
+    version_cambios BIGINT NOT NULL,
+    fecha_actualizacion DATETIME2 NOT NULL,
+    PRIMARY KEY (dia, medico_id)
+);
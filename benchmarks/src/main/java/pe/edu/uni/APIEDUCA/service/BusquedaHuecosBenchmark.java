@@ -0,0 +1,124 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pe.edu.uni.APIEDUCA.dto.HuecoDisponibleDto;
+
+import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BusquedaHuecosService.buscarHuecos sobre 100 médicos de una especialidad y
+ * 30 días, con los cachés cargados (sin base de datos).
+ *
+ * Cada médico atiende de 07:00 a 19:00 todos los días y tiene la agenda llena en
+ * bloques de 30 minutos salvo un bloque libre por día, así que ninguno llega a
+ * 'cantidad' huecos y la búsqueda recorre los 30 días de los 100 médicos
+ * (69 000 citas). La meta es que una búsqueda tome pocos milisegundos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusquedaHuecosBenchmark {
+
+    private static final int MEDICOS = 100;
+    private static final int DIAS = 30;
+    private static final int BLOQUES_POR_DIA = 24;
+
+    @Param({"20", "200"})
+    private int cantidad;
+
+    private BusquedaHuecosService busqueda;
+    private LocalDate desde;
+    private LocalDate hasta;
+
+    @Setup
+    public void preparar() throws ReflectiveOperationException {
+        LocalDateTime ahora = LocalDateTime.of(2030, 1, 7, 6, 0);
+        ZoneId zona = ZoneId.systemDefault();
+        Clock reloj = Clock.fixed(ahora.atZone(zona).toInstant(), zona);
+        desde = ahora.toLocalDate();
+        hasta = desde.plusDays(DIAS - 1);
+
+        List<Long> medicos = new ArrayList<>(MEDICOS);
+        for (long medicoId = 1; medicoId <= MEDICOS; medicoId++) {
+            medicos.add(medicoId);
+        }
+
+        int[][] rangos = new int[7][];
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            rangos[dia.ordinal()] = new int[]{7 * 3600, 19 * 3600};
+        }
+        HorarioMedicoCache.HorarioSemanal horario = new HorarioMedicoCache.HorarioSemanal(rangos);
+        HorarioMedicoCache horarioCache = new HorarioMedicoCache() {
+            @Override
+            public HorarioSemanal obtener(long medicoId) {
+                return horario;
+            }
+        };
+
+        DatosReferenciaService datosReferencia = new DatosReferenciaService() {
+            @Override
+            public List<Long> medicosDeEspecialidad(long especialidadId) {
+                return medicos;
+            }
+
+            @Override
+            public Integer duracionEspecialidad(long especialidadId) {
+                return 30;
+            }
+        };
+
+        OcupacionMedicoIndex ocupacion = new OcupacionMedicoIndex();
+        asignar(ocupacion, "reloj", reloj);
+        asignar(ocupacion, "cargado", true);
+        long citaId = 1;
+        for (long medicoId : medicos) {
+            for (int d = 0; d < DIAS; d++) {
+                LocalDateTime apertura = desde.plusDays(d).atTime(7, 0);
+                int libre = (int) ((medicoId + d) % BLOQUES_POR_DIA);
+                for (int b = 0; b < BLOQUES_POR_DIA; b++) {
+                    if (b != libre) {
+                        ocupacion.registrarCita(citaId++, medicoId, apertura.plusMinutes(30L * b), 30);
+                    }
+                }
+            }
+        }
+
+        busqueda = new BusquedaHuecosService();
+        asignar(busqueda, "reloj", reloj);
+        asignar(busqueda, "horarioCache", horarioCache);
+        asignar(busqueda, "datosReferencia", datosReferencia);
+        asignar(busqueda, "ocupacionIndex", ocupacion);
+    }
+
+    @Benchmark
+    public List<HuecoDisponibleDto> buscarHuecos() {
+        return busqueda.buscarHuecos(1, desde, hasta, cantidad, 0);
+    }
+
+    private static void asignar(Object destino, String campo, Object valor) throws ReflectiveOperationException {
+        Field field = destino.getClass().getDeclaredField(campo);
+        field.setAccessible(true);
+        field.set(destino, valor);
+    }
+}
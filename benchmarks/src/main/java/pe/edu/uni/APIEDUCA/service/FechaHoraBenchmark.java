@@ -0,0 +1,120 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trabajo de CPU de las validaciones de fecha y horario que se hacen en cada
+ * programación o reprogramación de cita.
+ *
+ * - validarFechaHoraCitas: CitasService.validarFechaHora tal como está hoy, con la
+ *   fecha ya enlazada como LocalDateTime y un reloj fijo de la clínica.
+ * - parse*: LocalDateTime.parse creando el patrón en cada llamada o compartido.
+ * - horarioLaboralOriginal: la parte en Java de la versión original de
+ *   validarHorarioLaboral (patrón por llamada, HashMap de días y formato de hora).
+ * - horarioLaboralCompilado: la verificación actual con HorarioMedicoCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FechaHoraBenchmark {
+
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private String fechaHora;
+    private LocalDateTime fechaHoraCita;
+    private MethodHandle validarFechaHora;
+    private CitasService citasService;
+    private HorarioMedicoCache.HorarioSemanal horario;
+
+    @Setup
+    public void preparar() throws ReflectiveOperationException {
+        LocalDate hoy = LocalDate.of(2030, 1, 7);
+        fechaHoraCita = hoy.plusDays(7).atTime(10, 30);
+        fechaHora = fechaHoraCita.format(FORMATO);
+
+        // Reloj fijo: la cita siempre queda en el futuro y el resultado no depende del día
+        ZoneId zona = ZoneId.systemDefault();
+        citasService = new CitasService();
+        Field reloj = CitasService.class.getDeclaredField("reloj");
+        reloj.setAccessible(true);
+        reloj.set(citasService, Clock.fixed(hoy.atStartOfDay(zona).toInstant(), zona));
+        validarFechaHora = MethodHandles.privateLookupIn(CitasService.class, MethodHandles.lookup())
+                .findVirtual(CitasService.class, "validarFechaHora", MethodType.methodType(void.class, LocalDateTime.class));
+
+        // Lunes a sábado de 08:00 a 13:00 y de 14:00 a 18:00
+        int[][] rangos = new int[7][];
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            rangos[dia.ordinal()] = dia == DayOfWeek.SUNDAY
+                    ? new int[0]
+                    : new int[]{8 * 3600, 13 * 3600, 14 * 3600, 18 * 3600};
+        }
+        horario = new HorarioMedicoCache.HorarioSemanal(rangos);
+    }
+
+    @Benchmark
+    public Object validarFechaHoraCitas() throws Throwable {
+        validarFechaHora.invokeExact(citasService, fechaHoraCita);
+        return citasService;
+    }
+
+    @Benchmark
+    public LocalDateTime parseConPatronPorLlamada() {
+        return LocalDateTime.parse(fechaHora, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+    }
+
+    @Benchmark
+    public LocalDateTime parseConFormateadorCompartido() {
+        return LocalDateTime.parse(fechaHora, FORMATO);
+    }
+
+    @Benchmark
+    public String horarioLaboralOriginal() {
+        LocalDateTime fechaTime = LocalDateTime.parse(fechaHora, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        String diaSemana = fechaTime.getDayOfWeek().name();
+
+        Map<String, String> diasMap = new HashMap<>();
+        diasMap.put("MONDAY", "LUNES");
+        diasMap.put("TUESDAY", "MARTES");
+        diasMap.put("WEDNESDAY", "MIERCOLES");
+        diasMap.put("THURSDAY", "JUEVES");
+        diasMap.put("FRIDAY", "VIERNES");
+        diasMap.put("SATURDAY", "SABADO");
+        diasMap.put("SUNDAY", "DOMINGO");
+
+        String diaEspanol = diasMap.get(diaSemana);
+        String horaConsulta = fechaTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+        return diaEspanol + horaConsulta;
+    }
+
+    @Benchmark
+    public boolean horarioLaboralCompilado() {
+        LocalDateTime fechaTime = LocalDateTime.parse(fechaHora, FORMATO);
+        return horario.atiende(fechaTime.getDayOfWeek(), fechaTime.toLocalTime().toSecondOfDay());
+    }
+}
@@ -0,0 +1,153 @@
+package pe.edu.uni.APIEDUCA.service;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapper;
+import pe.edu.uni.APIEDUCA.dto.RecordatorioDto;
+import pe.edu.uni.APIEDUCA.notificacion.MensajeNotificacion;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trabajo de CPU por recordatorio despachado: mapeo de la fila de pendientes
+ * a RecordatorioDto, construcción del DTO y armado del texto de EMAIL y SMS
+ * en RecordatorioService.prepararMensaje (plantillas compiladas, sin base de
+ * datos: se usan las plantillas por defecto).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordatorioBenchmark {
+
+    private RowMapper<RecordatorioDto> mapeoPendiente;
+    private SimpleResultSet fila;
+    private RecordatorioService recordatorioService;
+    private RecordatorioDto email;
+    private RecordatorioDto sms;
+    private RecordatorioDto[] lote;
+
+    private static final int TAMANIO_LOTE = 100_000;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void preparar() throws ReflectiveOperationException, SQLException {
+        Field campo = RecordatorioService.class.getDeclaredField("MAPEO_PENDIENTE");
+        campo.setAccessible(true);
+        mapeoPendiente = (RowMapper<RecordatorioDto>) campo.get(null);
+
+        // Misma forma que las filas de SQL_PENDIENTES
+        fila = new SimpleResultSet();
+        fila.addColumn("id", Types.BIGINT, 19, 0);
+        fila.addColumn("cita_id", Types.BIGINT, 19, 0);
+        fila.addColumn("paciente_id", Types.BIGINT, 19, 0);
+        fila.addColumn("medico_id", Types.BIGINT, 19, 0);
+        fila.addColumn("paciente_nombre", Types.VARCHAR, 100, 0);
+        fila.addColumn("paciente_apellido", Types.VARCHAR, 100, 0);
+        fila.addColumn("telefono", Types.VARCHAR, 20, 0);
+        fila.addColumn("email", Types.VARCHAR, 100, 0);
+        fila.addColumn("medico_nombre", Types.VARCHAR, 100, 0);
+        fila.addColumn("medico_apellido", Types.VARCHAR, 100, 0);
+        fila.addColumn("fecha_hora", Types.TIMESTAMP, 0, 0);
+        fila.addColumn("tipo", Types.VARCHAR, 10, 0);
+        fila.addColumn("mensaje", Types.VARCHAR, 500, 0);
+        fila.addColumn("estado", Types.VARCHAR, 20, 0);
+        fila.addColumn("intentos", Types.INTEGER, 10, 0);
+        fila.addColumn("fecha_envio_programada", Types.TIMESTAMP, 0, 0);
+        LocalDateTime cita = LocalDateTime.of(2030, 3, 14, 10, 30);
+        fila.addRow(1500L, 900L, 42L, 7L, "María", "Quispe Huamán", "987654321", "maria.quispe@correo.pe",
+                "Jorge", "Salazar Rojas", Timestamp.valueOf(cita), "EMAIL", null, "PENDIENTE", 0,
+                Timestamp.valueOf(cita.minusDays(1)));
+        fila.next();
+
+        PlantillasRecordatorioService plantillas = new PlantillasRecordatorioService();
+        asignar(plantillas, "idioma", "es-PE");
+        asignar(plantillas, "clinicaId", 1L);
+        asignar(plantillas, "nombreClinica", "Clínica Salud y Vida");
+        asignar(plantillas, "maxCaracteresSms", 160);
+        asignar(plantillas, "maxEntradas", 1000);
+        asignar(plantillas, "ttlSegundos", 3600L);
+        plantillas.iniciar();
+        recordatorioService = new RecordatorioService();
+        asignar(recordatorioService, "plantillas", plantillas);
+        email = mapeoPendiente.mapRow(fila, 0);
+        sms = construirDto();
+        sms.setTipo("SMS");
+
+        lote = new RecordatorioDto[TAMANIO_LOTE];
+        for (int i = 0; i < TAMANIO_LOTE; i++) {
+            lote[i] = construirDto();
+            lote[i].setIdRecordatorio(i);
+            lote[i].setNombrePaciente("Paciente " + i);
+            lote[i].setTipo(i % 2 == 0 ? "EMAIL" : "SMS");
+        }
+    }
+
+    @Benchmark
+    public RecordatorioDto mapeoFilaPendiente() throws SQLException {
+        return mapeoPendiente.mapRow(fila, 0);
+    }
+
+    @Benchmark
+    public RecordatorioDto construirDto() {
+        return RecordatorioDto.builder()
+                .idRecordatorio(1500L)
+                .idCita(900L)
+                .idPaciente(42L)
+                .idMedico(7L)
+                .nombrePaciente("María Quispe Huamán")
+                .telefonoPaciente("987654321")
+                .emailPaciente("maria.quispe@correo.pe")
+                .nombreMedico("Jorge Salazar Rojas")
+                .fechaHora("2030-03-14 10:30")
+                .tipo("EMAIL")
+                .estado("PENDIENTE")
+                .intentos(0)
+                .fechaEnvioProgramada(LocalDateTime.of(2030, 3, 13, 10, 30))
+                .build();
+    }
+
+    @Benchmark
+    public MensajeNotificacion mensajeEmail() {
+        return recordatorioService.prepararMensaje(email);
+    }
+
+    @Benchmark
+    public MensajeNotificacion mensajeSms() {
+        return recordatorioService.prepararMensaje(sms);
+    }
+
+    // Cien mil recordatorios de ambos canales; el resultado es por recordatorio
+    @Benchmark
+    @OperationsPerInvocation(TAMANIO_LOTE)
+    public long loteCienMil() {
+        long caracteres = 0;
+        for (RecordatorioDto recordatorio : lote) {
+            caracteres += recordatorioService.prepararMensaje(recordatorio).texto().length();
+        }
+        return caracteres;
+    }
+
+    private static void asignar(Object destino, String campo, Object valor) throws ReflectiveOperationException {
+        Field f = destino.getClass().getDeclaredField(campo);
+        f.setAccessible(true);
+        f.set(destino, valor);
+    }
+}